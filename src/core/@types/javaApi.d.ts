@@ -140,6 +140,7 @@ export interface InstanceInstallModData extends BaseData {
     uuid: string;
     modId: number;
     versionId: number;
+    mods: PendingInstall[];
 }
 
 export interface PendingInstall {
@@ -163,6 +164,11 @@ export interface InstanceModToggleDataReply extends InstanceModToggleData {
     successful: boolean;
 }
 
+export interface InstanceModsChangedData extends BaseData {
+    uuid: string;
+    changedFiles: string[];
+}
+
 export interface InstanceModsData extends BaseData {
     uuid: string;
     _private: boolean;
@@ -206,6 +212,11 @@ export interface InstanceVersionInfoDataReply extends BaseData {
     versionManifest: ModpackVersionManifest;
 }
 
+export interface InstancesChangedData extends BaseData {
+    changedInstances: InstanceJson[];
+    removedInstances: string[];
+}
+
 export interface KillInstanceData extends BaseData {
     uuid: string;
 }
@@ -221,6 +232,7 @@ export interface LaunchInstanceData extends BaseData {
     cancelLaunch: boolean;
     offline: boolean;
     offlineUsername: string;
+    verifyFiles: boolean;
 }
 
 export interface Logs extends BaseData {
@@ -393,6 +405,11 @@ export interface SettingsInfoDataReply extends SettingsInfoData {
     supportedResolutions: Dimension[];
 }
 
+export interface SubsystemReadyData extends BaseData {
+    subsystem: Subsystem;
+    ready: Subsystem[];
+}
+
 export interface UploadLogsData extends BaseData {
 }
 
@@ -406,11 +423,13 @@ export interface WebRequestData extends BaseData {
     method: string;
     headers: { [index: string]: string[] };
     body: Body;
+    stream: boolean;
 }
 
 export interface Body {
     contentType: string;
     bytes: any;
+    chunked: boolean;
 }
 
 export interface WebRequestDataResponse extends BaseData {
@@ -422,6 +441,13 @@ export interface WebRequestDataResponse extends BaseData {
     body: Body;
 }
 
+export interface Chunk extends BaseData {
+    index: number;
+    data: string;
+    last: boolean;
+    error: string;
+}
+
 export interface DuplicateInstanceHandlerReply extends DuplicateInstanceHandlerRequest {
     message: string;
     success: boolean;
@@ -447,6 +473,7 @@ export interface SugaredInstanceJson extends InstanceJson {
     path: string;
     pendingCloudInstance: boolean;
     rootDirs: string[];
+    artSizes: { [index: string]: string };
 }
 
 export interface MoveInstancesHandlerData extends BaseData {
@@ -506,6 +533,10 @@ export interface AppInitHandlerReply extends AppInitHandlerData {
     apiCredentials: UserApiCredentials;
 }
 
+export interface StartupStatusHandlerReply extends BaseData {
+    ready: Subsystem[];
+}
+
 export interface VideoCacheHandlerData extends BaseData {
     url: string;
     fileName: string;
@@ -659,6 +690,7 @@ export interface InstanceJson {
      * @deprecated
      */
     art: string;
+    artHash: string;
     potentiallyBrokenDismissed: boolean;
 }
 
@@ -741,6 +773,7 @@ export interface AccountProfile {
 export interface GeneralSettings {
     releaseChannel: string;
     cacheLife: number;
+    cacheMaxSize: number;
     exitOverwolf: boolean;
     verbose: boolean;
 }
@@ -909,6 +942,8 @@ export interface Customfield {
     value: string;
 }
 
+export type Subsystem = "INSTANCES" | "CLOUD" | "JAVA" | "CACHE";
+
 export type SyncDirection = "UP_TO_DATE" | "DOWNLOAD" | "UPLOAD";
 
 export type Type = "BASIC" | "FULL";
@@ -6,6 +6,7 @@ import {
   InstallInstanceDataReply,
   InstanceJson,
   InstanceOverrideModLoaderDataReply,
+  InstancesChangedData,
   OperationProgressUpdateData,
   Stage,
   SugaredInstanceJson
@@ -85,6 +86,11 @@ class InstanceInstallController {
           .catch(e => this.logger.error(e))
       }
       
+      if (data.type === "instancesChanged") {
+        this.applyInstanceChanges(data as InstancesChangedData)
+          .catch(e => this.logger.error(e))
+      }
+      
       if (data.type === "instanceOverrideModLoaderReply") {
         const typedData = data as InstanceOverrideModLoaderDataReply;
         this.handleOverrideState(typedData);
@@ -476,11 +482,30 @@ class InstanceInstallController {
     
     for (const pack of payload.changedInstances) {
       // We shouldn't already have it but we might so keep it in sync regardless
-      if ((store.state as any)['v2/instances'].instances.findIndex((i: InstanceJson) => i.uuid === pack.uuid) === -1) {
-        await store.dispatch('v2/instances/addInstance', pack, {root: true});
-      } else {
-        await store.dispatch('v2/instances/updateInstance', pack, {root: true});
-      }
+      await this.addOrUpdateInstance(pack);
+    }
+  }
+
+  /**
+   * Keeps the store in sync with instances which were changed on disk outside the launcher
+   */
+  private async applyInstanceChanges(payload: InstancesChangedData) {
+    this.logger.debug("Instances changed on disk", payload)
+    
+    for (const uuid of payload.removedInstances) {
+      await store.dispatch('v2/instances/removeInstance', uuid, {root: true});
+    }
+    
+    for (const pack of payload.changedInstances) {
+      await this.addOrUpdateInstance(pack);
+    }
+  }
+  
+  private async addOrUpdateInstance(pack: InstanceJson) {
+    if ((store.state as any)['v2/instances'].instances.findIndex((i: InstanceJson) => i.uuid === pack.uuid) === -1) {
+      await store.dispatch('v2/instances/addInstance', pack, {root: true});
+    } else {
+      await store.dispatch('v2/instances/updateInstance', pack, {root: true});
     }
   }
 
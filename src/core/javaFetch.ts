@@ -1,8 +1,9 @@
 import store from '@/modules/store';
 import {HttpMethod} from '@/core/@types/commonTypes';
 import {MessageRaw, Nullable, sendMessage} from '@/core/websockets/websocketsApi';
-import {WebRequestData} from '@/core/@types/javaApi';
+import {Chunk, WebRequestData} from '@/core/@types/javaApi';
 import {createLogger} from '@/core/logger';
+import {emitter} from '@/utils/event-bus';
 
 interface FetchResponseRaw {
   status: string;
@@ -64,6 +65,83 @@ class FetchResponse implements FetchResponseRaw {
   }
 }
 
+/**
+ * Collects the chunks of a streamed response body, these arrive as separate messages after the response.
+ * 
+ * Listens from before the request is sent, so no chunk can be missed.
+ */
+class ChunkCollector {
+  private requestId: string | null = null;
+  private chunks: Chunk[] = [];
+  private wake: (() => void) | null = null;
+  
+  constructor() {
+    emitter.on('ws.message', this.onMessage);
+  }
+  
+  private onMessage = (data: any) => {
+    if (data.type !== "webRequest.chunk") {
+      return;
+    }
+    
+    // Until the request id is known, hold onto everything
+    if (this.requestId !== null && data.requestId !== this.requestId) {
+      return;
+    }
+    
+    this.chunks.push(data as Chunk);
+    this.wake?.();
+  }
+  
+  async collect(requestId: string, timeout: number): Promise<Buffer> {
+    this.requestId = requestId;
+    this.chunks = this.chunks.filter(e => e.requestId === requestId);
+    
+    const parts: Buffer[] = [];
+    for (let index = 0; ; index++) {
+      const chunk = await this.next(index, timeout);
+      if (chunk.error) {
+        throw new Error(`Failed to read response body: ${chunk.error}`);
+      }
+      
+      parts.push(Buffer.from(chunk.data, "base64"));
+      if (chunk.last) {
+        return Buffer.concat(parts);
+      }
+    }
+  }
+  
+  // Waits for the chunk with the given index, timing out if nothing arrives for too long
+  private async next(index: number, timeout: number): Promise<Chunk> {
+    const deadline = Date.now() + timeout;
+    while (true) {
+      const position = this.chunks.findIndex(e => e.index === index);
+      if (position !== -1) {
+        return this.chunks.splice(position, 1)[0];
+      }
+      
+      const remaining = deadline - Date.now();
+      if (remaining <= 0) {
+        throw new Error(`Timed out waiting for chunk ${index} of the response body`);
+      }
+      
+      await new Promise<void>(resolve => {
+        const timer = setTimeout(resolve, remaining);
+        this.wake = () => {
+          clearTimeout(timer);
+          resolve();
+        }
+      });
+      this.wake = null;
+    }
+  }
+  
+  close() {
+    emitter.off('ws.message', this.onMessage);
+    this.chunks = [];
+  }
+}
+
 export class JavaFetch {
   private readonly logger = createLogger("JavaFetch.ts")
   
@@ -168,22 +246,31 @@ export class JavaFetch {
       url: this._url,
       method: this._method,
       headers: this._headers,
-      body: null
+      body: null,
+      stream: true, // Large bodies arrive as separate chunk messages
     };
     
     if (this._body !== null) {
       payload.body = {
         contentType: this._contentType,
         bytes: this._body instanceof Buffer ? this._body : Buffer.from(this._body as string),
+        chunked: false,
       }
     }
     
+    const chunks = new ChunkCollector();
     try {
       const request = await sendMessage("webRequest", payload, this._timeout);
+      if (request.body?.chunked) {
+        request.body.bytes = await chunks.collect(request.requestId, this._timeout);
+      }
+      
       return FetchResponse.of(request);
     } catch(error) {
       this.logger.error(`Request to ${this._method}::${this._url} failed`, error)
       return null;
+    } finally {
+      chunks.close();
     }
   }
 }
\ No newline at end of file
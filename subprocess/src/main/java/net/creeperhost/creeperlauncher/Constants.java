@@ -5,7 +5,7 @@ import net.covers1624.jdkutils.provisioning.adoptium.AdoptiumProvisioner;
 import net.covers1624.quack.net.httpapi.okhttp.OkHttpEngine;
 import net.covers1624.quack.net.okhttp.MultiHasherInterceptor;
 import net.covers1624.quack.net.okhttp.OkHttpDownloadAction;
-import net.covers1624.quack.net.okhttp.ThrottlerInterceptor;
+import net.creeperhost.creeperlauncher.install.tasks.MirrorStats;
 import net.creeperhost.creeperlauncher.os.OS;
 import net.creeperhost.creeperlauncher.storage.settings.Settings;
 import net.creeperhost.creeperlauncher.util.*;
@@ -13,7 +13,6 @@ import okhttp3.Cache;
 import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
-import okio.Throttler;
 import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Path;
@@ -89,7 +88,7 @@ public class Constants {
     public static final String PLATFORM = WORKING_DIR.toAbsolutePath().toString().contains("Overwolf") ? "Overwolf" : "Electron";
     
     public static final String USER_AGENT = "modpacklauncher/" + APPVERSION + " Mozilla/5.0 (" + OS.CURRENT.name() + ") AppleWebKit/537.36 (KHTML, like Gecko) Chrome/57.0.2987.138 Safari/537.36 Vivaldi/1.8.770.56";
-    private static final Throttler GLOBAL_THROTTLER = new Throttler();
+    private static final BandwidthThrottler GLOBAL_THROTTLER = new BandwidthThrottler(Constants::getSpeedLimitBytes);
 
     public static final String WEBSOCKET_SECRET = UUID.randomUUID().toString();
 
@@ -103,8 +102,43 @@ public class Constants {
             new DNSChain.SystemDNSStep()
     );
 
+    /**
+     * Hosts resolved in the background on startup, so the first downloads do not wait on DNS.
+     */
+    public static final List<String> DNS_PREFETCH_HOSTS = List.of(
+            "piston-meta.mojang.com",
+            "piston-data.mojang.com",
+            "launchermeta.mojang.com",
+            "libraries.minecraft.net",
+            "resources.download.minecraft.net",
+            "api.modpacks.ch",
+            "dist.modpacks.ch",
+            "azuresucks.modpacks.ch",
+            "maven.creeperhost.net",
+            "api.curseforge.com",
+            "edge.forgecdn.net",
+            "mediafilez.forgecdn.net"
+    );
+
+    /**
+     * Per-host concurrency limits for all requests made through {@link #httpClient()}.
+     */
+    public static final HostLimiter HOST_LIMITER = new HostLimiter()
+            .withPolicy("resources.download.minecraft.net", new HostLimiter.HostPolicy(16))
+            .withPolicy("azuresucks.modpacks.ch", new HostLimiter.HostPolicy(16))
+            .withPolicy("api.modpacks.ch", new HostLimiter.HostPolicy(8))
+            .withPolicy("edge.forgecdn.net", new HostLimiter.HostPolicy(8))
+            .withPolicy("mediafilez.forgecdn.net", new HostLimiter.HostPolicy(8));
+
+    /**
+     * Latency and throughput of download mirrors, used to pick which mirror serves a download.
+     */
+    public static final MirrorStats MIRROR_STATS = new MirrorStats();
+
     public static final CurseMetadataCache CURSE_METADATA_CACHE = new CurseMetadataCache(getDataDir().resolve(".curse_meta.json"));
     public static final ModVersionCache MOD_VERSION_CACHE = new ModVersionCache(getDataDir().resolve(".mod_meta.json"));
+    public static final JavaInstallCache JAVA_INSTALL_CACHE = new JavaInstallCache(getDataDir().resolve(".java_installs.json"));
+    public static final ApiResponseCache API_RESPONSE_CACHE = new ApiResponseCache(getDataDir().resolve(".api_cache"));
 
     @Nullable
     private static OkHttpClient OK_HTTP_CLIENT;
@@ -130,11 +164,12 @@ public class Constants {
                 .dns(new DNSChain.OkHTTPAdapter(DNS_CHAIN))
                 .connectTimeout(5, TimeUnit.MINUTES)
                 .readTimeout(5, TimeUnit.MINUTES)
-                .connectionPool(new ConnectionPool())
+                .connectionPool(new ConnectionPool(HostLimiter.MAX_IDLE_CONNECTIONS, 5, TimeUnit.MINUTES))
+                .eventListenerFactory(HOST_LIMITER)
                 .cookieJar(new SimpleCookieJar())
+                .addInterceptor(HOST_LIMITER)
                 .addInterceptor(new MultiHasherInterceptor())
-                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder().tag(Throttler.class, getGlobalThrottler()).build()))
-                .addInterceptor(new ThrottlerInterceptor())
+                .addInterceptor(GLOBAL_THROTTLER)
                 .addInterceptor(chain -> chain.proceed(chain.request().newBuilder().header("User-Agent", USER_AGENT).build()));
 
         SSLUtils.inject(builder);
@@ -186,14 +221,8 @@ public class Constants {
         return ret.toAbsolutePath().normalize();
     }
 
-    private static Throttler getGlobalThrottler() {
-        // TODO, double-check this logic.
-        long maxSpeed = Settings.getSpeedLimit() * 1000L;
-        if (maxSpeed > 0) {
-            GLOBAL_THROTTLER.bytesPerSecond((maxSpeed / 8) * 2); //Some reason it always limits to 50% for me, so we multiply!
-        } else {
-            GLOBAL_THROTTLER.bytesPerSecond(Long.MAX_VALUE);
-        }
-        return GLOBAL_THROTTLER;
+    private static long getSpeedLimitBytes() {
+        // Speed limit is stored in kilobits per second.
+        return Settings.getSpeedLimit() * 1000L / 8;
     }
 }
@@ -6,8 +6,6 @@ import com.google.gson.JsonObject;
 import io.sentry.Sentry;
 import io.sentry.log4j2.BuildConfig;
 import io.sentry.protocol.SdkVersion;
-import net.covers1624.jdkutils.JavaInstall;
-import net.covers1624.jdkutils.locator.JavaLocator;
 import net.covers1624.quack.logging.log4j2.Log4jUtils;
 import net.covers1624.quack.platform.Architecture;
 import net.creeperhost.creeperlauncher.api.DebugTools;
@@ -27,7 +25,6 @@ import net.creeperhost.creeperlauncher.util.*;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.maven.artifact.versioning.ComparableVersion;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -37,7 +34,6 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -166,8 +162,9 @@ public class CreeperLauncher {
         // Cleanup before shutdown
         Runtime.getRuntime().addShutdownHook(new Thread(CreeperLauncher::cleanUpBeforeExit));
 
-        Settings.loadSettings();
-        Instances.refreshInstances();
+        ElapsedTimer startupTimer = new ElapsedTimer();
+        initSettingsAndCache();
+        Constants.DNS_CHAIN.prefetch(Constants.DNS_PREFETCH_HOSTS);
 
         ImmutableMap<String, String> Args = StartArgParser.parse(args).getArgs();
         LOGGER.info("Args: {}", Args);
@@ -222,15 +219,16 @@ public class CreeperLauncher {
             var port = WebSocketHandler.startWebsocket(portMode);
             // Common format both electron and overwolf can understand
             LOGGER.info("{T:CI={p:%s;s:%s}}".formatted(port, Constants.WEBSOCKET_SECRET), port);
+            LOGGER.info("Websocket bound after {}.", startupTimer.elapsedStr());
             if (OS.CURRENT == OS.WIN) pingPong();
         } catch (Throwable t) {
             websocketDisconnect = true;
             LOGGER.error("Unable to open websocket port or websocket has disconnected...", t);
         }
-        
-        // Reload in case settings changed. Ideally we want the front end to wait until the back end says "Ok we ready
-        // bois" before the front end requests any information but that's a further issue, not for this release
-        initSettingsAndCache();
+
+        // Everything expensive happens in the background, the frontend is told as each part becomes ready.
+        // Messages which need a subsystem are held by WebSocketHandler until it is.
+        startSubsystems();
 
         FileUtils.listDir(Constants.WORKING_DIR).stream()
             .filter(e -> e.getFileName().toString().endsWith(".jar") && !e.getFileName().toString().contains(Constants.APPVERSION))
@@ -244,8 +242,6 @@ public class CreeperLauncher {
 
         registerSettingsListeners(args);
 
-        CompletableFuture.runAsync(localCache::clean);
-
         if (!Files.isWritable(Constants.getDataDir())) {
             OpenModalData.openModal("Critical Error", "The FTBApp is unable to write to your selected data directory, this can be caused by file permission errors, anti-virus or any number of other configuration issues.<br />If you continue, the app will not work as intended and you may be unable to install or run any modpacks.", List.of(
                 new OpenModalData.ModalButton("Exit", "success", CreeperLauncher::exit),
@@ -255,8 +251,6 @@ public class CreeperLauncher {
             );
         }
 
-        updateJavaVersions();
-
         if (Boolean.getBoolean("Debugger.onStartup")) {
             openDebugTools();
         }
@@ -270,35 +264,33 @@ public class CreeperLauncher {
         }
     }
 
+    private static void startSubsystems() {
+        Startup.runInBackground(Startup.Subsystem.INSTANCES, () -> {
+            Instances.refreshInstances(false);
+            Instances.startWatching();
+        });
+        // Waits for INSTANCES itself.
+        CLOUD_SAVE_MANAGER.pollCloudInstances()
+                .whenComplete((v, ex) -> Startup.markReady(Startup.Subsystem.CLOUD));
+        Startup.runInBackground(Startup.Subsystem.JAVA, CreeperLauncher::updateJavaVersions);
+        Startup.runInBackground(Startup.Subsystem.CACHE, localCache::clean);
+    }
+
     public static void updateJavaVersions() {
-        try {
-            JavaLocator locator = JavaLocator.builder()
-                .findIntellijJdks()
-                .findGradleJdks()
-                .useJavaw()
-                .ignoreOpenJ9()
-                .build();
-
-            List<Pair<String, String>> entries = new LinkedList<>();
-            entries.add(Pair.of("Recommended", ""));
-
-            List<JavaInstall> installs = locator.findJavaVersions();
-            installs.sort(Comparator.<JavaInstall, ComparableVersion>comparing(e -> new ComparableVersion(e.implVersion)).reversed());
-            for (JavaInstall version : installs) {
-                Path javaPath = JavaInstall.getJavaExecutable(version.javaHome, true).toAbsolutePath();
-                String description = String.format("%s - %s %s (%s) - %s",
-                    version.vendor,
-                    version.implVersion,
-                    version.hasCompiler ? "JDK" : "JRE",
-                    version.architecture,
-                    javaPath
-                );
-                entries.add(Pair.of(description, javaPath.toString()));
-            }
-            javaVersions = List.copyOf(entries);
-        } catch (IOException ex) {
-            LOGGER.error("Failed to poll available Java versions.", ex);
+        List<Pair<String, String>> entries = new LinkedList<>();
+        entries.add(Pair.of("Recommended", ""));
+
+        for (JavaInstallCache.Install install : Constants.JAVA_INSTALL_CACHE.findInstalls()) {
+            String description = String.format("%s - %s %s (%s) - %s",
+                install.vendor(),
+                install.implVersion(),
+                install.hasCompiler() ? "JDK" : "JRE",
+                install.architecture(),
+                install.executable()
+            );
+            entries.add(Pair.of(description, install.executable()));
         }
+        javaVersions = List.copyOf(entries);
     }
 
     private static void registerSettingsListeners(String[] args) {
@@ -420,6 +412,9 @@ public class CreeperLauncher {
         WebSocketHandler.stopWebsocket();
         closeSockets();
 
+        if (localCache != null) {
+            localCache.flush();
+        }
         Settings.saveSettings();
     }
 
@@ -1,6 +1,12 @@
 package net.creeperhost.creeperlauncher;
 
+import net.creeperhost.creeperlauncher.api.WebSocketHandler;
+import net.creeperhost.creeperlauncher.api.data.instances.InstanceModsChangedData;
+import net.creeperhost.creeperlauncher.api.data.instances.InstancesChangedData;
+import net.creeperhost.creeperlauncher.api.handlers.instances.InstalledInstancesHandler.SugaredInstanceJson;
 import net.creeperhost.creeperlauncher.data.modpack.ModpackVersionManifest;
+import net.creeperhost.creeperlauncher.instance.InstanceWatcher;
+import net.creeperhost.creeperlauncher.instance.InstanceWatcher.InstanceChange;
 import net.creeperhost.creeperlauncher.pack.Instance;
 import net.creeperhost.creeperlauncher.storage.settings.Settings;
 import net.creeperhost.creeperlauncher.util.ElapsedTimer;
@@ -13,13 +19,37 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 
+/**
+ * The registry of all known instances.
+ * <p>
+ * Readers always see an immutable snapshot, which is atomically replaced
+ * whenever the registry changes. Writers are serialized.
+ * <p>
+ * Each loaded instance directory is fingerprinted by the size and modified
+ * time of its metadata files, refreshes only re-read directories whose
+ * fingerprint has changed.
+ * <p>
+ * Whilst watching, changes made to the instances directory outside the launcher
+ * are picked up by an {@link InstanceWatcher} and pushed to the UI as deltas.
+ */
 public class Instances {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
-    private static Map<UUID, Instance> instances = new HashMap<>();
+    private static final Object LOCK = new Object();
+
+    private static volatile Map<UUID, Instance> instances = Map.of();
+
+    // Guarded by LOCK. Instance directory -> last load result, in directory listing order.
+    private static Map<Path, LoadedDir> loadedDirs = new LinkedHashMap<>();
+
+    private static final long WATCH_DEBOUNCE_MS = Long.getLong("Instances.watchDebounceMs", 250);
+
+    @Nullable
+    private static volatile InstanceWatcher watcher;
 
     @Nullable
     public static Instance getInstance(UUID uuid) {
@@ -27,45 +57,244 @@ public class Instances {
     }
 
     public static void addInstance(Instance instance) {
-        instances.put(instance.getUuid(), instance);
+        synchronized (LOCK) {
+            if (!instance.isPendingCloudInstance()) {
+                loadedDirs.put(instance.path, new LoadedDir(Fingerprint.of(instance.path), instance));
+            }
+            Map<UUID, Instance> newInstances = new LinkedHashMap<>(instances);
+            newInstances.put(instance.getUuid(), instance);
+            instances = Collections.unmodifiableMap(newInstances);
+        }
+    }
+
+    public static void removeInstance(UUID uuid) {
+        synchronized (LOCK) {
+            Instance removed = instances.get(uuid);
+            if (removed == null) return;
+
+            LoadedDir loaded = loadedDirs.get(removed.path);
+            if (loaded != null && loaded.instance == removed) {
+                loadedDirs.remove(removed.path);
+            }
+            Map<UUID, Instance> newInstances = new LinkedHashMap<>(instances);
+            newInstances.remove(uuid);
+            instances = Collections.unmodifiableMap(newInstances);
+        }
     }
 
     public static Collection<Instance> allInstances() {
-        return Collections.unmodifiableCollection(Instances.instances.values());
+        return Instances.instances.values();
+    }
+
+    /**
+     * Called after we have written the metadata files of an instance ourselves.
+     * <p>
+     * Updates the stored fingerprint, so the next refresh does not needlessly
+     * re-read the instance from disk.
+     *
+     * @param instance The instance.
+     */
+    public static void metadataSaved(Instance instance) {
+        synchronized (LOCK) {
+            LoadedDir loaded = loadedDirs.get(instance.path);
+            if (loaded != null && loaded.instance == instance) {
+                loadedDirs.put(instance.path, new LoadedDir(Fingerprint.of(instance.path), instance));
+            }
+        }
     }
 
+    /**
+     * Refresh all instances and poll cloud instances.
+     */
     public static void refreshInstances() {
-        ElapsedTimer totalTimer = new ElapsedTimer();
-        Path instancesDir = Settings.getInstancesDir();
+        refreshInstances(true);
+    }
 
+    /**
+     * Refresh all instances.
+     * <p>
+     * Only instances whose metadata files have changed since they were last loaded are re-read.
+     *
+     * @param pollCloud If cloud instances should also be polled.
+     */
+    public static void refreshInstances(boolean pollCloud) {
+        ElapsedTimer totalTimer = new ElapsedTimer();
         LOGGER.info("Reloading instances..");
-        instances.clear();
+        reload(Settings.getInstancesDir());
+
+        if (pollCloud) {
+            CreeperLauncher.CLOUD_SAVE_MANAGER.pollCloudInstances();
+        }
+
+        LOGGER.info("Finished instance reload in {}", totalTimer.elapsedStr());
+    }
+
+    /**
+     * Refresh a single instance directory.
+     * <p>
+     * If the directory no longer contains a valid instance, it is removed.
+     *
+     * @param dir   The instance directory.
+     * @param force Re-read the instance even if its metadata files appear unchanged.
+     * @return The loaded instance, or <code>null</code> if the directory no longer contains a valid instance.
+     */
+    @Nullable
+    public static Instance refreshInstance(Path dir, boolean force) {
+        Instance instance;
+        synchronized (LOCK) {
+            Map<Path, LoadedDir> newDirs = new LinkedHashMap<>(loadedDirs);
+            LoadedDir loaded = Files.isDirectory(dir) ? loadDir(dir, force ? null : loadedDirs.get(dir)) : null;
+            if (loaded != null) {
+                newDirs.put(dir, loaded);
+            } else {
+                newDirs.remove(dir);
+            }
+            publish(newDirs);
+            instance = loaded != null ? loaded.instance : null;
+        }
+        if (instance != null) {
+            instance.migrateArt();
+        }
+        return instance;
+    }
+
+    /**
+     * Start watching the current instances directory for changes.
+     * <p>
+     * Replaces any existing watcher.
+     */
+    public static void startWatching() {
+        startWatching(Settings.getInstancesDir());
+    }
+
+    static synchronized void startWatching(Path instancesDir) {
+        stopWatching();
+        try {
+            watcher = new InstanceWatcher(instancesDir, WATCH_DEBOUNCE_MS, Instances::onInstanceChange);
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to watch instances directory {}. Changes made outside the launcher will not be detected.", instancesDir, ex);
+        }
+    }
+
+    /**
+     * Stop watching the instances directory.
+     */
+    public static synchronized void stopWatching() {
+        InstanceWatcher watcher = Instances.watcher;
+        if (watcher == null) return;
+
+        Instances.watcher = null;
+        try {
+            watcher.close();
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to close instance watcher.", ex);
+        }
+    }
+
+    /**
+     * @return If the instances directory is currently being watched for changes.
+     */
+    public static boolean isWatching() {
+        return watcher != null;
+    }
+
+    private static void onInstanceChange(InstanceChange change) {
+        Instance before;
+        synchronized (LOCK) {
+            LoadedDir loaded = loadedDirs.get(change.instanceDir());
+            before = loaded != null ? loaded.instance : null;
+        }
+
+        Instance instance = before;
+        if (change.removed() || change.metadata()) {
+            // Our own writes update the fingerprint, so this only re-reads changes made by something else.
+            instance = refreshInstance(change.instanceDir(), false);
+            if (instance != before) {
+                LOGGER.info("Instance directory {} changed on disk.", change.instanceDir().getFileName());
+                List<UUID> removed = before != null && (instance == null || !instance.getUuid().equals(before.getUuid()))
+                        ? List.of(before.getUuid())
+                        : List.of();
+                WebSocketHandler.sendMessage(new InstancesChangedData(
+                        instance != null ? List.of(new SugaredInstanceJson(instance)) : List.of(),
+                        removed
+                ));
+            }
+        }
+
+        if (instance != null && (change.modsDirChanged() || !change.modFiles().isEmpty())) {
+            instance.invalidateMods();
+            WebSocketHandler.sendMessage(new InstanceModsChangedData(
+                    instance.getUuid(),
+                    change.modFiles().stream()
+                            .map(e -> e.getFileName().toString())
+                            .sorted()
+                            .toList()
+            ));
+        }
+    }
+
+    static void reload(Path instancesDir) {
+        synchronized (LOCK) {
+            if (!Files.exists(instancesDir)) {
+                LOGGER.info("Instances directory missing, skipping..");
+                publish(new LinkedHashMap<>());
+                return;
+            }
 
-        if (!Files.exists(instancesDir)) {
-            LOGGER.info("Instances directory missing, skipping..");
-        } else {
             ElapsedTimer timer = new ElapsedTimer();
-            List<Instance> loadedInstances = FileUtils.listDir(instancesDir)
+            Map<Path, LoadedDir> prev = loadedDirs;
+            List<LoadedDir> results = FileUtils.listDir(instancesDir)
                     .parallelStream()
                     .filter(e -> Files.isDirectory(e) && !e.getFileName().toString().startsWith("."))
-                    .map(Instances::loadInstance)
-                    .filter(Objects::nonNull)
+                    .map(e -> loadDir(e, prev.get(e)))
                     .toList();
-            instances = new HashMap<>();
-            for (Instance instance : loadedInstances) {
-                // TODO, there is probably a better solution to this.
-                if (instances.containsKey(instance.getUuid())) {
-                    LOGGER.warn("Found duplicate instance {} with id {}. Ignoring.", instance.getDir(), instance.getUuid());
-                    continue;
+
+            Map<Path, LoadedDir> newDirs = new LinkedHashMap<>();
+            int reloaded = 0;
+            for (LoadedDir result : results) {
+                newDirs.put(result.dir(), result);
+                if (prev.get(result.dir()) != result) {
+                    reloaded++;
                 }
-                instances.put(instance.getUuid(), instance);
             }
-            LOGGER.info("Loaded {} out of {} instances in {}.", instances.size(), loadedInstances.size(), timer.elapsedStr());
+            publish(newDirs);
+            LOGGER.info("Loaded {} out of {} instances in {}. {} changed.", instances.size(), results.size(), timer.elapsedStr(), reloaded);
+        }
+        // Migrating saves the instance, which takes LOCK to update its fingerprint. Must happen once we have let go of it.
+        for (Instance instance : allInstances()) {
+            instance.migrateArt();
         }
+    }
 
-        CreeperLauncher.CLOUD_SAVE_MANAGER.pollCloudInstances();
+    // Must hold LOCK.
+    private static void publish(Map<Path, LoadedDir> newDirs) {
+        Map<UUID, Instance> newInstances = new LinkedHashMap<>();
+        for (LoadedDir loaded : newDirs.values()) {
+            Instance instance = loaded.instance;
+            if (instance == null) continue;
 
-        LOGGER.info("Finished instance reload in {}", totalTimer.elapsedStr());
+            // TODO, there is probably a better solution to this.
+            if (newInstances.containsKey(instance.getUuid())) {
+                LOGGER.warn("Found duplicate instance {} with id {}. Ignoring.", instance.getDir(), instance.getUuid());
+                continue;
+            }
+            newInstances.put(instance.getUuid(), instance);
+        }
+        // Pending cloud instances have no local metadata, they are managed by the cloud poll.
+        for (Instance instance : instances.values()) {
+            if (instance.isPendingCloudInstance()) {
+                newInstances.putIfAbsent(instance.getUuid(), instance);
+            }
+        }
+        loadedDirs = newDirs;
+        instances = Collections.unmodifiableMap(newInstances);
+    }
+
+    private static LoadedDir loadDir(Path dir, @Nullable LoadedDir prev) {
+        Fingerprint fingerprint = Fingerprint.of(dir);
+        if (prev != null && prev.fingerprint.equals(fingerprint)) return prev;
+
+        return new LoadedDir(fingerprint, loadInstance(dir));
     }
 
     private static Instance loadInstance(Path path) {
@@ -118,4 +347,37 @@ public class Instances {
         }
         return localInstance;
     }
+
+    private record LoadedDir(Fingerprint fingerprint, @Nullable Instance instance) {
+
+        private Path dir() {
+            return fingerprint.dir();
+        }
+    }
+
+    private record Fingerprint(Path dir, FileStamp instanceJson, FileStamp versionJson, FileStamp modificationsJson) {
+
+        private static Fingerprint of(Path dir) {
+            return new Fingerprint(
+                    dir,
+                    FileStamp.of(dir.resolve("instance.json")),
+                    FileStamp.of(dir.resolve("version.json")),
+                    FileStamp.of(dir.resolve("modifications.json"))
+            );
+        }
+    }
+
+    private record FileStamp(long size, long lastModified) {
+
+        private static final FileStamp MISSING = new FileStamp(-1, -1);
+
+        private static FileStamp of(Path file) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileStamp(attrs.size(), attrs.lastModifiedTime().toMillis());
+            } catch (IOException ex) {
+                return MISSING;
+            }
+        }
+    }
 }
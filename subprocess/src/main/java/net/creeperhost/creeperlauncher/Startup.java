@@ -0,0 +1,139 @@
+package net.creeperhost.creeperlauncher;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.creeperhost.creeperlauncher.api.WebSocketHandler;
+import net.creeperhost.creeperlauncher.api.data.other.SubsystemReadyData;
+import net.creeperhost.creeperlauncher.util.ElapsedTimer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tracks which parts of the app have finished starting up.
+ * <p>
+ * The websocket is bound as early as possible, expensive startup work is then run
+ * concurrently in the background. Each {@link Subsystem} is marked ready once its
+ * startup work has finished, successfully or not, and the UI is notified with a
+ * {@link SubsystemReadyData} message.
+ * <p>
+ * Messages which depend on a subsystem are held by {@link WebSocketHandler} until it is ready.
+ */
+public final class Startup {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("Startup %d")
+                    .setDaemon(true)
+                    .build()
+    );
+
+    private static final ElapsedTimer TIMER = new ElapsedTimer();
+
+    private static volatile Map<Subsystem, CompletableFuture<Void>> futures = newFutures();
+
+    private Startup() {
+    }
+
+    /**
+     * Run some startup work in the background, marking the given subsystem ready once it finishes.
+     * <p>
+     * Failures are logged, the subsystem is still marked ready.
+     *
+     * @param subsystem The subsystem.
+     * @param task      The startup work.
+     * @return A future completed once the subsystem is ready.
+     */
+    public static CompletableFuture<Void> runInBackground(Subsystem subsystem, Runnable task) {
+        CompletableFuture<Void> future = whenReady(subsystem);
+        CompletableFuture.runAsync(task, EXECUTOR).whenComplete((v, ex) -> {
+            if (ex != null) {
+                LOGGER.error("Startup of {} failed.", subsystem, ex);
+            }
+            markReady(subsystem, future);
+        });
+        return future;
+    }
+
+    /**
+     * Mark the given subsystem as ready.
+     *
+     * @param subsystem The subsystem.
+     */
+    public static void markReady(Subsystem subsystem) {
+        markReady(subsystem, whenReady(subsystem));
+    }
+
+    private static void markReady(Subsystem subsystem, CompletableFuture<Void> future) {
+        if (!future.complete(null)) return;
+
+        LOGGER.info("{} ready after {}.", subsystem, TIMER.elapsedStr());
+        WebSocketHandler.sendMessage(new SubsystemReadyData(subsystem, getReady()));
+    }
+
+    /**
+     * @param subsystem The subsystem.
+     * @return A future completed once the subsystem is ready. Never completes exceptionally.
+     */
+    public static CompletableFuture<Void> whenReady(Subsystem subsystem) {
+        return futures.get(subsystem);
+    }
+
+    /**
+     * @param subsystem The subsystem.
+     * @return If the subsystem is ready.
+     */
+    public static boolean isReady(Subsystem subsystem) {
+        return futures.get(subsystem).isDone();
+    }
+
+    /**
+     * @return All subsystems which are currently ready.
+     */
+    public static List<Subsystem> getReady() {
+        List<Subsystem> ready = new ArrayList<>();
+        for (Subsystem subsystem : Subsystem.values()) {
+            if (isReady(subsystem)) {
+                ready.add(subsystem);
+            }
+        }
+        return ready;
+    }
+
+    // Visible for tests.
+    static void reset() {
+        futures = newFutures();
+    }
+
+    private static Map<Subsystem, CompletableFuture<Void>> newFutures() {
+        Map<Subsystem, CompletableFuture<Void>> futures = new EnumMap<>(Subsystem.class);
+        for (Subsystem subsystem : Subsystem.values()) {
+            futures.put(subsystem, new CompletableFuture<>());
+        }
+        return Collections.unmodifiableMap(futures);
+    }
+
+    public enum Subsystem {
+        /**
+         * Local instances have been loaded.
+         */
+        INSTANCES,
+        /**
+         * Cloud instances have been polled, or cloud saves are not configured.
+         */
+        CLOUD,
+        /**
+         * Java installations have been located.
+         */
+        JAVA,
+        /**
+         * The local cache has been cleaned.
+         */
+        CACHE,
+    }
+}
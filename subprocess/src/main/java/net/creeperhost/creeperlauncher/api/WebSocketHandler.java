@@ -6,6 +6,8 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import net.creeperhost.creeperlauncher.Constants;
 import net.creeperhost.creeperlauncher.CreeperLauncher;
+import net.creeperhost.creeperlauncher.Startup;
+import net.creeperhost.creeperlauncher.Startup.Subsystem;
 import net.creeperhost.creeperlauncher.api.WebsocketServer.PortMode;
 import net.creeperhost.creeperlauncher.api.data.BaseData;
 import net.creeperhost.creeperlauncher.api.data.instances.*;
@@ -23,7 +25,6 @@ import net.creeperhost.creeperlauncher.api.handlers.storage.StorageGetAllHandler
 import net.creeperhost.creeperlauncher.api.handlers.storage.StorageGetHandler;
 import net.creeperhost.creeperlauncher.api.handlers.storage.StoragePutHandler;
 import net.creeperhost.creeperlauncher.util.MiscUtils;
-import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
@@ -32,55 +33,58 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
+import static net.creeperhost.creeperlauncher.Startup.Subsystem.INSTANCES;
+import static net.creeperhost.creeperlauncher.Startup.Subsystem.JAVA;
+
 public class WebSocketHandler {
 
     private static final Logger LOGGER = LogManager.getLogger();
     private static final Gson GSON = new Gson();
 
-    private static final Map<String, Pair<Class<? extends BaseData>, IMessageHandler<? extends BaseData>>> register = new HashMap<>();
+    private static final Map<String, Registration> register = new HashMap<>();
 
     private static @Nullable WebsocketServer server;
 
     static {
         register("appInit", AppInitHandler.Data.class, new AppInitHandler());
-        register("moveInstances", MoveInstancesHandler.Data.class, new MoveInstancesHandler());
-        register("installedInstances", InstalledInstancesData.class, new InstalledInstancesHandler());
-        register("pinInstance", PinInstanceHandler.Data.class, new PinInstanceHandler());
-        register("launchInstance", LaunchInstanceData.class, new LaunchInstanceHandler());
-        register("instance.kill", KillInstanceData.class, new KillInstanceHandler());
-        register("installInstance", InstallInstanceData.class, new InstallInstanceHandler());
+        register("moveInstances", MoveInstancesHandler.Data.class, new MoveInstancesHandler(), INSTANCES);
+        register("installedInstances", InstalledInstancesData.class, new InstalledInstancesHandler(), INSTANCES);
+        register("pinInstance", PinInstanceHandler.Data.class, new PinInstanceHandler(), INSTANCES);
+        register("launchInstance", LaunchInstanceData.class, new LaunchInstanceHandler(), INSTANCES);
+        register("instance.kill", KillInstanceData.class, new KillInstanceHandler(), INSTANCES);
+        register("installInstance", InstallInstanceData.class, new InstallInstanceHandler(), INSTANCES);
         register("cancelInstallInstance", CancelInstallInstanceData.class, new CancelInstallInstanceHandler());
-        register("updateInstance", UpdateInstanceData.class, new UpdateInstanceHandler());
-        register("uninstallInstance", UninstallInstanceData.class, new UninstallInstanceHandler());
-        register("instanceConfigure", InstanceConfigureData.class, new InstanceConfigureHandler());
-        register("instanceModToggle", InstanceModToggleData.class, new InstanceModToggleHandler());
-        register("instanceOverrideModLoader", InstanceOverrideModLoaderData.class, new InstanceOverrideModLoaderHandler());
-        register("instanceBrowse", BrowseInstanceData.class, new BrowseInstanceHandler());
-        register("getInstanceFolders", GetInstanceFoldersHandler.Request.class, new GetInstanceFoldersHandler());
-        register("duplicateInstance", DuplicateInstanceHandler.Request.class, new DuplicateInstanceHandler());
+        register("updateInstance", UpdateInstanceData.class, new UpdateInstanceHandler(), INSTANCES);
+        register("uninstallInstance", UninstallInstanceData.class, new UninstallInstanceHandler(), INSTANCES);
+        register("instanceConfigure", InstanceConfigureData.class, new InstanceConfigureHandler(), INSTANCES);
+        register("instanceModToggle", InstanceModToggleData.class, new InstanceModToggleHandler(), INSTANCES);
+        register("instanceOverrideModLoader", InstanceOverrideModLoaderData.class, new InstanceOverrideModLoaderHandler(), INSTANCES);
+        register("instanceBrowse", BrowseInstanceData.class, new BrowseInstanceHandler(), INSTANCES);
+        register("getInstanceFolders", GetInstanceFoldersHandler.Request.class, new GetInstanceFoldersHandler(), INSTANCES);
+        register("duplicateInstance", DuplicateInstanceHandler.Request.class, new DuplicateInstanceHandler(), INSTANCES);
         register("getSettings", SettingsInfoData.class, new SettingsInfoHandler());
         register("saveSettings", SettingsConfigureData.class, new SettingsConfigureHandler());
         register("modalCallback", OpenModalData.ModalCallbackData.class, new ModalCallbackHandler());
         register("fileHash", FileHashData.class, new FileHashHandler()); // Not used
-        register("syncInstance", SyncCloudInstanceData.class, new SyncCloudInstanceHandler());
-        register("uploadLogs", UploadLogsData.class, new UploadLogsHandler());
-        register("getJavas", GetJavasData.class, new GetJavasHandler());
-        register("instanceMods", InstanceModsData.class, new InstanceModsHandler());
-        register("instanceEnableCloudSaves", InstanceEnableCloudSavesData.class, new InstanceEnableCloudSavesHandler());
-        register("instanceDisableCloudSaves", InstanceDisableCloudSavesData.class, new InstanceDisableCloudSavesHandler());
+        register("syncInstance", SyncCloudInstanceData.class, new SyncCloudInstanceHandler(), INSTANCES);
+        register("uploadLogs", UploadLogsData.class, new UploadLogsHandler(), INSTANCES);
+        register("getJavas", GetJavasData.class, new GetJavasHandler(), JAVA);
+        register("instanceMods", InstanceModsData.class, new InstanceModsHandler(), INSTANCES);
+        register("instanceEnableCloudSaves", InstanceEnableCloudSavesData.class, new InstanceEnableCloudSavesHandler(), INSTANCES);
+        register("instanceDisableCloudSaves", InstanceDisableCloudSavesData.class, new InstanceDisableCloudSavesHandler(), INSTANCES);
         register("pong", PongLauncherData.class, new PongLauncherHandler());
         register("messageClient", MessageClientData.class, new MessageClientHandler()); // not really used but referenced
-        register("shareInstance", ShareInstanceData.class, new ShareInstanceHandler());
-        register("instanceInstallMod", InstanceInstallModData.class, new InstanceInstallModHandler());
-        register("setInstanceArt", SetInstanceArtData.class, new SetInstanceArtHandler());
-        register("instanceVersionInfo", InstanceVersionInfoData.class, new InstanceVersionInfoHandler());
+        register("shareInstance", ShareInstanceData.class, new ShareInstanceHandler(), INSTANCES);
+        register("instanceInstallMod", InstanceInstallModData.class, new InstanceInstallModHandler(), INSTANCES);
+        register("setInstanceArt", SetInstanceArtData.class, new SetInstanceArtHandler(), INSTANCES);
+        register("instanceVersionInfo", InstanceVersionInfoData.class, new InstanceVersionInfoHandler(), INSTANCES);
 
-        register("instanceGetBackups", InstanceGetBackupsHandler.Request.class, new InstanceGetBackupsHandler());
-        register("instanceRestoreBackup", InstanceRestoreBackupHandler.Request.class, new InstanceRestoreBackupHandler());
-        register("instanceDeleteBackup", InstanceDeleteBackupHandler.Request.class, new InstanceDeleteBackupHandler());
+        register("instanceGetBackups", InstanceGetBackupsHandler.Request.class, new InstanceGetBackupsHandler(), INSTANCES);
+        register("instanceRestoreBackup", InstanceRestoreBackupHandler.Request.class, new InstanceRestoreBackupHandler(), INSTANCES);
+        register("instanceDeleteBackup", InstanceDeleteBackupHandler.Request.class, new InstanceDeleteBackupHandler(), INSTANCES);
 
         register("pollCloudInstances", PollCloudInstancesData.class, new PollCloudInstancesHandler());
-        register("resolveSyncConflict", InstanceCloudSyncResolveConflictData.class, new InstanceCloudSyncResolveConflictHandler());
+        register("resolveSyncConflict", InstanceCloudSyncResolveConflictData.class, new InstanceCloudSyncResolveConflictHandler(), INSTANCES);
 
         register("checkShareCode", CheckShareCodeData.class, new CheckShareCode());
         register("checkCurseZip", CheckCurseZipData.class, new CheckCurseZip());
@@ -102,10 +106,23 @@ public class WebSocketHandler {
         register("videoCache", VideoCacheHandler.Data.class, new VideoCacheHandler());
 
         register("openDebugTools", BaseData.class, new OpenDebugToolsHandler());
+        register("startup.status", BaseData.class, new StartupStatusHandler());
     }
 
     private static void register(String name, Class<? extends BaseData> clazz, IMessageHandler<? extends BaseData> handler) {
-        register.put(name, Pair.of(clazz, handler));
+        register(name, clazz, handler, null);
+    }
+
+    /**
+     * Register a message handler.
+     *
+     * @param name     The message type.
+     * @param clazz    The message data class.
+     * @param handler  The handler.
+     * @param requires The subsystem which must finish starting up before messages are handled, if any.
+     */
+    private static void register(String name, Class<? extends BaseData> clazz, IMessageHandler<? extends BaseData> handler, @Nullable Subsystem requires) {
+        register.put(name, new Registration(clazz, handler, requires));
     }
 
     public static int startWebsocket(PortMode portMode) {
@@ -148,17 +165,19 @@ public class WebSocketHandler {
         if (!jsonObject.has("type")) return;
 
         String type = jsonObject.get("type").getAsString();
-        Pair<Class<? extends BaseData>, IMessageHandler<? extends BaseData>> entry = register.get(type);
-        IMessageHandler<? extends BaseData> iMessageHandler = entry.getRight();
-        if (iMessageHandler == null) {
+        Registration entry = register.get(type);
+        if (entry == null) {
             LOGGER.error("No handler for message type '{}'", type);
             return;
         }
+        IMessageHandler<? extends BaseData> iMessageHandler = entry.handler();
 
         try {
-            BaseData parsedData = GSON.fromJson(data, entry.getLeft());
+            BaseData parsedData = GSON.fromJson(data, entry.dataClass());
             if (CreeperLauncher.isDevMode || (parsedData.secret != null && parsedData.secret.equals(Constants.WEBSOCKET_SECRET))) {
-                CompletableFuture.runAsync(() -> iMessageHandler.handle(parsedData), CreeperLauncher.taskExeggutor).exceptionally((t) -> {
+                // Hold the message until whatever it depends on has started up.
+                CompletableFuture<Void> ready = entry.requires() != null ? Startup.whenReady(entry.requires()) : CompletableFuture.completedFuture(null);
+                ready.thenRunAsync(() -> iMessageHandler.handle(parsedData), CreeperLauncher.taskExeggutor).exceptionally((t) -> {
                     LOGGER.error("Error handling message", t);
                     return null;
                 });
@@ -168,4 +187,5 @@ public class WebSocketHandler {
         }
     }
 
+    private record Registration(Class<? extends BaseData> dataClass, IMessageHandler<? extends BaseData> handler, @Nullable Subsystem requires) { }
 }
@@ -1,6 +1,7 @@
 package net.creeperhost.creeperlauncher.api.data.instances;
 
 import net.creeperhost.creeperlauncher.api.data.BaseData;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 import java.util.UUID;
@@ -10,6 +11,8 @@ public class InstanceInstallModData extends BaseData {
     public UUID uuid;
     public long modId;
     public long versionId;
+    // Install or update many mods as a single operation. When set, modId and versionId are ignored.
+    public @Nullable List<PendingInstall> mods;
 
     public static class Reply extends BaseData {
 
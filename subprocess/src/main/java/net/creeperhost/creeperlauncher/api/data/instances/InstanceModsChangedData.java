@@ -0,0 +1,23 @@
+package net.creeperhost.creeperlauncher.api.data.instances;
+
+import net.creeperhost.creeperlauncher.api.data.BaseData;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sent when the mods directory of an instance is changed.
+ * <p>
+ * The UI should re-request the mods list if it is currently displayed.
+ */
+public class InstanceModsChangedData extends BaseData {
+
+    public final UUID uuid;
+    public final List<String> changedFiles;
+
+    public InstanceModsChangedData(UUID uuid, List<String> changedFiles) {
+        type = "instanceModsChanged";
+        this.uuid = uuid;
+        this.changedFiles = changedFiles;
+    }
+}
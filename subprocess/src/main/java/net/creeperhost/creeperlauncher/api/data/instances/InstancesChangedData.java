@@ -0,0 +1,22 @@
+package net.creeperhost.creeperlauncher.api.data.instances;
+
+import net.creeperhost.creeperlauncher.api.data.BaseData;
+import net.creeperhost.creeperlauncher.data.InstanceJson;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sent when instances are changed on disk outside the launcher.
+ */
+public class InstancesChangedData extends BaseData {
+
+    public final List<InstanceJson> changedInstances;
+    public final List<UUID> removedInstances;
+
+    public InstancesChangedData(List<InstanceJson> changedInstances, List<UUID> removedInstances) {
+        type = "instancesChanged";
+        this.changedInstances = changedInstances;
+        this.removedInstances = removedInstances;
+    }
+}
@@ -14,6 +14,8 @@ public class LaunchInstanceData extends BaseData {
     public boolean offline = false;
     @Nullable
     public String offlineUsername;
+    // Hash every game file instead of trusting what was verified before.
+    public boolean verifyFiles = false;
 
     public static class Status extends BaseData {
 
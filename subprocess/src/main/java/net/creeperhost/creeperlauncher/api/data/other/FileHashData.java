@@ -1,19 +1,27 @@
 package net.creeperhost.creeperlauncher.api.data.other;
 
 import net.creeperhost.creeperlauncher.api.data.BaseData;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
 
 public class FileHashData extends BaseData {
     public String uuid;
     public String filePath;
+    // The digests to compute, such as 'md5' or 'sha256'. Defaults to md5 and sha256.
+    public @Nullable List<String> hashes;
 
     public static class Reply extends BaseData {
-        public String md5Hash;
-        public String shaHash;
-        public Reply(FileHashData data, String md5Hash, String shaHash)
+        public @Nullable String md5Hash;
+        public @Nullable String shaHash;
+        public Map<String, String> hashes;
+        public Reply(FileHashData data, @Nullable String md5Hash, @Nullable String shaHash, Map<String, String> hashes)
         {
             requestId = data.requestId;
             this.md5Hash = md5Hash;
             this.shaHash = shaHash;
+            this.hashes = hashes;
         }
     }
 }
@@ -0,0 +1,21 @@
+package net.creeperhost.creeperlauncher.api.data.other;
+
+import net.creeperhost.creeperlauncher.Startup;
+import net.creeperhost.creeperlauncher.api.data.BaseData;
+
+import java.util.List;
+
+/**
+ * Sent each time a subsystem finishes starting up.
+ */
+public class SubsystemReadyData extends BaseData {
+
+    public final Startup.Subsystem subsystem;
+    public final List<Startup.Subsystem> ready;
+
+    public SubsystemReadyData(Startup.Subsystem subsystem, List<Startup.Subsystem> ready) {
+        type = "startup.subsystemReady";
+        this.subsystem = subsystem;
+        this.ready = ready;
+    }
+}
@@ -12,6 +12,12 @@ import java.util.Map;
  * <p>
  * Cookies will be handled and stored automatically, they will not be persisted.
  * <p>
+ * Cacheable GET responses are cached on disk.
+ * <p>
+ * If {@link #stream} is set, large response bodies are not included in the {@link WebRequestDataResponse}.
+ * Instead, {@link Body#chunked} is set and the body follows as a series of {@link Chunk} messages.
+ * Small bodies are always sent inline.
+ * <p>
  * Created by covers1624 on 30/11/22.
  */
 public class WebRequestData extends BaseData {
@@ -21,6 +27,8 @@ public class WebRequestData extends BaseData {
     public Map<String, List<String>> headers = new HashMap<>();
     @Nullable
     public Body body;
+    // If large response bodies should be streamed back in chunks.
+    public boolean stream;
 
     public static class WebRequestDataResponse extends BaseData {
 
@@ -55,5 +63,32 @@ public class WebRequestData extends BaseData {
 
         public String contentType;
         public byte[] bytes;
+        // If the body is being sent as Chunk messages instead.
+        public boolean chunked;
+    }
+
+    /**
+     * A piece of a streamed response body.
+     */
+    public static class Chunk extends BaseData {
+
+        // The index of this chunk, starting at 0.
+        public final int index;
+        // The chunk, base64 encoded.
+        public final String data;
+        // If this is the last chunk.
+        public final boolean last;
+        // Set on the last chunk if the body could not be fully read.
+        @Nullable
+        public final String error;
+
+        public Chunk(WebRequestData data, int index, String chunk, boolean last, @Nullable String error) {
+            type = "webRequest.chunk";
+            requestId = data.requestId;
+            this.index = index;
+            this.data = chunk;
+            this.last = last;
+            this.error = error;
+        }
     }
 }
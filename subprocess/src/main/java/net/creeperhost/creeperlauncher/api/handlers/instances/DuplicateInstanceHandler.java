@@ -31,7 +31,7 @@ public class DuplicateInstanceHandler implements IMessageHandler<DuplicateInstan
                 return;
             }
 
-            Instances.refreshInstances();
+            Instances.refreshInstance(newInstance.path, true);
             WebSocketHandler.sendMessage(new Reply(data, true, "Duplicated instance!", new InstalledInstancesHandler.SugaredInstanceJson(newInstance)));
         } catch (IOException e) {
             LOGGER.error("Unable to duplicate instance because of", e);
@@ -8,6 +8,7 @@ import net.creeperhost.creeperlauncher.api.WebSocketHandler;
 import net.creeperhost.creeperlauncher.api.data.instances.InstalledInstancesData;
 import net.creeperhost.creeperlauncher.api.handlers.IMessageHandler;
 import net.creeperhost.creeperlauncher.data.InstanceJson;
+import net.creeperhost.creeperlauncher.instance.InstanceArt;
 import net.creeperhost.creeperlauncher.pack.Instance;
 
 import java.io.IOException;
@@ -15,6 +16,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -40,12 +42,22 @@ public class InstalledInstancesHandler implements IMessageHandler<InstalledInsta
         public final Path path;
         public final boolean pendingCloudInstance;
         public final List<String> rootDirs = new ArrayList<>();
+        /**
+         * File urls for the art and its thumbnails, keyed by size.
+         */
+        public final Map<Integer, String> artSizes;
 
         public SugaredInstanceJson(InstanceJson other, Path path, boolean pendingCloudInstance) {
             super(other);
             this.path = path;
             this.pendingCloudInstance = pendingCloudInstance;
 
+            // Only send references to the art, the frontend loads the images as they are displayed.
+            artSizes = artHash != null ? new InstanceArt(path).getArtUrls(artHash) : Map.of();
+            if (!artSizes.isEmpty()) {
+                art = artSizes.get(InstanceArt.SIZE);
+            }
+
             try (var files = Files.list(this.path)) {
                 this.rootDirs.addAll(
                     files
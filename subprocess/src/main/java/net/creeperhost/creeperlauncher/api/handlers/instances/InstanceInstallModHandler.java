@@ -44,7 +44,20 @@ public class InstanceInstallModHandler implements IMessageHandler<InstanceInstal
             return;
         }
 
-        ModInstaller modInstaller = new ModInstaller(instance, mcVersion, modLoader.getName(), data.modId, data.versionId);
+        List<ModInstaller.ModRequest> requests;
+        if (data.mods != null) {
+            if (data.mods.isEmpty()) {
+                WebSocketHandler.sendMessage(new InstanceInstallModData.Reply(data, "error", "No mods requested."));
+                return;
+            }
+            requests = FastStream.of(data.mods)
+                    .map(e -> new ModInstaller.ModRequest(e.modId(), e.versionId()))
+                    .toList();
+        } else {
+            requests = List.of(new ModInstaller.ModRequest(data.modId, data.versionId));
+        }
+
+        ModInstaller modInstaller = new ModInstaller(instance, mcVersion, modLoader.getName(), requests);
 
         try {
             modInstaller.resolve();
@@ -53,7 +53,7 @@ public class LaunchInstanceHandler implements IMessageHandler<LaunchInstanceData
         instance.prepareFuture = CompletableFuture.runAsync(() -> {
             LOGGER.info("Preparing instance for launch...");
             try {
-                instance.play(instance.prepareToken, data.extraArgs, data.offline ? data.offlineUsername : null);
+                instance.play(instance.prepareToken, data.extraArgs, data.offline ? data.offlineUsername : null, data.verifyFiles);
                 WebSocketHandler.sendMessage(new LaunchInstanceData.Reply(data, "success", ""));
             } catch (InstanceLaunchException ex) {
                 if (ex instanceof InstanceLaunchException.Abort) {
@@ -10,6 +10,9 @@ import net.creeperhost.creeperlauncher.api.data.BaseData;
 import net.creeperhost.creeperlauncher.api.handlers.IMessageHandler;
 import net.creeperhost.creeperlauncher.install.OperationProgressTracker;
 import net.creeperhost.creeperlauncher.install.tasks.LocalCache;
+import net.creeperhost.creeperlauncher.install.tasks.Task;
+import net.creeperhost.creeperlauncher.instance.InstanceMover;
+import net.creeperhost.creeperlauncher.pack.CancellationToken;
 import net.creeperhost.creeperlauncher.storage.settings.Settings;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -89,7 +92,11 @@ public class MoveInstancesHandler implements IMessageHandler<MoveInstancesHandle
     }
 
     /**
-     * TODO: markers should allow us to resume a move if the app crashes or something
+     * Instances are moved in two phases, every instance is copied and verified, then the old directories are removed.
+     * <p>
+     * The <code>.moving</code> marker in the old location records where instances are being moved to.
+     * If the app is closed part way through, moving to the same location again resumes the move.
+     * If the move fails, renamed instances are moved back and the marker is removed.
      */
     private void moveInstances(Data data, Path currentLocation, Path newLocation) {
         var tracker = new OperationProgressTracker("instance-move", Map.of(
@@ -99,6 +106,8 @@ public class MoveInstancesHandler implements IMessageHandler<MoveInstancesHandle
         
         CompletableFuture.runAsync(() -> {
             LOGGER.info("Progressing: moving instances from {} to {}", currentLocation, newLocation);
+            // Don't react to our own copies and deletes.
+            Instances.stopWatching();
             tracker.nextStage(MoveStage.COPYING);
             
             // Try and place a test file in the new location
@@ -113,75 +122,93 @@ public class MoveInstancesHandler implements IMessageHandler<MoveInstancesHandle
                 Files.delete(newLocation.resolve(".test"));
             } catch (Throwable ignored) {}
             
-            if (Files.exists(currentLocation.resolve(".moving"))) {
-                LOGGER.warn("Old location {} is still being moved", currentLocation);
-                // We're in the middle of a move, so we need to wait for the old location to be deleted
-                throw new RuntimeException("Old location is still being moved");
-            }
-            
-            // Place a marker file in the old location
-            try {
-                Files.createFile(currentLocation.resolve(".moving"));
-            } catch (Throwable t) {
-                // I'm on the edge about this being a fatal error, but I think it's fine
-                throw new RuntimeException("Failed to create marker file in old location", t);
+            Path marker = currentLocation.resolve(".moving");
+            String target = newLocation.toAbsolutePath().toString();
+            if (Files.exists(marker)) {
+                String movingTo;
+                try {
+                    movingTo = Files.readString(marker).trim();
+                } catch (Throwable t) {
+                    throw new RuntimeException("Failed to read marker file in old location", t);
+                }
+                if (!movingTo.equals(target)) {
+                    // Older versions left an empty marker, we can't resume those.
+                    LOGGER.warn("Old location {} is still being moved to {}", currentLocation, movingTo);
+                    throw new RuntimeException("Old location is still being moved" + (movingTo.isEmpty() ? "" : " to " + movingTo));
+                }
+                LOGGER.info("Resuming interrupted move from {} to {}", currentLocation, newLocation);
+            } else {
+                // Place a marker file in the old location
+                try {
+                    Files.writeString(marker, target);
+                } catch (Throwable t) {
+                    // I'm on the edge about this being a fatal error, but I think it's fine
+                    throw new RuntimeException("Failed to create marker file in old location", t);
+                }
             }
             
             // Very carefully move the instances
-            // Move the directories by copying them, then deleting the old ones if the copy succeeds
-            int requiredSuccesses = 0;
-            List<Path> successfulFiles = new ArrayList<>();
+            // Every directory is renamed if possible, otherwise copied and verified. Nothing is deleted until all of them have been.
+            InstanceMover mover = new InstanceMover(currentLocation.resolve(".moving_journal"), Task.TASK_POOL);
+            CancellationToken token = new CancellationToken();
+            List<Path> failedRemovals = new ArrayList<>();
+            List<Path> copied = new ArrayList<>();
+            List<Path> renamed = new ArrayList<>();
             
             // Get all the instances from the instance store
             var instancesPaths = Instances.allInstances()
                 .stream()
                 .map(e -> e.path)
+                .filter(Files::isDirectory)
                 .toList();
             
-            // In
             for (var path : instancesPaths) {
-                if (!Files.isDirectory(path)) {
-                    continue;
-                }
-                
-                requiredSuccesses ++;
+                Path dest = newLocation.resolve(path.getFileName());
                 try {
-                    LOGGER.info("Moving instance directory {} to {}", path.getFileName(), newLocation.resolve(path.getFileName()));
-                    FileUtils.copyDirectory(path.toFile(), newLocation.resolve(path.getFileName()).toFile());
-                    successfulFiles.add(path);
+                    LOGGER.info("Moving instance directory {} to {}", path.getFileName(), dest);
+                    InstanceMover.MoveResult result = mover.copy(path, dest, token, null);
+                    LOGGER.info("Moved instance directory {}: {}", path.getFileName(), result);
+                    (result.renamed() ? renamed : copied).add(path);
                 } catch (Throwable t) {
+                    // Put back anything we renamed, so the old location is whole again.
+                    // Copies are left in place, moving to the same location again resumes them.
+                    boolean reverted = true;
+                    for (Path renamedPath : renamed) {
+                        try {
+                            mover.revert(renamedPath, newLocation.resolve(renamedPath.getFileName()));
+                        } catch (Throwable t2) {
+                            LOGGER.error("Failed to move instance directory {} back", renamedPath.getFileName(), t2);
+                            reverted = false;
+                        }
+                    }
+                    if (reverted) {
+                        try {
+                            Files.delete(marker);
+                        } catch (Throwable ignored) {}
+                    }
                     throw new RuntimeException("Failed to move instance directory " + path.getFileName(), t);
                 }
             }
 
             tracker.nextStage(MoveStage.VALIDATING);
             // Overkill, but just in case
-            if (successfulFiles.size() != requiredSuccesses) {
-                throw new RuntimeException("Failed to move instances, not all instances were moved... Moved " + successfulFiles.size() + " out of " + requiredSuccesses);
+            if (copied.size() + renamed.size() != instancesPaths.size()) {
+                throw new RuntimeException("Failed to move instances, not all instances were moved... Moved " + (copied.size() + renamed.size()) + " out of " + instancesPaths.size());
             }
 
             LOGGER.info("Successfully moved instances from {} to {}", currentLocation, newLocation);
-            LOGGER.info("Removing old instance directories");
 
             tracker.nextStage(MoveStage.REMOVING_OLD);
-            // Delete the old directories
-            List<Path> failedRemovals = new ArrayList<>();
-            for (var path : successfulFiles) {
-                if (!Files.isDirectory(path)) {
-                    continue;
-                }
-                
-                try {
-                    FileUtils.deleteDirectory(path.toFile());
-                } catch (Throwable t) {
-                    LOGGER.warn("Failed to remove instance directory {}", path.getFileName(), t);
+            // Every instance exists in the new location, only now are the old directories removed.
+            // If this is interrupted, the marker makes the next attempt resume to the same location.
+            for (Path path : copied) {
+                if (!mover.removeSource(path)) {
                     failedRemovals.add(path);
                 }
             }
-            
-            // Remove the marker file
             try {
-                Files.delete(currentLocation.resolve(".moving"));
+                FileUtils.deleteDirectory(currentLocation.resolve(".moving_journal").toFile());
+                Files.delete(marker);
             } catch (Throwable ignored) {}
             
             // Not really a fatal error, but we should probably let the user know
@@ -190,22 +217,28 @@ public class MoveInstancesHandler implements IMessageHandler<MoveInstancesHandle
                 WebSocketHandler.sendMessage(new Reply(data, "Failed to remove some instance directories, please remove them manually. " + failedRemovals));
             }
         }).whenComplete((aVoid, throwable) -> {
-            tracker.finished();
-            
-            if (throwable != null) {
-                LOGGER.error("Failed to move instances from {} to {}", currentLocation, newLocation, throwable);
-                WebSocketHandler.sendMessage(new Reply(data, throwable.getMessage()));
-            } else {
-                LOGGER.info("Successfully completed moving instances from {} to {}", currentLocation, newLocation);
-                
-                Settings.getSettings().setInstanceLocation(newLocation.toAbsolutePath());
-                Settings.saveSettings();
-                
-                CreeperLauncher.localCache = new LocalCache(newLocation.resolve(".localCache"));
-                Instances.refreshInstances();
-                Path oldCache = currentLocation.resolve(".localCache");
-                oldCache.toFile().deleteOnExit();
-                WebSocketHandler.sendMessage(new Reply(data, "success", ""));
+            try {
+                tracker.finished();
+
+                if (throwable != null) {
+                    LOGGER.error("Failed to move instances from {} to {}", currentLocation, newLocation, throwable);
+                    WebSocketHandler.sendMessage(new Reply(data, throwable.getMessage()));
+                } else {
+                    LOGGER.info("Successfully completed moving instances from {} to {}", currentLocation, newLocation);
+
+                    Settings.getSettings().setInstanceLocation(newLocation.toAbsolutePath());
+                    Settings.saveSettings();
+
+                    CreeperLauncher.localCache = new LocalCache(newLocation.resolve(".localCache"));
+                    Instances.refreshInstances();
+                    Path oldCache = currentLocation.resolve(".localCache");
+                    oldCache.toFile().deleteOnExit();
+                    WebSocketHandler.sendMessage(new Reply(data, "success", ""));
+                }
+            } finally {
+                // Watching was stopped when the move started, it must resume however the move ends.
+                // Settings.getInstancesDir will point at the new location if the move succeeded.
+                Instances.startWatching();
             }
         });
     }
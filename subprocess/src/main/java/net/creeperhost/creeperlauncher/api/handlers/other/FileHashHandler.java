@@ -1,33 +1,137 @@
 package net.creeperhost.creeperlauncher.api.handlers.other;
 
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hashing;
-import net.covers1624.quack.util.HashUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import net.covers1624.quack.util.MultiHasher;
+import net.covers1624.quack.util.MultiHasher.HashFunc;
+import net.covers1624.quack.util.MultiHasher.HashResult;
 import net.creeperhost.creeperlauncher.api.WebSocketHandler;
 import net.creeperhost.creeperlauncher.api.data.other.FileHashData;
 import net.creeperhost.creeperlauncher.api.handlers.IMessageHandler;
 import net.creeperhost.creeperlauncher.storage.settings.Settings;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public class FileHashHandler implements IMessageHandler<FileHashData> {
     private static final Logger LOGGER = LogManager.getLogger();
 
+    private static final Set<HashFunc> DEFAULT_FUNCS = EnumSet.of(HashFunc.MD5, HashFunc.SHA256);
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    // Digests of recently hashed files, only valid whilst the file's size and modified time are unchanged.
+    private static final Cache<FileKey, Map<HashFunc, HashCode>> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(256)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
     @Override
     public void handle(FileHashData data) {
         Path file = Settings.getInstancesDir().resolve(data.uuid).resolve(data.filePath);
-        WebSocketHandler.sendMessage(new FileHashData.Reply(data, safeHash(Hashing.md5(), file), safeHash(Hashing.sha256(), file)));
-    }
-
-    private static String safeHash(HashFunction func, Path file) {
+        Set<HashFunc> funcs = parseFuncs(data.hashes);
+        Map<HashFunc, HashCode> hashes;
         try {
-            return HashUtils.hash(func, file).toString();
+            hashes = hash(file, funcs);
         } catch (IOException e) {
             LOGGER.error("Failed to hash file. {}", file, e);
-            return "error - " + e.getMessage();
+            String error = "error - " + e.getMessage();
+            WebSocketHandler.sendMessage(new FileHashData.Reply(data, error, error, Map.of()));
+            return;
+        }
+
+        Map<String, String> named = new LinkedHashMap<>();
+        hashes.forEach((func, hash) -> named.put(func.name().toLowerCase(Locale.ROOT), hash.toString()));
+        WebSocketHandler.sendMessage(new FileHashData.Reply(
+                data,
+                hashes.containsKey(HashFunc.MD5) ? hashes.get(HashFunc.MD5).toString() : null,
+                hashes.containsKey(HashFunc.SHA256) ? hashes.get(HashFunc.SHA256).toString() : null,
+                named
+        ));
+    }
+
+    /**
+     * Compute the given digests of a file in a single read.
+     * <p>
+     * Digests already computed for the file, whilst it had the same size and modified time, are reused.
+     *
+     * @param file  The file.
+     * @param funcs The digests to compute.
+     * @return The digests.
+     * @throws IOException If an IO error occurs whilst reading the file.
+     */
+    public static Map<HashFunc, HashCode> hash(Path file, Set<HashFunc> funcs) throws IOException {
+        FileKey key = FileKey.of(file);
+        Map<HashFunc, HashCode> cached = CACHE.getIfPresent(key);
+
+        Map<HashFunc, HashCode> hashes = new EnumMap<>(HashFunc.class);
+        Set<HashFunc> missing = EnumSet.noneOf(HashFunc.class);
+        for (HashFunc func : funcs) {
+            HashCode hash = cached != null ? cached.get(func) : null;
+            if (hash != null) {
+                hashes.put(func, hash);
+            } else {
+                missing.add(func);
+            }
+        }
+        if (missing.isEmpty()) return hashes;
+
+        MultiHasher hasher = new MultiHasher(missing);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer buf = ByteBuffer.wrap(buffer);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int len;
+            while ((len = channel.read(buf.clear())) != -1) {
+                hasher.update(buffer, 0, len);
+            }
+        }
+        HashResult result = hasher.finish();
+        for (HashFunc func : missing) {
+            hashes.put(func, result.get(func));
+        }
+
+        // Only cache if the file did not change whilst we were reading it.
+        if (key.equals(FileKey.of(file))) {
+            Map<HashFunc, HashCode> toCache = new EnumMap<>(HashFunc.class);
+            if (cached != null) {
+                toCache.putAll(cached);
+            }
+            toCache.putAll(hashes);
+            CACHE.put(key, Collections.unmodifiableMap(toCache));
+        }
+        return hashes;
+    }
+
+    private static Set<HashFunc> parseFuncs(@Nullable List<String> names) {
+        if (names == null || names.isEmpty()) return DEFAULT_FUNCS;
+
+        Set<HashFunc> funcs = EnumSet.noneOf(HashFunc.class);
+        for (String name : names) {
+            HashFunc func = HashFunc.find(name.toUpperCase(Locale.ROOT));
+            if (func == null) {
+                LOGGER.warn("Unknown hash function requested: {}", name);
+                continue;
+            }
+            funcs.add(func);
+        }
+        return funcs.isEmpty() ? DEFAULT_FUNCS : funcs;
+    }
+
+    private record FileKey(Path file, long size, long lastModified) {
+
+        private static FileKey of(Path file) throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return new FileKey(file.toAbsolutePath().normalize(), attrs.size(), attrs.lastModifiedTime().toMillis());
         }
     }
 }
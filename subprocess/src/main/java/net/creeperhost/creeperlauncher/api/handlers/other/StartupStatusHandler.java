@@ -0,0 +1,33 @@
+package net.creeperhost.creeperlauncher.api.handlers.other;
+
+import net.creeperhost.creeperlauncher.Startup;
+import net.creeperhost.creeperlauncher.api.WebSocketHandler;
+import net.creeperhost.creeperlauncher.api.data.BaseData;
+import net.creeperhost.creeperlauncher.api.handlers.IMessageHandler;
+
+import java.util.List;
+
+/**
+ * Replies with the subsystems which have finished starting up.
+ * <p>
+ * For a UI which connects after some {@link net.creeperhost.creeperlauncher.api.data.other.SubsystemReadyData}
+ * messages have already been sent.
+ */
+public class StartupStatusHandler implements IMessageHandler<BaseData> {
+
+    @Override
+    public void handle(BaseData data) {
+        WebSocketHandler.sendMessage(new Reply(data, Startup.getReady()));
+    }
+
+    public static class Reply extends BaseData {
+
+        public final List<Startup.Subsystem> ready;
+
+        public Reply(BaseData data, List<Startup.Subsystem> ready) {
+            this.requestId = data.requestId;
+            this.type = data.type + "Reply";
+            this.ready = ready;
+        }
+    }
+}
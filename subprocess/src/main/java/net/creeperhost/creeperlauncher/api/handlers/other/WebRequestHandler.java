@@ -2,22 +2,51 @@ package net.creeperhost.creeperlauncher.api.handlers.other;
 
 import net.creeperhost.creeperlauncher.Constants;
 import net.creeperhost.creeperlauncher.api.WebSocketHandler;
+import net.creeperhost.creeperlauncher.api.data.BaseData;
 import net.creeperhost.creeperlauncher.api.data.other.WebRequestData;
 import net.creeperhost.creeperlauncher.api.handlers.IMessageHandler;
 import okhttp3.*;
+import okio.BufferedSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Created by covers1624 on 30/11/22.
  */
 public class WebRequestHandler implements IMessageHandler<WebRequestData> {
     private static final Logger LOGGER = LogManager.getLogger();
-        
+
+    /**
+     * The size of each chunk of a streamed response body.
+     */
+    private static final int CHUNK_SIZE = Integer.getInteger("WebRequestHandler.chunkSize", 256 * 1024);
+
+    /**
+     * Bodies smaller than this are sent inline, even if streaming was requested.
+     */
+    private static final long STREAM_THRESHOLD = Long.getLong("WebRequestHandler.streamThreshold", 1024 * 1024);
+
+    private static final long CACHE_SIZE = Long.getLong("WebRequestHandler.cacheSize", 50 * 1024 * 1024);
+
+    private final Consumer<BaseData> sender;
+    @Nullable
+    private final Cache cache;
+
+    public WebRequestHandler() {
+        this(WebSocketHandler::sendMessage, new Cache(Constants.getDataDir().resolve(".web_cache").toFile(), CACHE_SIZE));
+    }
+
+    // Visible for tests.
+    WebRequestHandler(Consumer<BaseData> sender, @Nullable Cache cache) {
+        this.sender = sender;
+        this.cache = cache;
+    }
+
     @Override
     public void handle(WebRequestData data) {
         Request.Builder builder = new Request.Builder()
@@ -28,8 +57,14 @@ public class WebRequestHandler implements IMessageHandler<WebRequestData> {
                 builder.addHeader(headerEntry.getKey(), s);
             }
         }
-        
-        try (Response response = Constants.httpClient().newCall(builder.build()).execute()) {
+
+        // OkHttp only caches GET responses which allow it, everything else passes straight through.
+        OkHttpClient client = Constants.httpClient();
+        if (cache != null) {
+            client = client.newBuilder().cache(cache).build();
+        }
+
+        try (Response response = client.newCall(builder.build()).execute()) {
             WebRequestData.WebRequestDataResponse resp = new WebRequestData.WebRequestDataResponse(data, "success");
             resp.statusCode = response.code();
             resp.statusLine = response.message();
@@ -44,16 +79,47 @@ public class WebRequestHandler implements IMessageHandler<WebRequestData> {
                 if (contentType != null) {
                     resp.body.contentType = contentType.toString();
                 }
-                resp.body.bytes = body.bytes();
+                // Buffers at most the threshold, so unknown length bodies are only streamed if they are large.
+                if (data.stream && body.source().request(STREAM_THRESHOLD)) {
+                    resp.body.chunked = true;
+                } else {
+                    resp.body.bytes = body.bytes();
+                }
             }
 
-            WebSocketHandler.sendMessage(resp);
+            sender.accept(resp);
+            if (body != null && data.stream) {
+                streamBody(data, body.source());
+            }
         } catch (IOException ex) {
-            WebSocketHandler.sendMessage(new WebRequestData.WebRequestDataResponse(data, "error", ex.getMessage()));
+            sender.accept(new WebRequestData.WebRequestDataResponse(data, "error", ex.getMessage()));
             LOGGER.warn("Failed to make web request to {}.", data.url, ex);
         }
     }
 
+    // Sends each chunk as soon as it has been read, the last chunk is always empty.
+    private void streamBody(WebRequestData data, BufferedSource source) {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        int index = 0;
+        try {
+            while (true) {
+                int len = 0;
+                while (len < buffer.length) {
+                    int read = source.read(buffer, len, buffer.length - len);
+                    if (read == -1) break;
+                    len += read;
+                }
+                if (len == 0) break;
+                sender.accept(new WebRequestData.Chunk(data, index++, Base64.getEncoder().encodeToString(Arrays.copyOf(buffer, len)), false, null));
+                if (len < buffer.length) break;
+            }
+            sender.accept(new WebRequestData.Chunk(data, index, "", true, null));
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to stream response body from {}.", data.url, ex);
+            sender.accept(new WebRequestData.Chunk(data, index, "", true, ex.getMessage()));
+        }
+    }
+
     @Nullable
     private RequestBody buildRequestBody(WebRequestData.Body body) {
         if (body == null) return null;
@@ -71,8 +71,13 @@ public class InstanceJson {
     public long lastPlayed;
 
     @Nullable
-    @Deprecated // TODO Replace with Artv2 system.
+    @Deprecated // Only read to migrate old instances, replaced by artHash.
     public String art;
+    /**
+     * The sha1 of the instance's art, stored in <code>.ftba/art/</code>.
+     */
+    @Nullable
+    public String artHash;
     
     public boolean potentiallyBrokenDismissed = false;
 
@@ -107,6 +112,7 @@ public class InstanceJson {
         totalPlayTime = other.totalPlayTime;
         lastPlayed = other.lastPlayed;
         art = other.art;
+        artHash = other.artHash;
         category = other.category;
         releaseChannel = other.releaseChannel;
         locked = other.locked;
@@ -6,18 +6,14 @@ import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
 import net.covers1624.quack.collection.FastStream;
 import net.covers1624.quack.gson.JsonUtils;
-import net.covers1624.quack.net.DownloadAction;
-import net.covers1624.quack.net.okhttp.OkHttpDownloadAction;
 import net.creeperhost.creeperlauncher.Constants;
 import net.creeperhost.creeperlauncher.install.FileValidation;
-import net.creeperhost.creeperlauncher.install.ModCollector;
 import net.creeperhost.creeperlauncher.util.ModpacksChUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
@@ -64,16 +60,8 @@ public class ModManifest {
     }
 
     public static ModManifest queryManifest(String id) throws IOException, JsonParseException {
-        StringWriter sw = new StringWriter();
-        DownloadAction action = new OkHttpDownloadAction()
-                .setClient(Constants.httpClient())
-                .setUrl(ModpacksChUtils.getModEndpoint() + id)
-                .setDest(sw);
-        
-        ModpacksChUtils.injectBearerHeader(action);
-        action.execute();
-
-        return JsonUtils.parse(GSON, sw.toString(), ModManifest.class);
+        String body = Constants.API_RESPONSE_CACHE.query(ModpacksChUtils.getModEndpoint() + id, false);
+        return JsonUtils.parse(GSON, body, ModManifest.class);
     }
 
     public @Nullable Version findVersion(long versionId) {
@@ -82,11 +70,6 @@ public class ModManifest {
                 .firstOrDefault();
     }
 
-    public void visitVersion(ModCollector collector, Version version) {
-        collector.addMod(this, version);
-        version.visitDependencies(this, collector);
-    }
-
     public @Nullable Version findLatestCompatibleVersion(String modLoader, String mcVersion) {
         return FastStream.of(versions)
                 .filter(e -> {
@@ -105,16 +88,6 @@ public class ModManifest {
                 .firstOrDefault();
     }
 
-    public void visitCompatibleVersion(ModManifest requestedBy, ModCollector collector) {
-        Version version = findLatestCompatibleVersion(collector.modLoader(), collector.mcVersion());
-        if (version == null) {
-            collector.unsatisfiableDependency(requestedBy, this);
-            return;
-        }
-
-        visitVersion(collector, version);
-    }
-
     // @formatter:off
     public @Nullable String getStatus() { return status; }
     public long getId() { return id; }
@@ -215,12 +188,6 @@ public class ModManifest {
         public List<Dependency> getDependencies() { return dependencies; }
         // @formatter:on
 
-        public void visitDependencies(ModManifest mod, ModCollector visitor) {
-            for (Dependency dependency : dependencies) {
-                dependency.visit(mod, visitor);
-            }
-        }
-
         public @Nullable Target getTarget(String target) {
             return FastStream.of(targets)
                     .filter(e -> Objects.equals(e.type, target))
@@ -267,16 +234,5 @@ public class ModManifest {
         public long getId() { return id; }
         public boolean isRequired() { return required; }
         // @formatter:on
-
-        public void visit(ModManifest mod, ModCollector collector) {
-            if (!required) return;
-
-            ModManifest manifest = tryQuery(id);
-            if (manifest == null) {
-                collector.unavailableDependency(mod, this);
-                return;
-            }
-            manifest.visitCompatibleVersion(mod, collector);
-        }
     }
 }
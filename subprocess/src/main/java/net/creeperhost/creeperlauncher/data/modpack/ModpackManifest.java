@@ -7,8 +7,6 @@ import com.google.gson.annotations.JsonAdapter;
 import net.covers1624.quack.collection.FastStream;
 import net.covers1624.quack.gson.HashCodeAdapter;
 import net.covers1624.quack.gson.JsonUtils;
-import net.covers1624.quack.net.DownloadAction;
-import net.covers1624.quack.net.okhttp.OkHttpDownloadAction;
 import net.creeperhost.creeperlauncher.Constants;
 import net.creeperhost.creeperlauncher.util.ModpacksChUtils;
 import org.apache.logging.log4j.LogManager;
@@ -16,7 +14,6 @@ import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -52,20 +49,11 @@ public class ModpackManifest {
     public static ModpackManifest queryManifest(long packId, boolean isPrivate, byte packType) throws IOException, JsonParseException {
         String url = ModpacksChUtils.getModpacksEndpoint(isPrivate, packType) + packId;
         LOGGER.info("Querying Modpack version manifest: {}", url);
-        StringWriter sw = new StringWriter();
-        DownloadAction action = new OkHttpDownloadAction()
-                .setClient(Constants.httpClient())
-                .setUserAgent(Constants.USER_AGENT)
-                .setUrl(url)
-                .setDest(sw);
-        
-        ModpacksChUtils.injectBearerHeader(action);
-        
-        action.execute();
-
-        ModpackManifest manifest = JsonUtils.parse(GSON, sw.toString(), ModpackManifest.class);
+        String body = Constants.API_RESPONSE_CACHE.query(url, false);
+
+        ModpackManifest manifest = JsonUtils.parse(GSON, body, ModpackManifest.class);
         if (manifest.getStatus().equals("error")) {
-            LOGGER.warn("Query failed. Got: " + sw);
+            LOGGER.warn("Query failed. Got: " + body);
             return null;
         }
 
@@ -8,8 +8,6 @@ import com.google.gson.annotations.SerializedName;
 import net.covers1624.quack.collection.FastStream;
 import net.covers1624.quack.gson.HashCodeAdapter;
 import net.covers1624.quack.gson.JsonUtils;
-import net.covers1624.quack.net.DownloadAction;
-import net.covers1624.quack.net.okhttp.OkHttpDownloadAction;
 import net.creeperhost.creeperlauncher.Constants;
 import net.creeperhost.creeperlauncher.install.FileValidation;
 import net.creeperhost.creeperlauncher.util.FileUtils;
@@ -25,7 +23,6 @@ import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.lang.reflect.Type;
 import java.nio.file.Path;
 import java.util.LinkedList;
@@ -139,18 +136,10 @@ public class ModpackVersionManifest {
     @Nullable
     public static ModpackVersionManifest queryManifest(String url) throws IOException, JsonParseException {
         LOGGER.info("Querying Modpack version manifest: {}", url);
-        StringWriter sw = new StringWriter();
-        DownloadAction action = new OkHttpDownloadAction()
-                .setClient(Constants.httpClient())
-                .setUserAgent(Constants.USER_AGENT)
-                .setUrl(url)
-                .setDest(sw);
-        
-        ModpacksChUtils.injectBearerHeader(action);
-        
-        action.execute();
+        // A specific version never changes once published.
+        String body = Constants.API_RESPONSE_CACHE.query(url, true);
 
-        ModpackVersionManifest manifest = JsonUtils.parse(GSON, sw.toString(), ModpackVersionManifest.class);
+        ModpackVersionManifest manifest = JsonUtils.parse(GSON, body, ModpackVersionManifest.class);
         if (manifest.getStatus().equals("error")) {
             LOGGER.error("Failed to request manifest got: " + manifest.getMessage());
             return null;
@@ -5,8 +5,6 @@ import com.google.gson.JsonParseException;
 import net.covers1624.quack.collection.FastStream;
 import net.covers1624.quack.gson.JsonUtils;
 import net.covers1624.quack.io.IOUtils;
-import net.covers1624.quack.net.DownloadAction;
-import net.covers1624.quack.net.okhttp.OkHttpDownloadAction;
 import net.creeperhost.creeperlauncher.Constants;
 import net.creeperhost.creeperlauncher.util.ModpacksChUtils;
 import org.apache.logging.log4j.LogManager;
@@ -14,7 +12,6 @@ import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.LinkedList;
@@ -45,16 +42,9 @@ public class ModpackVersionModsManifest {
     public static ModpackVersionModsManifest query(long packId, long versionId, boolean isPrivate, byte packType) throws IOException, JsonParseException {
         String url = ModpacksChUtils.getModpacksEndpoint(isPrivate, packType) + packId + "/" + versionId + "/mods";
         LOGGER.info("Querying Modpack version mods manifest: {}", url);
-        StringWriter sw = new StringWriter();
-        DownloadAction action = new OkHttpDownloadAction()
-                .setClient(Constants.httpClient())
-                .setUrl(url)
-                .setDest(sw);
-        
-        ModpacksChUtils.injectBearerHeader(action);
-        action.execute();
-
-        return JsonUtils.parse(GSON, sw.toString(), ModpackVersionModsManifest.class);
+        // A specific version never changes once published.
+        String body = Constants.API_RESPONSE_CACHE.query(url, true);
+        return JsonUtils.parse(GSON, body, ModpackVersionModsManifest.class);
     }
 
     public List<Mod> getMods() {
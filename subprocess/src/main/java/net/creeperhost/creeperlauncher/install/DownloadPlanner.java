@@ -0,0 +1,160 @@
+package net.creeperhost.creeperlauncher.install;
+
+import com.google.common.hash.HashCode;
+import net.covers1624.quack.io.IOUtils;
+import net.covers1624.quack.util.MultiHasher.HashFunc;
+import net.creeperhost.creeperlauncher.install.tasks.DownloadTask;
+import net.creeperhost.creeperlauncher.install.tasks.Task;
+import net.creeperhost.creeperlauncher.install.tasks.TaskProgressListener;
+import net.creeperhost.creeperlauncher.pack.CancellationToken;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.ToLongFunction;
+
+/**
+ * Plans the downloads for an entire pack.
+ * <p>
+ * Files with identical hashes are only downloaded once and copied to their other destinations,
+ * unknown file sizes are resolved concurrently, and downloads are ordered largest first,
+ * interleaved with the smallest, so large files don't start last and dominate the tail
+ * of the install.
+ */
+public class DownloadPlanner {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("DownloadPlanner.debug");
+
+    private final Executor executor;
+    private final ToLongFunction<String> sizeResolver;
+
+    private final Map<DedupeKey, PlannedDownload> byHash = new HashMap<>();
+    private final List<PlannedDownload> downloads = new ArrayList<>();
+    private final List<PlannedDownload> unknownSize = new ArrayList<>();
+
+    /**
+     * @param executor The executor to resolve unknown sizes on.
+     */
+    public DownloadPlanner(Executor executor) {
+        this(executor, DownloadTask::getContentLength);
+    }
+
+    DownloadPlanner(Executor executor, ToLongFunction<String> sizeResolver) {
+        this.executor = executor;
+        this.sizeResolver = sizeResolver;
+    }
+
+    /**
+     * Add a download to the plan.
+     *
+     * @param size The size of the file, <code>-1</code> or <code>0</code> if unknown.
+     * @param task The {@link DownloadTask}.
+     */
+    public void add(long size, DownloadTask task) {
+        HashCode sha1 = task.getValidation().expectedHashes.get(HashFunc.SHA1);
+        if (sha1 != null && size > 0) {
+            DedupeKey key = new DedupeKey(sha1, size);
+            PlannedDownload existing = byHash.get(key);
+            if (existing != null) {
+                if (DEBUG) LOGGER.info("Deduplicated {} with {}.", task.getDest(), existing.task.getDest());
+                existing.copies.add(task.getDest());
+                return;
+            }
+            PlannedDownload download = new PlannedDownload(size, task);
+            byHash.put(key, download);
+            downloads.add(download);
+            return;
+        }
+
+        PlannedDownload download = new PlannedDownload(size, task);
+        downloads.add(download);
+        if (size <= 0) {
+            unknownSize.add(download);
+        }
+    }
+
+    /**
+     * Resolve any unknown sizes, and order the downloads.
+     *
+     * @return The planned downloads, in the order they should be submitted.
+     */
+    public List<PlannedDownload> plan() {
+        resolveSizes();
+
+        List<PlannedDownload> sorted = new ArrayList<>(downloads);
+        sorted.sort(Comparator.comparingLong(PlannedDownload::getSize).reversed());
+
+        // Largest first, each followed by the smallest remaining.
+        List<PlannedDownload> ordered = new ArrayList<>(sorted.size());
+        int head = 0;
+        int tail = sorted.size() - 1;
+        while (head <= tail) {
+            ordered.add(sorted.get(head++));
+            if (head <= tail) {
+                ordered.add(sorted.get(tail--));
+            }
+        }
+        if (DEBUG) {
+            LOGGER.info("Planned {} downloads for {} files.", ordered.size(), ordered.stream().mapToInt(PlannedDownload::getFileCount).sum());
+        }
+        return ordered;
+    }
+
+    private void resolveSizes() {
+        if (unknownSize.isEmpty()) return;
+
+        LOGGER.info("Resolving size of {} files.", unknownSize.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(unknownSize.size());
+        for (PlannedDownload download : unknownSize) {
+            futures.add(CompletableFuture.runAsync(() -> download.size = sizeResolver.applyAsLong(download.task.getUrl()), executor));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        unknownSize.clear();
+    }
+
+    /**
+     * A single download, which may be copied to multiple destinations.
+     */
+    public static class PlannedDownload implements Task {
+
+        private final DownloadTask task;
+        private final List<Path> copies = new ArrayList<>();
+        private long size;
+
+        private PlannedDownload(long size, DownloadTask task) {
+            this.size = size;
+            this.task = task;
+        }
+
+        @Override
+        public void execute(@Nullable CancellationToken cancelToken, @Nullable TaskProgressListener listener) throws Throwable {
+            task.execute(cancelToken, listener);
+            for (Path copy : copies) {
+                copyTo(copy);
+            }
+        }
+
+        private void copyTo(Path copy) throws IOException {
+            if (Files.exists(copy) && task.getValidation().validate(copy)) return;
+
+            Files.copy(task.getDest(), IOUtils.makeParents(copy), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        //@formatter:off
+        public long getSize() { return Math.max(0, size); }
+        public DownloadTask getTask() { return task; }
+        public List<Path> getCopies() { return Collections.unmodifiableList(copies); }
+        public int getFileCount() { return 1 + copies.size(); }
+        //@formatter:on
+    }
+
+    private record DedupeKey(HashCode sha1, long size) { }
+}
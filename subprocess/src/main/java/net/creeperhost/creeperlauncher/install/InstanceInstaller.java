@@ -6,6 +6,7 @@ import net.covers1624.quack.gson.JsonUtils;
 import net.covers1624.quack.io.IOUtils;
 import net.covers1624.quack.util.MultiHasher;
 import net.covers1624.quack.util.MultiHasher.HashFunc;
+import net.creeperhost.creeperlauncher.Constants;
 import net.creeperhost.creeperlauncher.CreeperLauncher;
 import net.creeperhost.creeperlauncher.data.InstanceModifications;
 import net.creeperhost.creeperlauncher.data.InstanceModifications.ModOverride;
@@ -19,6 +20,7 @@ import net.creeperhost.creeperlauncher.install.tasks.modloader.ModLoaderInstallT
 import net.creeperhost.creeperlauncher.instance.InstanceOperation;
 import net.creeperhost.creeperlauncher.pack.CancellationToken;
 import net.creeperhost.creeperlauncher.pack.Instance;
+import net.creeperhost.creeperlauncher.util.HostLimiter;
 import net.creeperhost.creeperlauncher.util.PathFixingCopyingFileVisitor;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -267,7 +269,7 @@ public class InstanceInstaller extends InstanceOperation {
             cancelToken.throwIfCancelled();
 
             LOGGER.info("Downloading new files.");
-            tracker.nextStage(InstallStage.FILES, tasks.size());
+            tracker.nextStage(InstallStage.FILES, tasks.stream().mapToInt(e -> e.steps).sum());
             long totalSize = tasks.stream()
                     .mapToLong(e -> e.size)
                     .sum();
@@ -279,6 +281,12 @@ public class InstanceInstaller extends InstanceOperation {
 
             rootListener.finish(progressAggregator.getProcessed());
 
+            if (DEBUG) {
+                for (HostLimiter.HostStats stats : Constants.HOST_LIMITER.getStats()) {
+                    LOGGER.info("  {}", stats);
+                }
+            }
+
             cancelToken.throwIfCancelled();
 
             Path cfOverrides = getCFOverridesZip(manifest);
@@ -410,9 +418,11 @@ public class InstanceInstaller extends InstanceOperation {
                     if (filesToRemove.contains(path)) continue; // File will be deleted, ignore.
                     if (knownFiles.containsKey(instance.getDir().relativize(path).toString())) continue; // File is known.
 
-                    if (path.getFileName().toString().startsWith("__tmp_")) {
-                        // Download temp files. Always delete these.
-                        // They will only exist if the download process crashes spectacularly.
+                    String tempTarget = DownloadTask.getTempFileTarget(path.getFileName().toString());
+                    if (tempTarget != null) {
+                        // Download temp files. These only exist if a previous install was interrupted.
+                        // Keep them if we still want the file, so the download can be resumed.
+                        if (knownFiles.containsKey(instance.getDir().relativize(path.resolveSibling(tempTarget)).toString())) continue;
                         filesToRemove.add(path);
                     } else {
                         untrackedFiles.add(path);
@@ -448,6 +458,7 @@ public class InstanceInstaller extends InstanceOperation {
     }
 
     private void prepareFileDownloads() {
+        DownloadPlanner planner = new DownloadPlanner(Task.TASK_POOL);
         for (ModpackFile file : manifest.getFiles()) {
             if (file.getType().equals("cf-extract")) continue;
             Path filePath = file.toPath(instance.getDir());
@@ -466,7 +477,7 @@ public class InstanceInstaller extends InstanceOperation {
             // Last line of defense against zero byte files.
             if (file.getUrl().equals(IGNORE_SNOWFLAKE_FILE_URL) || file.getSize() == 0) {
                 filesToDownload.add(filePath);
-                tasks.add(new DlTask(0, new EmptyFileDlTask(filePath)));
+                tasks.add(new DlTask(0, 1, new EmptyFileDlTask(filePath)));
                 continue;
             }
 
@@ -476,16 +487,16 @@ public class InstanceInstaller extends InstanceOperation {
                     .dest(filePath)
                     .withValidation(file.createValidation().asDownloadValidation())
                     .withFileLocator(CreeperLauncher.localCache)
+                    .tryResumeDownload()
                     .build();
             if (!task.isRedundant()) {
-                long size = file.getSize();
-                if (size <= 0) {
-                    size = DownloadTask.getContentLength(file.getUrl());
-                }
                 filesToDownload.add(task.getDest());
-                tasks.add(new DlTask(size, task));
+                planner.add(file.getSize(), task);
             }
         }
+        for (DownloadPlanner.PlannedDownload download : planner.plan()) {
+            tasks.add(new DlTask(download.getSize(), download.getFileCount(), download));
+        }
     }
 
     private Path remapFileFromOverride(IndexedFile file, Path path, Consumer<ModOverride> cons) {
@@ -567,17 +578,21 @@ public class InstanceInstaller extends InstanceOperation {
     private class DlTask implements Task {
 
         private final long size;
+        private final int steps;
         private final Task task;
 
-        private DlTask(long size, Task task) {
+        private DlTask(long size, int steps, Task task) {
             this.size = size;
+            this.steps = steps;
             this.task = task;
         }
 
         @Override
         public void execute(@Nullable CancellationToken cancelToken, @Nullable TaskProgressListener listener) throws Throwable {
             task.execute(cancelToken, listener);
-            tracker.stepFinished();
+            for (int i = 0; i < steps; i++) {
+                tracker.stepFinished();
+            }
         }
     }
 
@@ -0,0 +1,122 @@
+package net.creeperhost.creeperlauncher.install;
+
+import net.creeperhost.creeperlauncher.Constants;
+import net.creeperhost.creeperlauncher.data.mod.ModManifest;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongFunction;
+
+/**
+ * Resolves the required dependencies of a mod version into a {@link ModCollector}.
+ * <p>
+ * The dependency graph is walked one level at a time, every manifest in a level is queried
+ * concurrently, so resolution time scales with the depth of the graph rather than its size.
+ * Each mod is only visited once, so shared dependencies are only queried once, and
+ * dependency cycles are broken.
+ * <p>
+ * Manifests are queried through {@link Constants#MOD_VERSION_CACHE} by default, which keeps
+ * them around between resolutions.
+ */
+public class ModDependencyResolver {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("ModDependencyResolver.debug");
+
+    private final ModCollector collector;
+    private final LongFunction<CompletableFuture<@Nullable ModManifest>> lookup;
+
+    public ModDependencyResolver(ModCollector collector) {
+        this(collector, Constants.MOD_VERSION_CACHE::queryMod);
+    }
+
+    /**
+     * @param collector The collector to resolve into.
+     * @param lookup    Queries a mod manifest, completing with <code>null</code> if the mod does not exist.
+     */
+    public ModDependencyResolver(ModCollector collector, LongFunction<CompletableFuture<@Nullable ModManifest>> lookup) {
+        this.collector = collector;
+        this.lookup = lookup;
+    }
+
+    /**
+     * Resolve the given mod version and all of its required dependencies.
+     *
+     * @param mod     The mod.
+     * @param version The version of the mod to install.
+     */
+    public void resolve(ModManifest mod, ModManifest.Version version) {
+        resolve(List.of(Pair.of(mod, version)));
+    }
+
+    /**
+     * Resolve the given mod versions and all of their required dependencies, as a single set.
+     *
+     * @param roots The mods, and the versions of each to install.
+     */
+    public void resolve(List<Pair<ModManifest, ModManifest.Version>> roots) {
+        // Every mod which has been queued, the first time a mod is seen wins.
+        Set<Long> seen = new HashSet<>();
+        List<Resolved> level = new ArrayList<>(roots.size());
+        for (Pair<ModManifest, ModManifest.Version> root : roots) {
+            if (!seen.add(root.getKey().getId())) continue;
+            collector.addMod(root.getKey(), root.getValue());
+            level.add(new Resolved(root.getKey(), root.getValue()));
+        }
+
+        int depth = 0;
+        while (!level.isEmpty()) {
+            // Collect and query all new dependencies for this level, concurrently.
+            List<Pending> pending = new ArrayList<>();
+            for (Resolved resolved : level) {
+                for (ModManifest.Dependency dep : resolved.version().getDependencies()) {
+                    if (!dep.isRequired()) continue;
+                    if (!seen.add(dep.getId())) {
+                        if (DEBUG) {
+                            LOGGER.info("Skipping already resolved dependency {} of {}.", dep.getId(), resolved.mod().getId());
+                        }
+                        continue;
+                    }
+                    pending.add(new Pending(resolved.mod(), dep, query(dep.getId())));
+                }
+            }
+            if (DEBUG && !pending.isEmpty()) {
+                LOGGER.info("Resolving {} dependencies at depth {}.", pending.size(), depth);
+            }
+
+            List<Resolved> next = new ArrayList<>();
+            for (Pending p : pending) {
+                ModManifest manifest = p.future().join();
+                if (manifest == null) {
+                    collector.unavailableDependency(p.requestedBy(), p.dep());
+                    continue;
+                }
+                ModManifest.Version depVersion = manifest.findLatestCompatibleVersion(collector.modLoader(), collector.mcVersion());
+                if (depVersion == null) {
+                    collector.unsatisfiableDependency(p.requestedBy(), manifest);
+                    continue;
+                }
+                collector.addMod(manifest, depVersion);
+                next.add(new Resolved(manifest, depVersion));
+            }
+            level = next;
+            depth++;
+        }
+    }
+
+    private CompletableFuture<@Nullable ModManifest> query(long modId) {
+        return lookup.apply(modId)
+                .exceptionally(ex -> {
+                    LOGGER.warn("Failed to query mod manifest for {}.", modId, ex);
+                    return null;
+                });
+    }
+
+    private record Resolved(ModManifest mod, ModManifest.Version version) { }
+
+    private record Pending(ModManifest requestedBy, ModManifest.Dependency dep, CompletableFuture<@Nullable ModManifest> future) { }
+}
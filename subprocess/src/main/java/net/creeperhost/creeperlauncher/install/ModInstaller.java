@@ -1,7 +1,7 @@
 package net.creeperhost.creeperlauncher.install;
 
-import com.google.gson.JsonParseException;
 import net.covers1624.quack.collection.FastStream;
+import net.creeperhost.creeperlauncher.Constants;
 import net.creeperhost.creeperlauncher.CreeperLauncher;
 import net.creeperhost.creeperlauncher.data.InstanceModifications;
 import net.creeperhost.creeperlauncher.data.InstanceModifications.ModOverride;
@@ -15,17 +15,22 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.IOException;
 import java.nio.file.Files;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.LongFunction;
 
 import static net.creeperhost.creeperlauncher.data.InstanceModifications.ModOverrideState.*;
 
 /**
+ * Installs or updates one or more mods, and their dependencies, into an instance.
+ * <p>
+ * All requested mods are resolved as a single dependency set, downloaded as a single
+ * parallel task set, and the instance modifications are saved once at the end.
+ * <p>
  * Created by covers1624 on 12/9/23.
  */
 public class ModInstaller implements ModCollector {
@@ -37,8 +42,12 @@ public class ModInstaller implements ModCollector {
     private final String mcVersion;
     private final String modLoader;
 
-    private final long modId;
-    private final long versionId;
+    private final List<ModRequest> requests;
+    private final Set<Long> requestedIds = new HashSet<>();
+
+    private final LongFunction<CompletableFuture<@Nullable ModManifest>> modLookup;
+    private final LongFunction<CompletableFuture<@Nullable ModManifest>> dependencyLookup;
+    private final Function<Instance, List<ModInfo>> modLister;
 
     private final OperationProgressTracker tracker;
 
@@ -48,51 +57,88 @@ public class ModInstaller implements ModCollector {
     private final List<Pair<ModManifest, ModManifest.Version>> toInstall = new ArrayList<>();
 
     public ModInstaller(Instance instance, String mcVersion, String modLoader, long modId, long versionId) {
+        this(instance, mcVersion, modLoader, List.of(new ModRequest(modId, versionId)));
+    }
+
+    public ModInstaller(Instance instance, String mcVersion, String modLoader, List<ModRequest> requests) {
+        this(
+                instance,
+                mcVersion,
+                modLoader,
+                requests,
+                // Always query requested mods fresh, the UI may be asking for a version we haven't seen yet.
+                id -> CompletableFuture.supplyAsync(() -> ModManifest.tryQuery(id), Task.TASK_POOL),
+                Constants.MOD_VERSION_CACHE::queryMod,
+                e -> e.getMods(true)
+        );
+    }
+
+    // Visible for tests.
+    ModInstaller(Instance instance, String mcVersion, String modLoader, List<ModRequest> requests,
+            LongFunction<CompletableFuture<@Nullable ModManifest>> modLookup,
+            LongFunction<CompletableFuture<@Nullable ModManifest>> dependencyLookup,
+            Function<Instance, List<ModInfo>> modLister) {
+        if (requests.isEmpty()) throw new IllegalArgumentException("No mods requested.");
+
         this.instance = instance;
         this.mcVersion = mcVersion;
         this.modLoader = modLoader;
 
-        this.modId = modId;
-        this.versionId = versionId;
+        this.requests = List.copyOf(requests);
+        for (ModRequest request : requests) {
+            requestedIds.add(request.modId());
+        }
+        this.modLookup = modLookup;
+        this.dependencyLookup = dependencyLookup;
+        this.modLister = modLister;
 
         tracker = new OperationProgressTracker(
                 "mod_install",
                 Map.of(
                         "instance", instance.getUuid().toString(),
-                        "mod_id", String.valueOf(modId),
-                        "version_id", String.valueOf(versionId)
+                        "mod_id", FastStream.of(requests).map(e -> String.valueOf(e.modId())).join(","),
+                        "version_id", FastStream.of(requests).map(e -> String.valueOf(e.versionId())).join(",")
                 )
         );
     }
 
     public void resolve() throws ModInstallerException {
-        LOGGER.info("Resolving install of mod {} version {}", modId, versionId);
+        LOGGER.info("Resolving install of {} mods: {}", requests.size(), requests);
 
         tracker.nextStage(InstallStage.RESOLVE);
         try {
-            ModManifest manifest;
-            try {
-                manifest = ModManifest.queryManifest(modId);
-            } catch (IOException | JsonParseException ex) {
-                throw new ModInstallerException("Mod does not exist.", ex);
+            // Query all requested mods up front, concurrently.
+            List<CompletableFuture<@Nullable ModManifest>> futures = new ArrayList<>(requests.size());
+            for (ModRequest request : requests) {
+                futures.add(modLookup.apply(request.modId()));
             }
 
-            ModManifest.Version version = manifest.findVersion(versionId);
-            if (version == null) {
-                throw new ModInstallerException("Mod version does not exist.");
+            List<Pair<ModManifest, ModManifest.Version>> roots = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                ModRequest request = requests.get(i);
+                ModManifest manifest = futures.get(i).join();
+                if (manifest == null) {
+                    throw new ModInstallerException("Mod " + request.modId() + " does not exist.");
+                }
+
+                ModManifest.Version version = manifest.findVersion(request.versionId());
+                if (version == null) {
+                    throw new ModInstallerException("Mod " + request.modId() + " version " + request.versionId() + " does not exist.");
+                }
+                roots.add(Pair.of(manifest, version));
             }
 
-            manifest.visitVersion(this, version);
+            new ModDependencyResolver(this, dependencyLookup).resolve(roots);
         } catch (Throwable ex) {
             tracker.finished();
             throw ex;
         }
-        existingMods.addAll(instance.getMods(true));
+        existingMods.addAll(modLister.apply(instance));
         LOGGER.info("Filtering found dependencies from existing mod list.");
         toInstall.removeIf(pair -> {
             ModManifest manifest = pair.getKey();
             ModManifest.Version version = pair.getValue();
-            if (manifest.getId() == modId) return false;
+            if (requestedIds.contains(manifest.getId())) return false;
 
             for (ModInfo existingMod : existingMods) {
                 CurseMetadata curse = existingMod.curse();
@@ -146,7 +192,7 @@ public class ModInstaller implements ModCollector {
                 ModManifest mod = toInstall.getKey();
                 ModManifest.Version version = toInstall.getValue();
                 ModInfo selfExisting = FastStream.of(existingMods)
-                        .filter(e -> e.curse() != null && e.curse().curseProject() == modId)
+                        .filter(e -> e.curse() != null && e.curse().curseProject() == mod.getId())
                         .onlyOrDefault();
                 String suffix = selfExisting != null && !selfExisting.enabled() ? ".disabled" : "";
                 DownloadTask task = DownloadTask.builder()
@@ -182,7 +228,7 @@ public class ModInstaller implements ModCollector {
 
                 if (selfExisting != null) {
                     ModOverride existingOverride = FastStream.of(allOverrides)
-                            .filter(e -> e.getCurseProject() == modId || e.getId() == selfExisting.fileId())
+                            .filter(e -> e.getCurseProject() == mod.getId() || selfExisting.fileId() != -1 && e.getId() == selfExisting.fileId())
                             .firstOrDefault();
                     if (existingOverride != null) {
                         oldOverrides.add(existingOverride);
@@ -248,6 +294,14 @@ public class ModInstaller implements ModCollector {
     @Override public void addMod(ModManifest manifest, ModManifest.Version version) { toInstall.add(Pair.of(manifest, version)); }
     // @formatter:on
 
+    /**
+     * A mod to install or update.
+     *
+     * @param modId     The mod id.
+     * @param versionId The version id.
+     */
+    public record ModRequest(long modId, long versionId) { }
+
     private enum InstallStage implements OperationProgressTracker.Stage {
         RESOLVE,
         PREPARE,
@@ -3,8 +3,10 @@ package net.creeperhost.creeperlauncher.install;
 import net.creeperhost.creeperlauncher.api.WebSocketHandler;
 import net.creeperhost.creeperlauncher.api.data.instances.OperationProgressUpdateData;
 import net.creeperhost.creeperlauncher.install.tasks.TaskProgressListener;
+import net.creeperhost.creeperlauncher.util.ThroughputMeter;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by covers1624 on 18/8/23.
@@ -29,8 +31,7 @@ public class OperationProgressTracker {
 
     private long lastNonImportant = -1;
 
-    private long lastSpeedTime;
-    private long lastSpeedBytes;
+    private final ThroughputMeter throughput = new ThroughputMeter(2, TimeUnit.SECONDS);
 
     public OperationProgressTracker(String type, Map<String, String> meta) {
         this.type = type;
@@ -54,8 +55,8 @@ public class OperationProgressTracker {
         completedSteps = -1;
         currentBytes = 0;
         overallBytes = 0;
-        lastSpeedTime = 0;
-        lastSpeedBytes = 0;
+        speed = 0;
+        throughput.reset();
         sendUpdate(true);
     }
 
@@ -67,7 +68,7 @@ public class OperationProgressTracker {
         // @formatter:off
         return new TaskProgressListener() {
             @Override public void start(long total) { overallBytes = total; }
-            @Override public void update(long processed) { currentBytes = processed; sendUpdate(false); }
+            @Override public void update(long processed) { currentBytes = processed; throughput.sample(processed); sendUpdate(false); }
             @Override public void finish(long total) { }
         };
         // @formatter:on
@@ -90,13 +91,9 @@ public class OperationProgressTracker {
             lastNonImportant = -1;
         }
 
-        long speedTime = time / 1000L;
-        long dTime = speedTime - lastSpeedTime;
-        if (currentBytes > 0 &&  dTime > 0) {
-            speed = ((currentBytes - lastSpeedBytes) / dTime) * 8;
-
-            lastSpeedTime = speedTime;
-            lastSpeedBytes = currentBytes;
+        if (currentBytes > 0) {
+            // Bits per second.
+            speed = throughput.getRate() * 8;
         }
 
         WebSocketHandler.sendMessage(new OperationProgressUpdateData(
@@ -0,0 +1,242 @@
+package net.creeperhost.creeperlauncher.install.tasks;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.covers1624.quack.io.IOUtils;
+import net.covers1624.quack.net.HttpResponseException;
+import net.covers1624.quack.util.SneakyUtils.ThrowingConsumer;
+import net.creeperhost.creeperlauncher.Constants;
+import net.creeperhost.creeperlauncher.pack.CancellationToken;
+import okhttp3.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Downloads many small hash-addressed objects as a single task.
+ * <p>
+ * Rather than a {@link DownloadTask} per object, with its own temporary file, move and
+ * progress reporting, every object is requested asynchronously through a shared dispatcher,
+ * so requests are multiplexed over a few persistent connections. Responses are read into
+ * memory, hashed, and moved into place. Downloaded objects are added to the
+ * {@link LocalCache} in bulk once the batch finishes.
+ * <p>
+ * Like {@link DownloadTask}, objects are written to a temporary file and atomically moved
+ * to their destination, so an interrupted batch never leaves a partial object behind.
+ */
+public class AssetBatchDownloader implements Task {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("AssetBatchDownloader.debug");
+
+    /**
+     * Objects at or below this size are downloaded in a batch, anything larger should use a {@link DownloadTask}.
+     */
+    public static final long MAX_OBJECT_SIZE = Long.getLong("AssetBatchDownloader.maxObjectSize", 256 * 1024);
+
+    /**
+     * The maximum number of requests in flight at once.
+     */
+    private static final int MAX_REQUESTS = Integer.getInteger("AssetBatchDownloader.maxRequests", 64);
+
+    private static final int TRIES_PER_URL = 2;
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("Asset Batch %d")
+            .setDaemon(true)
+            .build()
+    );
+
+    private final List<BatchedObject> objects;
+    @Nullable
+    private final LocalCache localCache;
+    private final Consumer<BatchedObject> onDownloaded;
+
+    /**
+     * @param objects      The objects to download.
+     * @param localCache   The {@link LocalCache} to look up and insert objects into.
+     * @param onDownloaded Called for each object once it is written to disk. Called from multiple threads.
+     */
+    public AssetBatchDownloader(List<BatchedObject> objects, @Nullable LocalCache localCache, Consumer<BatchedObject> onDownloaded) {
+        this.objects = objects;
+        this.localCache = localCache;
+        this.onDownloaded = onDownloaded;
+    }
+
+    @Override
+    public void execute(@Nullable CancellationToken cancelToken, @Nullable TaskProgressListener listener) throws Throwable {
+        long total = objects.stream().mapToLong(BatchedObject::size).sum();
+        if (listener != null) {
+            listener.start(total);
+        }
+
+        Dispatcher dispatcher = new Dispatcher(EXECUTOR);
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS);
+        OkHttpClient client = Constants.httpClient().newBuilder()
+                .dispatcher(dispatcher)
+                .build();
+
+        Batch batch = new Batch(client);
+        for (BatchedObject object : objects) {
+            if (copyFromCache(object)) {
+                batch.completed(object);
+                continue;
+            }
+            batch.request(object, Constants.MIRROR_STATS.order(object.urls(), object.size()), 0);
+        }
+
+        while (!batch.latch.await(100, TimeUnit.MILLISECONDS)) {
+            if (cancelToken != null && cancelToken.isCanceled()) {
+                dispatcher.cancelAll();
+                cancelToken.throwIfCancelled();
+            }
+            if (listener != null) {
+                listener.update(batch.processed.get());
+            }
+        }
+        if (listener != null) {
+            listener.finish(batch.processed.get());
+        }
+
+        if (localCache != null && !batch.downloaded.isEmpty()) {
+            localCache.putAll(batch.downloaded);
+        }
+        if (DEBUG) {
+            LOGGER.info("Downloaded {} objects, {} failed.", batch.downloaded.size(), batch.failures.size());
+        }
+
+        if (!batch.failures.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<BatchedObject, Throwable> entry : batch.failures.entrySet()) {
+                sb.append("  ").append(entry.getKey().dest()).append(": ").append(entry.getValue()).append("\n");
+            }
+            DownloadFailedException ex = new DownloadFailedException("Failed to download " + batch.failures.size() + " objects.\n" + sb);
+            batch.failures.values().stream().limit(10).forEach(ex::addSuppressed);
+            throw ex;
+        }
+    }
+
+    private boolean copyFromCache(BatchedObject object) {
+        if (localCache == null) return false;
+
+        try {
+            if (!localCache.copyTo(object.sha1(), object.dest())) return false;
+            onDownloaded.accept(object);
+            return true;
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to copy {} from local cache.", object.sha1(), ex);
+            return false;
+        }
+    }
+
+    private static void writeAtomic(Path dest, ThrowingConsumer<Path, IOException> writer) throws IOException {
+        // Objects are hash-addressed, so two assets may share a destination. Keep temp files unique per writer.
+        Path tempFile = IOUtils.makeParents(dest.resolveSibling("__tmp_" + dest.getFileName() + "." + Thread.currentThread().getId()));
+        try {
+            writer.accept(tempFile);
+            Files.move(tempFile, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Files.deleteIfExists(tempFile);
+            throw ex;
+        }
+    }
+
+    private final class Batch {
+
+        private final OkHttpClient client;
+        private final CountDownLatch latch = new CountDownLatch(objects.size());
+        private final AtomicLong processed = new AtomicLong();
+        private final Map<HashCode, Path> downloaded = new ConcurrentHashMap<>();
+        private final Map<BatchedObject, Throwable> failures = new ConcurrentHashMap<>();
+
+        private Batch(OkHttpClient client) {
+            this.client = client;
+        }
+
+        private void request(BatchedObject object, List<String> urls, int attempt) {
+            String url = urls.get(attempt % urls.size());
+            Request request = new Request.Builder()
+                    .url(url)
+                    .build();
+            long start = System.nanoTime();
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onResponse(@NotNull Call call, @NotNull Response response) {
+                    try (response) {
+                        if (!response.isSuccessful()) throw new HttpResponseException(response.code(), response.message());
+                        ResponseBody body = response.body();
+                        if (body == null) throw new IOException("Got empty response body??");
+
+                        byte[] bytes = body.bytes();
+                        if (bytes.length != object.size()) {
+                            throw new IOException("Expected size: " + object.size() + " Got: " + bytes.length);
+                        }
+                        HashCode sha1 = Hashing.sha1().hashBytes(bytes);
+                        if (!sha1.equals(object.sha1())) {
+                            throw new IOException("Expected SHA1 hash: " + object.sha1() + " Got: " + sha1);
+                        }
+                        writeAtomic(object.dest(), tempFile -> Files.write(tempFile, bytes));
+                        Constants.MIRROR_STATS.recordResponse(url, System.nanoTime() - start);
+                    } catch (Throwable ex) {
+                        onFailure(call, ex instanceof IOException io ? io : new IOException(ex));
+                        return;
+                    }
+                    downloaded.put(object.sha1(), object.dest());
+                    onDownloaded.accept(object);
+                    completed(object);
+                }
+
+                @Override
+                public void onFailure(@NotNull Call call, @NotNull IOException ex) {
+                    if (call.isCanceled()) {
+                        fail(object, ex);
+                        return;
+                    }
+                    Constants.MIRROR_STATS.recordFailure(url);
+                    if (attempt + 1 < urls.size() * TRIES_PER_URL) {
+                        if (DEBUG) LOGGER.info("Retrying {} after failure.", object.dest(), ex);
+                        request(object, urls, attempt + 1);
+                        return;
+                    }
+                    fail(object, ex);
+                }
+            });
+        }
+
+        private void completed(BatchedObject object) {
+            processed.addAndGet(object.size());
+            latch.countDown();
+        }
+
+        private void fail(BatchedObject object, Throwable ex) {
+            failures.put(object, ex);
+            latch.countDown();
+        }
+    }
+
+    /**
+     * A hash-addressed object to download.
+     *
+     * @param sha1 The SHA1 hash of the object.
+     * @param size The size of the object.
+     * @param dest The destination on disk.
+     * @param urls The urls to download the object from, in order of preference.
+     */
+    public record BatchedObject(HashCode sha1, long size, Path dest, List<String> urls) { }
+}
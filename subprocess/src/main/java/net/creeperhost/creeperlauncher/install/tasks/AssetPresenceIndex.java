@@ -0,0 +1,168 @@
+package net.creeperhost.creeperlauncher.install.tasks;
+
+import com.google.common.hash.HashCode;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import net.covers1624.quack.gson.JsonUtils;
+import net.creeperhost.creeperlauncher.install.FileValidation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persisted record of asset objects which have been verified on disk.
+ * <p>
+ * Each entry records the size and modified time the object had when its hash was verified.
+ * An object is considered present if its size and modified time still match, which only
+ * requires reading file attributes. If they don't match, the object is re-verified by hashing
+ * it and the record is updated.
+ * <p>
+ * Created per assets directory, stored in <code>assets/.verified.json</code>.
+ */
+public class AssetPresenceIndex {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final Gson GSON = new Gson();
+    private static final Type TYPE = new TypeToken<Map<String, Entry>>() { }.getType();
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    private AssetPresenceIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the index for the given assets directory.
+     *
+     * @param assetsDir The assets directory.
+     * @return The index, empty if it did not exist or could not be read.
+     */
+    public static AssetPresenceIndex load(Path assetsDir) {
+        AssetPresenceIndex index = new AssetPresenceIndex(assetsDir.resolve(".verified.json"));
+        if (Files.exists(index.file)) {
+            try {
+                Map<String, Entry> entries = JsonUtils.parse(GSON, index.file, TYPE);
+                if (entries != null) {
+                    index.entries.putAll(entries);
+                }
+            } catch (IOException | JsonParseException ex) {
+                LOGGER.warn("Failed to load asset presence index. Assets will be re-verified.", ex);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Check if the given object is present and valid.
+     * <p>
+     * Objects with a matching record are checked by size and modified time only.
+     * Anything else is hashed, and recorded if it passes.
+     *
+     * @param hash       The hash of the object.
+     * @param object     The path of the object on disk.
+     * @param validation The validation for the object.
+     * @return If the object is present and valid.
+     */
+    public boolean isPresent(HashCode hash, Path object, FileValidation validation) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(object, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            invalidate(hash);
+            return false;
+        } catch (IOException ex) {
+            return false;
+        }
+
+        Entry entry = entries.get(hash.toString());
+        if (entry != null && entry.matches(attrs)) return true;
+
+        // Unknown or changed, verify it properly.
+        try {
+            if (!validation.validate(object)) {
+                invalidate(hash);
+                return false;
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+        put(hash, attrs);
+        return true;
+    }
+
+    /**
+     * Record that the given object has been verified, usually after downloading it.
+     *
+     * @param hash   The hash of the object.
+     * @param object The path of the object on disk.
+     */
+    public void markVerified(HashCode hash, Path object) {
+        try {
+            put(hash, Files.readAttributes(object, BasicFileAttributes.class));
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to read attributes of {}.", object, ex);
+        }
+    }
+
+    /**
+     * Remove the record for the given object, it will be hashed the next time it is checked.
+     *
+     * @param hash The hash of the object.
+     */
+    public void invalidate(HashCode hash) {
+        if (entries.remove(hash.toString()) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Remove all records, forcing every object to be hashed the next time it is checked.
+     */
+    public void clear() {
+        entries.clear();
+        dirty = true;
+    }
+
+    /**
+     * Save the index to disk, if it has changed.
+     */
+    public synchronized void save() {
+        if (!dirty) return;
+        try {
+            JsonUtils.write(GSON, file, new HashMap<>(entries), TYPE);
+            dirty = false;
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to save asset presence index.", ex);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void put(HashCode hash, BasicFileAttributes attrs) {
+        Entry entry = new Entry(attrs.size(), attrs.lastModifiedTime().toMillis());
+        if (!entry.equals(entries.put(hash.toString(), entry))) {
+            dirty = true;
+        }
+    }
+
+    private record Entry(long size, long mtime) {
+
+        public boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && mtime == attrs.lastModifiedTime().toMillis();
+        }
+    }
+}
@@ -2,6 +2,9 @@ package net.creeperhost.creeperlauncher.install.tasks;
 
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import net.covers1624.quack.gson.JsonUtils;
 import net.covers1624.quack.io.IOUtils;
 import net.covers1624.quack.net.HttpResponseException;
 import net.covers1624.quack.util.MultiHasher;
@@ -18,6 +21,7 @@ import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okio.*;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.logging.log4j.LogManager;
@@ -28,6 +32,8 @@ import org.jetbrains.annotations.Range;
 
 import javax.net.ssl.SSLException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -52,6 +58,13 @@ public class DownloadTask implements Task {
 
     private static final int DEFAULT_NUM_TRIES = 3;
 
+    /**
+     * How often the state of a resumable download is written to disk, in bytes.
+     */
+    private static final long CHECKPOINT_BYTES = 8 * 1024 * 1024;
+
+    private static final Gson GSON = new Gson();
+
     private final int tries;
     private final List<String> urls;
     private final Path dest;
@@ -62,6 +75,10 @@ public class DownloadTask implements Task {
     private final boolean tryCompanionHashes;
     private final boolean tryResumeDownload;
 
+    // The mirror the current request is being served by.
+    @Nullable
+    private String currentUrl;
+
     private DownloadTask(Builder builder) {
         if (builder.urls.isEmpty()) throw new IllegalStateException("URL not set.");
         if (builder.dest == null) throw new IllegalStateException("Dest not set.");
@@ -95,58 +112,43 @@ public class DownloadTask implements Task {
             return;
         }
 
-        if (fileLocator != null) {
-            Path localPath = fileLocator.getLocalFile(validation, dest);
-            if (localPath != null && Files.exists(localPath)) {
-                LOGGER.info(" File existed locally.");
-                Files.copy(localPath, IOUtils.makeParents(dest), StandardCopyOption.REPLACE_EXISTING);
-                if (progressListener != null) {
-                    long len = Files.size(dest);
-                    progressListener.start(len);
-                    progressListener.finish(len);
-                }
-                return;
+        if (fileLocator != null && fileLocator.copyLocalFile(validation, dest)) {
+            LOGGER.info(" File existed locally.");
+            if (progressListener != null) {
+                long len = Files.size(dest);
+                progressListener.start(len);
+                progressListener.finish(len);
             }
+            return;
+        }
+
+        if (tryCompanionHashes) {
+            tryCompanionHashes();
         }
 
         boolean success = false;
+        HashResult hashes = null;
         List<FailedDownloadAttempt> downloadAttempts = new LinkedList<>();
-        outer:
-        for (int urlIdx = 0; urlIdx < urls.size(); urlIdx++) {
-            String url = urls.get(urlIdx);
-            if (tryCompanionHashes) {
-                HashCode sha1 = tryGetCompanionHash(url, HashFunc.SHA1);
-                if (sha1 != null) {
-                    HashCode validationSha1 = validation.expectedHashes.get(HashFunc.SHA1);
-                    if (validationSha1 != null) {
-                        if (!sha1.equals(validationSha1)) {
-                            LOGGER.error("SHA1 companion to {} does not match Validation. Got: {}, Expected: {}", url, sha1, validationSha1);
-                        }
-                    } else {
-                        validation = validation.withHash(HashFunc.SHA1, sha1);
-                    }
-                }
-            }
-
-            for (int i = 0; i < tries; i++) {
-                try {
-                    doRequest(url, Constants.httpClient(), dest, validation, progressListener);
-                    success = true;
-                    break outer;
-                } catch (Throwable ex) {
-                    LOGGER.debug("HTTP/2, Download attempt failed. Attempt {}, URL {}.", i, url, ex);
-                    downloadAttempts.add(new FailedDownloadAttempt(url, urlIdx, i, ex, SSLUtils.getThreadCertificates()));
-                }
+        for (int i = 0; i < tries * 2; i++) {
+            boolean http1 = i >= tries;
+            if (i == tries) {
+                LOGGER.warn("Download failed {} times. Trying HTTP/1.1", tries);
             }
-            LOGGER.warn("Download failed 3 times. Trying HTTP/1.1");
-            for (int i = 0; i < tries; i++) {
-                try {
-                    doRequest(url, Constants.http1Client(), dest, validation, progressListener);
-                    success = true;
-                    break outer;
-                } catch (Throwable ex) {
-                    LOGGER.debug("HTTP/1.1 Download attempt failed. Attempt {}, URL {}.", i, url, ex);
-                    downloadAttempts.add(new FailedDownloadAttempt(url, urlIdx, i, ex, SSLUtils.getThreadCertificates()));
+            // Re-ordered every attempt, mirrors which just failed will be moved to the back.
+            List<String> candidates = Constants.MIRROR_STATS.order(urls, validation.expectedSize);
+            try {
+                hashes = doRequest(candidates, http1 ? Constants.http1Client() : Constants.httpClient(), dest, validation, hashFuncs(), progressListener);
+                success = true;
+                break;
+            } catch (Throwable ex) {
+                LOGGER.debug("{} Download attempt failed. Attempt {}, URLs {}.", http1 ? "HTTP/1.1" : "HTTP/2", i, candidates, ex);
+                if (ex instanceof MirrorRace.AllMirrorsFailedException allFailed) {
+                    for (Map.Entry<String, Throwable> entry : allFailed.getFailures().entrySet()) {
+                        downloadAttempts.add(new FailedDownloadAttempt(entry.getKey(), urls.indexOf(entry.getKey()), i, entry.getValue(), null));
+                    }
+                } else {
+                    String url = currentUrl != null ? currentUrl : candidates.get(0);
+                    downloadAttempts.add(new FailedDownloadAttempt(url, urls.indexOf(url), i, ex, SSLUtils.getThreadCertificates()));
                 }
             }
         }
@@ -171,7 +173,42 @@ public class DownloadTask implements Task {
         LOGGER.info("  File downloaded.");
 
         if (fileLocator != null) {
-            fileLocator.onFileDownloaded(validation, dest);
+            if (hashes != null) {
+                fileLocator.onFileDownloaded(validation, dest, hashes);
+            } else {
+                fileLocator.onFileDownloaded(validation, dest);
+            }
+        }
+    }
+
+    /**
+     * The hashes to compute whilst downloading.
+     * <p>
+     * Those required for validation, plus SHA1 if we have a {@link LocalFileLocator} to insert into.
+     */
+    private Set<HashFunc> hashFuncs() {
+        Set<HashFunc> funcs = EnumSet.noneOf(HashFunc.class);
+        funcs.addAll(validation.expectedHashes.keySet());
+        if (fileLocator != null) {
+            funcs.add(HashFunc.SHA1);
+        }
+        return funcs;
+    }
+
+    private void tryCompanionHashes() throws IOException {
+        for (String url : Constants.MIRROR_STATS.order(urls, validation.expectedSize)) {
+            HashCode sha1 = tryGetCompanionHash(url, HashFunc.SHA1);
+            if (sha1 == null) continue;
+
+            HashCode validationSha1 = validation.expectedHashes.get(HashFunc.SHA1);
+            if (validationSha1 != null) {
+                if (!sha1.equals(validationSha1)) {
+                    LOGGER.error("SHA1 companion to {} does not match Validation. Got: {}, Expected: {}", url, sha1, validationSha1);
+                }
+            } else {
+                validation = validation.withHash(HashFunc.SHA1, sha1);
+            }
+            return;
         }
     }
 
@@ -183,7 +220,7 @@ public class DownloadTask implements Task {
         Throwable fail = null;
         for (int i = 0; i < tries; i++) {
             try {
-                doRequest(url + ext, Constants.httpClient(), dest, DownloadValidation.of().withUseETag(true).withUseOnlyIfModified(true), null);
+                doRequest(List.of(url + ext), Constants.httpClient(), dest, DownloadValidation.of().withUseETag(true).withUseOnlyIfModified(true), Set.of(), null);
                 fail = null;
                 break;
             } catch (Throwable ex) {
@@ -202,23 +239,42 @@ public class DownloadTask implements Task {
         return HashCode.fromString(Files.readString(dest, StandardCharsets.UTF_8).trim());
     }
 
-    private void doRequest(String url, OkHttpClient httpClient, Path path, DownloadValidation validation, @Nullable TaskProgressListener progressListener) throws IOException {
+    /**
+     * Download the given url to the given path.
+     * <p>
+     * If multiple urls are provided, they are raced using {@link MirrorRace}, the
+     * first to respond serves the download.
+     * <p>
+     * The file is downloaded to a temporary file, hashed as it streams in, and only
+     * moved into place once it has passed validation.
+     *
+     * @return The hashes computed whilst downloading, or <code>null</code> if the file was not modified,
+     * or no hashes were required.
+     */
+    @Nullable
+    private HashResult doRequest(List<String> urls, OkHttpClient httpClient, Path path, DownloadValidation validation, Set<HashFunc> hashFuncs, @Nullable TaskProgressListener progressListener) throws IOException {
         Path tempFile = path.resolveSibling("__tmp_" + path.getFileName());
+        Path stateFile = path.resolveSibling("__tmp_" + path.getFileName() + ".resume");
         Path eTagFile = path.resolveSibling(path.getFileName() + ".etag");
 
+        StreamingHasher hasher = hashFuncs.isEmpty() ? null : new StreamingHasher(hashFuncs);
+        Date lastModifiedHeader = null;
+        String eTagHeader = null;
+        String url = urls.get(0);
+        currentUrl = null;
+
         boolean success = false;
         boolean readAnyBytes = false;
         int tries = 0;
         List<Throwable> downloadFailures = null;
         while (tries++ == 0 || !success && readAnyBytes && tries < 10) {
             readAnyBytes = false;
-            LOGGER.info("Trying to download from {}..", url);
+            LOGGER.info("Trying to download from {}..", urls.size() == 1 ? url : urls);
             if (tries > 1) {
                 LOGGER.info(" Resume try {}.", tries);
             }
 
             Request.Builder builder = new Request.Builder()
-                    .url(url)
                     .addHeader("User-Agent", Constants.USER_AGENT);
 
             if (validation.useETag && Files.exists(eTagFile)) {
@@ -239,24 +295,63 @@ public class DownloadTask implements Task {
             long existingSize = tempExists ? Files.size(tempFile) : -1;
             boolean tryResume = tryResumeDownload && tempExists;
 
+            PartialDownload existing = null;
+            if (tryResume) {
+                // Possibly left over from a previous run, only resume if the remote file is unchanged.
+                existing = PartialDownload.load(stateFile);
+                if (existing != null && existing.length() > existingSize) {
+                    // Shorter than our last checkpoint, this is not the file the state describes.
+                    LOGGER.warn(" Partial download {} is smaller than its last checkpoint, restarting.", tempFile);
+                    Files.delete(tempFile);
+                    Files.deleteIfExists(stateFile);
+                    existing = null;
+                    tryResume = false;
+                } else if (existing != null && existing.length() < existingSize) {
+                    // Anything written after the last checkpoint may not have made it to disk intact.
+                    try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                        channel.truncate(existing.length());
+                    }
+                    existingSize = existing.length();
+                }
+            }
             if (tryResume) {
                 builder.addHeader("Range", "bytes=" + existingSize + "-");
+                if (existing != null && urls.contains(existing.url())) {
+                    LOGGER.info(" Found partial download with {} bytes.", existingSize);
+                }
             }
+            PartialDownload resumeFrom = existing;
 
             if (DEBUG) {
-                LOGGER.info("Connecting to {}.", url);
+                LOGGER.info("Connecting to {}.", urls);
             }
 
-            try (Response response = httpClient.newCall(builder.build()).execute()) {
+            // Resume from the mirror we were already downloading from.
+            List<String> candidates = tries > 1 ? List.of(url) : urls;
+            long hedgeDelay = Constants.MIRROR_STATS.hedgeDelay(candidates.get(0), validation.expectedSize);
+            MirrorRace.Winner winner = MirrorRace.race(httpClient, candidates, u -> {
+                builder.url(u).removeHeader("If-Range");
+                // Validators are only meaningful to the mirror they came from.
+                String ifRange = resumeFrom != null && resumeFrom.url().equals(u) ? resumeFrom.ifRange() : null;
+                if (ifRange != null) {
+                    builder.header("If-Range", ifRange);
+                }
+                return builder.build();
+            }, hedgeDelay, Constants.MIRROR_STATS);
+            url = winner.url();
+            currentUrl = url;
+
+            try (Response response = winner.response()) {
                 int code = response.code();
                 validation.validateResponseCode(code, response.message());
 
-                Date lastModifiedHeader = response.headers().getDate("Last-Modified");
+                lastModifiedHeader = response.headers().getDate("Last-Modified");
                 if (validation.validateNotModified(url, code, lastModified, lastModifiedHeader)) {
                     LOGGER.info("  File passed ETag/OnlyIfModified checks.");
                     // We validated ETag/OnlyIfModified
-                    return;
+                    return null;
                 }
+                eTagHeader = response.header("ETag");
 
                 ResponseBody body = response.body();
                 if (body == null) {
@@ -264,6 +359,17 @@ public class DownloadTask implements Task {
                 }
 
                 boolean isPartial = code == HTTP_PARTIAL;
+                if (isPartial && !checkContentRange(response.header("Content-Range"), existingSize)) {
+                    Files.deleteIfExists(tempFile);
+                    Files.deleteIfExists(stateFile);
+                    throw new IOException("Server responded with unexpected Content-Range '" + response.header("Content-Range") + "' for offset " + existingSize);
+                }
+
+                PartialDownload partial = null;
+                if (tryResumeDownload) {
+                    partial = new PartialDownload(url, eTagHeader, response.header("Last-Modified"), isPartial ? existingSize : 0);
+                    partial.save(stateFile);
+                }
 
                 long totalLen = body.contentLength();
                 if (isPartial) {
@@ -285,21 +391,42 @@ public class DownloadTask implements Task {
                 if (progressListener != null) {
                     s = new ProgressSource(s, progressListener);
                 }
+                if (hasher != null) {
+                    if (isPartial) {
+                        hasher.resume(tempFile, existingSize);
+                    } else {
+                        hasher.reset();
+                    }
+                    s = hasher.wrap(s);
+                }
 
                 boolean deleteFile = false;
                 try (Source source = s) {
                     Path output = IOUtils.makeParents(tempFile);
                     try (BufferedSink sink = Okio.buffer(isPartial ? Okio.sink(output, StandardOpenOption.WRITE, StandardOpenOption.APPEND) : Okio.sink(output))) {
+                        long written = isPartial ? existingSize : 0;
+                        long bodyStart = System.nanoTime();
+                        long bodyStartLen = written;
+                        long nextCheckpoint = written + CHECKPOINT_BYTES;
                         long read;
                         while (true) {
                             read = source.read(sink.getBuffer(), 8192);
                             readAnyBytes = true;
                             if (read == -1) break;
+                            written += read;
                             sink.emitCompleteSegments();
+                            if (partial != null && written >= nextCheckpoint) {
+                                sink.flush();
+                                partial = partial.withLength(written);
+                                partial.save(stateFile);
+                                nextCheckpoint = written + CHECKPOINT_BYTES;
+                            }
                         }
                         success = true;
+                        Constants.MIRROR_STATS.recordTransfer(url, written - bodyStartLen, System.nanoTime() - bodyStart);
                     }
                 } catch (IOException ex) {
+                    Constants.MIRROR_STATS.recordFailure(url);
                     // If we aren't in resume mode, or we tried to resume and did not get 206 partial. Just bonk out.
                     if (!tryResumeDownload || !isPartial && tries > 1) {
                         deleteFile = true;
@@ -325,19 +452,13 @@ public class DownloadTask implements Task {
                         
                         LOGGER.info("Finished[{}]; Success[{}]; Remote Cache[{}]", url, success, noCacheHeadersFound ? "Unknown" : hitKnownCache);
                     }
-                    if (success) {
-                        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
-                    } else if (deleteFile) {
+                    if (deleteFile) {
                         Files.deleteIfExists(tempFile);
+                        Files.deleteIfExists(stateFile);
+                    } else if (!success && partial != null && Files.exists(tempFile)) {
+                        partial.withLength(Files.size(tempFile)).save(stateFile);
                     }
                 }
-                if (validation.useOnlyIfModified && lastModifiedHeader != null) {
-                    Files.setLastModifiedTime(path, FileTime.fromMillis(lastModifiedHeader.getTime()));
-                }
-                String eTagHeader = response.header("ETag");
-                if (validation.useETag && eTagHeader != null) {
-                    Files.writeString(IOUtils.makeParents(eTagFile), eTagHeader, StandardCharsets.UTF_8);
-                }
             }
         }
 
@@ -347,19 +468,60 @@ public class DownloadTask implements Task {
                 ex.addSuppressed(failure);
             }
             Files.delete(tempFile);
+            Files.deleteIfExists(stateFile);
             throw ex;
         }
 
-        validateDownload(url, path, validation);
+        HashResult hashes = hasher != null ? hasher.finish() : null;
+        try {
+            validateDownload(url, tempFile, validation, hashes);
+        } catch (IOException ex) {
+            Constants.MIRROR_STATS.recordFailure(url);
+            Files.deleteIfExists(tempFile);
+            throw ex;
+        } finally {
+            Files.deleteIfExists(stateFile);
+        }
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (validation.useOnlyIfModified && lastModifiedHeader != null) {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(lastModifiedHeader.getTime()));
+        }
+        if (validation.useETag && eTagHeader != null) {
+            Files.writeString(IOUtils.makeParents(eTagFile), eTagHeader, StandardCharsets.UTF_8);
+        }
+        return hashes;
     }
 
-    private static void validateDownload(String url, Path dest, DownloadValidation validation) throws IOException {
-        HashResult result = hash(dest, validation);
-        if (!validation.validate(dest, result)) {
+    // Content-Range: bytes <start>-<end>/<total>
+    private static boolean checkContentRange(@Nullable String contentRange, long expectedStart) {
+        // Not all servers send Content-Range, we rely on validation to catch these.
+        if (contentRange == null) return true;
+        if (!contentRange.startsWith("bytes ")) return false;
+
+        int dash = contentRange.indexOf('-');
+        if (dash == -1) return false;
+        return NumberUtils.toLong(contentRange.substring(6, dash).trim(), -1) == expectedStart;
+    }
+
+    /**
+     * Gets the name of the file a download temporary file is for.
+     *
+     * @param tempName The name of the temporary file, or its resume state file.
+     * @return The name of the file being downloaded, or <code>null</code> if the name is not a download temporary file.
+     */
+    @Nullable
+    public static String getTempFileTarget(String tempName) {
+        if (!tempName.startsWith("__tmp_")) return null;
+        return StringUtils.removeEnd(tempName.substring(6), ".resume");
+    }
+
+    private static void validateDownload(String url, Path file, DownloadValidation validation, @Nullable HashResult result) throws IOException {
+        if (!validation.validate(file, result)) {
             StringBuilder reason = new StringBuilder();
             // Validate will return false when both expectedSize and expectedHash are missing.
             if (validation.expectedSize != -1) {
-                long size = Files.size(dest);
+                long size = Files.size(file);
                 if (validation.expectedSize != size) {
                     reason.append("Expected size: ").append(validation.expectedSize).append(" Got: ").append(size);
                 }
@@ -375,20 +537,10 @@ public class DownloadTask implements Task {
                     }
                 }
             }
-            throw new IOException("Downloaded file '" + url + "'(" + dest + ") failed validation. " + reason);
+            throw new IOException("Downloaded file '" + url + "'(" + file + ") failed validation. " + reason);
         }
     }
 
-    @Nullable
-    @Deprecated // Might be redundant now, can probably go back to using the interceptor.
-    private static HashResult hash(Path dest, DownloadValidation validation) throws IOException {
-        if (validation.expectedHashes.isEmpty()) return null;
-
-        MultiHasher hasher = new MultiHasher(validation.expectedHashes.keySet());
-        hasher.load(dest);
-        return hasher.finish();
-    }
-
     /**
      * Checks if this {@link DownloadTask} would do anything if executed.
      *
@@ -407,6 +559,7 @@ public class DownloadTask implements Task {
 
     //@formatter:off
     public String getUrl() { return urls.get(0); } // TODO REMOVE THIS
+    public List<String> getUrls() { return Collections.unmodifiableList(urls); }
     public Path getDest() { return dest; }
     public DownloadValidation getValidation() { return validation; }
     @Nullable public LocalFileLocator getFileLocator() { return fileLocator; }
@@ -517,7 +670,36 @@ public class DownloadTask implements Task {
         @Nullable
         Path getLocalFile(FileValidation validation, Path dest);
 
+        /**
+         * Copies the local file for the given validation to the destination, if one exists.
+         *
+         * @param validation The validation of the file being downloaded.
+         * @param dest       The download destination.
+         * @return If a local file was found and copied.
+         * @throws IOException If the copy failed.
+         */
+        default boolean copyLocalFile(FileValidation validation, Path dest) throws IOException {
+            Path localPath = getLocalFile(validation, dest);
+            if (localPath == null || Files.notExists(localPath)) return false;
+
+            Files.copy(localPath, IOUtils.makeParents(dest), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        }
+
         void onFileDownloaded(FileValidation validation, Path dest);
+
+        /**
+         * Called when a file has been downloaded, with the hashes computed whilst it was downloaded.
+         * <p>
+         * Always contains {@link HashFunc#SHA1}.
+         *
+         * @param validation The validation the file passed.
+         * @param dest       The downloaded file.
+         * @param hashes     The hashes of the file.
+         */
+        default void onFileDownloaded(FileValidation validation, Path dest, HashResult hashes) {
+            onFileDownloaded(validation, dest);
+        }
     }
 
     /**
@@ -648,6 +830,52 @@ public class DownloadTask implements Task {
         }
     }
 
+    /**
+     * The persisted state of a resumable download, stored next to its temporary file.
+     * <p>
+     * The hash state is not stored, the partial file is re-hashed from disk when resuming.
+     *
+     * @param url          The url being downloaded.
+     * @param eTag         The ETag of the response, if any.
+     * @param lastModified The Last-Modified header of the response, if any.
+     * @param length       The number of bytes written to the temporary file at the last checkpoint.
+     *                     Resuming never trusts bytes past this point.
+     */
+    private record PartialDownload(String url, @Nullable String eTag, @Nullable String lastModified, long length) {
+
+        @Nullable
+        public static PartialDownload load(Path file) {
+            if (Files.notExists(file)) return null;
+            try {
+                return JsonUtils.parse(GSON, file, PartialDownload.class);
+            } catch (IOException | JsonParseException ex) {
+                LOGGER.warn("Failed to read partial download state {}.", file, ex);
+                return null;
+            }
+        }
+
+        public void save(Path file) {
+            try {
+                JsonUtils.write(GSON, file, this, PartialDownload.class);
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to write partial download state {}.", file, ex);
+            }
+        }
+
+        public PartialDownload withLength(long length) {
+            return new PartialDownload(url, eTag, lastModified, length);
+        }
+
+        /**
+         * @return The validator to send as <code>If-Range</code>, or <code>null</code> if there is no strong validator.
+         */
+        @Nullable
+        public String ifRange() {
+            if (eTag != null && !eTag.startsWith("W/")) return eTag;
+            return lastModified;
+        }
+    }
+
     private record FailedDownloadAttempt(String url, int urlIndex, int tryNum, Throwable ex, @Nullable X509Certificate[] certs) {
 
         public String formatException() {
@@ -675,6 +903,62 @@ public class DownloadTask implements Task {
         }
     }
 
+    /**
+     * Hashes bytes as they are read from a {@link Source}.
+     * <p>
+     * The hash state is kept between resume attempts, so a resumed download
+     * does not need to re-read what it already has.
+     */
+    private static final class StreamingHasher {
+
+        private final Set<HashFunc> funcs;
+        private MultiHasher hasher;
+        private long length;
+
+        private StreamingHasher(Set<HashFunc> funcs) {
+            this.funcs = funcs;
+            hasher = new MultiHasher(funcs);
+        }
+
+        public void reset() {
+            hasher = new MultiHasher(funcs);
+            length = 0;
+        }
+
+        public void resume(Path partial, long size) throws IOException {
+            if (length == size) return;
+
+            // We don't have the state for the existing partial file, it must be hashed from disk.
+            reset();
+            hasher.load(partial);
+            length = size;
+        }
+
+        public Source wrap(Source delegate) {
+            OutputStream out = new OutputStream() {
+                //@formatter:off
+                @Override public void write(int b) { hasher.update(new byte[] { (byte) b }, 0, 1); }
+                @Override public void write(byte[] b, int off, int len) { hasher.update(b, off, len); }
+                //@formatter:on
+            };
+            return new ForwardingSource(delegate) {
+                @Override
+                public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                    long len = super.read(sink, byteCount);
+                    if (len > 0) {
+                        sink.copyTo(out, sink.size() - len, len);
+                        length += len;
+                    }
+                    return len;
+                }
+            };
+        }
+
+        public HashResult finish() {
+            return hasher.finish();
+        }
+    }
+
     private static class ProgressSource extends ForwardingSource {
 
         private final TaskProgressListener listener;
@@ -1,12 +1,16 @@
 package net.creeperhost.creeperlauncher.install.tasks;
 
+import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
+import net.covers1624.quack.util.MultiHasher.HashFunc;
 import net.creeperhost.creeperlauncher.Constants;
+import net.creeperhost.creeperlauncher.CreeperLauncher;
 import net.creeperhost.creeperlauncher.install.tasks.DownloadTask.DownloadValidation;
 import net.creeperhost.creeperlauncher.minecraft.jsons.AssetIndexManifest;
 import net.creeperhost.creeperlauncher.minecraft.jsons.VersionManifest;
 import net.creeperhost.creeperlauncher.pack.CancellationToken;
-import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
@@ -23,13 +27,30 @@ import static net.creeperhost.creeperlauncher.Constants.MC_RESOURCES_MIRROR;
  */
 public class InstallAssetsTask implements Task {
 
+    private static final Logger LOGGER = LogManager.getLogger();
+
     private final List<DownloadTask> subTasks;
     private final AssetIndexManifest manifest;
+    private final AssetPresenceIndex presenceIndex;
 
     public InstallAssetsTask(VersionManifest.AssetIndex assetIndex) throws IOException {
-        Pair<AssetIndexManifest, List<DownloadTask>> pair = buildTaskList(assetIndex);
-        subTasks = pair.getValue();
-        manifest = pair.getKey();
+        this(assetIndex, false);
+    }
+
+    /**
+     * @param assetIndex The asset index to install.
+     * @param verify     If every asset object should be hashed, instead of trusting the {@link AssetPresenceIndex}.
+     */
+    public InstallAssetsTask(VersionManifest.AssetIndex assetIndex, boolean verify) throws IOException {
+        Path assetsDir = Constants.BIN_LOCATION.resolve("assets");
+        presenceIndex = AssetPresenceIndex.load(assetsDir);
+        if (verify) {
+            presenceIndex.clear();
+        }
+        manifest = AssetIndexManifest.update(assetsDir, assetIndex);
+        subTasks = buildTaskList(assetsDir.resolve("objects"), manifest, presenceIndex);
+        // Persist anything verified whilst building the task list.
+        presenceIndex.save();
     }
 
     @Override
@@ -44,7 +65,29 @@ public class InstallAssetsTask implements Task {
             progressAggregator = new ParallelTaskProgressAggregator(listener);
         }
 
-        ParallelTaskHelper.executeInParallel(token, Task.TASK_POOL, subTasks, progressAggregator);
+        List<Task> tasks = new ArrayList<>();
+        List<AssetBatchDownloader.BatchedObject> batched = new ArrayList<>();
+        for (DownloadTask subTask : subTasks) {
+            HashCode sha1 = subTask.getValidation().expectedHashes.get(HashFunc.SHA1);
+            long size = subTask.getValidation().expectedSize;
+            if (size <= AssetBatchDownloader.MAX_OBJECT_SIZE) {
+                batched.add(new AssetBatchDownloader.BatchedObject(sha1, size, subTask.getDest(), subTask.getUrls()));
+                continue;
+            }
+            tasks.add((t, l) -> {
+                subTask.execute(t, l);
+                presenceIndex.markVerified(sha1, subTask.getDest());
+            });
+        }
+        if (!batched.isEmpty()) {
+            // Small objects are cheap to transfer, but expensive to handle one at a time.
+            tasks.add(0, new AssetBatchDownloader(batched, CreeperLauncher.localCache, e -> presenceIndex.markVerified(e.sha1(), e.dest())));
+        }
+        try {
+            ParallelTaskHelper.executeInParallel(token, Task.TASK_POOL, tasks, progressAggregator);
+        } finally {
+            presenceIndex.save();
+        }
 
         if (listener != null) {
             listener.finish(progressAggregator.getProcessed());
@@ -62,15 +105,12 @@ public class InstallAssetsTask implements Task {
     /**
      * Build a linked list of tasks to Download/Update minecraft assets.
      *
-     * @param assetIndex The asset index to download.
+     * @param objectsDir    The assets objects directory.
+     * @param manifest      The asset index to download.
+     * @param presenceIndex The {@link AssetPresenceIndex} used to skip objects already on disk.
      * @return The list of tasks.
      */
-    private static Pair<AssetIndexManifest, List<DownloadTask>> buildTaskList(VersionManifest.AssetIndex assetIndex) throws IOException {
-        Path assetsDir = Constants.BIN_LOCATION.resolve("assets");
-        AssetIndexManifest manifest = AssetIndexManifest.update(assetsDir, assetIndex);
-
-        Path objectsDir = assetsDir.resolve("objects");
-
+    static List<DownloadTask> buildTaskList(Path objectsDir, AssetIndexManifest manifest, AssetPresenceIndex presenceIndex) {
         Set<Path> seen = new HashSet<>();
         List<DownloadTask> tasks = new LinkedList<>();
         for (Map.Entry<String, AssetIndexManifest.AssetObject> entry : manifest.objects.entrySet()) {
@@ -83,6 +123,11 @@ public class InstallAssetsTask implements Task {
             // this causes duplicate tasks to be added.
             if (!seen.add(dest)) continue;
 
+            DownloadValidation validation = DownloadValidation.of()
+                    .withExpectedSize(object.getSize())
+                    .withHash(Hashing.sha1(), object.getHash());
+            if (presenceIndex.isPresent(object.getHash(), dest, validation)) continue;
+
             DownloadTask task = DownloadTask.builder()
                     .url(MC_RESOURCES + loc)
                     // TODO This is very temporary. We keep getting download failures on larger assets for no reason.
@@ -91,17 +136,14 @@ public class InstallAssetsTask implements Task {
                     .withMirror(MC_RESOURCES_MIRROR + loc)
                     .dest(dest)
                     .tryResumeDownload()
-                    .withValidation(DownloadValidation.of()
-                            .withExpectedSize(object.getSize())
-                            .withHash(Hashing.sha1(), object.getHash())
-                    )
+                    .withValidation(validation)
                     .build();
-            if (!task.isRedundant()) {
-                tasks.add(task);
-            }
+            tasks.add(task);
         }
-
-        return Pair.of(manifest, tasks);
+        if (!tasks.isEmpty()) {
+            LOGGER.info("{} of {} asset objects need downloading.", tasks.size(), seen.size());
+        }
+        return tasks;
     }
 
 }
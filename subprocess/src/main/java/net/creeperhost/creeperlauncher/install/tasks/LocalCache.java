@@ -7,8 +7,10 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 import net.covers1624.quack.gson.HashCodeAdapter;
 import net.covers1624.quack.gson.JsonUtils;
+import net.covers1624.quack.io.IOUtils;
 import net.covers1624.quack.util.HashUtils;
 import net.covers1624.quack.util.MultiHasher.HashFunc;
+import net.covers1624.quack.util.MultiHasher.HashResult;
 import net.creeperhost.creeperlauncher.install.FileValidation;
 import net.creeperhost.creeperlauncher.storage.settings.Settings;
 import net.creeperhost.creeperlauncher.util.FileUtils;
@@ -21,14 +23,11 @@ import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.FileTime;
-import java.time.Duration;
-import java.time.Instant;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 @SuppressWarnings ({ "deprecation", "UnstableApiUsage" })
 public class LocalCache implements DownloadTask.LocalFileLocator {
@@ -38,19 +37,62 @@ public class LocalCache implements DownloadTask.LocalFileLocator {
             .registerTypeAdapter(HashCode.class, new HashCodeAdapter())
             .create();
     private static final Type SET_TYPE = new TypeToken<Set<HashCode>>() { }.getType();
+    private static final Type ACCESS_TYPE = new TypeToken<Map<HashCode, AccessRecord>>() { }.getType();
+
+    /**
+     * How often access times are written to disk when files are only being read from the cache.
+     */
+    private static final long ACCESS_SAVE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * When the cache exceeds its maximum size, files are evicted until it is below this fraction of it.
+     * Evicting a little extra stops every subsequent insert from triggering another eviction.
+     */
+    private static final double EVICT_TO = 0.9;
 
     private final Path cacheLocation;
     private final Path cacheIndexFile;
+    private final Path accessIndexFile;
+    private final LongSupplier maxSize;
+    private final LongSupplier clock;
     private final Set<HashCode> files = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // We track our own access times, filesystem atime is frequently disabled or coarse.
+    private final Map<HashCode, AccessRecord> access = new ConcurrentHashMap<>();
+    private final AtomicLong totalSize = new AtomicLong();
+    // Entries currently being copied out of the cache, and how many times. Never evicted. Guarded by the files lock.
+    private final Map<HashCode, Integer> reading = new HashMap<>();
     private boolean isDirty = false;
+    private volatile boolean accessDirty = false;
+    private volatile long lastAccessSave;
 
     public LocalCache(Path cacheLocation) {
+        this(cacheLocation, () -> Settings.getSettings().general().cacheMaxSize(), System::currentTimeMillis);
+    }
+
+    /**
+     * @param cacheLocation The directory to store the cache in.
+     * @param maxSize       The maximum size of the cache in bytes, <code>0</code> or less for unlimited.
+     * @param clock         The source of access times, in milliseconds.
+     */
+    LocalCache(Path cacheLocation, LongSupplier maxSize, LongSupplier clock) {
         this.cacheLocation = cacheLocation;
+        this.maxSize = maxSize;
+        this.clock = clock;
         if (FileUtils.createDirectories(cacheLocation) == null || !Files.exists(cacheLocation)) {
             LOGGER.error("Unable to create instance directory");
         }
 
         cacheIndexFile = cacheLocation.resolve("index.json");
+        accessIndexFile = cacheLocation.resolve("access.json");
+
+        Map<HashCode, AccessRecord> accessIndex = Map.of();
+        if (Files.exists(accessIndexFile)) {
+            try {
+                accessIndex = JsonUtils.parse(GSON, accessIndexFile, ACCESS_TYPE);
+            } catch (Throwable e) {
+                LOGGER.error("Failed to load cache access index.", e);
+            }
+        }
 
         if (Files.exists(cacheIndexFile)) {
             try {
@@ -63,6 +105,14 @@ public class LocalCache implements DownloadTask.LocalFileLocator {
                         continue;
                     }
                     files.add(hash);
+                    AccessRecord record = accessIndex.get(hash);
+                    if (record == null) {
+                        // Cached before access was tracked, or the access index was lost.
+                        record = new AccessRecord(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                        accessDirty = true;
+                    }
+                    access.put(hash, record);
+                    totalSize.addAndGet(record.size());
                 }
             } catch (Throwable e) {
                 LOGGER.error("Failed to load cache index.", e);
@@ -83,6 +133,8 @@ public class LocalCache implements DownloadTask.LocalFileLocator {
 
     /**
      * Gets the path for a given Hash.
+     * <p>
+     * The file may be evicted at any time after this returns, prefer {@link #copyTo}.
      *
      * @param hash The hash.
      * @return The path or null.
@@ -96,15 +148,51 @@ public class LocalCache implements DownloadTask.LocalFileLocator {
         if (Files.notExists(file)) {//Should never happen.
             LOGGER.warn("Removing stale cache entry for {}:{}", hash, file);
             synchronized (files) {
-                files.remove(hash);
-                isDirty = true;
+                remove(hash);
                 save();
             }
             return null;
         }
+        touch(hash);
         return file;
     }
 
+    /**
+     * Copies the file for a given Hash out of the cache.
+     * <p>
+     * The entry can not be evicted whilst it is being copied, and the destination
+     * is replaced atomically, so it is never left partially written.
+     *
+     * @param hash The hash.
+     * @param dest The file to copy to.
+     * @return If the file was in the cache and has been copied.
+     * @throws IOException If the copy failed.
+     */
+    public boolean copyTo(HashCode hash, Path dest) throws IOException {
+        synchronized (files) {
+            if (!files.contains(hash)) return false;
+            reading.merge(hash, 1, Integer::sum);
+        }
+        try {
+            Path file = get(hash);
+            if (file == null) return false;
+
+            Path tempFile = IOUtils.makeParents(dest.resolveSibling("__tmp_" + dest.getFileName() + "." + Thread.currentThread().getId()));
+            try {
+                Files.copy(file, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tempFile, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                Files.deleteIfExists(tempFile);
+                throw ex;
+            }
+            return true;
+        } finally {
+            synchronized (files) {
+                reading.computeIfPresent(hash, (k, v) -> v == 1 ? null : v - 1);
+            }
+        }
+    }
+
     /**
      * Adds a file to the cache.
      *
@@ -113,6 +201,25 @@ public class LocalCache implements DownloadTask.LocalFileLocator {
      * @throws IllegalArgumentException If an SHA1 hash was not provided.
      */
     public void put(Path f, HashCode hash) throws IllegalArgumentException {
+        put(f, hash, true);
+    }
+
+    /**
+     * Adds many files to the cache, saving the index once at the end.
+     *
+     * @param toAdd The files to add, keyed by their SHA1 hash.
+     * @throws IllegalArgumentException If an SHA1 hash was not provided.
+     */
+    public void putAll(Map<HashCode, Path> toAdd) throws IllegalArgumentException {
+        for (Map.Entry<HashCode, Path> entry : toAdd.entrySet()) {
+            put(entry.getValue(), entry.getKey(), false);
+        }
+        synchronized (files) {
+            save();
+        }
+    }
+
+    private void put(Path f, HashCode hash, boolean save) throws IllegalArgumentException {
         if (hash.bits() != 160) throw new IllegalArgumentException("SHA1 hash not provided.");
         if (Files.notExists(f)) return;// File doesn't exist.
         if (files.contains(hash)) return;// File already cached.
@@ -139,7 +246,7 @@ public class LocalCache implements DownloadTask.LocalFileLocator {
                 }
 
                 // Well, the file exists, size and hash match, just add.
-                addAndSave(hash);
+                add(hash, file, save);
             } catch (IOException ex) {
                 LOGGER.error("Failed to do LocalStorage.add pre-checks.", ex);
             }
@@ -159,81 +266,139 @@ public class LocalCache implements DownloadTask.LocalFileLocator {
             }
             Files.createDirectories(file.getParent());
             Files.copy(f, file, StandardCopyOption.REPLACE_EXISTING);
-            addAndSave(hash);
+            add(hash, file, save);
         } catch (IOException e) {
             LOGGER.error("Failed to add '{}' to local cache.", f.toAbsolutePath(), e);
         }
     }
 
-    private void addAndSave(HashCode hash) {
+    private void add(HashCode hash, Path file, boolean save) throws IOException {
+        long size = Files.size(file);
         synchronized (files) {
             files.add(hash);
+            AccessRecord prev = access.put(hash, new AccessRecord(size, clock.getAsLong()));
+            totalSize.addAndGet(size - (prev != null ? prev.size() : 0));
             isDirty = true;
-            save();
+            accessDirty = true;
+            evictToSize();
+            if (save) {
+                save();
+            }
         }
     }
 
+    private void touch(HashCode hash) {
+        long now = clock.getAsLong();
+        synchronized (files) {
+            // May have been evicted since it was looked up, don't resurrect it.
+            if (access.computeIfPresent(hash, (k, record) -> new AccessRecord(record.size(), now)) == null) return;
+
+            accessDirty = true;
+            if (now - lastAccessSave > ACCESS_SAVE_INTERVAL) {
+                save();
+            }
+        }
+    }
+
+    // Must hold the files lock.
+    private void remove(HashCode hash) {
+        files.remove(hash);
+        AccessRecord record = access.remove(hash);
+        if (record != null) {
+            totalSize.addAndGet(-record.size());
+        }
+        isDirty = true;
+        accessDirty = true;
+    }
+
     /**
-     * Removes any files that are too old from the cache.
+     * Evicts the least recently used files until the cache is under its maximum size.
+     * <p>
+     * Must hold the files lock.
+     */
+    private void evictToSize() {
+        long max = maxSize.getAsLong();
+        if (max <= 0 || totalSize.get() <= max) return;
+
+        long target = (long) (max * EVICT_TO);
+        List<Map.Entry<HashCode, AccessRecord>> entries = new ArrayList<>(access.entrySet());
+        entries.sort(Comparator.comparingLong(e -> e.getValue().lastAccess()));
+        int evicted = 0;
+        for (Map.Entry<HashCode, AccessRecord> entry : entries) {
+            if (totalSize.get() <= target) break;
+            if (reading.containsKey(entry.getKey())) continue;
+            try {
+                Files.deleteIfExists(cacheLocation.resolve(makePath(entry.getKey())));
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to evict {} from cache.", entry.getKey(), ex);
+                continue;
+            }
+            remove(entry.getKey());
+            evicted++;
+        }
+        LOGGER.info("Evicted {} files from cache. Cache is now {} bytes of {} maximum.", evicted, totalSize.get(), max);
+    }
+
+    /**
+     * @return The total size of all files in the cache, in bytes.
+     */
+    public long getSize() {
+        return totalSize.get();
+    }
+
+    /**
+     * Removes any files that have not been used within the cache life,
+     * then evicts the least recently used files if the cache is over its maximum size.
      */
     public void clean() {
         long cacheLife = Settings.getSettings().general().cacheLife();
         if (cacheLife < 0) cacheLife = 900L;
         synchronized (files) {
-            Instant now = Instant.now();
-            for (Iterator<HashCode> iterator = files.iterator(); iterator.hasNext(); ) {
-                HashCode hash = iterator.next();
-                String path = makePath(hash);
-                Path file = cacheLocation.resolve(path);
-                if (shouldPurge(file, now, cacheLife)) {
-                    try {
-                        isDirty = true;
-                        Files.deleteIfExists(file);
-                        iterator.remove();
-                    } catch (IOException ignored) {
-                    }
+            long now = clock.getAsLong();
+            for (Map.Entry<HashCode, AccessRecord> entry : new ArrayList<>(access.entrySet())) {
+                long age = now - entry.getValue().lastAccess();
+                if (age / 1000 <= cacheLife || reading.containsKey(entry.getKey())) continue;
+                try {
+                    Files.deleteIfExists(cacheLocation.resolve(makePath(entry.getKey())));
+                    remove(entry.getKey());
+                } catch (IOException ignored) {
                 }
             }
+            evictToSize();
             save();
         }
     }
 
     /**
-     * Flushes the Cache index to disk if it has been marked as dirty.
+     * Flushes the Cache index and access times to disk, if they have changed.
      */
-    private void save() {
-        if (!isDirty) return;
-
-        try {
-            JsonUtils.write(GSON, cacheIndexFile, files, SET_TYPE);
-        } catch (IOException e) {
-            LOGGER.error("Failed to save cache index.", e);
+    public void flush() {
+        synchronized (files) {
+            save();
         }
     }
 
     /**
-     * Checks if the given file should be purged from the Cache.
-     *
-     * @param file      The file to check.
-     * @param now       The time right now.
-     * @param cacheLife The maximum age of a file.
-     * @return If the file should be purged.
+     * Flushes the Cache index to disk if it has been marked as dirty.
      */
-    private boolean shouldPurge(Path file, Instant now, long cacheLife) {
-        if (Files.notExists(file)) {
-            return true;
+    private void save() {
+        if (isDirty) {
+            try {
+                JsonUtils.write(GSON, cacheIndexFile, files, SET_TYPE);
+                isDirty = false;
+            } catch (IOException e) {
+                LOGGER.error("Failed to save cache index.", e);
+            }
         }
-        BasicFileAttributes attrs;
-        try {
-            attrs = Files.readAttributes(file, BasicFileAttributes.class);
-        } catch (IOException e) {
-            LOGGER.warn("Unable to load attributes of file. {}", file.toAbsolutePath(), e);
-            return true;
+        if (accessDirty) {
+            try {
+                JsonUtils.write(GSON, accessIndexFile, new HashMap<>(access), ACCESS_TYPE);
+                accessDirty = false;
+                lastAccessSave = clock.getAsLong();
+            } catch (IOException e) {
+                LOGGER.error("Failed to save cache access index.", e);
+            }
         }
-        FileTime time = attrs.lastAccessTime();
-        if (time == null) time = attrs.creationTime();
-        Duration age = Duration.between(time.toInstant(), now);
-        return !age.isNegative() && (age.toMillis() / 1000) > cacheLife;
     }
 
     /**
@@ -261,6 +426,12 @@ public class LocalCache implements DownloadTask.LocalFileLocator {
 
     }
 
+    @Override
+    public boolean copyLocalFile(FileValidation validation, Path dest) throws IOException {
+        HashCode expectedSha1 = validation.expectedHashes.get(HashFunc.SHA1);
+        return expectedSha1 != null && copyTo(expectedSha1, dest);
+    }
+
     @Override
     public void onFileDownloaded(FileValidation validation, Path dest) {
         HashCode expectedSha1 = validation.expectedHashes.get(HashFunc.SHA1);
@@ -268,4 +439,21 @@ public class LocalCache implements DownloadTask.LocalFileLocator {
             put(dest, expectedSha1);
         }
     }
+
+    @Override
+    public void onFileDownloaded(FileValidation validation, Path dest, HashResult hashes) {
+        // The file has been validated, so if we expected a SHA1, this is the same hash.
+        HashCode sha1 = hashes.get(HashFunc.SHA1);
+        if (sha1 != null) {
+            put(dest, sha1);
+        }
+    }
+
+    /**
+     * The size of a cached file and when it was last used.
+     *
+     * @param size       The size of the file in bytes.
+     * @param lastAccess When the file was last added or retrieved, in milliseconds since the epoch.
+     */
+    private record AccessRecord(long size, long lastAccess) { }
 }
@@ -0,0 +1,214 @@
+package net.creeperhost.creeperlauncher.install.tasks;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.covers1624.quack.net.HttpResponseException;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+
+/**
+ * Requests a file from a list of mirrors, hedging to the next mirror if the current
+ * one is slow to respond or fails.
+ * <p>
+ * The first mirror to respond with a usable status code wins, all other in-flight
+ * requests are cancelled.
+ */
+final class MirrorRace {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("MirrorRace.debug");
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("Mirror Race %d")
+            .setDaemon(true)
+            .build()
+    );
+
+    private final OkHttpClient client;
+    private final List<String> urls;
+    private final Function<String, Request> requestFactory;
+    private final long hedgeDelay;
+    private final MirrorStats stats;
+
+    private final Object lock = new Object();
+    private final List<Call> calls = new ArrayList<>();
+    private final Map<String, Throwable> failures = new LinkedHashMap<>();
+    @Nullable
+    private Winner winner;
+    private boolean done;
+
+    private MirrorRace(OkHttpClient client, List<String> urls, Function<String, Request> requestFactory, long hedgeDelay, MirrorStats stats) {
+        this.client = client;
+        this.urls = urls;
+        this.requestFactory = requestFactory;
+        this.hedgeDelay = hedgeDelay;
+        this.stats = stats;
+    }
+
+    /**
+     * Request the first mirror to respond.
+     * <p>
+     * If only a single url is provided, the request is executed directly and the
+     * response is returned regardless of its status code.
+     *
+     * @param client         The {@link OkHttpClient} to use.
+     * @param urls           The urls to try, in order of preference.
+     * @param requestFactory Builds the request for a given url.
+     * @param hedgeDelay     How long to wait for a mirror to respond before also trying the next, in nanoseconds.
+     * @param stats          The {@link MirrorStats} to record results into.
+     * @return The winning url and its response.
+     * @throws IOException If all mirrors failed.
+     */
+    public static Winner race(OkHttpClient client, List<String> urls, Function<String, Request> requestFactory, long hedgeDelay, MirrorStats stats) throws IOException {
+        if (urls.size() == 1) {
+            String url = urls.get(0);
+            long start = System.nanoTime();
+            try {
+                Response response = client.newCall(requestFactory.apply(url)).execute();
+                if (isAcceptable(response.code())) {
+                    stats.recordResponse(url, System.nanoTime() - start);
+                } else if (isMirrorFailure(response.code())) {
+                    stats.recordFailure(url);
+                }
+                return new Winner(url, response, start);
+            } catch (IOException ex) {
+                stats.recordFailure(url);
+                throw ex;
+            }
+        }
+        return new MirrorRace(client, urls, requestFactory, hedgeDelay, stats).run();
+    }
+
+    private Winner run() throws IOException {
+        int started = 0;
+        long nextHedge = 0;
+        synchronized (lock) {
+            try {
+                while (winner == null) {
+                    if (started == urls.size() && failures.size() == started) break;
+
+                    long now = System.nanoTime();
+                    // Start the next mirror if it's time to hedge, or everything in flight has failed.
+                    if (started < urls.size() && (now >= nextHedge || failures.size() == started)) {
+                        start(urls.get(started++));
+                        nextHedge = now + hedgeDelay;
+                        continue;
+                    }
+                    if (started < urls.size()) {
+                        long waitNanos = nextHedge - now;
+                        lock.wait(waitNanos / 1000000, (int) (waitNanos % 1000000));
+                    } else {
+                        lock.wait();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                done = true;
+                calls.forEach(Call::cancel);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for mirrors.");
+            }
+            done = true;
+            if (winner != null) {
+                if (DEBUG) LOGGER.info("Mirror {} won after {} attempts.", winner.url(), started);
+                return winner;
+            }
+        }
+        throw new AllMirrorsFailedException(failures);
+    }
+
+    // Must be called with the lock held.
+    private void start(String url) {
+        if (DEBUG) LOGGER.info("Requesting {}.", url);
+        Call call = client.newCall(requestFactory.apply(url));
+        calls.add(call);
+        long start = System.nanoTime();
+        EXECUTOR.execute(() -> {
+            Response response = null;
+            Throwable failure = null;
+            try {
+                response = call.execute();
+            } catch (Throwable ex) {
+                failure = ex;
+            }
+            synchronized (lock) {
+                if (done || winner != null) {
+                    // Lost the race. A winner may already be picked before run() wakes to see it.
+                    if (response != null) response.close();
+                    return;
+                }
+                if (response != null && isAcceptable(response.code())) {
+                    stats.recordResponse(url, System.nanoTime() - start);
+                    winner = new Winner(url, response, start);
+                    for (Call other : calls) {
+                        if (other != call) other.cancel();
+                    }
+                } else {
+                    if (response != null) {
+                        if (isMirrorFailure(response.code())) stats.recordFailure(url);
+                        failure = new HttpResponseException(response.code(), response.message());
+                        response.close();
+                    } else if (failure instanceof IOException) {
+                        stats.recordFailure(url);
+                    }
+                    failures.put(url, failure);
+                }
+                lock.notifyAll();
+            }
+        });
+    }
+
+    private static boolean isAcceptable(int code) {
+        return code >= 200 && code <= 299 || code == HTTP_NOT_MODIFIED;
+    }
+
+    // Only server errors and throttling say anything about the mirror's health.
+    // Other statuses, such as a 404, are about the file and still move on to the next mirror.
+    private static boolean isMirrorFailure(int code) {
+        return code >= 500 || code == HTTP_TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * The mirror which won.
+     *
+     * @param url       The url of the mirror.
+     * @param response  The response, owned by the caller.
+     * @param startTime The {@link System#nanoTime()} the request was started.
+     */
+    public record Winner(String url, Response response, long startTime) { }
+
+    /**
+     * Thrown when every mirror failed.
+     */
+    public static class AllMirrorsFailedException extends IOException {
+
+        private final Map<String, Throwable> failures;
+
+        public AllMirrorsFailedException(Map<String, Throwable> failures) {
+            super("All mirrors failed: " + failures.keySet());
+            this.failures = Map.copyOf(failures);
+            failures.values().forEach(this::addSuppressed);
+        }
+
+        public Map<String, Throwable> getFailures() {
+            return failures;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package net.creeperhost.creeperlauncher.install.tasks;
+
+import okhttp3.HttpUrl;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks latency, throughput and failures of download mirrors, keyed by host.
+ * <p>
+ * Used by {@link DownloadTask} to order the mirrors of a download, so the mirror
+ * expected to finish soonest is tried first, and to decide how long to wait
+ * for a mirror to respond before also trying the next one.
+ */
+public final class MirrorStats {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("MirrorStats.debug");
+
+    /**
+     * Files at or below this size are raced against a second mirror straight away,
+     * unless the preferred mirror is known to be healthy.
+     */
+    public static final long RACE_MAX_SIZE = Long.getLong("MirrorStats.raceMaxSize", 256 * 1024);
+
+    private static final long DEFAULT_HEDGE_DELAY = TimeUnit.SECONDS.toNanos(3);
+    private static final long MIN_HEDGE_DELAY = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MAX_HEDGE_DELAY = TimeUnit.SECONDS.toNanos(10);
+
+    private static final long MIN_BACKOFF = TimeUnit.SECONDS.toNanos(30);
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toNanos(5);
+
+    // Weight of new samples.
+    private static final double ALPHA = 0.3;
+
+    private final Map<String, MirrorState> mirrors = new ConcurrentHashMap<>();
+
+    /**
+     * Order the given urls, the mirror expected to complete the download soonest first.
+     * <p>
+     * Healthy mirrors we have measured are ordered by expected time, mirrors we have
+     * not used yet come next so they get a chance to be measured, and mirrors which
+     * recently failed are tried last. Ties keep their original order.
+     *
+     * @param urls         The urls.
+     * @param expectedSize The expected size of the file, <code>-1</code> if unknown.
+     * @return The ordered urls.
+     */
+    public List<String> order(List<String> urls, long expectedSize) {
+        if (urls.size() < 2) return urls;
+
+        long now = System.nanoTime();
+        // Ranked once up front, so the stats can't change under the sort.
+        Map<String, Rank> ranks = new HashMap<>();
+        for (String url : urls) {
+            ranks.put(url, rank(url, expectedSize, now));
+        }
+        List<String> ordered = new ArrayList<>(urls);
+        ordered.sort(Comparator.comparing(ranks::get, Rank.ORDER));
+        if (DEBUG && !ordered.equals(urls)) {
+            LOGGER.info("Reordered mirrors {} -> {}", urls, ordered);
+        }
+        return ordered;
+    }
+
+    /**
+     * How long to wait for the given url to respond before also trying the next mirror.
+     *
+     * @param url          The url.
+     * @param expectedSize The expected size of the file, <code>-1</code> if unknown.
+     * @return The delay in nanoseconds. <code>0</code> to race immediately.
+     */
+    public long hedgeDelay(String url, long expectedSize) {
+        MirrorState state = mirrors.get(key(url));
+        boolean healthy = state != null && state.isHealthy();
+        if (expectedSize != -1 && expectedSize <= RACE_MAX_SIZE && !healthy) return 0;
+        if (state == null || state.latency < 0) return DEFAULT_HEDGE_DELAY;
+
+        return Math.max(MIN_HEDGE_DELAY, Math.min(MAX_HEDGE_DELAY, (long) (state.latency * 4)));
+    }
+
+    /**
+     * Record that the given url responded.
+     *
+     * @param url     The url.
+     * @param latency The time until response headers were received, in nanoseconds.
+     */
+    public void recordResponse(String url, long latency) {
+        MirrorState state = getState(url);
+        synchronized (state) {
+            state.latency = state.latency < 0 ? latency : state.latency + ALPHA * (latency - state.latency);
+            state.consecutiveFailures = 0;
+            state.successes++;
+        }
+    }
+
+    /**
+     * Record that a body was transferred from the given url.
+     *
+     * @param url      The url.
+     * @param bytes    The number of bytes transferred.
+     * @param duration The time taken, in nanoseconds.
+     */
+    public void recordTransfer(String url, long bytes, long duration) {
+        // Tiny transfers are dominated by latency.
+        if (bytes < 16 * 1024 || duration <= 0) return;
+
+        double throughput = bytes / (duration / (double) TimeUnit.SECONDS.toNanos(1));
+        MirrorState state = getState(url);
+        synchronized (state) {
+            state.throughput = state.throughput < 0 ? throughput : state.throughput + ALPHA * (throughput - state.throughput);
+        }
+    }
+
+    /**
+     * Record a failed request to the given url.
+     *
+     * @param url The url.
+     */
+    public void recordFailure(String url) {
+        MirrorState state = getState(url);
+        synchronized (state) {
+            state.consecutiveFailures++;
+            state.failures++;
+            state.lastFailure = System.nanoTime();
+        }
+    }
+
+    /**
+     * Gets a snapshot of the stats for the given url's mirror.
+     *
+     * @param url The url.
+     * @return The stats, or <code>null</code> if we have none.
+     */
+    @Nullable
+    public MirrorSnapshot getStats(String url) {
+        MirrorState state = mirrors.get(key(url));
+        if (state == null) return null;
+        synchronized (state) {
+            return new MirrorSnapshot(state.key, (long) state.latency, (long) state.throughput, state.successes, state.failures, state.consecutiveFailures);
+        }
+    }
+
+    private Rank rank(String url, long expectedSize, long now) {
+        MirrorState state = mirrors.get(key(url));
+        if (state == null) return Rank.UNKNOWN; // Unknown, try it so we learn about it.
+
+        synchronized (state) {
+            if (state.consecutiveFailures > 0) {
+                long backoff = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(10, state.consecutiveFailures - 1));
+                if (now - state.lastFailure < backoff) return new Rank(true, state.lastFailure, 0);
+            }
+            if (state.latency < 0) return Rank.UNKNOWN;
+
+            double expected = state.latency;
+            if (expectedSize > 0 && state.throughput > 0) {
+                expected += expectedSize / state.throughput * TimeUnit.SECONDS.toNanos(1);
+            }
+            return new Rank(false, 0, expected);
+        }
+    }
+
+    private MirrorState getState(String url) {
+        return mirrors.computeIfAbsent(key(url), MirrorState::new);
+    }
+
+    private static String key(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) return url;
+        if (httpUrl.port() == HttpUrl.defaultPort(httpUrl.scheme())) return httpUrl.host();
+        return httpUrl.host() + ":" + httpUrl.port();
+    }
+
+    public record MirrorSnapshot(String host, long latency, long throughput, int successes, int failures, int consecutiveFailures) { }
+
+    /**
+     * @param inBackoff   If the mirror recently failed, these are tried last.
+     * @param lastFailure The {@link System#nanoTime()} of the last failure, orders mirrors in backoff.
+     * @param expected    The expected time to complete the download, in nanoseconds. Orders everything else.
+     */
+    private record Rank(boolean inBackoff, long lastFailure, double expected) {
+
+        // After every measured mirror, the sort is stable so unknown mirrors keep their original order.
+        private static final Rank UNKNOWN = new Rank(false, 0, Double.MAX_VALUE);
+
+        private static final Comparator<Rank> ORDER = Comparator.comparing(Rank::inBackoff)
+                // Least recently failed first. nanoTime may overflow, only the difference is meaningful.
+                .thenComparing((a, b) -> a.inBackoff ? Long.signum(a.lastFailure - b.lastFailure) : 0)
+                .thenComparingDouble(Rank::expected);
+    }
+
+    private static final class MirrorState {
+
+        private final String key;
+        // Both -1 until measured.
+        private double latency = -1;
+        private double throughput = -1;
+        private int successes;
+        private int failures;
+        private int consecutiveFailures;
+        private long lastFailure;
+
+        private MirrorState(String key) {
+            this.key = key;
+        }
+
+        private synchronized boolean isHealthy() {
+            return successes >= 3 && consecutiveFailures == 0;
+        }
+    }
+}
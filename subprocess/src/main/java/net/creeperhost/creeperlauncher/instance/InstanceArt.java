@@ -0,0 +1,157 @@
+package net.creeperhost.creeperlauncher.instance;
+
+import com.google.common.hash.Hashing;
+import net.creeperhost.creeperlauncher.util.ImageUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.WillNotClose;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Stores an instance's art as image files in <code>.ftba/art/</code>, alongside pre-generated thumbnails.
+ * <p>
+ * The instance json references the art by the sha1 of the stored image, instead of embedding it, so
+ * loading and sending instance metadata no longer carries the image bytes with it.
+ */
+public class InstanceArt {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * The size art is stored at.
+     */
+    public static final int SIZE = 256;
+
+    /**
+     * The thumbnail sizes generated on import.
+     */
+    public static final List<Integer> THUMBNAIL_SIZES = List.of(64, 128);
+
+    private final Path dir;
+
+    public InstanceArt(Path instanceDir) {
+        dir = instanceDir.resolve(".ftba/art");
+    }
+
+    /**
+     * Import new art, replacing any existing art.
+     *
+     * @param is The image to import.
+     * @return The hash of the stored art.
+     * @throws IOException If the image could not be read, or stored.
+     */
+    public String importArt(@WillNotClose InputStream is) throws IOException {
+        BufferedImage image = ImageIO.read(is);
+        if (image == null) throw new IOException("Unsupported image format.");
+
+        return importArt(image);
+    }
+
+    /**
+     * Import new art, replacing any existing art.
+     *
+     * @param image The image to import.
+     * @return The hash of the stored art.
+     * @throws IOException If the image could not be stored.
+     */
+    public String importArt(BufferedImage image) throws IOException {
+        BufferedImage art = ImageUtils.resizeImage(image, SIZE, SIZE);
+        byte[] png = toPng(art);
+        String hash = Hashing.sha1().hashBytes(png).toString();
+
+        Files.createDirectories(dir);
+        write(artPath(hash, SIZE), png);
+        for (int size : THUMBNAIL_SIZES) {
+            write(artPath(hash, size), toPng(ImageUtils.resizeImage(art, size, size)));
+        }
+
+        // Only ever keep the current art.
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.getFileName().toString().startsWith(hash)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Get the art for the given hash, at the smallest stored size which is at least as large as the requested size.
+     * <p>
+     * Missing thumbnails are regenerated from the full size art.
+     *
+     * @param hash The hash of the art.
+     * @param size The requested size.
+     * @return The image file, or {@code null} if the art does not exist.
+     */
+    @Nullable
+    public Path getArt(String hash, int size) {
+        Path full = artPath(hash, SIZE);
+        if (Files.notExists(full)) return null;
+
+        Integer thumbSize = THUMBNAIL_SIZES.stream()
+                .filter(e -> e >= size)
+                .findFirst()
+                .orElse(null);
+        if (thumbSize == null) return full;
+
+        Path thumb = artPath(hash, thumbSize);
+        if (Files.exists(thumb)) return thumb;
+
+        try (InputStream is = Files.newInputStream(full)) {
+            write(thumb, toPng(ImageUtils.resizeImage(is, thumbSize, thumbSize)));
+            return thumb;
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to generate {}px thumbnail for {}.", thumbSize, full, ex);
+            return full;
+        }
+    }
+
+    /**
+     * Get file urls for the art and each of its thumbnails, keyed by size.
+     *
+     * @param hash The hash of the art.
+     * @return The urls, empty if the art does not exist.
+     */
+    public Map<Integer, String> getArtUrls(String hash) {
+        Map<Integer, String> urls = new LinkedHashMap<>();
+        for (int size : THUMBNAIL_SIZES) {
+            Path file = getArt(hash, size);
+            if (file == null) return Map.of();
+            urls.put(size, file.toUri().toString());
+        }
+        urls.put(SIZE, artPath(hash, SIZE).toUri().toString());
+        return urls;
+    }
+
+    private Path artPath(String hash, int size) {
+        return dir.resolve(size == SIZE ? hash + ".png" : hash + "_" + size + ".png");
+    }
+
+    private static byte[] toPng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bos);
+        return bos.toByteArray();
+    }
+
+    // Readers may be loading the same file, so never expose a partially written one.
+    private static void write(Path file, byte[] bytes) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp" + Thread.currentThread().getId());
+        Files.write(tmp, bytes);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,190 @@
+package net.creeperhost.creeperlauncher.instance;
+
+import net.creeperhost.creeperlauncher.os.OS;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Clones an instance directory, sharing file content with the original wherever it is safe to.
+ * <p>
+ * Where the file system supports reflinks (Btrfs, XFS, APFS), the whole directory is cloned with
+ * <code>cp</code>, every file shares its content until either side writes to it. Otherwise, files
+ * which are never modified in place, such as mod jars and resource packs, are hard linked, and
+ * everything else is copied in parallel. Config files, saves, and anything else the game may write
+ * to are always real copies.
+ */
+public class InstanceCloner {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("InstanceCloner.debug");
+
+    /**
+     * Directories whose archives are replaced, renamed or deleted, but never written to in place.
+     */
+    private static final List<String> IMMUTABLE_DIRS = List.of("mods/", "resourcepacks/", "shaderpacks/", "libraries/");
+    private static final List<String> IMMUTABLE_EXTENSIONS = List.of(".jar", ".zip", ".jar.disabled", ".zip.disabled");
+
+    private final Executor executor;
+    private final boolean tryReflink;
+    private final boolean tryHardlink;
+
+    public InstanceCloner(Executor executor) {
+        this(executor, true, true);
+    }
+
+    // Visible for tests.
+    InstanceCloner(Executor executor, boolean tryReflink, boolean tryHardlink) {
+        this.executor = executor;
+        this.tryReflink = tryReflink;
+        this.tryHardlink = tryHardlink;
+    }
+
+    /**
+     * Clone the given directory.
+     *
+     * @param src  The directory to clone.
+     * @param dest The directory to clone into, created if it does not exist.
+     * @return The result.
+     * @throws IOException If the clone failed.
+     */
+    public CloneResult clone(Path src, Path dest) throws IOException {
+        Files.createDirectories(dest);
+        if (tryReflink && reflink(src, dest)) {
+            LOGGER.info("Cloned {} to {} with reflinks.", src, dest);
+            return new CloneResult(Method.REFLINK, 0, 0, 0);
+        }
+
+        // Directories are created up front, so the copies don't race to create them.
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(src)) {
+            for (Path path : (Iterable<Path>) stream::iterator) {
+                Path target = dest.resolve(src.relativize(path).toString());
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.createDirectories(target);
+                } else {
+                    files.add(path);
+                }
+            }
+        }
+
+        AtomicBoolean canLink = new AtomicBoolean(tryHardlink);
+        AtomicInteger linked = new AtomicInteger();
+        AtomicInteger copied = new AtomicInteger();
+        AtomicLong bytesCopied = new AtomicLong();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            String relPath = src.relativize(file).toString().replace('\\', '/');
+            Path target = dest.resolve(relPath);
+            if (canLink.get() && isImmutable(relPath) && Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    Files.createLink(target, file);
+                    linked.incrementAndGet();
+                    continue;
+                } catch (IOException | UnsupportedOperationException ex) {
+                    // FAT and some network shares.
+                    LOGGER.info("Unable to hard link files in {}, copying instead. {}", src, ex.toString());
+                    canLink.set(false);
+                }
+            }
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                    copied.incrementAndGet();
+                    bytesCopied.addAndGet(Files.isSymbolicLink(target) ? 0 : Files.size(target));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, executor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException ex) {
+            throw new IOException("Failed to clone " + src + " to " + dest, ex.getCause());
+        }
+
+        Method method = linked.get() > 0 ? Method.HARDLINK : Method.COPY;
+        if (DEBUG) {
+            LOGGER.info("Cloned {} to {}. Linked {}, copied {} files ({} bytes).", src, dest, linked.get(), copied.get(), bytesCopied.get());
+        }
+        return new CloneResult(method, linked.get(), copied.get(), bytesCopied.get());
+    }
+
+    // Clone the whole tree with cp, which uses reflinks on Linux and clonefile on macOS.
+    // Returns false, with dest emptied again, if the file system can't.
+    private static boolean reflink(Path src, Path dest) throws IOException {
+        List<String> command = switch (OS.CURRENT) {
+            case LINUX -> List.of("cp", "-a", "--reflink=always", src.toAbsolutePath() + "/.", dest.toAbsolutePath().toString());
+            case MAC -> List.of("cp", "-c", "-p", "-R", src.toAbsolutePath() + "/.", dest.toAbsolutePath().toString());
+            default -> null;
+        };
+        if (command == null) return false;
+
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            String stderr = new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
+            int exit = process.waitFor();
+            if (exit == 0) return true;
+
+            if (DEBUG) {
+                LOGGER.info("Reflink clone of {} failed with exit code {}: {}", src, exit, stderr.lines().findFirst().orElse(""));
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to run cp.", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted whilst cloning " + src, ex);
+        }
+
+        // cp may have got part way.
+        FileUtils.cleanDirectory(dest.toFile());
+        return false;
+    }
+
+    private static boolean isImmutable(String relPath) {
+        String lower = relPath.toLowerCase(Locale.ROOT);
+        return IMMUTABLE_DIRS.stream().anyMatch(lower::startsWith)
+               && IMMUTABLE_EXTENSIONS.stream().anyMatch(lower::endsWith);
+    }
+
+    public enum Method {
+        /**
+         * Every file shares its content with the original until written to.
+         */
+        REFLINK,
+        /**
+         * Immutable files were hard linked, everything else was copied.
+         */
+        HARDLINK,
+        /**
+         * Everything was copied.
+         */
+        COPY,
+    }
+
+    /**
+     * @param method      How the directory was cloned.
+     * @param linked      The number of files hard linked.
+     * @param copied      The number of files copied.
+     * @param bytesCopied The number of bytes copied.
+     */
+    public record CloneResult(Method method, int linked, int copied, long bytesCopied) { }
+}
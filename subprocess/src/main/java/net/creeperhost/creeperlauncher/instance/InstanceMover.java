@@ -0,0 +1,291 @@
+package net.creeperhost.creeperlauncher.instance;
+
+import net.creeperhost.creeperlauncher.pack.CancellationToken;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Moves instance directories to a new location.
+ * <p>
+ * Each instance is renamed first, which is instant when both locations are on the same file system.
+ * Otherwise its files are copied in parallel, and every copied file is recorded in a journal, so an
+ * interrupted move picks up where it left off instead of starting over. Once everything has been
+ * copied, the content of each copy is compared against its original.
+ * <p>
+ * Originals are never removed by {@link #copy}, callers moving several instances copy all of them
+ * first, then remove the originals with {@link #removeSource} once every copy has succeeded.
+ */
+public class InstanceMover {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("InstanceMover.debug");
+
+    // Some file systems, such as FAT, only store modified times to 2 seconds.
+    private static final long MTIME_TOLERANCE_MS = 2000;
+
+    private final Path journalDir;
+    private final Executor executor;
+    private final boolean tryRename;
+
+    /**
+     * @param journalDir Where to keep journals of in-progress copies.
+     * @param executor   The executor to copy files on.
+     */
+    public InstanceMover(Path journalDir, Executor executor) {
+        this(journalDir, executor, true);
+    }
+
+    // Visible for tests.
+    InstanceMover(Path journalDir, Executor executor, boolean tryRename) {
+        this.journalDir = journalDir;
+        this.executor = executor;
+        this.tryRename = tryRename;
+    }
+
+    /**
+     * Copy an instance directory, resuming a previously interrupted copy if there is one.
+     * <p>
+     * If the directory could be renamed instead, the original no longer exists when this returns,
+     * {@link #revert} puts it back.
+     *
+     * @param src      The instance directory.
+     * @param dest     Where to move it to.
+     * @param token    Cancels the copy. Files already copied are kept, calling this again resumes the copy.
+     * @param listener Notified as each file is copied.
+     * @return The result.
+     * @throws IOException If a file could not be copied, or a copy did not match its original.
+     */
+    public MoveResult copy(Path src, Path dest, CancellationToken token, @Nullable CopyListener listener) throws IOException {
+        Path journal = journal(src);
+        if (Files.notExists(src)) {
+            // Finished previously, but the journal was not removed.
+            Files.deleteIfExists(journal);
+            return new MoveResult(false, 0, 0, 0);
+        }
+
+        if (tryRename && Files.notExists(journal) && Files.notExists(dest)) {
+            try {
+                Files.move(src, dest, StandardCopyOption.ATOMIC_MOVE);
+                LOGGER.info("Renamed {} to {}.", src, dest);
+                return new MoveResult(true, 0, 0, 0);
+            } catch (IOException ex) {
+                // Most likely a different file system.
+                LOGGER.info("Unable to rename {} to {}, copying instead. {}", src, dest, ex.toString());
+            }
+        }
+
+        Set<String> done = readJournal(journal);
+        if (!done.isEmpty()) {
+            LOGGER.info("Resuming move of {}, {} files already copied.", src, done.size());
+        }
+
+        // Directories are created up front, so the copies don't race to create them.
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(src)) {
+            for (Path path : (Iterable<Path>) stream::iterator) {
+                Path target = dest.resolve(src.relativize(path).toString());
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.createDirectories(target);
+                } else {
+                    files.add(path);
+                }
+            }
+        }
+
+        AtomicInteger copied = new AtomicInteger();
+        AtomicLong bytesCopied = new AtomicLong();
+        int skipped = 0;
+        Files.createDirectories(journalDir);
+        try (Journal writer = new Journal(journal)) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (Path file : files) {
+                String relPath = relPath(src, file);
+                Path target = dest.resolve(relPath);
+                // A quick check is fine here, every file has its content verified below.
+                if (done.contains(relPath) && looksCopied(file, target)) {
+                    skipped++;
+                    continue;
+                }
+                futures.add(CompletableFuture.runAsync(() -> {
+                    token.throwIfCancelled();
+                    try {
+                        long size = copyFile(file, target);
+                        writer.append(relPath);
+                        copied.incrementAndGet();
+                        bytesCopied.addAndGet(size);
+                        if (listener != null) {
+                            listener.fileCopied(relPath, size);
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }, executor));
+            }
+            join(futures, "Failed to copy files from " + src + " to " + dest);
+        }
+        if (DEBUG) {
+            LOGGER.info("Copied {} files ({} bytes), skipped {} from {}.", copied.get(), bytesCopied.get(), skipped, src);
+        }
+
+        LOGGER.info("Verifying {} files in {}.", files.size(), dest);
+        List<CompletableFuture<Void>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            Path target = dest.resolve(relPath(src, file));
+            futures.add(CompletableFuture.runAsync(() -> {
+                token.throwIfCancelled();
+                try {
+                    if (matches(file, target)) return;
+
+                    // Most likely a skipped file which was modified after it was journaled, copy it again.
+                    LOGGER.warn("Copy of {} does not match the original, copying again.", file);
+                    copyFile(file, target);
+                    if (!matches(file, target)) {
+                        throw new IOException("Copy of " + file + " does not match the original.");
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, executor));
+        }
+        join(futures, "Failed to verify files copied from " + src + " to " + dest);
+        return new MoveResult(false, copied.get(), skipped, bytesCopied.get());
+    }
+
+    /**
+     * Remove an instance directory, after it has been copied.
+     *
+     * @param src The instance directory.
+     * @return If the directory was removed.
+     */
+    public boolean removeSource(Path src) {
+        // The source goes first, if this is interrupted the journal lets us resume removing it.
+        try {
+            FileUtils.deleteDirectory(src.toFile());
+            Files.deleteIfExists(journal(src));
+            return true;
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to remove instance directory {}.", src, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Undo a {@link #copy} which renamed the instance directory.
+     *
+     * @param src  The original instance directory.
+     * @param dest Where it was renamed to.
+     * @throws IOException If it could not be renamed back.
+     */
+    public void revert(Path src, Path dest) throws IOException {
+        Files.move(dest, src, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("Renamed {} back to {}.", dest, src);
+    }
+
+    private Path journal(Path src) {
+        return journalDir.resolve(src.getFileName() + ".journal");
+    }
+
+    private static Set<String> readJournal(Path journal) throws IOException {
+        if (Files.notExists(journal)) return Set.of();
+
+        // Entries are only trusted if the copy still matches, so a partially written last line is harmless.
+        return new HashSet<>(Files.readAllLines(journal, StandardCharsets.UTF_8));
+    }
+
+    private static String relPath(Path root, Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static long copyFile(Path file, Path target) throws IOException {
+        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+        return Files.isSymbolicLink(target) ? 0 : Files.size(target);
+    }
+
+    // Wait for everything, so nothing is still writing if we bail out.
+    private static void join(List<CompletableFuture<Void>> futures, String error) throws IOException {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .handle((v, ex) -> null)
+                .join();
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof CancellationToken.Cancellation cancellation) throw cancellation;
+                throw new IOException(error, ex.getCause());
+            }
+        }
+    }
+
+    private static boolean looksCopied(Path original, Path copy) throws IOException {
+        if (Files.isSymbolicLink(original)) return Files.isSymbolicLink(copy);
+        if (!Files.isRegularFile(copy)) return false;
+        if (Files.size(original) != Files.size(copy)) return false;
+
+        long mtime = Files.getLastModifiedTime(original).toMillis();
+        return Math.abs(mtime - Files.getLastModifiedTime(copy).toMillis()) <= MTIME_TOLERANCE_MS;
+    }
+
+    private static boolean matches(Path original, Path copy) throws IOException {
+        if (Files.isSymbolicLink(original)) {
+            return Files.isSymbolicLink(copy) && Files.readSymbolicLink(original).equals(Files.readSymbolicLink(copy));
+        }
+        if (!Files.isRegularFile(copy, LinkOption.NOFOLLOW_LINKS)) return false;
+        return Files.mismatch(original, copy) == -1;
+    }
+
+    /**
+     * Notified as each file is copied. Called from multiple threads.
+     */
+    public interface CopyListener {
+
+        /**
+         * @param relPath The path of the file, relative to the instance directory.
+         * @param size    The size of the file.
+         */
+        void fileCopied(String relPath, long size);
+    }
+
+    /**
+     * @param renamed     If the instance was renamed, rather than copied.
+     * @param copied      The number of files copied.
+     * @param skipped     The number of files skipped, as they were copied by a previous attempt.
+     * @param bytesCopied The number of bytes copied.
+     */
+    public record MoveResult(boolean renamed, int copied, int skipped, long bytesCopied) { }
+
+    // Appends each copied file on its own line, flushed straight away.
+    private static class Journal implements AutoCloseable {
+
+        private final BufferedWriter writer;
+
+        private Journal(Path file) throws IOException {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        public synchronized void append(String relPath) throws IOException {
+            writer.write(relPath);
+            writer.write('\n');
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
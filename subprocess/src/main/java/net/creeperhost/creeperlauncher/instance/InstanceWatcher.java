@@ -0,0 +1,232 @@
+package net.creeperhost.creeperlauncher.instance;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.creeperhost.creeperlauncher.util.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the instances directory for changes.
+ * <p>
+ * The instances directory, each instance directory and each instance's <code>mods</code>
+ * directory are watched. Changes are grouped per instance and emitted once the instance
+ * has been quiet for the debounce period.
+ * <p>
+ * Only changes to instance metadata files, instance directories themselves, and files inside
+ * the <code>mods</code> directory are reported. Everything else (saves, logs, configs) is ignored.
+ */
+public class InstanceWatcher implements Closeable {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("InstanceWatcher.debug");
+
+    /**
+     * The files inside an instance directory which are considered metadata.
+     */
+    public static final Set<String> METADATA_FILES = Set.of("instance.json", "version.json", "modifications.json");
+
+    private final Path root;
+    private final long debounceMs;
+    private final Consumer<InstanceChange> listener;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private final Map<Path, PendingChange> pending = new HashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("Instance Watcher Debounce")
+            .setDaemon(true)
+            .build()
+    );
+    private final Thread watchThread;
+
+    private volatile boolean closed;
+
+    /**
+     * Create and start a new {@link InstanceWatcher}.
+     *
+     * @param root       The instances directory.
+     * @param debounceMs How long an instance must be quiet before its changes are emitted.
+     * @param listener   The listener to receive changes. Called from a single background thread.
+     * @throws IOException If an IO error occurs setting up the watcher.
+     */
+    public InstanceWatcher(Path root, long debounceMs, Consumer<InstanceChange> listener) throws IOException {
+        this.root = root;
+        this.debounceMs = debounceMs;
+        this.listener = listener;
+
+        watchService = root.getFileSystem().newWatchService();
+        register(root);
+        for (Path dir : FileUtils.listDir(root)) {
+            registerInstance(dir);
+        }
+
+        watchThread = new Thread(this::run, "Instance Watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void run() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                break;
+            }
+
+            Path dir = keys.get(key);
+            if (dir != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        LOGGER.warn("Watch events overflowed for {}.", dir);
+                        onOverflow(dir);
+                        continue;
+                    }
+                    onEvent(dir, event.kind(), dir.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    private void onEvent(Path dir, WatchEvent.Kind<?> kind, Path child) {
+        if (DEBUG) LOGGER.info("{} {}", kind.name(), child);
+
+        if (dir.equals(root)) {
+            // An instance directory was created, deleted or renamed.
+            if (isHidden(child)) return;
+            if (kind == ENTRY_CREATE && Files.isDirectory(child)) {
+                registerInstance(child);
+            }
+            mark(child, e -> e.metadata = true);
+        } else if (root.equals(dir.getParent())) {
+            // Something inside an instance directory.
+            String name = child.getFileName().toString();
+            if (name.equals("mods")) {
+                if (kind == ENTRY_CREATE && Files.isDirectory(child)) {
+                    register(child);
+                }
+                mark(dir, e -> e.modsDirChanged = true);
+            } else if (METADATA_FILES.contains(name)) {
+                mark(dir, e -> e.metadata = true);
+            }
+        } else if (dir.getFileName().toString().equals("mods")) {
+            mark(dir.getParent(), e -> e.modFiles.add(child));
+        }
+    }
+
+    private void onOverflow(Path dir) {
+        if (dir.equals(root)) {
+            // We lost track of the root, treat every instance as changed and pick up any new directories.
+            for (Path child : FileUtils.listDir(root)) {
+                if (!Files.isDirectory(child) || isHidden(child)) continue;
+                registerInstance(child);
+                mark(child, e -> e.metadata = true);
+            }
+        } else if (root.equals(dir.getParent())) {
+            mark(dir, e -> e.metadata = true);
+        } else {
+            mark(dir.getParent(), e -> e.modsDirChanged = true);
+        }
+    }
+
+    private void mark(Path instanceDir, Consumer<PendingChange> action) {
+        synchronized (pending) {
+            PendingChange change = pending.computeIfAbsent(instanceDir, e -> new PendingChange());
+            action.accept(change);
+            if (change.future != null) {
+                change.future.cancel(false);
+            }
+            change.future = scheduler.schedule(() -> flush(instanceDir), debounceMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(Path instanceDir) {
+        InstanceChange event;
+        synchronized (pending) {
+            PendingChange change = pending.remove(instanceDir);
+            if (change == null) return;
+
+            event = new InstanceChange(
+                    instanceDir,
+                    !Files.isDirectory(instanceDir),
+                    change.metadata,
+                    change.modsDirChanged,
+                    Set.copyOf(change.modFiles)
+            );
+        }
+        if (DEBUG) LOGGER.info("Emitting {}", event);
+        try {
+            listener.accept(event);
+        } catch (Throwable ex) {
+            LOGGER.error("Instance change listener threw an exception.", ex);
+        }
+    }
+
+    private void registerInstance(Path dir) {
+        if (!Files.isDirectory(dir) || isHidden(dir)) return;
+
+        register(dir);
+        Path mods = dir.resolve("mods");
+        if (Files.isDirectory(mods)) {
+            register(mods);
+        }
+    }
+
+    private void register(Path dir) {
+        try {
+            keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to watch directory {}.", dir, ex);
+        }
+    }
+
+    private static boolean isHidden(Path path) {
+        return path.getFileName().toString().startsWith(".");
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+        watchThread.interrupt();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A set of changes to a single instance directory.
+     *
+     * @param instanceDir    The instance directory.
+     * @param removed        If the instance directory no longer exists.
+     * @param metadata       If the instance directory was created, or any of its {@link #METADATA_FILES} changed.
+     * @param modsDirChanged If the <code>mods</code> directory was created or removed, or we lost track of its changes.
+     * @param modFiles       Files inside the <code>mods</code> directory which were created, deleted or modified.
+     */
+    public record InstanceChange(Path instanceDir, boolean removed, boolean metadata, boolean modsDirChanged, Set<Path> modFiles) { }
+
+    private static final class PendingChange {
+
+        private final Set<Path> modFiles = new HashSet<>();
+        private boolean metadata;
+        private boolean modsDirChanged;
+        @Nullable
+        private ScheduledFuture<?> future;
+    }
+}
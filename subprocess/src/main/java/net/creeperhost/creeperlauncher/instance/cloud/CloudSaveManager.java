@@ -15,6 +15,7 @@ import net.covers1624.quack.util.HashUtils;
 import net.covers1624.quack.util.SneakyUtils;
 import net.creeperhost.creeperlauncher.Constants;
 import net.creeperhost.creeperlauncher.Instances;
+import net.creeperhost.creeperlauncher.Startup;
 import net.creeperhost.creeperlauncher.api.WebSocketHandler;
 import net.creeperhost.creeperlauncher.api.data.instances.CloudSavesReloadedData;
 import net.creeperhost.creeperlauncher.api.data.instances.CloudSavesStatsData;
@@ -58,6 +59,7 @@ import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -99,9 +101,18 @@ public final class CloudSaveManager {
     private final Map<UUID, SyncEntry> syncOperations = new HashMap<>();
     private final Map<UUID, CompletableFuture<Void>> removeOperations = new HashMap<>();
 
+    // Instance listings from the last poll, keyed by instance uuid.
+    private final Map<String, InstanceListing> listingCache = new ConcurrentHashMap<>();
+
     @Nullable
     private CompletableFuture<Void> pollFuture;
 
+    // Visible for tests.
+    CloudSaveManager(S3Client s3Client, String s3Bucket) {
+        this.s3Client = s3Client;
+        this.s3Bucket = s3Bucket;
+    }
+
     public CloudSaveManager() {
         String sysProp = System.getProperty("CloudSaveManager.creds");
         if (sysProp != null) {
@@ -203,6 +214,7 @@ public final class CloudSaveManager {
                 return null;
             }
             future = CompletableFuture.runAsync(() -> {
+                listingCache.remove(instance.getUuid().toString());
                 Map<String, S3Object> files = listInstance(instance);
                 LOGGER.info(" Deleting {} files.", files.size());
                 deleteObjects(files.values());
@@ -243,6 +255,7 @@ public final class CloudSaveManager {
     }
 
     private void onSyncFinished(Instance instance, SyncResult result) {
+        listingCache.remove(instance.getUuid().toString());
         if (result.type != ResultType.CONFLICT) {
             synchronized (syncOperations) {
                 syncOperations.remove(instance.getUuid());
@@ -262,31 +275,32 @@ public final class CloudSaveManager {
             return CompletableFuture.failedFuture(new Throwable("Cloud saves not configured."));
         }
 
-        return pollFuture = CompletableFuture.runAsync(() -> {
+        // Pending cloud instances are resolved against local ones, polling before those are loaded would
+        // treat every synced instance as missing. This covers every caller, startup, login and the UI.
+        return pollFuture = Startup.whenReady(Startup.Subsystem.INSTANCES).thenRunAsync(() -> {
             OperationProgressTracker tracker = new OperationProgressTracker("cloud_poll", Map.of());
-            long bucketSize = -1;
+            long bucketSize = 0;
             try {
-                Set<String> instancesOnS3 = new HashSet<>();
-                List<S3Object> index;
+                Map<String, InstanceRoot> roots;
                 try {
-                    Matcher matcher = INSTANCE_UUID_REGEX.matcher("");
-                    index = listBucket("");
-                    for (S3Object s3Object : index) {
-                        bucketSize += s3Object.size();
-                        matcher.reset(s3Object.key());
-                        if (!matcher.find()) continue;
-                        String uuid = matcher.group(1);
-                        instancesOnS3.add(uuid);
+                    roots = listInstanceRoots();
+                    for (InstanceRoot root : roots.values()) {
+                        bucketSize += getListing(root).size();
                     }
                 } catch (Throwable ex) {
                     LOGGER.warn("Failed to list bucket.", ex);
                     return;
                 }
+                Set<String> instancesOnS3 = roots.keySet();
+                listingCache.keySet().retainAll(instancesOnS3);
                 List<UUID> removedPending = FastStream.of(Instances.allInstances())
                         .filter(Instance::isPendingCloudInstance)
                         .map(Instance::getUuid)
                         .filterNot(e -> instancesOnS3.contains(e.toString()))
                         .toList();
+                for (UUID uuid : removedPending) {
+                    Instances.removeInstance(uuid);
+                }
                 Set<String> missingInstances = new HashSet<>(instancesOnS3);
                 for (Instance instance : Instances.allInstances()) {
                     // Remove any synced instances.
@@ -316,10 +330,7 @@ public final class CloudSaveManager {
                         }
                     }
 
-                    Map<String, S3Object> objects = FastStream.of(index)
-                            .filter(e -> e.key().startsWith(key))
-                            .toMap(e -> StringUtils.stripStart(e.key(), key + "/"), e -> e);
-
+                    Map<String, S3Object> objects = roots.get(key).files();
                     S3Object manifest = objects.get("instance.json");
                     if (manifest == null) {
                         LOGGER.warn("Error loading cloud save list. Cloud instance {} is missing instance.json file. Loading impossible.", key);
@@ -335,6 +346,7 @@ public final class CloudSaveManager {
                     try {
                         InstanceJson instanceManifest = InstanceJson.load(downloadToBytes(manifest));
                         ModpackVersionManifest versionManifest = JsonUtils.parse(ModpackVersionManifest.GSON, new ByteArrayInputStream(downloadToBytes(version)), ModpackVersionManifest.class);
+                        loadPendingArt(instanceManifest, StringUtils.removeEnd(manifest.key(), "instance.json"));
                         LOGGER.info("Loaded pending cloud instance {}.", key);
                         Instance instance = new Instance(instanceDir, instanceManifest, versionManifest);
                         Instances.addInstance(instance);
@@ -375,6 +387,30 @@ public final class CloudSaveManager {
         }, EXECUTOR);
     }
 
+    /**
+     * Pending instances have no local files, so their stored art can't be referenced.
+     * Embed the art from the bucket instead, as instances did before art was stored.
+     * <p>
+     * Instance roots are listed without descending into directories, so the art is fetched by key.
+     *
+     * @param instanceManifest The pending instance's json.
+     * @param prefix           The key prefix of the instance in the bucket.
+     */
+    // Visible for tests.
+    void loadPendingArt(InstanceJson instanceManifest, String prefix) {
+        if (instanceManifest.artHash == null) return;
+        assert s3Client != null;
+
+        String key = prefix + ".ftba/art/" + instanceManifest.artHash + ".png";
+        try (ResponseInputStream<GetObjectResponse> is = s3Client.getObject(e -> e.bucket(s3Bucket).key(key))) {
+            instanceManifest.art = "data:image/png;base64," + Base64.getEncoder().encodeToString(IOUtils.toBytes(is));
+        } catch (NoSuchKeyException ex) {
+            LOGGER.warn("Pending cloud instance {} has no art at {}.", instanceManifest.uuid, key);
+        } catch (IOException | S3Exception ex) {
+            LOGGER.warn("Failed to load art for pending cloud instance {}.", instanceManifest.uuid, ex);
+        }
+    }
+
     public boolean isSyncing(UUID uuid) {
         return syncOperations.containsKey(uuid);
     }
@@ -384,12 +420,26 @@ public final class CloudSaveManager {
     }
 
     public void uploadFile(Path file, String destKey, @Nullable TaskProgressListener listener) throws IOException {
+        uploadFile(file, destKey, null, listener);
+    }
+
+    /**
+     * Upload a file to S3.
+     *
+     * @param file     The file to upload.
+     * @param destKey  The key to upload the file to.
+     * @param sha256   The SHA256 hash of the file, if already known. Otherwise, it is computed.
+     * @param listener The progress listener.
+     */
+    public void uploadFile(Path file, String destKey, @Nullable HashCode sha256, @Nullable TaskProgressListener listener) throws IOException {
         assert s3Client != null;
         Map<String, String> metadata = new HashMap<>();
         long len = Files.size(file);
         metadata.put(Header.CONTENT_LENGTH, String.valueOf(len));
-        String sha256 = HashUtils.hash(Hashing.sha256(), file).toString();
-        metadata.put(HASH_METADATA, sha256);
+        if (sha256 == null) {
+            sha256 = HashUtils.hash(Hashing.sha256(), file);
+        }
+        metadata.put(HASH_METADATA, sha256.toString());
         metadata.put(LAST_MODIFIED_METADATA, Long.toString(Files.getLastModifiedTime(file).toMillis()));
 
         PutObjectRequest.Builder builder = PutObjectRequest.builder()
@@ -425,9 +475,25 @@ public final class CloudSaveManager {
     }
 
     public void downloadFile(Path file, S3Object s3Object, @Nullable TaskProgressListener listener) throws IOException {
+        fetchFile(file, s3Object, listener).commit();
+    }
+
+    /**
+     * Download a file from S3 to a temporary file next to its destination.
+     * <p>
+     * The download must be {@link PendingDownload#commit() committed} to validate
+     * and move it into place, or {@link PendingDownload#discard() discarded}.
+     *
+     * @param file     The destination file.
+     * @param s3Object The object to download.
+     * @param listener The progress listener.
+     * @return The pending download.
+     */
+    public PendingDownload fetchFile(Path file, S3Object s3Object, @Nullable TaskProgressListener listener) throws IOException {
         assert s3Client != null;
 
         Path tempFile = file.resolveSibling("__tmp_" + file.getFileName());
+        boolean success = false;
         try (ResponseInputStream<GetObjectResponse> is = s3Client.getObject(e -> e.bucket(s3Bucket).key(s3Object.key()))) {
             GetObjectResponse response = is.response();
             if (listener != null) {
@@ -458,28 +524,21 @@ public final class CloudSaveManager {
                 expectedHash = response.metadata().get(HASH_METADATA);
                 lastModified = response.metadata().get(LAST_MODIFIED_METADATA);
             }
-            if (expectedHash != null) {
-                HashCode actualHash = HashUtils.hash(Hashing.sha1(), tempFile);
-                if (HashUtils.equals(actualHash, expectedHash)) {
-                    throw new IOException("File failed SHA1 validation. Expected: " + expectedHash + " Actual: " + actualHash);
-                }
+            success = true;
+            return new PendingDownload(file, tempFile, expectedHash, lastModified);
+        } finally {
+            if (!success) {
+                deleteTempFile(tempFile);
             }
-            Files.move(tempFile, IOUtils.makeParents(file), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-            if (lastModified != null) {
-                try {
-                    Files.setLastModifiedTime(file, FileTime.fromMillis(Long.parseLong(lastModified)));
-                } catch (NumberFormatException ex) {
-                    throw new IOException("x-last-modified metadata was malformed.", ex);
-                }
-            }
-        } finally {
-            if (Files.exists(tempFile)) { // This will only exist if validation failed.
-                try {
-                    Files.delete(tempFile);
-                } catch (IOException ex) {
-                    LOGGER.error("Failed to cleanup temp file after failure.", ex);
-                }
+    private static void deleteTempFile(Path tempFile) {
+        if (Files.exists(tempFile)) { // This will only exist if validation failed.
+            try {
+                Files.delete(tempFile);
+            } catch (IOException ex) {
+                LOGGER.error("Failed to cleanup temp file after failure.", ex);
             }
         }
     }
@@ -495,36 +554,115 @@ public final class CloudSaveManager {
     public Map<String, S3Object> listInstance(Instance instance) {
         ImmutableMap.Builder<String, S3Object> builder = ImmutableMap.builder();
         String prefix = instance.getUuid() + "/";
-        for (S3Object s3Object : listBucket(prefix)) {
+        for (S3Object s3Object : streamBucket(prefix)) {
             builder.put(StringUtils.removeStart(s3Object.key(), prefix), s3Object);
         }
         return builder.build();
     }
 
+    /**
+     * List every object in the bucket with the given prefix.
+     * <p>
+     * Prefer {@link #streamBucket} where the objects don't need to be held in memory.
+     *
+     * @param prefix The prefix.
+     * @return The objects.
+     */
     public List<S3Object> listBucket(String prefix) {
+        List<S3Object> built = ImmutableList.copyOf(streamBucket(prefix));
+        if (DEBUG) {
+            LOGGER.info("Finished listing bucket. {} objects.", built.size());
+        }
+        return built;
+    }
+
+    /**
+     * Lazily list objects in the bucket with the given prefix.
+     * <p>
+     * Pages are only requested from S3 as the returned iterable is consumed.
+     *
+     * @param prefix The prefix.
+     * @return The objects.
+     */
+    public Iterable<S3Object> streamBucket(String prefix) {
         if (s3Client == null) return List.of();
         if (DEBUG) {
-            LOGGER.info("Listing entire bucket with prefix: {}", prefix);
+            LOGGER.info("Listing bucket with prefix: {}", prefix);
         }
 
-        ImmutableList.Builder<S3Object> objects = ImmutableList.builder();
         ListObjectsV2Request request = ListObjectsV2Request.builder()
                 .prefix(prefix)
                 .bucket(s3Bucket)
                 .build();
-        for (ListObjectsV2Response response : s3Client.listObjectsV2Paginator(request)) {
-            List<S3Object> toAdd = response.contents();
-            if (DEBUG) {
-                LOGGER.info(" Adding {} objects to list.", toAdd.size());
+        return s3Client.listObjectsV2Paginator(request).contents();
+    }
+
+    /**
+     * List the root of every instance in the bucket.
+     * <p>
+     * This only lists the top level of each instance directory, the size of
+     * a bucket listed this way does not depend on how many files each instance has.
+     *
+     * @return The instance roots, keyed by instance uuid.
+     */
+    public Map<String, InstanceRoot> listInstanceRoots() {
+        if (s3Client == null) return Map.of();
+
+        Map<String, InstanceRoot> roots = new HashMap<>();
+        Matcher matcher = INSTANCE_UUID_REGEX.matcher("");
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(s3Bucket)
+                .delimiter("/")
+                .build();
+        for (CommonPrefix commonPrefix : s3Client.listObjectsV2Paginator(request).commonPrefixes()) {
+            matcher.reset(commonPrefix.prefix());
+            if (!matcher.find()) continue;
+            String uuid = matcher.group(1);
+
+            Map<String, S3Object> files = new HashMap<>();
+            ListObjectsV2Request rootRequest = ListObjectsV2Request.builder()
+                    .bucket(s3Bucket)
+                    .prefix(commonPrefix.prefix())
+                    .delimiter("/")
+                    .build();
+            for (S3Object s3Object : s3Client.listObjectsV2Paginator(rootRequest).contents()) {
+                files.put(StringUtils.removeStart(s3Object.key(), commonPrefix.prefix()), s3Object);
             }
-            objects.addAll(toAdd);
+            roots.put(uuid, new InstanceRoot(uuid, files));
         }
+        if (DEBUG) {
+            LOGGER.info("Found {} instance roots.", roots.size());
+        }
+        return roots;
+    }
 
-        List<S3Object> built = objects.build();
+    /**
+     * Get the listing summary for an instance.
+     * <p>
+     * Every sync rewrites the instance's root files (sync_manifest.json), so the listing
+     * from a previous call is reused as long as the root files are unchanged.
+     * Otherwise, the instance is streamed in full to compute a new summary.
+     *
+     * @param root The instance root.
+     * @return The listing summary.
+     */
+    public InstanceListing getListing(InstanceRoot root) {
+        String marker = root.marker();
+        InstanceListing listing = listingCache.get(root.uuid());
+        if (listing != null && listing.marker().equals(marker)) return listing;
+
+        long size = 0;
+        int count = 0;
+        for (S3Object s3Object : streamBucket(root.uuid() + "/")) {
+            size += s3Object.size();
+            count++;
+        }
+        listing = new InstanceListing(marker, size, count);
+        listingCache.put(root.uuid(), listing);
         if (DEBUG) {
-            LOGGER.info("Finished listing bucket. {} objects.", built.size());
+            LOGGER.info("Listed instance {}. {} objects, {} bytes.", root.uuid(), count, size);
         }
-        return built;
+        return listing;
     }
 
     public void deleteObjects(Collection<S3Object> objects) {
@@ -571,6 +709,77 @@ public final class CloudSaveManager {
             s3Client.close();
             s3Client = null;
         }
+        listingCache.clear();
+    }
+
+    /**
+     * The top level of an instance directory in the bucket.
+     *
+     * @param uuid  The instance uuid.
+     * @param files The files in the root of the instance, keyed by name.
+     */
+    public record InstanceRoot(String uuid, Map<String, S3Object> files) {
+
+        /**
+         * @return A marker which changes whenever any root file changes.
+         */
+        public String marker() {
+            return FastStream.of(new TreeMap<>(files).values())
+                    .map(e -> e.key() + ":" + e.eTag() + ":" + e.size())
+                    .join(";");
+        }
+    }
+
+    /**
+     * A summary of everything stored for an instance.
+     *
+     * @param marker The {@link InstanceRoot#marker()} the summary was computed at.
+     * @param size   The total size of all objects, in bytes.
+     * @param count  The number of objects.
+     */
+    public record InstanceListing(String marker, long size, int count) { }
+
+    /**
+     * A file which has been downloaded to a temporary location, but not yet validated or moved into place.
+     *
+     * @param file         The destination file.
+     * @param tempFile     The temporary file.
+     * @param expectedHash The expected SHA256 hash, from the object metadata.
+     * @param lastModified The last modified time, from the object metadata.
+     */
+    public record PendingDownload(Path file, Path tempFile, @Nullable String expectedHash, @Nullable String lastModified) {
+
+        /**
+         * Validate the download and move it to its destination.
+         */
+        public void commit() throws IOException {
+            try {
+                if (expectedHash != null) {
+                    HashCode actualHash = HashUtils.hash(Hashing.sha256(), tempFile);
+                    if (!HashUtils.equals(actualHash, expectedHash)) {
+                        throw new IOException("File failed SHA256 validation. Expected: " + expectedHash + " Actual: " + actualHash);
+                    }
+                }
+                Files.move(tempFile, IOUtils.makeParents(file), StandardCopyOption.REPLACE_EXISTING);
+
+                if (lastModified != null) {
+                    try {
+                        Files.setLastModifiedTime(file, FileTime.fromMillis(Long.parseLong(lastModified)));
+                    } catch (NumberFormatException ex) {
+                        throw new IOException("x-last-modified metadata was malformed.", ex);
+                    }
+                }
+            } finally {
+                deleteTempFile(tempFile);
+            }
+        }
+
+        /**
+         * Delete the temporary file without moving it into place.
+         */
+        public void discard() {
+            deleteTempFile(tempFile);
+        }
     }
 
     public record SyncResult(ResultType type, String reason) {
@@ -17,6 +17,7 @@ import net.creeperhost.creeperlauncher.install.OperationProgressTracker;
 import net.creeperhost.creeperlauncher.install.tasks.*;
 import net.creeperhost.creeperlauncher.install.tasks.modloader.ModLoaderInstallTask;
 import net.creeperhost.creeperlauncher.pack.Instance;
+import net.creeperhost.creeperlauncher.util.ElapsedTimer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
@@ -26,7 +27,6 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.util.*;
@@ -245,8 +245,7 @@ public class CloudSyncOperation {
 
             if (syncError == null) {
                 try {
-                    long totalSize = 0;
-                    List<Task> tasks = new LinkedList<>();
+                    List<CloudTransferEngine.Transfer> transfers = new ArrayList<>();
                     if (direction == SyncDirection.UPLOAD) {
                         assert downloadOperations.isEmpty();
                         progressTracker.nextStage(SyncStage.CLEAN);
@@ -262,22 +261,7 @@ public class CloudSyncOperation {
                         progressTracker.nextStage(SyncStage.SYNC_UP, uploadOperations.size());
                         for (FileOperation op : uploadOperations) {
                             assert op.local != null;
-
-                            totalSize += op.local.size();
-
-                            tasks.add((cancelToken, listener) -> {
-                                try {
-                                    LOGGER.info("Uploading file to S3: {}", op.local.path());
-                                    if (op.remote != null) {
-                                        saveManager.uploadFile(op.local.path, op.remote.s3Object.key(), listener);
-                                    } else {
-                                        String key = instance.getUuid() + "/" + instance.getDir().relativize(op.local.path);
-                                        saveManager.uploadFile(op.local.path, key, listener);
-                                    }
-                                } finally {
-                                    progressTracker.stepFinished();
-                                }
-                            });
+                            transfers.add(new UploadTransfer(op.local, op.remote));
                         }
                     } else {
                         assert direction == SyncDirection.DOWNLOAD;
@@ -295,38 +279,17 @@ public class CloudSyncOperation {
                         progressTracker.nextStage(SyncStage.SYNC_DOWN, downloadOperations.size());
                         for (FileOperation op : downloadOperations) {
                             assert op.remote != null;
-
-                            totalSize += op.remote.size();
-
-                            tasks.add((cancelToken, listener) -> {
-                                try {
-                                    LOGGER.info("Downloading file from S3: {}", op.remote.path);
-                                    Path path = op.local != null ? op.local.path : instance.getDir().resolve(op.remote.path);
-                                    HashCode hash = op.remote.hash();
-                                    // Try and find compatible file in local cache.
-                                    if (hash != null) {
-                                        Path cacheFile = CreeperLauncher.localCache.get(hash);
-                                        if (cacheFile != null) {
-                                            Files.copy(cacheFile, IOUtils.makeParents(path), StandardCopyOption.REPLACE_EXISTING);
-                                            Instant lastModified = op.remote.lastModified();
-                                            if (lastModified != null) {
-                                                Files.setLastModifiedTime(path, FileTime.from(lastModified));
-                                            }
-                                            return;
-                                        }
-                                    }
-                                    saveManager.downloadFile(path, op.remote.s3Object, listener);
-                                } finally {
-                                    progressTracker.stepFinished();
-                                }
-                            });
+                            transfers.add(new DownloadTransfer(op.local, op.remote));
                         }
                     }
 
-                    TaskProgressListener listener = progressTracker.listenerForStage();
-                    listener.start(totalSize);
-                    TaskProgressAggregator aggregator = new ParallelTaskProgressAggregator(listener);
-                    ParallelTaskHelper.executeInParallel(null, Task.TASK_POOL, tasks, aggregator);
+                    long start = System.nanoTime();
+                    new CloudTransferEngine(Task.TASK_POOL).run(
+                            transfers,
+                            progressTracker.listenerForStage(),
+                            progressTracker::stepFinished,
+                            () -> LOGGER.info("Priority files synced in {}.", ElapsedTimer.timeString(System.nanoTime() - start))
+                    );
                 } catch (Throwable ex) {
                     LOGGER.error("Failed to process sync, instance may be in an invalid state.", ex);
                     syncError = ex;
@@ -497,6 +460,22 @@ public class CloudSyncOperation {
         return SyncDirection.UP_TO_DATE;
     }
 
+    /**
+     * Get the scheduling tier for the given path.
+     * <p>
+     * Paths in {@link #FILE_PRIORITIES} get the index of their priority, followed by
+     * everything else, then paths in {@link #FILE_UN_PRIORITIES}.
+     *
+     * @param path The path.
+     * @return The tier.
+     */
+    static int getPathTier(String path) {
+        int priority = getPathPriority(path);
+        if (priority != -1) return priority;
+        if (isUnPrioritized(path)) return FILE_PRIORITIES.size() + 1;
+        return FILE_PRIORITIES.size();
+    }
+
     private static int getPathPriority(String path) {
         // Normalize
         path = path.replace('\\', '/').toLowerCase(Locale.ROOT);
@@ -519,6 +498,93 @@ public class CloudSyncOperation {
         return false;
     }
 
+    private class UploadTransfer implements CloudTransferEngine.Transfer {
+
+        private final LocalFile local;
+        private final @Nullable RemoteFile remote;
+        private final long size;
+        private @Nullable HashCode hash;
+
+        private UploadTransfer(LocalFile local, @Nullable RemoteFile remote) {
+            this.local = local;
+            this.remote = remote;
+            size = local.size();
+        }
+
+        // @formatter:off
+        @Override public long size() { return size; }
+        @Override public int tier() { return getPathTier(local.path()); }
+        // @formatter:on
+
+        @Override
+        public void prepare() {
+            hash = local.hash();
+        }
+
+        @Override
+        public void transfer(TaskProgressListener listener) throws IOException {
+            LOGGER.info("Uploading file to S3: {}", local.path());
+            String key = remote != null ? remote.s3Object.key() : instance.getUuid() + "/" + instance.getDir().relativize(local.path);
+            saveManager.uploadFile(local.path, key, hash, listener);
+        }
+    }
+
+    private class DownloadTransfer implements CloudTransferEngine.Transfer {
+
+        private final Path path;
+        private final RemoteFile remote;
+        private boolean fromCache;
+        @Nullable
+        private CloudSaveManager.PendingDownload pending;
+
+        private DownloadTransfer(@Nullable LocalFile local, RemoteFile remote) {
+            this.remote = remote;
+            path = local != null ? local.path : instance.getDir().resolve(remote.path);
+        }
+
+        // @formatter:off
+        @Override public long size() { return remote.size(); }
+        @Override public int tier() { return getPathTier(remote.path()); }
+        // @formatter:on
+
+        @Override
+        public void prepare() throws IOException {
+            HashCode hash = remote.hash();
+            if (hash == null) return;
+
+            // Try and find compatible file in local cache.
+            if (!CreeperLauncher.localCache.copyTo(hash, path)) return;
+
+            Instant lastModified = remote.lastModified();
+            if (lastModified != null) {
+                Files.setLastModifiedTime(path, FileTime.from(lastModified));
+            }
+            fromCache = true;
+        }
+
+        @Override
+        public void transfer(TaskProgressListener listener) throws IOException {
+            if (fromCache) return;
+
+            LOGGER.info("Downloading file from S3: {}", remote.path);
+            pending = saveManager.fetchFile(path, remote.s3Object, listener);
+        }
+
+        @Override
+        public void commit() throws IOException {
+            if (pending != null) {
+                pending.commit();
+            }
+        }
+
+        @Override
+        public void abort() {
+            if (pending != null) {
+                pending.discard();
+            }
+        }
+    }
+
     public enum SyncDirection {
         UP_TO_DATE,
         DOWNLOAD,
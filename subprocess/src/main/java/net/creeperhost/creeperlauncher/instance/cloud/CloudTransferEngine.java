@@ -0,0 +1,236 @@
+package net.creeperhost.creeperlauncher.instance.cloud;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.covers1624.quack.util.SneakyUtils;
+import net.creeperhost.creeperlauncher.install.tasks.TaskProgressListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs cloud sync transfers as a pipeline.
+ * <p>
+ * Each transfer has three stages. A local {@link Transfer#prepare() prepare} stage, such as hashing
+ * a file before upload, a network {@link Transfer#transfer transfer} stage, and a local
+ * {@link Transfer#commit() commit} stage, such as validating and moving a download into place.
+ * Local stages run on a small disk executor and network stages on the transfer executor, so
+ * hashing and writing one file overlaps with transferring others.
+ * <p>
+ * The total size of all transfers in flight is bounded. Transfers are started in tier order, then
+ * smallest first, so everything in {@link CloudSyncOperation#FILE_PRIORITIES} finishes early.
+ */
+public final class CloudTransferEngine {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("CloudTransferEngine.debug");
+
+    /**
+     * The maximum number of bytes in flight at once.
+     */
+    public static final long MAX_IN_FLIGHT = Long.getLong("CloudTransferEngine.maxInFlight", 128 * 1024 * 1024);
+
+    /**
+     * The minimum number of bytes a transfer counts towards {@link #MAX_IN_FLIGHT}.
+     * Stops thousands of tiny files all being started at once.
+     */
+    private static final long MIN_COST = 64 * 1024;
+
+    private static final ExecutorService DISK_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+            new ThreadFactoryBuilder()
+                    .setNameFormat("Cloud Sync Disk %d")
+                    .setDaemon(true)
+                    .build()
+    );
+
+    private final Executor diskExecutor;
+    private final Executor transferExecutor;
+    private final int maxInFlight;
+
+    public CloudTransferEngine(Executor transferExecutor) {
+        this(DISK_EXECUTOR, transferExecutor, MAX_IN_FLIGHT);
+    }
+
+    public CloudTransferEngine(Executor diskExecutor, Executor transferExecutor, long maxInFlight) {
+        this.diskExecutor = diskExecutor;
+        this.transferExecutor = transferExecutor;
+        this.maxInFlight = (int) Math.min(Integer.MAX_VALUE, maxInFlight);
+    }
+
+    /**
+     * Run the given transfers, blocking until they have all finished.
+     * <p>
+     * A failed transfer does not stop the others. Once every transfer has finished, the
+     * first failure is thrown with the others suppressed.
+     *
+     * @param transfers        The transfers.
+     * @param listener         The listener to report overall byte progress to.
+     * @param onFinished       Called after each transfer finishes, successfully or not.
+     * @param onPriorityFinish Called once every transfer in tier 0 to {@link CloudSyncOperation#FILE_PRIORITIES} has finished.
+     */
+    public void run(List<? extends Transfer> transfers, @Nullable TaskProgressListener listener, @Nullable Runnable onFinished, @Nullable Runnable onPriorityFinish) throws InterruptedException {
+        List<Transfer> ordered = new ArrayList<>(transfers);
+        ordered.sort(Comparator.comparingInt(Transfer::tier).thenComparingLong(Transfer::size));
+
+        long total = 0;
+        int priorityCount = 0;
+        for (Transfer transfer : ordered) {
+            total += transfer.size();
+            if (transfer.tier() < CloudSyncOperation.FILE_PRIORITIES.size()) {
+                priorityCount++;
+            }
+        }
+        if (listener != null) {
+            listener.start(total);
+        }
+
+        Pipeline pipeline = new Pipeline(ordered.size(), priorityCount, listener, onFinished, onPriorityFinish);
+        if (priorityCount == 0 && onPriorityFinish != null) {
+            onPriorityFinish.run();
+        }
+        for (Transfer transfer : ordered) {
+            pipeline.submit(transfer);
+        }
+        pipeline.latch.await();
+
+        if (listener != null) {
+            listener.finish(pipeline.processed.get());
+        }
+        if (DEBUG) {
+            LOGGER.info("Finished {} transfers, {} failed.", ordered.size(), pipeline.failures.size());
+        }
+
+        if (pipeline.failures.isEmpty()) return;
+
+        // Throw the first failure with all others suppressed.
+        Throwable first = pipeline.failures.get(0);
+        for (Throwable failure : pipeline.failures.subList(1, pipeline.failures.size())) {
+            first.addSuppressed(failure);
+        }
+        SneakyUtils.throwUnchecked(first);
+    }
+
+    private final class Pipeline {
+
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final CountDownLatch latch;
+        private final AtomicInteger priorityRemaining;
+        private final AtomicLong processed = new AtomicLong();
+        private final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        private final @Nullable TaskProgressListener listener;
+        private final @Nullable Runnable onFinished;
+        private final @Nullable Runnable onPriorityFinish;
+
+        private Pipeline(int count, int priorityCount, @Nullable TaskProgressListener listener, @Nullable Runnable onFinished, @Nullable Runnable onPriorityFinish) {
+            latch = new CountDownLatch(count);
+            priorityRemaining = new AtomicInteger(priorityCount);
+            this.listener = listener;
+            this.onFinished = onFinished;
+            this.onPriorityFinish = onPriorityFinish;
+        }
+
+        private void submit(Transfer transfer) throws InterruptedException {
+            int cost = (int) Math.min(maxInFlight, Math.max(MIN_COST, transfer.size()));
+            inFlight.acquire(cost);
+
+            FileProgress progress = new FileProgress();
+            CompletableFuture.runAsync(SneakyUtils.sneak(transfer::prepare), diskExecutor)
+                    .thenRunAsync(SneakyUtils.sneak(() -> transfer.transfer(progress)), transferExecutor)
+                    .thenRunAsync(SneakyUtils.sneak(transfer::commit), diskExecutor)
+                    .whenComplete((v, ex) -> {
+                        try {
+                            inFlight.release(cost);
+                            if (ex != null) {
+                                failures.add(ex instanceof CompletionException ? ex.getCause() : ex);
+                                transfer.abort();
+                            }
+                            // Count the file as processed even if it failed, or didn't report any progress.
+                            progress.update(transfer.size());
+                            if (onFinished != null) {
+                                onFinished.run();
+                            }
+                            if (transfer.tier() < CloudSyncOperation.FILE_PRIORITIES.size()
+                                && priorityRemaining.decrementAndGet() == 0
+                                && onPriorityFinish != null) {
+                                onPriorityFinish.run();
+                            }
+                        } catch (Throwable t) {
+                            failures.add(t);
+                        } finally {
+                            // Always, or run() waits forever.
+                            latch.countDown();
+                        }
+                    });
+        }
+
+        // Tracks the progress of a single file, as it moves between threads.
+        private final class FileProgress implements TaskProgressListener {
+
+            private long last;
+
+            @Override
+            public void start(long total) {
+            }
+
+            @Override
+            public synchronized void update(long processed) {
+                if (processed <= last) return;
+                long total = Pipeline.this.processed.addAndGet(processed - last);
+                last = processed;
+                if (listener != null) {
+                    listener.update(total);
+                }
+            }
+
+            @Override
+            public void finish(long total) {
+            }
+        }
+    }
+
+    /**
+     * A single file transfer.
+     */
+    public interface Transfer {
+
+        /**
+         * @return The size of the file in bytes.
+         */
+        long size();
+
+        /**
+         * The scheduling tier of this transfer, lower tiers are started first.
+         * Tiers below the size of {@link CloudSyncOperation#FILE_PRIORITIES} are priority files.
+         *
+         * @return The tier.
+         */
+        int tier();
+
+        /**
+         * Local work before the transfer, run on the disk executor.
+         */
+        default void prepare() throws Throwable { }
+
+        /**
+         * The network transfer, run on the transfer executor.
+         *
+         * @param listener The listener to report progress to.
+         */
+        void transfer(TaskProgressListener listener) throws Throwable;
+
+        /**
+         * Local work after the transfer, run on the disk executor.
+         */
+        default void commit() throws Throwable { }
+
+        /**
+         * Called if any stage failed, to clean up.
+         */
+        default void abort() { }
+    }
+}
@@ -7,7 +7,7 @@ import java.util.concurrent.CompletableFuture;
  */
 public class CancellationToken {
 
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
 
     public boolean isCanceled() {
         return isCanceled;
@@ -22,6 +22,9 @@ import net.creeperhost.creeperlauncher.data.modpack.ModpackManifest;
 import net.creeperhost.creeperlauncher.data.modpack.ModpackVersionManifest;
 import net.creeperhost.creeperlauncher.data.modpack.ModpackVersionModsManifest;
 import net.creeperhost.creeperlauncher.install.tasks.DownloadTask;
+import net.creeperhost.creeperlauncher.install.tasks.Task;
+import net.creeperhost.creeperlauncher.instance.InstanceArt;
+import net.creeperhost.creeperlauncher.instance.InstanceCloner;
 import net.creeperhost.creeperlauncher.instance.cloud.CloudSaveManager;
 import net.creeperhost.creeperlauncher.minecraft.modloader.forge.ForgeJarModLoader;
 import net.creeperhost.creeperlauncher.storage.settings.Settings;
@@ -40,7 +43,7 @@ import org.jetbrains.annotations.Nullable;
 import javax.annotation.WillNotClose;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -74,6 +77,10 @@ public class Instance {
 
     private long startTime;
 
+    // The last non-rich mods list, only used whilst the instance directory is being watched.
+    @Nullable
+    private volatile List<ModInfo> cachedMods;
+
     // Brand-new instance.
     public Instance(@Nullable String name, @Nullable String artPath, @Nullable String category, ModpackManifest modpack, ModpackVersionManifest versionManifest, String mcVersion, boolean isPrivate, byte packType) {
         props = new InstanceJson(modpack, versionManifest, mcVersion, isPrivate, packType);
@@ -158,6 +165,9 @@ public class Instance {
         props = InstanceJson.load(getDir().resolve("instance.json"));
         props.cloudSaves = true;
         loadVersionManifest();
+        migrateArt();
+        // Now backed by local metadata, re-register so the registry tracks it.
+        Instances.addInstance(this);
     }
 
     private void loadVersionManifest() throws IOException {
@@ -193,16 +203,41 @@ public class Instance {
     }
 
     private void doImportArt(@WillNotClose InputStream is) throws IOException {
-        BufferedImage resizedArt = ImageUtils.resizeImage(is, 256, 256);
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ImageIO.write(resizedArt, "png", bos);
-        props.art = "data:image/png;base64," + Base64.getEncoder().encodeToString(bos.toByteArray());
+        BufferedImage image = ImageIO.read(is);
+        if (image == null) throw new IOException("Unsupported image format.");
+
+        props.artHash = getArt().importArt(image);
+        props.art = null;
         // folder.jpg is not strictly used, it exists for easy folder navigation.
         try (OutputStream os = Files.newOutputStream(path.resolve("folder.jpg"))) {
-            ImageIO.write(resizedArt, "jpg", os);
+            ImageIO.write(ImageUtils.resizeImage(image, InstanceArt.SIZE, InstanceArt.SIZE), "jpg", os);
         }
     }
 
+    /**
+     * Art used to be embedded in instance.json as a base64 data url, move it into {@link InstanceArt}.
+     * <p>
+     * This saves the instance json, so must not be called whilst {@link Instances} is loading instances.
+     */
+    public synchronized void migrateArt() {
+        if (pendingCloudInstance || props.art == null || !props.art.startsWith("data:image/")) return;
+
+        try {
+            String base64 = props.art.substring(props.art.indexOf(',') + 1);
+            try (InputStream is = new ByteArrayInputStream(Base64.getDecoder().decode(base64))) {
+                props.artHash = getArt().importArt(is);
+            }
+            props.art = null;
+            saveJson();
+        } catch (IOException | IllegalArgumentException ex) {
+            LOGGER.warn("Failed to migrate art for instance {}.", props.uuid, ex);
+        }
+    }
+
+    public InstanceArt getArt() {
+        return new InstanceArt(path);
+    }
+
     public synchronized void pollVersionManifest() {
         if (pendingCloudInstance) return; // Do nothing for pending cloud save instances.
         if (props.isImport) return; // Can't update manifests for imports.
@@ -214,6 +249,7 @@ public class Instance {
             }
             versionManifest = newManifest.getRight();
             JsonUtils.write(ModpackVersionManifest.GSON, path.resolve("version.json"), versionManifest, ModpackVersionManifest.class);
+            Instances.metadataSaved(this);
         } catch (IOException ex) {
             LOGGER.warn("Failed to update manifest for modpack. This may be a private pack.", ex);
         }
@@ -254,11 +290,12 @@ public class Instance {
     /**
      * Starts the instance.
      *
-     * @param token     The CancellationToken for cancelling the launch.
-     * @param extraArgs Extra JVM arguments.
+     * @param token       The CancellationToken for cancelling the launch.
+     * @param extraArgs   Extra JVM arguments.
+     * @param verifyFiles If game files should be hashed, instead of trusting previous verification.
      * @throws InstanceLaunchException If there was an error preparing or starting the instance.
      */
-    public void play(CancellationToken token, String extraArgs, @Nullable String offlineUsername) throws InstanceLaunchException {
+    public void play(CancellationToken token, String extraArgs, @Nullable String offlineUsername, boolean verifyFiles) throws InstanceLaunchException {
         if (pendingCloudInstance) {
             // Technically a UI bug, should display Install/Sync instead of Launch.
             throw new InstanceLaunchException("Cloud instance needs to be installed before it can be launched.");
@@ -407,7 +444,7 @@ public class Instance {
             saveJson();
         });
         LOGGER.info("Handing off to launcher..");
-        launcher.launch(token, offlineUsername);
+        launcher.launch(token, offlineUsername, verifyFiles);
     }
 
     public InstanceLauncher getLauncher() {
@@ -420,7 +457,11 @@ public class Instance {
             throw new NotImplementedException("Unable to delete non-synced cloud instance.");
         }
         FileUtils.deleteDirectory(path);
-        Instances.refreshInstances();
+        Instances.removeInstance(getUuid());
+        if (props.cloudSaves) {
+            // The instance still exists in the cloud, poll so it shows up as a pending cloud instance.
+            CreeperLauncher.CLOUD_SAVE_MANAGER.pollCloudInstances();
+        }
         return true;
     }
 
@@ -459,6 +500,7 @@ public class Instance {
             Files.move(realJson, backupJson, StandardCopyOption.REPLACE_EXISTING);
         }
         Files.move(newJson, realJson);
+        Instances.metadataSaved(this);
     }
 
     public @Nullable InstanceModifications getModifications() {
@@ -477,6 +519,8 @@ public class Instance {
             if (modifications != null) {
                 Path modificationsJson = path.resolve("modifications.json");
                 InstanceModifications.save(modificationsJson, modifications);
+                cachedMods = null;
+                Instances.metadataSaved(this);
             }
         } catch (IOException ex) {
             LOGGER.error("Failed to save instance modifications.", ex);
@@ -498,7 +542,8 @@ public class Instance {
 
         Files.createDirectories(newDir);
 
-        org.apache.commons.io.FileUtils.copyDirectory(path.toFile(), newDir.toFile());
+        InstanceCloner.CloneResult result = new InstanceCloner(Task.TASK_POOL).clone(path, newDir);
+        LOGGER.info("Duplicated instance {} to {}: {}", path, newDir, result);
         InstanceJson.save(newJson, json);
 
         return new Instance(newDir, newJson);
@@ -506,11 +551,17 @@ public class Instance {
 
     /**
      * Get the mods list.
+     * <p>
+     * Whilst the instances directory is being watched, the non-rich list is
+     * cached until the watcher reports a change to the mods directory.
      *
      * @param rich If rich data is required up front.
      * @return The mods.
      */
     public synchronized List<ModInfo> getMods(boolean rich) {
+        if (!rich && cachedMods != null && Instances.isWatching()) {
+            return cachedMods;
+        }
         LOGGER.info("Building instance mods list..");
         List<ModInfo> mods = new ArrayList<>();
 
@@ -636,9 +687,19 @@ public class Instance {
         }
 
         LOGGER.info("List built {} mods.", mods.size());
+        if (!rich) {
+            cachedMods = List.copyOf(mods);
+        }
         return mods;
     }
 
+    /**
+     * Forget the cached mods list, the next call to {@link #getMods} will rebuild it.
+     */
+    public synchronized void invalidateMods() {
+        cachedMods = null;
+    }
+
     /**
      * Toggle a mod with the given fileId OR fileName.
      * <p>
@@ -128,9 +128,10 @@ public class InstanceLauncher {
      * <p>
      * It is illegal to call this method if {@link #isRunning()} returns true.
      *
+     * @param verifyFiles If game files should be hashed, instead of trusting previous verification.
      * @throws InstanceLaunchException If there was a direct error preparing the instance to be launched.
      */
-    public synchronized void launch(CancellationToken token, @Nullable String offlineUsername) throws InstanceLaunchException {
+    public synchronized void launch(CancellationToken token, @Nullable String offlineUsername, boolean verifyFiles) throws InstanceLaunchException {
         assert !isRunning();
         LOGGER.info("Attempting to launch instance {}({})", instance.getName(), instance.getUuid());
         setPhase(Phase.INITIALIZING);
@@ -149,7 +150,7 @@ public class InstanceLauncher {
 
         // This is run outside the future, as whatever is calling this method should immediately handle any errors
         // preparing the instance to be launched. It is not fun to propagate exceptions/errors across threads.
-        ProcessBuilder builder = prepareProcess(token, offlineUsername, assetsDir, versionsDir, librariesDir, features, privateTokens);
+        ProcessBuilder builder = prepareProcess(token, offlineUsername, verifyFiles, assetsDir, versionsDir, librariesDir, features, privateTokens);
 
         // Start thread.
         processThread = new Thread(() -> {
@@ -302,7 +303,7 @@ public class InstanceLauncher {
         tempDirs.clear();
     }
 
-    private ProcessBuilder prepareProcess(CancellationToken token, String offlineUsername, Path assetsDir, Path versionsDir, Path librariesDir, Set<String> features, Set<String> privateTokens) throws InstanceLaunchException {
+    private ProcessBuilder prepareProcess(CancellationToken token, String offlineUsername, boolean verifyFiles, Path assetsDir, Path versionsDir, Path librariesDir, Set<String> features, Set<String> privateTokens) throws InstanceLaunchException {
         try {
             progressTracker.startStep("Pre-Start Tasks"); // TODO locale support.
             Path gameDir = instance.getDir().toAbsolutePath();
@@ -349,7 +350,7 @@ public class InstanceLauncher {
             token.throwIfCancelled();
 
             progressTracker.startStep("Validate assets");
-            Pair<AssetIndex, AssetIndexManifest> assetPair = checkAssets(token, versionsDir);
+            Pair<AssetIndex, AssetIndexManifest> assetPair = checkAssets(token, versionsDir, verifyFiles);
             Path virtualAssets = buildVirtualAssets(assetPair.getLeft(), assetPair.getRight(), gameDir, assetsDir);
             progressTracker.finishStep();
 
@@ -504,7 +505,7 @@ public class InstanceLauncher {
         }
     }
 
-    private Pair<AssetIndex, AssetIndexManifest> checkAssets(CancellationToken token, Path versionsDir) throws IOException, InstanceLaunchException {
+    private Pair<AssetIndex, AssetIndexManifest> checkAssets(CancellationToken token, Path versionsDir, boolean verifyFiles) throws IOException, InstanceLaunchException {
         assert !manifests.isEmpty();
 
         LOGGER.info("Updating assets..");
@@ -524,7 +525,7 @@ public class InstanceLauncher {
             }
         }
 
-        InstallAssetsTask assetsTask = new InstallAssetsTask(index);
+        InstallAssetsTask assetsTask = new InstallAssetsTask(index, verifyFiles);
         if (!assetsTask.isRedundant()) {
             try {
                 assetsTask.execute(token, progressTracker.listenerForStep(true));
@@ -187,6 +187,7 @@ public class Settings {
                 new SettingsData.GeneralSettings(
                     getOrDefault("updateChannel", DEFAULT_SETTINGS.general().releaseChannel()),
                     getOrDefault("cacheLife", Integer::parseInt, DEFAULT_SETTINGS.general().cacheLife()),
+                    DEFAULT_SETTINGS.general().cacheMaxSize(),
                     getOrDefault("exitOverwolf", Boolean::parseBoolean, DEFAULT_SETTINGS.general().exitOverwolf()),
                     getOrDefault("verbose", Boolean::parseBoolean, DEFAULT_SETTINGS.general().verbose())
                 ),
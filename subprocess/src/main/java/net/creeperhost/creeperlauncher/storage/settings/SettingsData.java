@@ -84,6 +84,7 @@ public class SettingsData {
             new GeneralSettings(
                 "release",
                 5184000, // 60 days
+                0, // Unlimited
                 false,
                 false
             ),
@@ -341,17 +342,21 @@ public class SettingsData {
     public static final class GeneralSettings {
         private final String releaseChannel;
         private final int cacheLife;
+        // In bytes, 0 for unlimited. Missing from older settings files, so defaults to 0.
+        private final long cacheMaxSize;
         private final boolean exitOverwolf;
         private final boolean verbose;
 
         public GeneralSettings(
             String releaseChannel,
             int cacheLife,
+            long cacheMaxSize,
             boolean exitOverwolf,
             boolean verbose
         ) {
             this.releaseChannel = releaseChannel;
             this.cacheLife = cacheLife;
+            this.cacheMaxSize = cacheMaxSize;
             this.exitOverwolf = exitOverwolf;
             this.verbose = verbose;
         }
@@ -364,6 +369,10 @@ public class SettingsData {
             return cacheLife;
         }
 
+        public long cacheMaxSize() {
+            return cacheMaxSize;
+        }
+
         public boolean exitOverwolf() {
             return exitOverwolf;
         }
@@ -0,0 +1,288 @@
+package net.creeperhost.creeperlauncher.util;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import net.covers1624.quack.gson.JsonUtils;
+import net.covers1624.quack.io.IOUtils;
+import net.covers1624.quack.net.HttpResponseException;
+import net.covers1624.quack.util.SneakyUtils;
+import net.creeperhost.creeperlauncher.Constants;
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of <code>modpacks.ch</code> api responses.
+ * <p>
+ * Responses are cached according to their <code>Cache-Control</code> header, and revalidated
+ * with <code>If-None-Match</code>/<code>If-Modified-Since</code> once stale. Queries for
+ * immutable resources, such as a specific pack version, are served from disk without
+ * touching the network at all.
+ * <p>
+ * Concurrent queries for the same url share a single request. Error responses are never cached,
+ * including the <code>"status": "error"</code> responses the api returns with a 200.
+ * <p>
+ * Entries are keyed by the url and the credentials sent with it, so a response is never served
+ * for different credentials. Authenticated responses are always revalidated, even if immutable,
+ * so revoked credentials lose access. The cache is kept under a maximum size, evicting the least
+ * recently used entries first.
+ */
+public class ApiResponseCache {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("ApiResponseCache.debug");
+    private static final Gson GSON = new Gson();
+
+    private static final long DEFAULT_MAX_SIZE = Long.getLong("ApiResponseCache.maxSize", 64L * 1024 * 1024);
+    // Eviction walks the whole directory, so it's only done every so often.
+    private static final int SAVES_PER_EVICTION = 64;
+
+    private final Path dir;
+    private final Supplier<OkHttpClient> client;
+    private final LongSupplier clock;
+    private final Consumer<Request.Builder> auth;
+    private final long maxSize;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger savesUntilEviction = new AtomicInteger();
+
+    public ApiResponseCache(Path dir) {
+        this(dir, Constants::httpClient, System::currentTimeMillis);
+    }
+
+    // Visible for tests.
+    ApiResponseCache(Path dir, Supplier<OkHttpClient> client, LongSupplier clock) {
+        this(dir, client, clock, ModpacksChUtils::injectBearerHeader, DEFAULT_MAX_SIZE);
+    }
+
+    // Visible for tests.
+    ApiResponseCache(Path dir, Supplier<OkHttpClient> client, LongSupplier clock, Consumer<Request.Builder> auth, long maxSize) {
+        this.dir = dir;
+        this.client = client;
+        this.clock = clock;
+        this.auth = auth;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Query the given url.
+     *
+     * @param url       The url.
+     * @param immutable If the response for this url never changes once it exists.
+     * @return The response body.
+     * @throws IOException If the request failed and nothing usable is cached.
+     */
+    public String query(String url, boolean immutable) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(url)
+                .header("User-Agent", Constants.USER_AGENT)
+                // We do the caching.
+                .cacheControl(CacheControl.FORCE_NETWORK);
+        auth.accept(builder);
+        Request request = builder.build();
+
+        // The credentials are hashed along with the url, they never end up on disk.
+        String authorization = request.header("Authorization");
+        String key = Hashing.sha256().hashString(authorization != null ? url + "\n" + authorization : url, StandardCharsets.UTF_8).toString();
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            if (DEBUG) {
+                LOGGER.info("Joining in-flight query for {}.", url);
+            }
+            try {
+                return existing.join();
+            } catch (CompletionException ex) {
+                SneakyUtils.throwUnchecked(ex.getCause());
+                return null; // Unreachable.
+            }
+        }
+
+        try {
+            String body = doQuery(request, key, immutable && authorization == null);
+            future.complete(body);
+            return body;
+        } catch (Throwable ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private String doQuery(Request request, String key, boolean immutable) throws IOException {
+        String url = request.url().toString();
+        Path file = dir.resolve(key + ".json");
+        Entry entry = load(file);
+        long now = clock.getAsLong();
+        if (entry != null && (immutable || now < entry.expires())) {
+            if (DEBUG) {
+                LOGGER.info("Serving {} from cache.", url);
+            }
+            touch(file, now);
+            return entry.body();
+        }
+
+        Request.Builder builder = request.newBuilder();
+        if (entry != null) {
+            if (entry.eTag() != null) {
+                builder.header("If-None-Match", entry.eTag());
+            }
+            if (entry.lastModified() != null) {
+                builder.header("If-Modified-Since", entry.lastModified());
+            }
+        }
+
+        try (Response response = client.get().newCall(builder.build()).execute()) {
+            if (response.code() == 304 && entry != null) {
+                if (DEBUG) {
+                    LOGGER.info("Revalidated {}.", url);
+                }
+                save(file, new Entry(entry.eTag(), entry.lastModified(), expires(response, now), entry.body()));
+                return entry.body();
+            }
+
+            ResponseBody body = response.body();
+            if (response.code() >= 400 && response.code() < 500) {
+                // Gone, or our credentials no longer have access, whatever we have cached must not be served.
+                Files.deleteIfExists(file);
+                throw new HttpResponseException(response.code(), response.message());
+            }
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Unexpected response code " + response.code() + " for " + url);
+            }
+
+            String str = body.string();
+            CacheControl cacheControl = response.cacheControl();
+            if (!cacheControl.noStore() && !isError(str)) {
+                save(file, new Entry(response.header("ETag"), response.header("Last-Modified"), expires(response, now), str));
+            }
+            return str;
+        } catch (IOException ex) {
+            if (entry == null || ex instanceof HttpResponseException) throw ex;
+
+            LOGGER.warn("Failed to revalidate {}. Using stale response.", url, ex);
+            return entry.body();
+        }
+    }
+
+    @Nullable
+    private Entry load(Path file) {
+        if (Files.notExists(file)) return null;
+        try {
+            return JsonUtils.parse(GSON, file, Entry.class);
+        } catch (IOException | JsonParseException ex) {
+            LOGGER.warn("Failed to read cached api response {}.", file, ex);
+            return null;
+        }
+    }
+
+    private void save(Path file, Entry entry) {
+        try {
+            // Write to a temp file first, a concurrent reader must never see a partial entry.
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp" + Thread.currentThread().getId());
+            JsonUtils.write(GSON, IOUtils.makeParents(tmp), entry, Entry.class);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to cache api response {}.", file, ex);
+        }
+        // Also evicts on the first save, catching up on whatever previous runs left behind.
+        if (savesUntilEviction.getAndDecrement() <= 0) {
+            savesUntilEviction.set(SAVES_PER_EVICTION);
+            evict();
+        }
+    }
+
+    // Eviction is least recently used first, so hits bump the modified time.
+    private static void touch(Path file, long now) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(now));
+        } catch (IOException ex) {
+            // Not important, only affects which entries are evicted first.
+        }
+    }
+
+    // Visible for tests.
+    void evict() {
+        List<Pair<Path, BasicFileAttributes>> files = new ArrayList<>();
+        long size = 0;
+        try (Stream<Path> stream = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attrs.isRegularFile()) continue;
+
+                files.add(Pair.of(file, attrs));
+                size += attrs.size();
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to list api cache {}.", dir, ex);
+            return;
+        }
+        if (size <= maxSize) return;
+
+        files.sort(Comparator.comparing(e -> e.getRight().lastModifiedTime()));
+        int evicted = 0;
+        for (Pair<Path, BasicFileAttributes> file : files) {
+            if (size <= maxSize) break;
+            try {
+                Files.deleteIfExists(file.getLeft());
+                size -= file.getRight().size();
+                evicted++;
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to evict cached api response {}.", file.getLeft(), ex);
+            }
+        }
+        LOGGER.info("Evicted {} cached api responses from {}.", evicted, dir);
+    }
+
+    // When the response becomes stale, immediately unless the response says otherwise.
+    private static long expires(Response response, long now) {
+        CacheControl cacheControl = response.cacheControl();
+        if (cacheControl.noCache() || cacheControl.maxAgeSeconds() <= 0) return now;
+
+        return now + TimeUnit.SECONDS.toMillis(cacheControl.maxAgeSeconds());
+    }
+
+    private static boolean isError(String body) {
+        try {
+            JsonElement json = JsonParser.parseString(body);
+            return json.isJsonObject()
+                   && json.getAsJsonObject().has("status")
+                   && "error".equals(json.getAsJsonObject().get("status").getAsString());
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException ex) {
+            return true;
+        }
+    }
+
+    private record Entry(@Nullable String eTag, @Nullable String lastModified, long expires, String body) { }
+}
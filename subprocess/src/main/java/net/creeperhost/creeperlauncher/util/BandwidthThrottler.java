@@ -0,0 +1,195 @@
+package net.creeperhost.creeperlauncher.util;
+
+import okhttp3.*;
+import okio.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket bandwidth limiter shared between all response bodies
+ * of an {@link OkHttpClient}.
+ * <p>
+ * Tokens (bytes) are refilled continuously based on elapsed time, the bucket
+ * holds at most 100ms worth of bytes so bursts are small. Readers are served
+ * in FIFO order and each read is capped to a single bucket's worth, so concurrent
+ * downloads share the available bandwidth evenly.
+ */
+public final class BandwidthThrottler implements Interceptor {
+
+    /**
+     * The minimum bucket size. Prevents tiny reads at very low rates.
+     */
+    private static final long MIN_BUCKET_SIZE = 1024;
+
+    private final LongSupplier bytesPerSecond;
+    private final LongSupplier nanoTime;
+    private final Sleeper sleeper;
+    // Fair, so waiting readers are served in order.
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    private double tokens;
+    private long lastRefill;
+    private long lastRate;
+
+    /**
+     * @param bytesPerSecond Supplies the current limit, in bytes per second.
+     *                       Queried on each read. Values <code>&lt;= 0</code> disable the limit.
+     */
+    public BandwidthThrottler(LongSupplier bytesPerSecond) {
+        this(bytesPerSecond, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    // Visible for tests.
+    BandwidthThrottler(LongSupplier bytesPerSecond, LongSupplier nanoTime, Sleeper sleeper) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.nanoTime = nanoTime;
+        this.sleeper = sleeper;
+        lastRefill = nanoTime.getAsLong();
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        ResponseBody body = response.body();
+        if (body == null) return response;
+
+        return response.newBuilder()
+                .body(new ThrottledBody(body, Okio.buffer(source(body.source()))))
+                .build();
+    }
+
+    /**
+     * Wrap the given {@link Source} so all reads are limited by this throttler.
+     *
+     * @param delegate The source to wrap.
+     * @return The wrapped source.
+     */
+    public Source source(Source delegate) {
+        return new ForwardingSource(delegate) {
+            @Override
+            public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                long granted = take(byteCount);
+                long read = super.read(sink, granted);
+                if (read < granted) {
+                    refund(granted - Math.max(0, read));
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Take up to the requested number of bytes from the bucket, blocking until
+     * at least some are available.
+     *
+     * @param requested The number of bytes requested.
+     * @return The number of bytes granted, between <code>1</code> and <code>requested</code>.
+     * @throws InterruptedIOException If interrupted whilst waiting.
+     */
+    public long take(long requested) throws InterruptedIOException {
+        if (requested <= 0) return requested;
+        if (bytesPerSecond.getAsLong() <= 0) return requested;
+
+        try {
+            lock.lockInterruptibly();
+            try {
+                long rate = refill();
+                if (rate <= 0) return requested;
+
+                long want = Math.min(requested, bucketSize(rate));
+                double deficit = want - tokens;
+                if (deficit > 0) {
+                    // Holding the lock whilst we sleep is intentional, anyone else
+                    // would be queued behind us regardless.
+                    sleeper.sleep((long) Math.ceil(deficit / rate * TimeUnit.SECONDS.toNanos(1)));
+                    refill();
+                }
+                tokens -= want;
+                return want;
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted whilst waiting for bandwidth.");
+        }
+    }
+
+    /**
+     * Return unused bytes to the bucket.
+     *
+     * @param bytes The number of unused bytes.
+     */
+    public void refund(long bytes) {
+        if (bytes <= 0) return;
+        lock.lock();
+        try {
+            long rate = lastRate;
+            if (rate <= 0) return;
+            tokens = Math.min(tokens + bytes, bucketSize(rate));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must hold lock.
+    private long refill() {
+        long rate = bytesPerSecond.getAsLong();
+        long now = nanoTime.getAsLong();
+        if (rate != lastRate) {
+            // Limit changed (or was just enabled), start from an empty bucket.
+            lastRate = rate;
+            tokens = 0;
+        } else if (rate > 0) {
+            double elapsed = (now - lastRefill) / (double) TimeUnit.SECONDS.toNanos(1);
+            tokens = Math.min(tokens + elapsed * rate, bucketSize(rate));
+        }
+        lastRefill = now;
+        return rate;
+    }
+
+    private static long bucketSize(long rate) {
+        return Math.max(MIN_BUCKET_SIZE, rate / 10);
+    }
+
+    // Visible for tests.
+    interface Sleeper {
+
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    private static final class ThrottledBody extends ResponseBody {
+
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        private ThrottledBody(ResponseBody delegate, BufferedSource source) {
+            this.delegate = delegate;
+            this.source = source;
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @NotNull
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
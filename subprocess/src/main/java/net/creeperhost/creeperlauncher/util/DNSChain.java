@@ -1,11 +1,10 @@
 package net.creeperhost.creeperlauncher.util;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import net.covers1624.quack.collection.FastStream;
 import okhttp3.*;
 import okhttp3.dnsoverhttps.DnsOverHttps;
+import okio.ByteString;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
@@ -13,14 +12,9 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
 
 /**
  * Created by covers1624 on 20/2/23.
@@ -45,58 +39,182 @@ public final class DNSChain {
             .build()
     );
 
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newFixedThreadPool(4, new ThreadFactoryBuilder()
+            .setNameFormat("DNS Refresh Executor %d")
+            .setDaemon(true)
+            .build()
+    );
+
+    /**
+     * The TTL used when a step does not provide one, in seconds.
+     */
+    private static final long DEFAULT_TTL = Long.getLong("DNSChain.defaultTtl", 300);
+    /**
+     * Bounds applied to TTLs provided by steps, in seconds.
+     */
+    private static final long MIN_TTL = Long.getLong("DNSChain.minTtl", 30);
+    private static final long MAX_TTL = Long.getLong("DNSChain.maxTtl", 3600);
+    /**
+     * How long after expiry an answer may still be served whilst it is refreshed in the background, in seconds.
+     */
+    private static final long STALE_TTL = Long.getLong("DNSChain.staleTtl", 3600);
+    /**
+     * How long to wait before retrying a failed background refresh, in seconds. Doubles with each consecutive failure.
+     */
+    private static final long REFRESH_BACKOFF = Long.getLong("DNSChain.refreshBackoff", 15);
+    private static final int MAX_BACKOFF_SHIFT = 6;
+
     private final List<StepEntry> steps;
-    private final Cache<String, DNSResult> CACHE = CacheBuilder.newBuilder()
-            .expireAfterWrite(5, TimeUnit.MINUTES)
-            .build();
+    private final LongSupplier nanoTime;
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<DNSResult>> inFlight = new ConcurrentHashMap<>();
 
     public DNSChain(DNSStep... steps) {
+        this(true, System::nanoTime, steps);
+    }
+
+    DNSChain(boolean selfTest, LongSupplier nanoTime, DNSStep... steps) {
         this.steps = FastStream.of(steps)
                 .map(StepEntry::new)
                 .toImmutableList();
+        this.nanoTime = nanoTime;
 
-        scheduleSelfTest();
+        if (selfTest) {
+            scheduleSelfTest();
+        }
     }
 
     public InetAddress[] lookup(String host) throws UnknownHostException {
         return query(host).answer.clone();
     }
 
+    /**
+     * Query the given host.
+     * <p>
+     * Fresh answers are returned from the cache. Expired answers are still
+     * returned for a while, but trigger a refresh in the background. Failed
+     * refreshes are retried with backoff. Concurrent queries for the same host
+     * share a single resolution.
+     *
+     * @param host The host.
+     * @return The result.
+     * @throws UnknownHostException If all steps failed to resolve the host.
+     */
     public DNSResult query(String host) throws UnknownHostException {
         if (DEBUG) LOGGER.info("DNS query for {}", host);
-        DNSResult result = CACHE.getIfPresent(host);
-        if (DEBUG && result != null) LOGGER.info(" - Cached {}", (Object) result.answer);
-        if (result != null) return result;
-
-        synchronized (host.intern()) {
-            result = CACHE.getIfPresent(host);
-            if (DEBUG && result != null) LOGGER.info(" - Cached: {}", (Object) result.answer);
-            if (result != null) return result;
-
-            UnknownHostException exception = null;
-            for (StepEntry entry : steps) {
-                if (!entry.isEnabled()) continue;
-                DNSStep step = entry.step;
-                try {
-                    InetAddress[] answer = step.resolve(host);
-                    if (DEBUG) LOGGER.info(" - Resolved with {}: {}", step.getName(), answer);
-
-                    result = new DNSResult(host, step.getName(), answer);
-                    CACHE.put(host, result);
-                    return result;
-                } catch (UnknownHostException ex) {
-                    if (DEBUG) LOGGER.info(" - Tried with {}. ", step.getName(), ex);
-                    if (exception != null) {
-                        exception.addSuppressed(ex);
-                    } else {
-                        exception = ex;
-                    }
+        CacheEntry entry = cache.get(host);
+        if (entry != null) {
+            long now = nanoTime.getAsLong();
+            if (now - entry.expiresAt < 0) {
+                if (DEBUG) LOGGER.info(" - Cached {}", (Object) entry.result.answer);
+                return entry.result;
+            }
+            if (now - entry.staleUntil < 0) {
+                if (now - entry.retryAt >= 0) {
+                    if (DEBUG) LOGGER.info(" - Stale {}, refreshing.", (Object) entry.result.answer);
+                    refresh(host);
+                } else if (DEBUG) {
+                    LOGGER.info(" - Stale {}, backing off after failed refresh.", (Object) entry.result.answer);
+                }
+                return entry.result;
+            }
+        }
+
+        CompletableFuture<DNSResult> future = new CompletableFuture<>();
+        CompletableFuture<DNSResult> existing = inFlight.putIfAbsent(host, future);
+        if (existing != null) {
+            if (DEBUG) LOGGER.info(" - Waiting for in-flight query.");
+            return await(existing);
+        }
+        return resolveInto(host, future);
+    }
+
+    /**
+     * Resolve the given hosts in the background, so they are cached by the time they are needed.
+     *
+     * @param hosts The hosts.
+     */
+    public void prefetch(Collection<String> hosts) {
+        for (String host : hosts) {
+            if (!cache.containsKey(host)) {
+                refresh(host);
+            }
+        }
+    }
+
+    private void refresh(String host) {
+        CompletableFuture<DNSResult> future = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(host, future) != null) return;
+
+        REFRESH_EXECUTOR.execute(() -> {
+            try {
+                resolveInto(host, future);
+            } catch (UnknownHostException ex) {
+                // Keep serving the stale answer, if any.
+                LOGGER.warn("Failed to refresh DNS entry for {}.", host, ex);
+            }
+        });
+    }
+
+    private DNSResult resolveInto(String host, CompletableFuture<DNSResult> future) throws UnknownHostException {
+        try {
+            DNSResult result = resolve(host);
+            future.complete(result);
+            return result;
+        } catch (UnknownHostException ex) {
+            // Recorded before the query stops being in-flight, so stale lookups can't race a new refresh in.
+            long now = nanoTime.getAsLong();
+            cache.computeIfPresent(host, (k, e) -> e.refreshFailed(now));
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(host, future);
+        }
+    }
+
+    private DNSResult resolve(String host) throws UnknownHostException {
+        UnknownHostException exception = null;
+        for (StepEntry entry : steps) {
+            if (!entry.isEnabled()) continue;
+            DNSStep step = entry.step;
+            try {
+                DNSAnswer answer = step.query(host);
+                if (DEBUG) LOGGER.info(" - Resolved {} with {}: {} TTL {}", host, step.getName(), answer.addresses(), answer.ttl());
+
+                DNSResult result = new DNSResult(host, step.getName(), answer.addresses());
+                long ttl = answer.ttl() < 0 ? DEFAULT_TTL : Math.max(MIN_TTL, Math.min(MAX_TTL, answer.ttl()));
+                long now = nanoTime.getAsLong();
+                long expiresAt = now + TimeUnit.SECONDS.toNanos(ttl);
+                cache.put(host, new CacheEntry(result, expiresAt, expiresAt + TimeUnit.SECONDS.toNanos(STALE_TTL), expiresAt, 0));
+                return result;
+            } catch (UnknownHostException ex) {
+                if (DEBUG) LOGGER.info(" - Tried with {}. ", step.getName(), ex);
+                if (exception != null) {
+                    exception.addSuppressed(ex);
+                } else {
+                    exception = ex;
                 }
             }
+        }
+
+        if (DEBUG) LOGGER.info(" - Resolution failed! Tried all steps. {}", host, exception);
+        if (exception == null) {
+            exception = new UnknownHostException("No DNS steps enabled to resolve " + host);
+        }
+        throw exception;
+    }
 
-            if (DEBUG) LOGGER.info(" - Resolution failed! Tried all steps. {}", host, exception);
-            assert exception != null;
-            throw exception;
+    private static DNSResult await(CompletableFuture<DNSResult> future) throws UnknownHostException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException("Interrupted whilst waiting for DNS query.");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof UnknownHostException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Unexpected exception whilst waiting for DNS query.", ex.getCause());
         }
     }
 
@@ -116,6 +234,24 @@ public final class DNSChain {
     public record DNSResult(String host, String resolvedBy, InetAddress[] answer) {
     }
 
+    /**
+     * An answer from a {@link DNSStep}.
+     *
+     * @param addresses The addresses.
+     * @param ttl       How long the answer may be cached for, in seconds. <code>-1</code> if unknown.
+     */
+    public record DNSAnswer(InetAddress[] addresses, long ttl) {
+    }
+
+    // Times are System.nanoTime based.
+    private record CacheEntry(DNSResult result, long expiresAt, long staleUntil, long retryAt, int failures) {
+
+        public CacheEntry refreshFailed(long now) {
+            long backoff = TimeUnit.SECONDS.toNanos(REFRESH_BACKOFF << Math.min(failures, MAX_BACKOFF_SHIFT));
+            return new CacheEntry(result, expiresAt, staleUntil, now + backoff, failures + 1);
+        }
+    }
+
     public static final class StepEntry {
 
         public final DNSStep step;
@@ -230,21 +366,42 @@ public final class DNSChain {
 
         InetAddress[] resolve(String host) throws UnknownHostException;
 
+        /**
+         * Resolve the given host, including the answer's TTL if known.
+         *
+         * @param host The host.
+         * @return The answer.
+         * @throws UnknownHostException If the host could not be resolved.
+         */
+        default DNSAnswer query(String host) throws UnknownHostException {
+            return new DNSAnswer(resolve(host), -1);
+        }
+
         String getName();
     }
 
     public static class DnsOverHttpsStep implements DNSStep {
 
-        private final DOHHost host;
+        private final String name;
         private final DnsOverHttps dns;
+        // Remaining freshness of the last DoH responses, keyed by lower case queried host.
+        private final Map<String, Long> ttls = new ConcurrentHashMap<>();
 
         public DnsOverHttpsStep(okhttp3.Cache cache, DOHHost host) {
-            this.host = host;
+            this(cache, host.name(), HttpUrl.get(host.host), host.alternativeNames, host.bootstrapHosts);
+        }
+
+        DnsOverHttpsStep(@Nullable okhttp3.Cache cache, String name, HttpUrl url, List<String> hostNames, List<InetAddress> bootstrapHosts) {
+            this.name = name;
             dns = new DnsOverHttps.Builder()
-                    .client(new OkHttpClient.Builder().cache(cache).build())
-                    .url(HttpUrl.get(host.host))
+                    .client(new OkHttpClient.Builder()
+                            .cache(cache)
+                            .addInterceptor(this::captureTtl)
+                            .build()
+                    )
+                    .url(url)
                     .resolvePrivateAddresses(true)
-                    .systemDns(new BoostrapDns(host.alternativeNames, host.bootstrapHosts))
+                    .systemDns(new BoostrapDns(hostNames, bootstrapHosts))
                     .build();
         }
 
@@ -253,10 +410,69 @@ public final class DNSChain {
             return dns.lookup(host).toArray(new InetAddress[0]);
         }
 
+        @Override
+        public DNSAnswer query(String host) throws UnknownHostException {
+            // Question names are decoded in lower case.
+            String key = host.toLowerCase(Locale.ROOT);
+            ttls.remove(key);
+            InetAddress[] addresses = resolve(host);
+            Long ttl = ttls.remove(key);
+            return new DNSAnswer(addresses, ttl != null ? ttl : -1);
+        }
+
+        // DoH servers set the response max-age to the lowest TTL of the answer records.
+        private Response captureTtl(Interceptor.Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+            if (!response.isSuccessful()) return response;
+
+            int maxAge = response.cacheControl().maxAgeSeconds();
+            String name = decodeQuestionName(chain.request().url().queryParameter("dns"));
+            if (maxAge < 0 || name == null) return response;
+
+            long age = (System.currentTimeMillis() - response.receivedResponseAtMillis()) / 1000;
+            String ageHeader = response.header("Age");
+            if (ageHeader != null) {
+                try {
+                    age += Long.parseLong(ageHeader);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            ttls.merge(name, Math.max(0, maxAge - age), Math::min);
+            return response;
+        }
+
         @Override
         public String getName() {
-            return host.name();
+            return name;
+        }
+    }
+
+    /**
+     * Decode the question name from a base64url encoded DNS query, as sent in DoH GET requests.
+     *
+     * @param query The encoded query.
+     * @return The name, or <code>null</code> if it could not be decoded.
+     */
+    @Nullable
+    static String decodeQuestionName(@Nullable String query) {
+        if (query == null) return null;
+
+        ByteString bytes = ByteString.decodeBase64(query);
+        if (bytes == null) return null;
+
+        // Skip the 12 byte header, then read the length prefixed labels.
+        StringBuilder name = new StringBuilder();
+        int i = 12;
+        while (i < bytes.size()) {
+            int len = bytes.getByte(i++) & 0xFF;
+            if (len == 0) return name.toString();
+            if ((len & 0xC0) != 0 || i + len > bytes.size()) return null;
+
+            if (name.length() != 0) name.append('.');
+            name.append(bytes.substring(i, i + len).utf8().toLowerCase(Locale.ROOT));
+            i += len;
         }
+        return null;
     }
 
     public static class SystemDNSStep implements DNSStep {
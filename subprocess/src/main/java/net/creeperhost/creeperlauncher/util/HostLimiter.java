@@ -0,0 +1,376 @@
+package net.creeperhost.creeperlauncher.util;
+
+import okhttp3.*;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of concurrent requests made to each host.
+ * <p>
+ * Each host gets a {@link HostPolicy} describing how many requests may be in flight
+ * at once. A request holds its slot until its response body is read to the end or closed,
+ * so this limits concurrent transfers, not just concurrent connection setups. Waiting for
+ * a slot is bounded, so a leaked response body fails requests instead of hanging them.
+ * <p>
+ * When a host responds with <code>429</code> or <code>503</code> its limit is halved and
+ * any <code>Retry-After</code> is honoured before new requests are let through. The limit is
+ * only halved once per window, throttles for requests started before the last decrease were
+ * already accounted for. Successful responses slowly grow the limit back up to the policy maximum.
+ * <p>
+ * Also acts as an {@link EventListener.Factory} to track connection reuse per host.
+ */
+public final class HostLimiter implements Interceptor, EventListener.Factory {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("HostLimiter.debug");
+
+    /**
+     * The default maximum number of concurrent requests to a single host.
+     */
+    public static final int DEFAULT_MAX_REQUESTS = Integer.getInteger("HostLimiter.maxRequests", 16);
+
+    /**
+     * The maximum number of idle connections kept alive in the shared connection pool.
+     */
+    public static final int MAX_IDLE_CONNECTIONS = Integer.getInteger("HostLimiter.maxIdleConnections", 32);
+
+    /**
+     * The upper bound on how long we will honour a <code>Retry-After</code> header.
+     */
+    private static final long MAX_RETRY_AFTER_MS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * How long a request waits for a slot before failing.
+     */
+    private static final long ACQUIRE_TIMEOUT_MS = Long.getLong("HostLimiter.acquireTimeout", TimeUnit.MINUTES.toMillis(2));
+
+    private final Map<String, HostPolicy> policies = new ConcurrentHashMap<>();
+    private final Map<String, HostState> states = new ConcurrentHashMap<>();
+    private final HostPolicy defaultPolicy;
+    private final long acquireTimeoutMs;
+
+    public HostLimiter() {
+        this(new HostPolicy(DEFAULT_MAX_REQUESTS));
+    }
+
+    public HostLimiter(HostPolicy defaultPolicy) {
+        this(defaultPolicy, ACQUIRE_TIMEOUT_MS);
+    }
+
+    // Visible for tests.
+    HostLimiter(HostPolicy defaultPolicy, long acquireTimeoutMs) {
+        this.defaultPolicy = defaultPolicy;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    /**
+     * Set the {@link HostPolicy} for the given host.
+     * <p>
+     * The host may optionally contain a port, in the form <code>host:port</code>.
+     * <p>
+     * The policy may be overridden with the <code>HostLimiter.[host].maxRequests</code> system property.
+     *
+     * @param host   The host.
+     * @param policy The policy.
+     * @return The same {@link HostLimiter}.
+     */
+    public HostLimiter withPolicy(String host, HostPolicy policy) {
+        Integer override = Integer.getInteger("HostLimiter." + host + ".maxRequests");
+        if (override != null) {
+            policy = new HostPolicy(override);
+        }
+        policies.put(host, policy);
+        // Drop any existing state so the new policy takes effect.
+        states.remove(host);
+        return this;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        HostState state = getState(chain.request().url());
+        int generation;
+        try {
+            generation = state.acquire();
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("Interrupted whilst waiting for host slot: " + state.host);
+        }
+
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (Throwable ex) {
+            state.release();
+            throw ex;
+        }
+        state.requests.incrementAndGet();
+
+        int code = response.code();
+        if (code == 429 || code == 503) {
+            state.onThrottled(generation, parseRetryAfter(response.header("Retry-After")));
+        } else if (response.isSuccessful()) {
+            state.onSuccess();
+        }
+
+        ResponseBody body = response.body();
+        // Nothing to transfer, some callers never close these.
+        if (body == null || chain.request().method().equals("HEAD") || body.contentLength() == 0) {
+            state.release();
+            return response;
+        }
+        return response.newBuilder()
+                .body(new SlotReleasingBody(body, state))
+                .build();
+    }
+
+    @NotNull
+    @Override
+    public EventListener create(@NotNull Call call) {
+        HostState state = getState(call.request().url());
+        return new EventListener() {
+            @Override
+            public void connectStart(@NotNull Call call, @NotNull InetSocketAddress inetSocketAddress, @NotNull Proxy proxy) {
+                state.newConnections.incrementAndGet();
+            }
+
+            @Override
+            public void connectionAcquired(@NotNull Call call, @NotNull Connection connection) {
+                state.acquiredConnections.incrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Gets a snapshot of the current stats for all hosts seen so far.
+     *
+     * @return The stats.
+     */
+    public List<HostStats> getStats() {
+        List<HostStats> stats = new ArrayList<>(states.size());
+        for (HostState state : states.values()) {
+            stats.add(state.toStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Gets the stats for a specific host.
+     *
+     * @param host The host. May optionally contain a port, in the form <code>host:port</code>.
+     * @return The stats, or <code>null</code> if no requests have been made to this host.
+     */
+    @Nullable
+    public HostStats getStats(String host) {
+        HostState state = states.get(host);
+        return state != null ? state.toStats() : null;
+    }
+
+    private HostState getState(HttpUrl url) {
+        String hostPort = url.host() + ":" + url.port();
+        // Prefer state keyed by host:port if a policy exists for it, this is mostly useful for tests.
+        String key = policies.containsKey(hostPort) ? hostPort : url.host();
+        return states.computeIfAbsent(key, e -> new HostState(e, policies.getOrDefault(e, defaultPolicy), acquireTimeoutMs));
+    }
+
+    private static long parseRetryAfter(@Nullable String header) {
+        if (header == null) return 0;
+
+        // We only support the delta-seconds format, dates are rarely sent for 429/503.
+        long seconds = NumberUtils.toLong(header.trim(), 0);
+        return Math.min(TimeUnit.SECONDS.toMillis(Math.max(0, seconds)), MAX_RETRY_AFTER_MS);
+    }
+
+    /**
+     * Describes limits for a single host.
+     *
+     * @param maxRequests The maximum number of concurrent requests to the host.
+     */
+    public record HostPolicy(int maxRequests) {
+
+        public HostPolicy {
+            if (maxRequests < 1) throw new IllegalArgumentException("maxRequests must be at least 1.");
+        }
+    }
+
+    /**
+     * A snapshot of the stats for a single host.
+     *
+     * @param host                The host.
+     * @param maxRequests         The maximum concurrent requests permitted by the host's policy.
+     * @param currentLimit        The current, possibly reduced, concurrent request limit.
+     * @param inFlight            The number of requests currently in flight.
+     * @param requests            The total number of requests made to this host.
+     * @param throttled           The number of times this host has responded with <code>429</code> or <code>503</code>.
+     * @param newConnections      The number of new connections opened to this host.
+     * @param acquiredConnections The number of times a connection was acquired for a request to this host.
+     */
+    public record HostStats(String host, int maxRequests, int currentLimit, int inFlight, long requests, long throttled, long newConnections, long acquiredConnections) {
+
+        /**
+         * @return The number of connection acquisitions which reused a pooled connection.
+         */
+        public long reusedConnections() {
+            return Math.max(0, acquiredConnections - newConnections);
+        }
+    }
+
+    private static final class HostState {
+
+        private final String host;
+        private final int maxRequests;
+        private final long acquireTimeoutMs;
+
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong throttled = new AtomicLong();
+        private final AtomicLong newConnections = new AtomicLong();
+        private final AtomicLong acquiredConnections = new AtomicLong();
+
+        private int limit;
+        private int inFlight;
+        private int successes;
+        private long blockedUntil;
+        // Incremented each time the limit is decreased.
+        private int generation;
+
+        private HostState(String host, HostPolicy policy, long acquireTimeoutMs) {
+            this.host = host;
+            this.acquireTimeoutMs = acquireTimeoutMs;
+            maxRequests = policy.maxRequests();
+            limit = maxRequests;
+        }
+
+        /**
+         * Acquire a slot.
+         *
+         * @return The limit generation the request was started in.
+         */
+        private synchronized int acquire() throws InterruptedException, IOException {
+            long deadline = System.currentTimeMillis() + acquireTimeoutMs;
+            while (true) {
+                long now = System.currentTimeMillis();
+                long blocked = blockedUntil - now;
+                if (blocked <= 0 && inFlight < limit) break;
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    // Most likely response bodies which were never closed, each one holds a slot forever.
+                    throw new IOException("Timed out waiting for a request slot on " + host + ". " + inFlight + " of " + limit + " slots in use.");
+                }
+                wait(blocked > 0 ? Math.min(blocked, remaining) : remaining);
+            }
+            inFlight++;
+            return generation;
+        }
+
+        private synchronized void release() {
+            inFlight--;
+            notifyAll();
+        }
+
+        private synchronized void onThrottled(int requestGeneration, long retryAfterMs) {
+            throttled.incrementAndGet();
+            int prev = limit;
+            // Requests started before the last decrease were in flight at the old limit, the decrease already covers them.
+            if (requestGeneration == generation) {
+                limit = Math.max(1, limit / 2);
+                generation++;
+            }
+            successes = 0;
+            if (retryAfterMs > 0) {
+                blockedUntil = Math.max(blockedUntil, System.currentTimeMillis() + retryAfterMs);
+            }
+            if (DEBUG || prev != limit) {
+                LOGGER.warn("Host {} is rate limiting us. Reducing concurrent requests {} -> {}. Retry-After: {}ms", host, prev, limit, retryAfterMs);
+            }
+        }
+
+        private synchronized void onSuccess() {
+            if (limit >= maxRequests) return;
+
+            // Additive increase, grow by one after a full 'window' of successful requests.
+            if (++successes >= limit) {
+                successes = 0;
+                limit++;
+                if (DEBUG) LOGGER.info("Host {} recovering. Concurrent requests now {}.", host, limit);
+                notifyAll();
+            }
+        }
+
+        private synchronized HostStats toStats() {
+            return new HostStats(host, maxRequests, limit, inFlight, requests.get(), throttled.get(), newConnections.get(), acquiredConnections.get());
+        }
+    }
+
+    private static final class SlotReleasingBody extends ResponseBody {
+
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        private SlotReleasingBody(ResponseBody delegate, HostState state) {
+            this.delegate = delegate;
+            AtomicBoolean released = new AtomicBoolean();
+            source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    // Fully read, the transfer is over even if the body is never closed.
+                    if (read == -1) {
+                        release();
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release();
+                    }
+                }
+
+                private void release() {
+                    if (released.compareAndSet(false, true)) {
+                        state.release();
+                    }
+                }
+            });
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @NotNull
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
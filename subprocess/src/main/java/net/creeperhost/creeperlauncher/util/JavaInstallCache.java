@@ -0,0 +1,296 @@
+package net.creeperhost.creeperlauncher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import net.covers1624.jdkutils.JavaInstall;
+import net.covers1624.jdkutils.locator.JavaLocator;
+import net.covers1624.quack.collection.FastStream;
+import net.covers1624.quack.gson.JsonUtils;
+import net.creeperhost.creeperlauncher.os.OS;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.maven.artifact.versioning.ComparableVersion;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Finds Java installations, remembering what was found on disk.
+ * <p>
+ * Probing an installation means running it, which adds up on machines with lots of JDKs.
+ * Each probed java home is cached along with the modified time of its <code>release</code>
+ * file, or its executable if it has none. Later lookups only probe java homes which are
+ * new, or whose modified time has changed.
+ * <p>
+ * Candidate java homes come from well known install locations, <code>JAVA_HOME</code>, and
+ * anything found previously. The full {@link JavaLocator} scan, which also looks in places
+ * such as the Windows registry, is only run when nothing is cached, or once the last full scan
+ * is older than {@link #FULL_SCAN_INTERVAL}.
+ */
+public class JavaInstallCache {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean DEBUG = Boolean.getBoolean("JavaInstallCache.debug");
+    private static final Gson GSON = new Gson();
+
+    private static final long FULL_SCAN_INTERVAL = Long.getLong("JavaInstallCache.fullScanInterval", TimeUnit.DAYS.toMillis(7));
+
+    private final Path file;
+    private final List<Path> searchDirs;
+    private final List<Path> extraHomes;
+    private final Prober prober;
+    private final @Nullable FullScanner fullScanner;
+    private final LongSupplier clock;
+
+    public JavaInstallCache(Path file) {
+        this(file, defaultSearchDirs(), defaultExtraHomes(), JavaInstallCache::probe, JavaInstallCache::fullScan, System::currentTimeMillis);
+    }
+
+    /**
+     * @param file        The file to cache installs in.
+     * @param searchDirs  Directories which contain java homes.
+     * @param extraHomes  Individual java homes.
+     * @param prober      Probes a single java home.
+     * @param fullScanner Finds every install on the system, <code>null</code> to only use the search directories.
+     * @param clock       The current time, in milliseconds.
+     */
+    JavaInstallCache(Path file, List<Path> searchDirs, List<Path> extraHomes, Prober prober, @Nullable FullScanner fullScanner, LongSupplier clock) {
+        this.file = file;
+        this.searchDirs = searchDirs;
+        this.extraHomes = extraHomes;
+        this.prober = prober;
+        this.fullScanner = fullScanner;
+        this.clock = clock;
+    }
+
+    /**
+     * Find all Java installations, newest first.
+     *
+     * @return The installs.
+     */
+    public synchronized List<Install> findInstalls() {
+        ElapsedTimer timer = new ElapsedTimer();
+        CacheData cache = load();
+        long now = clock.getAsLong();
+
+        Map<String, CachedHome> homes = new LinkedHashMap<>();
+        long lastFullScan = cache != null ? cache.lastFullScan() : 0;
+        if (fullScanner != null && (cache == null || now - lastFullScan > FULL_SCAN_INTERVAL)) {
+            try {
+                for (Install install : fullScanner.scan()) {
+                    Path home = Paths.get(install.javaHome());
+                    homes.put(key(home), new CachedHome(stamp(home), install));
+                }
+                lastFullScan = now;
+            } catch (IOException ex) {
+                LOGGER.error("Failed to scan for Java installations.", ex);
+            }
+        }
+
+        Map<String, CachedHome> cached = cache != null ? cache.homes() : Map.of();
+        Set<Path> candidates = new LinkedHashSet<>();
+        for (String home : cached.keySet()) {
+            candidates.add(Paths.get(home));
+        }
+        for (Path dir : searchDirs) {
+            candidates.addAll(listHomes(dir));
+        }
+        candidates.addAll(extraHomes);
+
+        int probed = 0;
+        for (Path home : candidates) {
+            String key = key(home);
+            if (homes.containsKey(key)) continue;
+
+            long stamp = stamp(home);
+            if (stamp == -1) continue; // Gone.
+
+            CachedHome prev = cached.get(key);
+            if (prev != null && prev.stamp() == stamp) {
+                homes.put(key, prev);
+                continue;
+            }
+            probed++;
+            try {
+                homes.put(key, new CachedHome(stamp, prober.probe(home)));
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to probe Java installation {}.", home, ex);
+            }
+        }
+
+        save(new CacheData(lastFullScan, homes));
+
+        // Multiple homes may resolve to the same install, such as a Java 8 JDK and its nested JRE.
+        Map<String, Install> installs = new LinkedHashMap<>();
+        for (CachedHome home : homes.values()) {
+            if (home.install() == null) continue;
+            installs.putIfAbsent(home.install().executable(), home.install());
+        }
+        List<Install> sorted = new ArrayList<>(installs.values());
+        sorted.sort(Comparator.<Install, ComparableVersion>comparing(e -> new ComparableVersion(e.implVersion())).reversed());
+
+        if (DEBUG) {
+            LOGGER.info("Found {} Java installations from {} candidates in {}, probed {}.", sorted.size(), homes.size(), timer.elapsedStr(), probed);
+        }
+        return sorted;
+    }
+
+    @Nullable
+    private CacheData load() {
+        if (Files.notExists(file)) return null;
+        try {
+            return JsonUtils.parse(GSON, file, CacheData.class);
+        } catch (IOException | JsonParseException ex) {
+            LOGGER.warn("Failed to load Java installation cache.", ex);
+            return null;
+        }
+    }
+
+    private void save(CacheData data) {
+        try {
+            JsonUtils.write(GSON, file, data, CacheData.class);
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to save Java installation cache.", ex);
+        }
+    }
+
+    private static List<Path> listHomes(Path dir) {
+        if (!Files.isDirectory(dir)) return List.of();
+
+        List<Path> homes = new ArrayList<>();
+        for (Path child : FileUtils.listDir(dir)) {
+            // MacOS bundles.
+            Path contentsHome = child.resolve("Contents/Home");
+            Path home = Files.isDirectory(contentsHome) ? contentsHome : child;
+            if (Files.exists(JavaInstall.getJavaExecutable(home, false))) {
+                homes.add(home);
+            }
+        }
+        return homes;
+    }
+
+    private static String key(Path home) {
+        return home.toAbsolutePath().normalize().toString();
+    }
+
+    // The modified time of the release file, or java executable. -1 if neither exist.
+    private static long stamp(Path home) {
+        Path release = home.resolve("release");
+        Path file = Files.exists(release) ? release : JavaInstall.getJavaExecutable(home, false);
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    @Nullable
+    private static Install probe(Path home) {
+        JavaInstall install = JavaInstall.parse(JavaInstall.getJavaExecutable(home, false));
+        if (install == null || install.isOpenJ9) return null;
+        return Install.of(install);
+    }
+
+    private static List<Install> fullScan() throws IOException {
+        JavaLocator locator = JavaLocator.builder()
+                .findIntellijJdks()
+                .findGradleJdks()
+                .useJavaw()
+                .ignoreOpenJ9()
+                .build();
+        return FastStream.of(locator.findJavaVersions())
+                .map(Install::of)
+                .toList();
+    }
+
+    private static List<Path> defaultSearchDirs() {
+        Path userHome = Paths.get(System.getProperty("user.home"));
+        List<Path> dirs = new ArrayList<>();
+        dirs.add(userHome.resolve(".jdks")); // IntelliJ
+        dirs.add(userHome.resolve(".gradle/jdks"));
+        switch (OS.CURRENT) {
+            case WIN -> {
+                for (String env : List.of("ProgramFiles", "ProgramFiles(x86)")) {
+                    String programFiles = System.getenv(env);
+                    if (programFiles == null) continue;
+                    for (String vendor : List.of("Java", "Eclipse Adoptium", "Eclipse Foundation", "AdoptOpenJDK", "Zulu", "BellSoft", "Microsoft", "Amazon Corretto", "Semeru")) {
+                        dirs.add(Paths.get(programFiles, vendor));
+                    }
+                }
+            }
+            case MAC -> {
+                dirs.add(Paths.get("/Library/Java/JavaVirtualMachines"));
+                dirs.add(userHome.resolve("Library/Java/JavaVirtualMachines"));
+            }
+            case LINUX -> {
+                dirs.add(Paths.get("/usr/lib/jvm"));
+                dirs.add(Paths.get("/usr/lib64/jvm"));
+                dirs.add(Paths.get("/usr/java"));
+                dirs.add(Paths.get("/opt/java"));
+            }
+        }
+        return dirs;
+    }
+
+    private static List<Path> defaultExtraHomes() {
+        String javaHome = System.getenv("JAVA_HOME");
+        if (javaHome == null || javaHome.isEmpty()) return List.of();
+
+        return List.of(Paths.get(javaHome));
+    }
+
+    /**
+     * A found Java installation.
+     *
+     * @param javaHome     The java home.
+     * @param executable   The absolute path to the java executable, <code>javaw</code> on Windows.
+     * @param vendor       The vendor.
+     * @param implVersion  The implementation version.
+     * @param hasCompiler  If this is a JDK.
+     * @param architecture The architecture.
+     */
+    public record Install(String javaHome, String executable, String vendor, String implVersion, boolean hasCompiler, String architecture) {
+
+        public static Install of(JavaInstall install) {
+            return new Install(
+                    install.javaHome.toAbsolutePath().toString(),
+                    JavaInstall.getJavaExecutable(install.javaHome, true).toAbsolutePath().toString(),
+                    install.vendor,
+                    install.implVersion,
+                    install.hasCompiler,
+                    install.architecture.toString()
+            );
+        }
+    }
+
+    /**
+     * Probes a single java home.
+     */
+    interface Prober {
+
+        /**
+         * @param home The java home.
+         * @return The install, or <code>null</code> if it is not a usable install.
+         */
+        @Nullable Install probe(Path home) throws IOException;
+    }
+
+    /**
+     * Finds every Java installation on the system.
+     */
+    interface FullScanner {
+
+        List<Install> scan() throws IOException;
+    }
+
+    private record CacheData(long lastFullScan, Map<String, CachedHome> homes) { }
+
+    // A null install means the home was probed but is not usable, so it is not probed again until it changes.
+    private record CachedHome(long stamp, @Nullable Install install) { }
+}
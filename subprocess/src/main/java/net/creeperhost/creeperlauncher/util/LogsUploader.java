@@ -13,6 +13,11 @@ import net.creeperhost.creeperlauncher.storage.settings.Settings;
 import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.GzipSink;
+import okio.Okio;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.Appender;
@@ -20,10 +25,13 @@ import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.appender.AbstractOutputStreamAppender;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.FileInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -43,6 +51,14 @@ public class LogsUploader {
         .setPrettyPrinting()
         .create();
     
+    private static final String PASTE_URL = "https://pste.ch/documents";
+    private static final MediaType TEXT_PLAIN = MediaType.get("text/plain; charset=UTF-8");
+    
+    /**
+     * If uploads should be gzip compressed.
+     */
+    private static final boolean COMPRESS = Boolean.getBoolean("LogsUploader.compress");
+    
     /**
      * Uploads the UI and Backend Debug logs to pste.ch
      * @return The pste.ch code, or null if an error occurred.
@@ -106,22 +122,22 @@ public class LogsUploader {
     
     private static JsonObject collectLogs() {
         JsonObject logs = new JsonObject();
-        logs.addProperty("debug.log", uploadIfNotEmpty(getDebugLog()));
+        logs.addProperty("debug.log", uploadIfNotEmpty(getDebugLog(LogWindow.DEFAULT)));
         
         var frontendLogs = getFrontendLogs();
         frontendLogs.forEach((key, value) -> logs.addProperty(key, uploadIfNotEmpty(value)));
         
         combineAndUpload(Map.of(
-            "versions.log", getVersions(),
-            "runtimes.json", getRuntimes(),
-            "instances.log", getInstances(),
-            "instances-memory.json", getInstancesFromMemory(),
-            "settings.json", getFilteredSettings()
+            "versions.log", LogSource.of(getVersions()),
+            "runtimes.json", LogSource.of(getRuntimes()),
+            "instances.log", LogSource.of(getInstances()),
+            "instances-memory.json", LogSource.of(getInstancesFromMemory()),
+            "settings.json", LogSource.of(getFilteredSettings())
         ))
             .entrySet()
             .forEach(e -> logs.addProperty(e.getKey(), e.getValue().getAsString()));
         
-        getLastFourDebugLogsFromHistory()
+        getLastFourDebugLogsFromHistory(LogWindow.DEFAULT)
             .forEach((key, value) -> logs.addProperty(key, uploadIfNotEmpty(value)));
         
         return logs;
@@ -167,9 +183,9 @@ public class LogsUploader {
             instanceObj.add("crashLogs", crashLogs.isEmpty() ? null : combineAndUploadPaths(crashLogs));
             
             var logs = new JsonObject();
-            logs.addProperty("debug.log", uploadIfNotEmpty(readOrEmpty(instance.getDir().resolve("logs/debug.log"))));
-            logs.addProperty("console.log", uploadIfNotEmpty(readOrEmpty(instance.getDir().resolve("logs/console.log"))));
-            logs.addProperty("latest.log", uploadIfNotEmpty(readOrEmpty(instance.getDir().resolve("logs/latest.log"))));
+            logs.addProperty("debug.log", uploadIfNotEmpty(LogSource.ofFile(instance.getDir().resolve("logs/debug.log"), LogWindow.DEFAULT)));
+            logs.addProperty("console.log", uploadIfNotEmpty(LogSource.ofFile(instance.getDir().resolve("logs/console.log"), LogWindow.DEFAULT)));
+            logs.addProperty("latest.log", uploadIfNotEmpty(LogSource.ofFile(instance.getDir().resolve("logs/latest.log"), LogWindow.DEFAULT)));
             instanceObj.add("logs", logs);
             
             instanceLogs.add(instanceObj);
@@ -179,12 +195,12 @@ public class LogsUploader {
     }
     
     @Nullable
-    private static String uploadIfNotEmpty(String data) {
-        if (data == null || data.isEmpty()) {
+    private static String uploadIfNotEmpty(@Nullable LogSource source) {
+        if (source == null || source.length() == 0) {
             return null;
         }
         
-        return uploadPaste(data);
+        return uploadPaste(source);
     }
     
     /**
@@ -198,28 +214,26 @@ public class LogsUploader {
             .stream()
             .collect(Collectors.toMap(
                 e -> e.getFileName().toString(),
-                LogsUploader::readOrEmpty
+                e -> LogSource.ofFile(e, LogWindow.DEFAULT)
             ));
         
         return combineAndUpload(pathMapping);
     }
     
-    private static JsonObject combineAndUpload(Map<String, String> nameToInputMapping) {
+    private static JsonObject combineAndUpload(Map<String, LogSource> nameToInputMapping) {
         var pathToUuidMapping = new HashMap<String, String>();
-        var combined = new StringBuilder();
-        for (Map.Entry<String, String> nameAndInput : nameToInputMapping.entrySet()) {
-            var line = new StringBuilder();
-
+        var lines = new ArrayList<LogSource>();
+        for (Map.Entry<String, LogSource> nameAndInput : nameToInputMapping.entrySet()) {
             var uuid = UUID.randomUUID();
-            var base64Input = Base64.getEncoder().encodeToString(nameAndInput.getValue().getBytes());
 
-            line.append(uuid).append("|").append(base64Input);
-            combined.append(line).append("\n");
+            lines.add(LogSource.of(uuid + "|"));
+            lines.add(LogSource.base64(nameAndInput.getValue()));
+            lines.add(LogSource.of("\n"));
 
             pathToUuidMapping.put(nameAndInput.getKey(), uuid.toString());
         }
 
-        var code = uploadIfNotEmpty(combined.toString());
+        var code = uploadIfNotEmpty(LogSource.concat(lines));
         if (code == null) {
             return new JsonObject();
         }
@@ -233,12 +247,13 @@ public class LogsUploader {
     }
     
     /**
-     * Reads the latest backend debug.log file from disk.
+     * Gets the latest backend debug.log file from disk.
      *
-     * @return The string content, or null if an error occurred.
+     * @param window The window to apply to the log.
+     * @return The log, or null if it does not exist.
      */
     @Nullable
-    public static String getDebugLog() {
+    public static LogSource getDebugLog(LogWindow window) {
         try {
             LoggerContext context = (LoggerContext) LogManager.getContext();
             for (org.apache.logging.log4j.core.Logger logger : context.getLoggers()) {
@@ -252,18 +267,12 @@ public class LogsUploader {
         }
 
         Path debugLogFile = Constants.getDataDir().resolve("logs/debug.log");
+        if (!Files.exists(debugLogFile)) return null;
 
-        if (Files.exists(debugLogFile)) {
-            try {
-                return Files.readString(debugLogFile);
-            } catch (IOException e) {
-                LOGGER.warn("Failed to load debug logs.", e);
-            }
-        }
-        return null;
+        return LogSource.ofFile(debugLogFile, window);
     }
     
-    public static Map<String, String> getLastFourDebugLogsFromHistory() {
+    public static Map<String, LogSource> getLastFourDebugLogsFromHistory(LogWindow window) {
         var files = List.of("debug-1.log.gz", "debug-2.log.gz", "debug-3.log.gz", "debug-4.log.gz");
         var existingFiles = files.stream()
             .map(Constants.getDataDir().resolve("logs")::resolve)
@@ -275,14 +284,10 @@ public class LogsUploader {
         }
         
         // Map the file content to the file name
-        Map<String, String> logs = Maps.newHashMap();
+        Map<String, LogSource> logs = Maps.newHashMap();
         for (Path file : existingFiles) {
-            try (FileInputStream fis = new FileInputStream(file.toFile())) {
-                GZIPInputStream gis = new GZIPInputStream(fis);
-                
-                // Read the file to a string
-                String content = new String(gis.readAllBytes());
-                logs.put(file.getFileName().toString(), content);
+            try {
+                logs.put(file.getFileName().toString(), LogSource.ofGzip(file, window));
             } catch (IOException e) {
                 LOGGER.warn("Failed to read debug log file {}", file, e);
             }
@@ -291,13 +296,13 @@ public class LogsUploader {
         return logs;
     }
 
-    private static Map<String, String> getFrontendLogs() {
-        var frontendLogs = new HashMap<String, String>();
+    private static Map<String, LogSource> getFrontendLogs() {
+        var frontendLogs = new HashMap<String, LogSource>();
         
         if (!OperatingSystem.current().isWindows()) {
             // Electron logs
-            frontendLogs.put("ftb-app-frontend.log", readOrEmpty(Constants.getDataDir().resolve("logs/ftb-app-frontend.log")));
-            frontendLogs.put("ftb-app-electron.log", readOrEmpty(Constants.getDataDir().resolve("logs/ftb-app-electron.log")));
+            frontendLogs.put("ftb-app-frontend.log", LogSource.ofFile(Constants.getDataDir().resolve("logs/ftb-app-frontend.log"), LogWindow.DEFAULT));
+            frontendLogs.put("ftb-app-electron.log", LogSource.ofFile(Constants.getDataDir().resolve("logs/ftb-app-electron.log"), LogWindow.DEFAULT));
         } else {
             // Get AppData/Local
             var appData = System.getenv("LOCALAPPDATA");
@@ -307,7 +312,7 @@ public class LogsUploader {
             if (Files.exists(appLocation)) {
                 String[] logs = {"index.html.log", "background.html.log", "chat.html.log"};
                 for (String log : logs) {
-                    frontendLogs.put(log, readOrEmpty(appLocation.resolve(log)));
+                    frontendLogs.put(log, LogSource.ofFile(appLocation.resolve(log), LogWindow.DEFAULT));
                 }
             }
         }
@@ -383,27 +388,303 @@ public class LogsUploader {
      * @return The pste.ch code, or null if an error occured.
      */
     public static String uploadPaste(@Nullable String data) {
+        return uploadPaste(LogSource.of(data == null ? "No data available." : data));
+    }
+    
+    /**
+     * Uploads the given log to pste.ch
+     *
+     * @param source The log to upload.
+     * @return The pste.ch code, or null if an error occured.
+     */
+    public static String uploadPaste(LogSource source) {
+        return uploadPaste(PASTE_URL, source, COMPRESS);
+    }
+    
+    // Visible for tests.
+    static String uploadPaste(String url, LogSource source, boolean compress) {
         var client = Constants.httpClient();
-        try(var res = client.newCall(new Request.Builder()
-            .url("https://pste.ch/documents")
-            .post(RequestBody.create(data == null ? "No data available." : data, MediaType.get("text/plain; charset=UTF-8")))
-            .build()).execute()) {
-            
-            if (!res.isSuccessful() || res.body() == null) {
-                LOGGER.warn("Failed to upload logs to pste.ch: {}", res);
-                return "failed";
+        try {
+            var builder = new Request.Builder()
+                .url(url)
+                .post(createBody(source, compress));
+            if (compress) {
+                builder.header("Content-Encoding", "gzip");
             }
-            
-            var body = res.body().string();
-            
-            JsonObject objResponse = GsonUtils.GSON.fromJson(body, JsonObject.class);
-            JsonElement key = objResponse.get("key");
-            if (key == null || !key.isJsonPrimitive()) return "failed to parse";
+            try (var res = client.newCall(builder.build()).execute()) {
+                if (!res.isSuccessful() || res.body() == null) {
+                    LOGGER.warn("Failed to upload logs to pste.ch: {}", res);
+                    return "failed";
+                }
+                
+                var body = res.body().string();
+                
+                JsonObject objResponse = GsonUtils.GSON.fromJson(body, JsonObject.class);
+                JsonElement key = objResponse.get("key");
+                if (key == null || !key.isJsonPrimitive()) return "failed to parse";
 
-            return key.getAsString();
+                return key.getAsString();
+            }
         } catch (Throwable e) {
             LOGGER.warn("Failed to upload logs to pste.ch", e);
             return "failed to upload";
         }
     }
+    
+    private static RequestBody createBody(LogSource source, boolean compress) throws IOException {
+        if (compress) {
+            // Compressed into memory first so the length is known, this is bounded by the log windows.
+            var buffer = new Buffer();
+            try (var sink = Okio.buffer(new GzipSink(buffer))) {
+                source.writeTo(sink);
+            }
+            return RequestBody.create(buffer.readByteString(), TEXT_PLAIN);
+        }
+        return new RequestBody() {
+            // @formatter:off
+            @Override public MediaType contentType() { return TEXT_PLAIN; }
+            @Override public long contentLength() { return source.length(); }
+            @Override public void writeTo(BufferedSink sink) throws IOException { source.writeTo(sink); }
+            // @formatter:on
+        };
+    }
+    
+    /**
+     * How much of a large log to keep.
+     * <p>
+     * Logs larger than {@code head + tail} bytes are cut down to their first
+     * {@code head} bytes and last {@code tail} bytes.
+     *
+     * @param head The number of bytes to keep from the start of the log.
+     * @param tail The number of bytes to keep from the end of the log.
+     */
+    public record LogWindow(long head, long tail) {
+
+        public static final LogWindow DEFAULT = new LogWindow(
+            Long.getLong("LogsUploader.headBytes", 2 * 1024 * 1024),
+            Long.getLong("LogsUploader.tailBytes", 8 * 1024 * 1024)
+        );
+
+        public boolean fits(long size) {
+            return size <= head + tail;
+        }
+
+        public static String truncatedMarker(long truncated) {
+            return "\n\n[... " + truncated + " bytes truncated by the FTB App ...]\n\n";
+        }
+    }
+    
+    /**
+     * Log content which can be streamed into an upload.
+     * <p>
+     * Sources know their length up front, and only hold a bounded amount of the log in memory.
+     */
+    public interface LogSource {
+
+        /**
+         * @return The number of bytes {@link #writeTo} will write.
+         */
+        long length();
+
+        /**
+         * Write the log to the given sink.
+         *
+         * @param sink The sink.
+         */
+        void writeTo(BufferedSink sink) throws IOException;
+
+        static LogSource of(String str) {
+            var bytes = ByteString.encodeUtf8(str);
+            // @formatter:off
+            return new LogSource() {
+                @Override public long length() { return bytes.size(); }
+                @Override public void writeTo(BufferedSink sink) throws IOException { sink.write(bytes); }
+            };
+            // @formatter:on
+        }
+
+        /**
+         * A log file on disk, cut down to the given window.
+         * <p>
+         * Missing files are empty. Only the windowed parts of the file are read.
+         *
+         * @param path   The file.
+         * @param window The window.
+         * @return The source.
+         */
+        static LogSource ofFile(Path path, LogWindow window) {
+            long size;
+            try {
+                size = Files.exists(path) ? Files.size(path) : 0;
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read file {}", path, e);
+                size = 0;
+            }
+            if (size == 0) return of("");
+            return new FileLogSource(path, size, window);
+        }
+
+        /**
+         * A gzipped log file on disk, cut down to the given window.
+         * <p>
+         * The file is decompressed immediately, keeping the head and a rolling tail in memory.
+         *
+         * @param path   The file.
+         * @param window The window.
+         * @return The source.
+         */
+        static LogSource ofGzip(Path path, LogWindow window) throws IOException {
+            var head = new byte[(int) window.head()];
+            var tail = new byte[(int) window.tail()];
+            long total = 0;
+            int headLen = 0;
+            try (var is = new GZIPInputStream(Files.newInputStream(path))) {
+                headLen = is.readNBytes(head, 0, head.length);
+                total = headLen;
+                var buffer = new byte[64 * 1024];
+                int len;
+                while ((len = is.read(buffer)) != -1) {
+                    if (tail.length == 0) {
+                        total += len;
+                        continue;
+                    }
+                    // Append to the ring buffer.
+                    for (int i = 0; i < len; ) {
+                        int pos = (int) ((total - headLen) % tail.length);
+                        int n = Math.min(len - i, tail.length - pos);
+                        System.arraycopy(buffer, i, tail, pos, n);
+                        i += n;
+                        total += n;
+                    }
+                }
+            }
+
+            var out = new Buffer();
+            out.write(head, 0, headLen);
+            long tailLen = total - headLen;
+            if (tailLen > 0) {
+                if (tail.length == 0) {
+                    out.writeUtf8(LogWindow.truncatedMarker(tailLen));
+                } else if (tailLen > tail.length) {
+                    out.writeUtf8(LogWindow.truncatedMarker(tailLen - tail.length));
+                    int pos = (int) (tailLen % tail.length);
+                    out.write(tail, pos, tail.length - pos);
+                    out.write(tail, 0, pos);
+                } else {
+                    out.write(tail, 0, (int) tailLen);
+                }
+            }
+            var bytes = out.readByteString();
+            // @formatter:off
+            return new LogSource() {
+                @Override public long length() { return bytes.size(); }
+                @Override public void writeTo(BufferedSink sink) throws IOException { sink.write(bytes); }
+            };
+            // @formatter:on
+        }
+
+        /**
+         * Base64 encodes the given source as it is written.
+         */
+        static LogSource base64(LogSource source) {
+            return new LogSource() {
+                @Override
+                public long length() {
+                    return (source.length() + 2) / 3 * 4;
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    // The encoder must be closed to write its padding, but must not close the sink.
+                    var nonClosing = new FilterOutputStream(sink.outputStream()) {
+                        @Override
+                        public void write(byte[] b, int off, int len) throws IOException {
+                            out.write(b, off, len);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            flush();
+                        }
+                    };
+                    try (var os = Base64.getEncoder().wrap(nonClosing)) {
+                        var encoded = Okio.buffer(Okio.sink(os));
+                        source.writeTo(encoded);
+                        encoded.flush();
+                    }
+                }
+            };
+        }
+
+        static LogSource concat(List<LogSource> sources) {
+            return new LogSource() {
+                @Override
+                public long length() {
+                    return sources.stream().mapToLong(LogSource::length).sum();
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    for (LogSource source : sources) {
+                        source.writeTo(sink);
+                    }
+                }
+            };
+        }
+    }
+    
+    private static class FileLogSource implements LogSource {
+
+        private final Path path;
+        private final long size;
+        private final LogWindow window;
+        private final String marker;
+
+        private FileLogSource(Path path, long size, LogWindow window) {
+            this.path = path;
+            // Logs may still be growing, we only ever read what existed when the source was created.
+            this.size = size;
+            this.window = window;
+            marker = window.fits(size) ? "" : LogWindow.truncatedMarker(size - window.head() - window.tail());
+        }
+
+        @Override
+        public long length() {
+            if (window.fits(size)) return size;
+            return window.head() + marker.length() + window.tail();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (window.fits(size)) {
+                    copy(channel, 0, size, sink);
+                    return;
+                }
+                copy(channel, 0, window.head(), sink);
+                sink.writeUtf8(marker);
+                copy(channel, size - window.tail(), window.tail(), sink);
+            }
+        }
+
+        private static void copy(FileChannel channel, long pos, long len, BufferedSink sink) throws IOException {
+            var buffer = ByteBuffer.allocate(64 * 1024);
+            long remaining = len;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                int read = channel.read(buffer, pos);
+                if (read == -1) {
+                    // The file shrunk underneath us, pad out to the length we promised.
+                    while (remaining-- > 0) {
+                        sink.writeByte(' ');
+                    }
+                    return;
+                }
+                buffer.flip();
+                sink.write(buffer);
+                pos += read;
+                remaining -= read;
+            }
+        }
+    }
 }
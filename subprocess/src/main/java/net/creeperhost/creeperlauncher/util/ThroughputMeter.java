@@ -0,0 +1,75 @@
+package net.creeperhost.creeperlauncher.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput as an exponentially weighted moving average.
+ * <p>
+ * Samples may arrive at any interval, each sample is weighted by the
+ * time elapsed since the previous one, so bursty updates from many
+ * threads produce a stable readout.
+ */
+public final class ThroughputMeter {
+
+    /**
+     * Samples closer together than this are merged with the next sample.
+     */
+    private static final long MIN_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final double timeConstantNanos;
+
+    private long lastTime = -1;
+    private long lastTotal;
+    private double rate;
+
+    /**
+     * @param timeConstant The smoothing time constant. Roughly how long it takes the
+     *                     readout to converge on a new steady rate.
+     * @param unit         The unit of the time constant.
+     */
+    public ThroughputMeter(long timeConstant, TimeUnit unit) {
+        timeConstantNanos = unit.toNanos(timeConstant);
+    }
+
+    /**
+     * Record the total number of units processed so far.
+     *
+     * @param total The running total.
+     */
+    public void sample(long total) {
+        sample(total, System.nanoTime());
+    }
+
+    public synchronized void sample(long total, long nanoTime) {
+        if (lastTime == -1) {
+            lastTime = nanoTime;
+            lastTotal = total;
+            return;
+        }
+        long dt = nanoTime - lastTime;
+        if (dt < MIN_SAMPLE_NANOS) return;
+
+        double instant = Math.max(0, total - lastTotal) / (dt / (double) TimeUnit.SECONDS.toNanos(1));
+        double alpha = 1 - Math.exp(-dt / timeConstantNanos);
+        rate = rate == 0 ? instant : rate + alpha * (instant - rate);
+
+        lastTime = nanoTime;
+        lastTotal = total;
+    }
+
+    /**
+     * @return The smoothed rate, in units per second.
+     */
+    public synchronized long getRate() {
+        return (long) rate;
+    }
+
+    /**
+     * Reset the meter, forgetting all samples.
+     */
+    public synchronized void reset() {
+        lastTime = -1;
+        lastTotal = 0;
+        rate = 0;
+    }
+}
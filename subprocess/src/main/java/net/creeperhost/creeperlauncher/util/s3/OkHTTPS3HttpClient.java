@@ -38,13 +38,15 @@ public class OkHTTPS3HttpClient implements SdkHttpClient {
     public ExecutableHttpRequest prepareRequest(HttpExecuteRequest request) {
         MetricCollector metricCollector = request.metricCollector().orElseGet(NoOpMetricCollector::create);
         metricCollector.reportMetric(HttpMetric.HTTP_CLIENT_NAME, clientName());
-        Request okHttpRequest = toOkHttpRequest(request);
+        Call call = clientGetter.get().newCall(toOkHttpRequest(request));
 
         return new ExecutableHttpRequest() {
             @Override
             public HttpExecuteResponse call() throws IOException {
-                @SuppressWarnings ("resource") // Closing the body if it exists is sufficient.
-                Response okHttpResponse = clientGetter.get().newCall(okHttpRequest).execute();
+                // Closing the body if it exists is sufficient. HostLimiter also frees the host's slot once
+                // the body is read to the end, so a stream the SDK drains but never closes doesn't leak it.
+                @SuppressWarnings ("resource")
+                Response okHttpResponse = call.execute();
                 SdkHttpResponse.Builder responseBuilder = SdkHttpResponse.builder()
                         .statusCode(okHttpResponse.code())
                         .statusText(okHttpResponse.message());
@@ -61,6 +63,7 @@ public class OkHTTPS3HttpClient implements SdkHttpClient {
 
             @Override
             public void abort() {
+                call.cancel();
             }
         };
     }
@@ -0,0 +1,138 @@
+package net.creeperhost.creeperlauncher;
+
+import net.creeperhost.creeperlauncher.pack.Instance;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstancesTests {
+
+    private static final int INSTANCE_COUNT = 200;
+
+    @Test
+    public void testIncrementalRefresh() throws IOException {
+        Path instancesDir = Files.createTempDirectory("instances");
+        instancesDir.toFile().deleteOnExit();
+
+        Map<UUID, Path> dirs = new HashMap<>();
+        for (int i = 0; i < INSTANCE_COUNT; i++) {
+            UUID uuid = UUID.randomUUID();
+            Path dir = Files.createDirectories(instancesDir.resolve(uuid.toString()));
+            writeInstance(dir, uuid, "Instance " + i);
+            dirs.put(uuid, dir);
+        }
+
+        Instances.reload(instancesDir);
+        assertEquals(INSTANCE_COUNT, Instances.allInstances().size());
+
+        Map<UUID, Instance> before = new HashMap<>();
+        for (Instance instance : Instances.allInstances()) {
+            before.put(instance.getUuid(), instance);
+        }
+
+        // No changes, every instance should be the exact same object.
+        Instances.reload(instancesDir);
+        for (Instance instance : Instances.allInstances()) {
+            assertSame(before.get(instance.getUuid()), instance);
+        }
+
+        // Change a single instance, only that instance should be re-read.
+        UUID changed = before.keySet().iterator().next();
+        Path changedDir = dirs.get(changed);
+        writeInstance(changedDir, changed, "Renamed");
+        // Ensure mtime moves forward even on coarse filesystems.
+        Files.setLastModifiedTime(changedDir.resolve("instance.json"), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        Instances.reload(instancesDir);
+        int reloaded = 0;
+        for (Instance instance : Instances.allInstances()) {
+            if (instance.getUuid().equals(changed)) {
+                assertNotSame(before.get(changed), instance);
+                assertEquals("Renamed", instance.props.name);
+                reloaded++;
+            } else {
+                assertSame(before.get(instance.getUuid()), instance);
+            }
+        }
+        assertEquals(1, reloaded);
+        assertEquals(INSTANCE_COUNT, Instances.allInstances().size());
+
+        // Single instance refresh after deletion.
+        UUID deleted = before.keySet().stream().filter(e -> !e.equals(changed)).findFirst().orElseThrow();
+        Path deletedDir = dirs.get(deleted);
+        Files.delete(deletedDir.resolve("instance.json"));
+        Files.delete(deletedDir.resolve("version.json"));
+        Files.delete(deletedDir);
+        assertNull(Instances.refreshInstance(deletedDir, false));
+        assertNull(Instances.getInstance(deleted));
+        assertEquals(INSTANCE_COUNT - 1, Instances.allInstances().size());
+    }
+
+    @Test
+    public void testReloadMigratesLegacyArt() throws Throwable {
+        Path instancesDir = Files.createTempDirectory("instances");
+        instancesDir.toFile().deleteOnExit();
+
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bos);
+        String art = "data:image/png;base64," + Base64.getEncoder().encodeToString(bos.toByteArray());
+
+        List<Path> dirs = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            UUID uuid = UUID.randomUUID();
+            Path dir = Files.createDirectories(instancesDir.resolve(uuid.toString()));
+            writeInstance(dir, uuid, "Legacy " + i);
+            // Splice the legacy art field in.
+            Path json = dir.resolve("instance.json");
+            Files.writeString(json, Files.readString(json).replace("\"installComplete\"", "\"art\": \"" + art + "\",\n  \"installComplete\""));
+            dirs.add(dir);
+        }
+
+        // Migration used to save from within the load, whilst the registry lock was held by the reloading thread.
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> Instances.reload(instancesDir));
+        assertEquals(dirs.size(), Instances.allInstances().size());
+        for (Instance instance : Instances.allInstances()) {
+            assertNull(instance.props.art);
+            assertNotNull(instance.props.artHash);
+            assertFalse(Files.readString(instance.path.resolve("instance.json")).contains("base64"));
+        }
+
+        // Saving updated the fingerprints, so nothing is re-read.
+        Map<UUID, Instance> before = new HashMap<>();
+        for (Instance instance : Instances.allInstances()) {
+            before.put(instance.getUuid(), instance);
+        }
+        Instances.reload(instancesDir);
+        for (Instance instance : Instances.allInstances()) {
+            assertSame(before.get(instance.getUuid()), instance);
+        }
+    }
+
+    private static void writeInstance(Path dir, UUID uuid, String name) throws IOException {
+        Files.writeString(dir.resolve("instance.json"), """
+                {
+                  "uuid": "%s",
+                  "id": 1,
+                  "versionId": 1,
+                  "name": "%s",
+                  "installComplete": true
+                }
+                """.formatted(uuid, name));
+        Files.writeString(dir.resolve("version.json"), """
+                {
+                  "id": 1
+                }
+                """);
+    }
+}
@@ -0,0 +1,199 @@
+package net.creeperhost.creeperlauncher;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.creeperhost.creeperlauncher.api.WebSocketHandler;
+import net.creeperhost.creeperlauncher.api.WebsocketServer.PortMode;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures time-to-websocket and time-to-instances-listed over a synthetic data directory.
+ */
+public class StartupTests {
+
+    private static final int INSTANCE_COUNT = 500;
+    private static final int DIRS_PER_INSTANCE = 8;
+
+    // Stand-in for a cloud poll and Java scan, both of which hit the network or walk large parts of the disk.
+    private static final long SLOW_STAGE_MS = 750;
+
+    @Test
+    public void testStartupTimes() throws Throwable {
+        // Warm up, so class loading does not skew the numbers.
+        run(createDataDir(10), 10, false);
+
+        Timings blocking = run(createDataDir(INSTANCE_COUNT), INSTANCE_COUNT, false);
+        Timings staged = run(createDataDir(INSTANCE_COUNT), INSTANCE_COUNT, true);
+
+        System.out.printf("%d instances.%n", INSTANCE_COUNT);
+        System.out.printf("Blocking: websocket after %d ms, instances listed after %d ms.%n", blocking.websocket, blocking.listed);
+        System.out.printf("Staged:   websocket after %d ms, instances listed after %d ms.%n", staged.websocket, staged.listed);
+
+        assertTrue(staged.websocket < blocking.websocket, "Websocket was not bound sooner.");
+        assertTrue(staged.listed < blocking.listed, "Instances were not listed sooner.");
+    }
+
+    @Test
+    public void testMessagesHeldUntilReady() throws Throwable {
+        Startup.reset();
+        WebSocketHandler.startWebsocket(PortMode.DYNAMIC);
+        try (Client client = new Client(WebSocketHandler.getPort())) {
+            String javas = client.send("getJavas");
+            JsonObject status = client.await(client.send("startup.status"));
+            assertEquals(0, status.getAsJsonArray("ready").size());
+            assertFalse(client.hasReceived(javas));
+
+            Startup.markReady(Startup.Subsystem.JAVA);
+            client.await(javas);
+            assertEquals(List.of(Startup.Subsystem.JAVA), Startup.getReady());
+        } finally {
+            WebSocketHandler.stopWebsocket();
+        }
+    }
+
+    private static Timings run(Path instancesDir, int count, boolean staged) throws Throwable {
+        Startup.reset();
+        long start = System.nanoTime();
+        try {
+            if (!staged) {
+                // How startup used to work, instances and the cloud poll before the websocket, everything else after.
+                Instances.reload(instancesDir);
+                Thread.sleep(SLOW_STAGE_MS);
+                Startup.markReady(Startup.Subsystem.INSTANCES);
+                Startup.markReady(Startup.Subsystem.CLOUD);
+            }
+            WebSocketHandler.startWebsocket(PortMode.DYNAMIC);
+            long websocket = elapsedMs(start);
+            if (staged) {
+                Startup.runInBackground(Startup.Subsystem.INSTANCES, () -> Instances.reload(instancesDir))
+                        .thenRun(() -> Startup.runInBackground(Startup.Subsystem.CLOUD, StartupTests::slowStage));
+            }
+            Startup.runInBackground(Startup.Subsystem.JAVA, StartupTests::slowStage);
+
+            try (Client client = new Client(WebSocketHandler.getPort())) {
+                JsonArray instances = client.await(client.send("installedInstances")).getAsJsonArray("instances");
+                long listed = elapsedMs(start);
+                assertEquals(count, instances.size());
+                return new Timings(websocket, listed);
+            }
+        } finally {
+            WebSocketHandler.stopWebsocket();
+        }
+    }
+
+    private static Path createDataDir(int count) throws IOException {
+        Path instancesDir = Files.createTempDirectory("instances");
+        instancesDir.toFile().deleteOnExit();
+        for (int i = 0; i < count; i++) {
+            UUID uuid = UUID.randomUUID();
+            Path dir = Files.createDirectories(instancesDir.resolve(uuid.toString()));
+            Files.writeString(dir.resolve("instance.json"), """
+                    {
+                      "uuid": "%s",
+                      "id": 1,
+                      "versionId": 1,
+                      "name": "Instance %d",
+                      "category": "Default",
+                      "installComplete": true
+                    }
+                    """.formatted(uuid, i));
+            Files.writeString(dir.resolve("version.json"), """
+                    {
+                      "id": 1
+                    }
+                    """);
+            for (int j = 0; j < DIRS_PER_INSTANCE; j++) {
+                Files.createDirectories(dir.resolve("dir" + j));
+            }
+        }
+        return instancesDir;
+    }
+
+    private static void slowStage() {
+        try {
+            Thread.sleep(SLOW_STAGE_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private record Timings(long websocket, long listed) { }
+
+    // Talks to the websocket like the frontend does.
+    private static class Client extends WebSocketListener implements AutoCloseable {
+
+        private final Map<String, CompletableFuture<JsonObject>> received = new ConcurrentHashMap<>();
+        private final WebSocket webSocket;
+
+        private Client(int port) {
+            webSocket = Constants.httpClient().newWebSocket(new Request.Builder().url("ws://127.0.0.1:" + port).build(), this);
+        }
+
+        /**
+         * @return The request id, to await the reply with.
+         */
+        public String send(String type) {
+            String requestId = UUID.randomUUID().toString();
+            JsonObject obj = new JsonObject();
+            obj.addProperty("type", type);
+            obj.addProperty("requestId", requestId);
+            obj.addProperty("secret", Constants.WEBSOCKET_SECRET);
+            webSocket.send(obj.toString());
+            return requestId;
+        }
+
+        public boolean hasReceived(String key) {
+            return future(key).isDone();
+        }
+
+        /**
+         * Wait for a reply to a request, or the first message of a given type.
+         */
+        public JsonObject await(String key) throws Exception {
+            return future(key).get(30, TimeUnit.SECONDS);
+        }
+
+        private CompletableFuture<JsonObject> future(String key) {
+            return received.computeIfAbsent(key, e -> new CompletableFuture<>());
+        }
+
+        @Override
+        public void onMessage(@NotNull WebSocket webSocket, @NotNull String text) {
+            JsonObject obj = JsonParser.parseString(text).getAsJsonObject();
+            if (obj.has("requestId") && !obj.get("requestId").isJsonNull()) {
+                future(obj.get("requestId").getAsString()).complete(obj);
+            }
+            if (obj.has("type") && !obj.get("type").isJsonNull()) {
+                future(obj.get("type").getAsString()).complete(obj);
+            }
+        }
+
+        @Override
+        public void onFailure(@NotNull WebSocket webSocket, @NotNull Throwable t, Response response) {
+            received.values().forEach(e -> e.completeExceptionally(t));
+        }
+
+        @Override
+        public void close() {
+            webSocket.close(1000, null);
+        }
+    }
+}
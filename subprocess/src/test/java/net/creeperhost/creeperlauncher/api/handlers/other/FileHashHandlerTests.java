@@ -0,0 +1,92 @@
+package net.creeperhost.creeperlauncher.api.handlers.other;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import net.covers1624.quack.util.HashUtils;
+import net.covers1624.quack.util.MultiHasher.HashFunc;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileHashHandlerTests {
+
+    private static final long GB = 1024L * 1024 * 1024;
+    private static final Set<HashFunc> FUNCS = EnumSet.of(HashFunc.MD5, HashFunc.SHA256);
+
+    @Test
+    @SuppressWarnings ("deprecation")
+    public void testSinglePass() throws IOException {
+        Path file = Files.createTempFile("hash", ".bin");
+        file.toFile().deleteOnExit();
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(0).nextBytes(data);
+        Files.write(file, data);
+
+        Map<HashFunc, HashCode> hashes = FileHashHandler.hash(file, FUNCS);
+        assertEquals(FUNCS, hashes.keySet());
+        assertEquals(Hashing.md5().hashBytes(data), hashes.get(HashFunc.MD5));
+        assertEquals(Hashing.sha256().hashBytes(data), hashes.get(HashFunc.SHA256));
+
+        // Cached digests are reused, missing ones computed.
+        Map<HashFunc, HashCode> more = FileHashHandler.hash(file, EnumSet.of(HashFunc.SHA256, HashFunc.SHA1));
+        assertEquals(hashes.get(HashFunc.SHA256), more.get(HashFunc.SHA256));
+        assertEquals(Hashing.sha1().hashBytes(data), more.get(HashFunc.SHA1));
+
+        // Changing the file invalidates the cache.
+        Files.writeString(file, "changed");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        assertEquals(Hashing.md5().hashString("changed", StandardCharsets.UTF_8), FileHashHandler.hash(file, FUNCS).get(HashFunc.MD5));
+    }
+
+    @Test
+    @Disabled // Benchmark, writes a 1GB file. Run manually and compare the printed timings.
+    @SuppressWarnings ("deprecation")
+    public void testBenchmark() throws IOException {
+        Path file = Files.createTempFile("hash", ".bin");
+        file.toFile().deleteOnExit();
+        // Mostly sparse, some real data at either end.
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            byte[] data = new byte[16 * 1024 * 1024];
+            new Random(0).nextBytes(data);
+            raf.write(data);
+            raf.setLength(GB);
+            raf.seek(GB - data.length);
+            raf.write(data);
+        }
+
+        // How FileHashHandler used to hash, reading the file once per digest.
+        long start = System.nanoTime();
+        HashCode md5 = HashUtils.hash(Hashing.md5(), file);
+        HashCode sha256 = HashUtils.hash(Hashing.sha256(), file);
+        long twoPass = elapsedMs(start);
+
+        start = System.nanoTime();
+        Map<HashFunc, HashCode> hashes = FileHashHandler.hash(file, FUNCS);
+        long singlePass = elapsedMs(start);
+
+        start = System.nanoTime();
+        Map<HashFunc, HashCode> cached = FileHashHandler.hash(file, FUNCS);
+        long warm = elapsedMs(start);
+
+        System.out.printf("1GB file. Two passes: %d ms, single pass: %d ms, unchanged file: %d ms.%n", twoPass, singlePass, warm);
+        assertEquals(md5, hashes.get(HashFunc.MD5));
+        assertEquals(sha256, hashes.get(HashFunc.SHA256));
+        assertEquals(hashes, cached);
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
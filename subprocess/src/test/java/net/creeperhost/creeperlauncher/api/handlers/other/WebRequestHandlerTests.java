@@ -0,0 +1,211 @@
+package net.creeperhost.creeperlauncher.api.handlers.other;
+
+import fi.iki.elonen.NanoHTTPD;
+import net.creeperhost.creeperlauncher.api.data.BaseData;
+import net.creeperhost.creeperlauncher.api.data.other.WebRequestData;
+import net.creeperhost.creeperlauncher.util.MiscUtils;
+import okhttp3.Cache;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebRequestHandlerTests {
+
+    private static final long BODY_SIZE = 200L * 1024 * 1024;
+    private static final long MEMORY_CEILING = 64 * 1024 * 1024;
+    // The default chunk size.
+    private static final int MAX_CHUNK_SIZE = 256 * 1024;
+
+    @Test
+    public void testStreamedBody() throws Throwable {
+        try (TestServer server = new TestServer(); MemorySampler sampler = new MemorySampler()) {
+            AtomicLong received = new AtomicLong();
+            AtomicInteger largestChunk = new AtomicInteger();
+            AtomicInteger nextIndex = new AtomicInteger();
+            AtomicBoolean last = new AtomicBoolean();
+            AtomicBoolean valid = new AtomicBoolean(true);
+            WebRequestHandler handler = new WebRequestHandler(msg -> {
+                if (msg instanceof WebRequestData.WebRequestDataResponse resp) {
+                    assertEquals(200, resp.statusCode);
+                    assertNotNull(resp.body);
+                    assertTrue(resp.body.chunked);
+                    assertNull(resp.body.bytes);
+                } else if (msg instanceof WebRequestData.Chunk chunk) {
+                    assertEquals(nextIndex.getAndIncrement(), chunk.index);
+                    assertNull(chunk.error);
+                    byte[] bytes = Base64.getDecoder().decode(chunk.data);
+                    long offset = received.getAndAdd(bytes.length);
+                    for (int i = 0; i < bytes.length; i++) {
+                        if (bytes[i] != TestServer.byteAt(offset + i)) {
+                            valid.set(false);
+                        }
+                    }
+                    largestChunk.accumulateAndGet(bytes.length, Math::max);
+                    last.set(chunk.last);
+                }
+            }, null);
+
+            handler.handle(request("http://localhost:" + server.getListeningPort() + "/large", true));
+
+            assertEquals(BODY_SIZE, received.get());
+            assertTrue(valid.get(), "Streamed body did not match.");
+            assertTrue(last.get(), "Last chunk was not marked.");
+            // Sent as many small chunks, rather than a few large ones.
+            assertTrue(nextIndex.get() >= BODY_SIZE / MAX_CHUNK_SIZE, "Only " + nextIndex.get() + " chunks were sent.");
+            assertTrue(largestChunk.get() <= MAX_CHUNK_SIZE, "Chunk of " + largestChunk.get() + " bytes was sent.");
+            assertTrue(sampler.peakGrowth() < MEMORY_CEILING, "Heap grew by " + sampler.peakGrowth() / 1024 / 1024 + "MB");
+        }
+    }
+
+    @Test
+    public void testSmallStreamedBodyInline() throws Throwable {
+        try (TestServer server = new TestServer()) {
+            List<BaseData> sent = new ArrayList<>();
+            WebRequestHandler handler = new WebRequestHandler(sent::add, null);
+
+            handler.handle(request("http://localhost:" + server.getListeningPort() + "/cacheable", true));
+            // Fits in a single message, no chunks follow.
+            assertEquals(1, sent.size());
+            WebRequestData.WebRequestDataResponse resp = (WebRequestData.WebRequestDataResponse) sent.get(0);
+            assertFalse(resp.body.chunked);
+            assertEquals("cached", new String(resp.body.bytes));
+        }
+    }
+
+    @Test
+    public void testCachedGet() throws Throwable {
+        Path cacheDir = Files.createTempDirectory("web_cache");
+        cacheDir.toFile().deleteOnExit();
+        try (TestServer server = new TestServer()) {
+            Cache cache = new Cache(cacheDir.toFile(), 10 * 1024 * 1024);
+            List<BaseData> sent = new ArrayList<>();
+            WebRequestHandler handler = new WebRequestHandler(sent::add, cache);
+
+            String url = "http://localhost:" + server.getListeningPort() + "/cacheable";
+            handler.handle(request(url, false));
+            handler.handle(request(url, false));
+            assertEquals(1, server.requests.get());
+            assertEquals(2, sent.size());
+            for (BaseData data : sent) {
+                WebRequestData.WebRequestDataResponse resp = (WebRequestData.WebRequestDataResponse) data;
+                assertEquals("cached", new String(resp.body.bytes));
+            }
+            cache.close();
+        }
+    }
+
+    private static WebRequestData request(String url, boolean stream) {
+        WebRequestData data = new WebRequestData();
+        data.requestId = "1";
+        data.url = url;
+        data.method = "GET";
+        data.stream = stream;
+        return data;
+    }
+
+    private static class TestServer extends NanoHTTPD implements AutoCloseable {
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        public TestServer() throws IOException {
+            super("localhost", MiscUtils.getRandomEphemeralPort());
+            start();
+        }
+
+        private static byte byteAt(long offset) {
+            return (byte) (offset * 31 ^ offset >>> 8);
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            requests.incrementAndGet();
+            if (session.getUri().equals("/cacheable")) {
+                Response response = newFixedLengthResponse(Response.Status.OK, "text/plain", "cached");
+                response.addHeader("Cache-Control", "public, max-age=60");
+                return response;
+            }
+            return newFixedLengthResponse(Response.Status.OK, "application/octet-stream", new GeneratedInputStream(), BODY_SIZE);
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+
+    // Generates the body on the fly, so the server side does not use any memory either.
+    private static class GeneratedInputStream extends InputStream {
+
+        private long pos;
+
+        @Override
+        public int read() {
+            if (pos >= BODY_SIZE) return -1;
+            return TestServer.byteAt(pos++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (pos >= BODY_SIZE) return -1;
+            int n = (int) Math.min(len, BODY_SIZE - pos);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = TestServer.byteAt(pos++);
+            }
+            return n;
+        }
+    }
+
+    // Samples live heap usage on a background thread, tracking the peak above where it started.
+    // Collects before each sample, otherwise the garbage from each chunk would drown out what is actually retained.
+    private static class MemorySampler implements AutoCloseable {
+
+        private final Runtime runtime = Runtime.getRuntime();
+        private final long baseline;
+        private final AtomicLong peak = new AtomicLong();
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final Thread thread;
+
+        private MemorySampler() {
+            System.gc();
+            baseline = used();
+            thread = new Thread(() -> {
+                while (running.get()) {
+                    System.gc();
+                    peak.accumulateAndGet(used(), Math::max);
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private long used() {
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+
+        public long peakGrowth() {
+            return Math.max(0, peak.get() - baseline);
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            running.set(false);
+            thread.join();
+        }
+    }
+}
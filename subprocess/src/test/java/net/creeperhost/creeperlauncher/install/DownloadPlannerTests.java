@@ -0,0 +1,200 @@
+package net.creeperhost.creeperlauncher.install;
+
+import com.google.common.hash.Hashing;
+import fi.iki.elonen.NanoHTTPD;
+import net.covers1624.quack.util.SneakyUtils;
+import net.creeperhost.creeperlauncher.install.DownloadPlanner.PlannedDownload;
+import net.creeperhost.creeperlauncher.install.tasks.DownloadTask;
+import net.creeperhost.creeperlauncher.install.tasks.DownloadTask.DownloadValidation;
+import net.creeperhost.creeperlauncher.install.tasks.ParallelTaskHelper;
+import net.creeperhost.creeperlauncher.util.MiscUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fi.iki.elonen.NanoHTTPD.Response.Status.NOT_FOUND;
+import static fi.iki.elonen.NanoHTTPD.Response.Status.OK;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DownloadPlannerTests {
+
+    private static final Random random = new Random();
+
+    private static final int THREADS = 4;
+    private static final int LARGE_FILES = 4;
+    private static final int LARGE_SIZE = 2 * 1024 * 1024;
+    private static final int SMALL_FILES = 200;
+    private static final int SMALL_SIZE = 32 * 1024;
+    // Each connection is throttled, so download time is proportional to size.
+    private static final long BYTES_PER_SECOND = 2 * 1024 * 1024;
+
+    @Test
+    public void testDedupe() throws Throwable {
+        byte[] data = genRandomData(64 * 1024);
+        try (FilesWebServer server = new FilesWebServer(-1)) {
+            server.files.put("a", data);
+            Path tempDir = Files.createTempDirectory("planner");
+            tempDir.toFile().deleteOnExit();
+
+            DownloadPlanner planner = new DownloadPlanner(Runnable::run);
+            for (int i = 0; i < 3; i++) {
+                planner.add(data.length, task(server, "a", tempDir.resolve("copy" + i), data));
+            }
+            List<PlannedDownload> plan = planner.plan();
+            assertEquals(1, plan.size());
+            assertEquals(3, plan.get(0).getFileCount());
+
+            ParallelTaskHelper.executeInParallel(null, Executors.newSingleThreadExecutor(), plan, null);
+            assertEquals(1, server.requests.get());
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(data, Files.readAllBytes(tempDir.resolve("copy" + i)));
+            }
+        }
+    }
+
+    @Test
+    public void testSizesResolvedConcurrently() {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger resolved = new AtomicInteger();
+        DownloadPlanner planner = new DownloadPlanner(executor, url -> {
+            SneakyUtils.sneaky(() -> Thread.sleep(100));
+            resolved.incrementAndGet();
+            return Long.parseLong(url.substring(url.lastIndexOf('/') + 1));
+        });
+        for (int i = 1; i <= 16; i++) {
+            planner.add(-1, DownloadTask.builder()
+                    .url("http://localhost/" + i)
+                    .dest(Path.of("file" + i))
+                    .build());
+        }
+
+        long start = System.nanoTime();
+        List<PlannedDownload> plan = planner.plan();
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        executor.shutdown();
+
+        assertEquals(16, resolved.get());
+        // 16 sequential HEAD requests would take 1600ms.
+        assertTrue(elapsed < 800, "Took " + elapsed + "ms");
+        // Largest first, interleaved with the smallest.
+        assertEquals(16, plan.get(0).getSize());
+        assertEquals(1, plan.get(1).getSize());
+        assertEquals(15, plan.get(2).getSize());
+    }
+
+    @Test
+    public void testSkewedInstall() throws Throwable {
+        try (FilesWebServer server = new FilesWebServer(BYTES_PER_SECOND)) {
+            // Manifest order puts the large files last, the worst case for the old behaviour.
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < SMALL_FILES; i++) {
+                String name = "small" + i;
+                server.files.put(name, genRandomData(SMALL_SIZE));
+                names.add(name);
+            }
+            for (int i = 0; i < LARGE_FILES; i++) {
+                String name = "large" + i;
+                server.files.put(name, genRandomData(LARGE_SIZE));
+                names.add(name);
+            }
+
+            long manifestOrder = install(server, names, false);
+            long planned = install(server, names, true);
+            System.out.printf("Manifest order: %d ms, Planned: %d ms.%n", manifestOrder, planned);
+            assertTrue(planned < manifestOrder, "Planned install was not faster. Manifest order: " + manifestOrder + "ms, Planned: " + planned + "ms");
+        }
+    }
+
+    private static long install(FilesWebServer server, List<String> names, boolean plan) throws IOException {
+        Path tempDir = Files.createTempDirectory("planner");
+        tempDir.toFile().deleteOnExit();
+
+        List<DownloadTask> tasks = new ArrayList<>();
+        for (String name : names) {
+            tasks.add(task(server, name, tempDir.resolve(name), server.files.get(name)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            if (plan) {
+                DownloadPlanner planner = new DownloadPlanner(executor);
+                for (DownloadTask task : tasks) {
+                    planner.add(task.getValidation().expectedSize, task);
+                }
+                ParallelTaskHelper.executeInParallel(null, executor, planner.plan(), null);
+            } else {
+                ParallelTaskHelper.executeInParallel(null, executor, tasks, null);
+            }
+            return (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static DownloadTask task(FilesWebServer server, String name, Path dest, byte[] data) {
+        return DownloadTask.builder()
+                .url(server.getAddr(name))
+                .dest(dest)
+                .withValidation(DownloadValidation.of().withExpectedSize(data.length).withHash(Hashing.sha1(), Hashing.sha1().hashBytes(data)))
+                .build();
+    }
+
+    private static byte[] genRandomData(int len) {
+        byte[] bytes = new byte[len];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static class FilesWebServer extends NanoHTTPD implements AutoCloseable {
+
+        private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final long bytesPerSecond;
+
+        public FilesWebServer(long bytesPerSecond) throws IOException {
+            super(MiscUtils.getRandomEphemeralPort());
+            this.bytesPerSecond = bytesPerSecond;
+            start();
+        }
+
+        public String getAddr(String name) {
+            return "http://localhost:" + getListeningPort() + "/" + name;
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            byte[] data = files.get(session.getUri().substring(1));
+            if (data == null) return newFixedLengthResponse(NOT_FOUND, "text/plain", "Not found.");
+
+            requests.incrementAndGet();
+            InputStream is = new ByteArrayInputStream(data);
+            if (bytesPerSecond > 0) {
+                is = new FilterInputStream(is) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int chunk = (int) Math.min(len, bytesPerSecond / 100);
+                        SneakyUtils.sneaky(() -> Thread.sleep(chunk * 1000L / bytesPerSecond));
+                        return super.read(b, off, chunk);
+                    }
+                };
+            }
+            return newFixedLengthResponse(OK, "application/octet-stream", is, data.length);
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
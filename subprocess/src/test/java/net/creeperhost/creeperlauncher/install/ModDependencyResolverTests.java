@@ -0,0 +1,194 @@
+package net.creeperhost.creeperlauncher.install;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import fi.iki.elonen.NanoHTTPD;
+import net.covers1624.quack.gson.JsonUtils;
+import net.covers1624.quack.util.SneakyUtils;
+import net.creeperhost.creeperlauncher.data.mod.ModManifest;
+import net.creeperhost.creeperlauncher.util.MiscUtils;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModDependencyResolverTests {
+
+    private static final Gson GSON = new Gson();
+    private static final OkHttpClient CLIENT = new OkHttpClient();
+
+    private static final String MC_VERSION = "1.20.1";
+    private static final String MOD_LOADER = "forge";
+    private static final long LATENCY_MS = 100;
+
+    // Mod ids with no manifest, and with no compatible version.
+    private static final long MISSING = 99;
+    private static final long INCOMPATIBLE = 40;
+
+    @Test
+    public void testResolve() throws Throwable {
+        // 4 levels deep, 17 mods. Every mod in a level shares the same dependencies, and level 2 points back at
+        // the root and level 1.
+        Map<Long, List<Long>> graph = new LinkedHashMap<>();
+        graph.put(1L, List.of(10L, 11L, 12L, 13L, 14L));
+        for (long id = 10; id < 15; id++) {
+            graph.put(id, List.of(20L, 21L, 22L, 23L, 24L));
+        }
+        for (long id = 20; id < 25; id++) {
+            graph.put(id, List.of(30L, 31L, 32L, 33L, 34L, 1L, 10L));
+        }
+        for (long id = 30; id < 35; id++) {
+            graph.put(id, List.of(MISSING, INCOMPATIBLE));
+        }
+        graph.put(INCOMPATIBLE, List.of());
+        int depth = 4;
+        int fetchable = graph.size(); // Every mod but the root, which the installer queries, plus the missing mod.
+
+        try (TestApi api = new TestApi(graph)) {
+            ExecutorService executor = Executors.newCachedThreadPool();
+            try {
+                // Stand-in for the mod version cache, remembering manifests between resolutions.
+                Map<Long, CompletableFuture<@Nullable ModManifest>> memo = new ConcurrentHashMap<>();
+                LongFunction<CompletableFuture<@Nullable ModManifest>> lookup = id -> memo.computeIfAbsent(id, e -> CompletableFuture.supplyAsync(() -> SneakyUtils.sneaky(() -> api.fetch(e)), executor));
+                ModManifest root = api.fetch(1);
+                ModManifest.Version rootVersion = Objects.requireNonNull(root.findLatestCompatibleVersion(MOD_LOADER, MC_VERSION));
+                api.fetches.clear();
+
+                TestCollector collector = new TestCollector();
+                long start = System.nanoTime();
+                new ModDependencyResolver(collector, lookup).resolve(root, rootVersion);
+                long elapsed = (System.nanoTime() - start) / 1_000_000;
+                System.out.printf("Resolved %d manifests, %d levels deep in %d ms. Sequentially would be at least %d ms.%n", fetchable, depth, elapsed, fetchable * LATENCY_MS);
+
+                // Each manifest was fetched once.
+                assertEquals(fetchable, api.fetches.size());
+                for (Map.Entry<Long, AtomicInteger> entry : api.fetches.entrySet()) {
+                    assertEquals(1, entry.getValue().get(), "Mod " + entry.getKey() + " fetched more than once.");
+                }
+
+                // Every mod was installed once, and the problems were reported.
+                assertEquals(16, collector.added.size());
+                assertEquals(collector.added.size(), new HashSet<>(collector.added).size());
+                assertEquals(List.of(MISSING), collector.unavailable);
+                assertEquals(List.of(INCOMPATIBLE), collector.unsatisfiable);
+
+                // Latency scales with depth, not mod count.
+                assertTrue(elapsed >= depth * LATENCY_MS);
+                assertTrue(elapsed < (depth + 3) * LATENCY_MS, "Took " + elapsed + " ms.");
+
+                // Resolving again hits the network for nothing.
+                api.fetches.clear();
+                new ModDependencyResolver(new TestCollector(), lookup).resolve(root, rootVersion);
+                assertTrue(api.fetches.isEmpty());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static class TestCollector implements ModCollector {
+
+        private final List<Long> added = new ArrayList<>();
+        private final List<Long> unavailable = new ArrayList<>();
+        private final List<Long> unsatisfiable = new ArrayList<>();
+
+        // @formatter:off
+        @Override public String mcVersion() { return MC_VERSION; }
+        @Override public String modLoader() { return MOD_LOADER; }
+        @Override public void unavailableDependency(ModManifest requestedBy, ModManifest.Dependency dep) { unavailable.add(dep.getId()); }
+        @Override public void unsatisfiableDependency(ModManifest requestedBy, ModManifest dep) { unsatisfiable.add(dep.getId()); }
+        @Override public void addMod(ModManifest mod, ModManifest.Version version) { added.add(mod.getId()); }
+        // @formatter:on
+    }
+
+    // A stand-in for the modpacks.ch mod api, serving a synthetic dependency graph.
+    private static class TestApi extends NanoHTTPD implements AutoCloseable {
+
+        private final Map<Long, List<Long>> graph;
+        private final Map<Long, AtomicInteger> fetches = new ConcurrentHashMap<>();
+
+        public TestApi(Map<Long, List<Long>> graph) throws IOException {
+            super("localhost", MiscUtils.getRandomEphemeralPort());
+            this.graph = graph;
+            start();
+        }
+
+        @Nullable
+        public ModManifest fetch(long id) throws IOException {
+            Request request = new Request.Builder()
+                    .url("http://localhost:" + getListeningPort() + "/mod/" + id)
+                    .build();
+            try (okhttp3.Response response = CLIENT.newCall(request).execute()) {
+                if (response.code() == 404) return null;
+                return JsonUtils.parse(GSON, Objects.requireNonNull(response.body()).string(), ModManifest.class);
+            }
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            long id = Long.parseLong(session.getUri().substring("/mod/".length()));
+            fetches.computeIfAbsent(id, e -> new AtomicInteger()).incrementAndGet();
+            SneakyUtils.sneaky(() -> Thread.sleep(LATENCY_MS));
+
+            List<Long> deps = graph.get(id);
+            if (deps == null) {
+                return newFixedLengthResponse(Response.Status.NOT_FOUND, "application/json", "{\"status\":\"error\"}");
+            }
+            return newFixedLengthResponse(Response.Status.OK, "application/json", manifest(id, deps).toString());
+        }
+
+        private static JsonObject manifest(long id, List<Long> deps) {
+            JsonObject game = new JsonObject();
+            game.addProperty("type", "game");
+            game.addProperty("version", id == INCOMPATIBLE ? "1.7.10" : MC_VERSION);
+            JsonObject loader = new JsonObject();
+            loader.addProperty("type", "modloader");
+            loader.addProperty("name", MOD_LOADER);
+            JsonArray targets = new JsonArray();
+            targets.add(game);
+            targets.add(loader);
+
+            JsonArray dependencies = new JsonArray();
+            for (long dep : deps) {
+                JsonObject dependency = new JsonObject();
+                dependency.addProperty("id", dep);
+                dependency.addProperty("required", true);
+                dependencies.add(dependency);
+            }
+            // Optional dependencies are never resolved.
+            JsonObject optional = new JsonObject();
+            optional.addProperty("id", 1000 + id);
+            optional.addProperty("required", false);
+            dependencies.add(optional);
+
+            JsonObject version = new JsonObject();
+            version.addProperty("id", id * 100);
+            version.addProperty("name", "mod-" + id + ".jar");
+            version.add("targets", targets);
+            version.add("dependencies", dependencies);
+            JsonArray versions = new JsonArray();
+            versions.add(version);
+
+            JsonObject manifest = new JsonObject();
+            manifest.addProperty("status", "success");
+            manifest.addProperty("id", id);
+            manifest.addProperty("name", "Mod " + id);
+            manifest.add("versions", versions);
+            return manifest;
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
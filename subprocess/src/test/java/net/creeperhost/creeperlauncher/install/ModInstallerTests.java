@@ -0,0 +1,259 @@
+package net.creeperhost.creeperlauncher.install;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import fi.iki.elonen.NanoHTTPD;
+import net.covers1624.quack.gson.JsonUtils;
+import net.covers1624.quack.util.HashUtils;
+import net.covers1624.quack.util.SneakyUtils;
+import net.creeperhost.creeperlauncher.data.InstanceModifications;
+import net.creeperhost.creeperlauncher.data.InstanceModifications.ModOverride;
+import net.creeperhost.creeperlauncher.data.InstanceModifications.ModOverrideState;
+import net.creeperhost.creeperlauncher.data.mod.CurseMetadata;
+import net.creeperhost.creeperlauncher.data.mod.ModInfo;
+import net.creeperhost.creeperlauncher.data.mod.ModManifest;
+import net.creeperhost.creeperlauncher.install.ModInstaller.ModRequest;
+import net.creeperhost.creeperlauncher.pack.Instance;
+import net.creeperhost.creeperlauncher.util.MiscUtils;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModInstallerTests {
+
+    private static final Gson GSON = new Gson();
+    private static final OkHttpClient CLIENT = new OkHttpClient();
+
+    private static final int MOD_COUNT = 50;
+    private static final int JAR_SIZE = 256 * 1024;
+    private static final long LATENCY_MS = 20;
+
+    @Test
+    public void testUpdateAll() throws Throwable {
+        try (TestApi api = new TestApi()) {
+            ExecutorService executor = Executors.newCachedThreadPool();
+            try {
+                LongFunction<CompletableFuture<@Nullable ModManifest>> lookup = id -> CompletableFuture.supplyAsync(() -> SneakyUtils.sneaky(() -> api.fetch(id)), executor);
+
+                // How update all used to work, one operation per mod.
+                Instance single = createInstance(api);
+                AtomicInteger singleListings = new AtomicInteger();
+                long start = System.nanoTime();
+                for (int i = 0; i < MOD_COUNT; i++) {
+                    ModInstaller installer = new ModInstaller(single, "1.20.1", "forge", List.of(new ModRequest(modId(i), versionId(i, 2))), lookup, lookup, e -> listMods(e, singleListings));
+                    installer.resolve();
+                    installer.install();
+                }
+                long singleMs = (System.nanoTime() - start) / 1_000_000;
+
+                Instance batch = createInstance(api);
+                AtomicInteger batchListings = new AtomicInteger();
+                List<ModRequest> requests = new ArrayList<>();
+                for (int i = 0; i < MOD_COUNT; i++) {
+                    requests.add(new ModRequest(modId(i), versionId(i, 2)));
+                }
+                start = System.nanoTime();
+                ModInstaller installer = new ModInstaller(batch, "1.20.1", "forge", requests, lookup, lookup, e -> listMods(e, batchListings));
+                installer.resolve();
+                installer.install();
+                long batchMs = (System.nanoTime() - start) / 1_000_000;
+
+                System.out.printf("Updating %d mods. Single operations: %d ms, %d mod listings. Batch: %d ms, %d mod listings.%n",
+                        MOD_COUNT, singleMs, singleListings.get(), batchMs, batchListings.get());
+
+                assertEquals(MOD_COUNT, singleListings.get());
+                assertEquals(1, batchListings.get());
+                assertTrue(batchMs < singleMs, "Batch was not faster.");
+
+                // Both end up in the same state.
+                assertUpdated(single);
+                assertUpdated(batch);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static void assertUpdated(Instance instance) {
+        Path modsDir = instance.getDir().resolve("mods");
+        InstanceModifications modifications = Objects.requireNonNull(instance.getModifications());
+        assertEquals(MOD_COUNT, modifications.getOverrides().size());
+        for (int i = 0; i < MOD_COUNT; i++) {
+            long modId = modId(i);
+            assertFalse(Files.exists(modsDir.resolve(jarName(i, 1))));
+            assertTrue(Files.exists(modsDir.resolve(jarName(i, 2))));
+
+            ModOverride override = modifications.getOverrides().stream()
+                    .filter(e -> e.getCurseProject() == modId)
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals(versionId(i, 2), override.getCurseFile());
+            assertEquals(jarName(i, 2), override.getFileName());
+        }
+    }
+
+    // Stand-in for Instance.getMods(true), which hashes every mod jar.
+    private static List<ModInfo> listMods(Instance instance, AtomicInteger listings) {
+        listings.incrementAndGet();
+        List<ModInfo> mods = new ArrayList<>();
+        InstanceModifications modifications = instance.getModifications();
+        if (modifications == null) return mods;
+
+        for (ModOverride override : modifications.getOverrides()) {
+            Path file = instance.getDir().resolve("mods").resolve(override.getFileName());
+            String sha1 = SneakyUtils.sneaky(() -> HashUtils.hash(Hashing.sha1(), file).toString());
+            mods.add(new ModInfo(-1, override.getFileName(), null, true, JAR_SIZE, sha1, CurseMetadata.basic(override.getCurseProject(), override.getCurseFile())));
+        }
+        return mods;
+    }
+
+    // An instance with every mod installed at version 1.
+    private static Instance createInstance(TestApi api) throws IOException {
+        UUID uuid = UUID.randomUUID();
+        Path dir = Files.createTempDirectory("instance");
+        dir.toFile().deleteOnExit();
+        Files.writeString(dir.resolve("instance.json"), """
+                {
+                  "uuid": "%s",
+                  "id": 1,
+                  "versionId": 1,
+                  "name": "Instance",
+                  "category": "Default",
+                  "installComplete": true
+                }
+                """.formatted(uuid));
+        Files.writeString(dir.resolve("version.json"), """
+                {
+                  "id": 1
+                }
+                """);
+        Instance instance = new Instance(dir, dir.resolve("instance.json"));
+
+        Path modsDir = Files.createDirectories(dir.resolve("mods"));
+        for (int i = 0; i < MOD_COUNT; i++) {
+            byte[] jar = jar(modId(i), versionId(i, 1));
+            Files.write(modsDir.resolve(jarName(i, 1)), jar);
+            instance.getOrCreateModifications().getOverrides().add(new ModOverride(
+                    ModOverrideState.ADDED_ENABLED,
+                    jarName(i, 1),
+                    Hashing.sha1().hashBytes(jar).toString(),
+                    modId(i),
+                    versionId(i, 1)
+            ));
+        }
+        instance.saveModifications();
+        return instance;
+    }
+
+    private static long modId(int i) {
+        return 1000 + i;
+    }
+
+    private static long versionId(int i, int version) {
+        return modId(i) * 10 + version;
+    }
+
+    private static String jarName(int i, int version) {
+        return "mod-" + i + "-" + version + ".jar";
+    }
+
+    private static byte[] jar(long modId, long versionId) {
+        byte[] bytes = new byte[JAR_SIZE];
+        new Random(modId * 31 + versionId).nextBytes(bytes);
+        return bytes;
+    }
+
+    // A stand-in for the modpacks.ch mod api, and the CDN.
+    private static class TestApi extends NanoHTTPD implements AutoCloseable {
+
+        public TestApi() throws IOException {
+            super("localhost", MiscUtils.getRandomEphemeralPort());
+            start();
+        }
+
+        @Nullable
+        public ModManifest fetch(long id) throws IOException {
+            Request request = new Request.Builder()
+                    .url("http://localhost:" + getListeningPort() + "/mod/" + id)
+                    .build();
+            try (okhttp3.Response response = CLIENT.newCall(request).execute()) {
+                if (response.code() == 404) return null;
+                return JsonUtils.parse(GSON, Objects.requireNonNull(response.body()).string(), ModManifest.class);
+            }
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            String[] parts = session.getUri().substring(1).split("/");
+            if (parts[0].equals("file")) {
+                byte[] jar = jar(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                return newFixedLengthResponse(Response.Status.OK, "application/java-archive", new ByteArrayInputStream(jar), jar.length);
+            }
+
+            SneakyUtils.sneaky(() -> Thread.sleep(LATENCY_MS));
+            long id = Long.parseLong(parts[1]);
+            int i = (int) (id - 1000);
+            if (i < 0 || i >= MOD_COUNT) {
+                return newFixedLengthResponse(Response.Status.NOT_FOUND, "application/json", "{\"status\":\"error\"}");
+            }
+
+            JsonArray versions = new JsonArray();
+            for (int v = 1; v <= 2; v++) {
+                JsonObject game = new JsonObject();
+                game.addProperty("type", "game");
+                game.addProperty("version", "1.20.1");
+                JsonArray targets = new JsonArray();
+                targets.add(game);
+
+                // Every mod depends on the first, which is already installed.
+                JsonArray dependencies = new JsonArray();
+                if (i != 0) {
+                    JsonObject dependency = new JsonObject();
+                    dependency.addProperty("id", modId(0));
+                    dependency.addProperty("required", true);
+                    dependencies.add(dependency);
+                }
+
+                long versionId = versionId(i, v);
+                JsonObject version = new JsonObject();
+                version.addProperty("id", versionId);
+                version.addProperty("name", jarName(i, v));
+                version.addProperty("path", "mods/");
+                version.addProperty("url", "http://localhost:" + getListeningPort() + "/file/" + id + "/" + versionId);
+                version.addProperty("sha1", Hashing.sha1().hashBytes(jar(id, versionId)).toString());
+                version.addProperty("size", JAR_SIZE);
+                version.add("targets", targets);
+                version.add("dependencies", dependencies);
+                versions.add(version);
+            }
+
+            JsonObject manifest = new JsonObject();
+            manifest.addProperty("status", "success");
+            manifest.addProperty("id", id);
+            manifest.addProperty("name", "Mod " + i);
+            manifest.add("versions", versions);
+            return newFixedLengthResponse(Response.Status.OK, "application/json", manifest.toString());
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
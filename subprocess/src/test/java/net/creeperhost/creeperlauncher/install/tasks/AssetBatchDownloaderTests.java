@@ -0,0 +1,126 @@
+package net.creeperhost.creeperlauncher.install.tasks;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import fi.iki.elonen.NanoHTTPD;
+import net.creeperhost.creeperlauncher.install.tasks.AssetBatchDownloader.BatchedObject;
+import net.creeperhost.creeperlauncher.util.MiscUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static fi.iki.elonen.NanoHTTPD.Response.Status.NOT_FOUND;
+import static fi.iki.elonen.NanoHTTPD.Response.Status.OK;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssetBatchDownloaderTests {
+
+    private static final int OBJECT_COUNT = 1000;
+
+    @Test
+    public void testBatchedDownload() throws Throwable {
+        try (ObjectWebServer server = new ObjectWebServer()) {
+            Random random = new Random(0);
+            for (int i = 0; i < OBJECT_COUNT; i++) {
+                byte[] data = new byte[512 + random.nextInt(4096)];
+                random.nextBytes(data);
+                server.objects.put(Hashing.sha1().hashBytes(data).toString(), data);
+            }
+
+            Path dir = Files.createTempDirectory("objects");
+            dir.toFile().deleteOnExit();
+            AtomicInteger notified = new AtomicInteger();
+            downloadBatched(server, dir, OBJECT_COUNT, notified);
+
+            // Every object downloaded exactly once, and reported once.
+            assertEquals(OBJECT_COUNT, server.requests.get());
+            assertEquals(OBJECT_COUNT, notified.get());
+            for (Map.Entry<String, byte[]> entry : server.objects.entrySet()) {
+                assertArrayEquals(entry.getValue(), Files.readAllBytes(dir.resolve(path(entry.getKey()))));
+            }
+        }
+    }
+
+    @Test
+    public void testFailuresReported() throws Throwable {
+        try (ObjectWebServer server = new ObjectWebServer()) {
+            byte[] data = new byte[1024];
+            new Random().nextBytes(data);
+            HashCode hash = Hashing.sha1().hashBytes(data);
+            server.objects.put(hash.toString(), data);
+
+            Path dir = Files.createTempDirectory("objects");
+            dir.toFile().deleteOnExit();
+            HashCode missing = Hashing.sha1().hashBytes(new byte[1]);
+            List<BatchedObject> objects = List.of(
+                    new BatchedObject(hash, data.length, dir.resolve(path(hash.toString())), List.of(server.getAddr(hash.toString()))),
+                    new BatchedObject(missing, 1, dir.resolve(path(missing.toString())), List.of(server.getAddr(missing.toString())))
+            );
+            AssetBatchDownloader downloader = new AssetBatchDownloader(objects, null, e -> { });
+            assertThrows(DownloadFailedException.class, () -> downloader.execute(null, null));
+            assertArrayEquals(data, Files.readAllBytes(dir.resolve(path(hash.toString()))));
+            assertFalse(Files.exists(dir.resolve(path(missing.toString()))));
+            try (Stream<Path> files = Files.walk(dir)) {
+                assertTrue(files.noneMatch(e -> e.getFileName().toString().startsWith("__tmp_")));
+            }
+        }
+    }
+
+    private static void downloadBatched(ObjectWebServer server, Path dir, int count, AtomicInteger notified) throws Throwable {
+        List<BatchedObject> objects = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : limit(server, count)) {
+            objects.add(new BatchedObject(
+                    HashCode.fromString(entry.getKey()),
+                    entry.getValue().length,
+                    dir.resolve(path(entry.getKey())),
+                    List.of(server.getAddr(entry.getKey()))
+            ));
+        }
+        new AssetBatchDownloader(objects, null, e -> notified.incrementAndGet()).execute(null, null);
+    }
+
+    private static List<Map.Entry<String, byte[]>> limit(ObjectWebServer server, int count) {
+        return server.objects.entrySet().stream().limit(count).toList();
+    }
+
+    private static String path(String hash) {
+        return hash.substring(0, 2) + "/" + hash;
+    }
+
+    private static class ObjectWebServer extends NanoHTTPD implements AutoCloseable {
+
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final AtomicInteger requests = new AtomicInteger();
+
+        public ObjectWebServer() throws IOException {
+            super(MiscUtils.getRandomEphemeralPort());
+            start();
+        }
+
+        public String getAddr(String hash) {
+            return "http://localhost:" + getListeningPort() + "/" + path(hash);
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            requests.incrementAndGet();
+            String uri = session.getUri();
+            byte[] data = objects.get(uri.substring(uri.lastIndexOf('/') + 1));
+            if (data == null) return newFixedLengthResponse(NOT_FOUND, "text/plain", "Not found.");
+
+            return newFixedLengthResponse(OK, "application/octet-stream", new ByteArrayInputStream(data), data.length);
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
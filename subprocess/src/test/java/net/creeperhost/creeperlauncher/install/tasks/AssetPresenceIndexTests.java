@@ -0,0 +1,101 @@
+package net.creeperhost.creeperlauncher.install.tasks;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import net.creeperhost.creeperlauncher.install.FileValidation;
+import net.creeperhost.creeperlauncher.minecraft.jsons.AssetIndexManifest;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssetPresenceIndexTests {
+
+    private static final int OBJECT_COUNT = 4000;
+
+    @Test
+    public void testColdAndWarmVerification() throws IOException {
+        Path assetsDir = Files.createTempDirectory("assets");
+        assetsDir.toFile().deleteOnExit();
+        Path objectsDir = assetsDir.resolve("objects");
+        AssetIndexManifest manifest = generateObjects(objectsDir);
+
+        // Cold, every object is hashed.
+        AssetPresenceIndex index = AssetPresenceIndex.load(assetsDir);
+        assertEquals(OBJECT_COUNT, countHashed(index, objectsDir, manifest));
+        List<DownloadTask> tasks = InstallAssetsTask.buildTaskList(objectsDir, manifest, index);
+        index.save();
+        assertTrue(tasks.isEmpty());
+        assertEquals(OBJECT_COUNT, index.size());
+
+        // Warm, nothing is hashed.
+        index = AssetPresenceIndex.load(assetsDir);
+        assertEquals(0, countHashed(index, objectsDir, manifest));
+        tasks = InstallAssetsTask.buildTaskList(objectsDir, manifest, index);
+        assertTrue(tasks.isEmpty());
+
+        // Corrupt an object, it should be re-verified and scheduled for download.
+        AssetIndexManifest.AssetObject object = manifest.objects.values().iterator().next();
+        Path corrupt = objectsDir.resolve(object.getPath());
+        Files.write(corrupt, new byte[object.getSize()]);
+        Files.setLastModifiedTime(corrupt, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        tasks = InstallAssetsTask.buildTaskList(objectsDir, manifest, index);
+        assertEquals(1, tasks.size());
+        assertEquals(corrupt, tasks.get(0).getDest());
+
+        // Deleted objects are noticed by metadata alone.
+        Files.delete(corrupt);
+        tasks = InstallAssetsTask.buildTaskList(objectsDir, manifest, index);
+        assertEquals(1, tasks.size());
+    }
+
+    // Checks every object is present, counting how many had to be hashed.
+    private static int countHashed(AssetPresenceIndex index, Path objectsDir, AssetIndexManifest manifest) {
+        AtomicInteger hashed = new AtomicInteger();
+        for (AssetIndexManifest.AssetObject object : manifest.objects.values()) {
+            FileValidation validation = FileValidation.of()
+                    .withExpectedSize(object.getSize())
+                    .withHash(Hashing.sha1(), object.getHash());
+            FileValidation counting = new FileValidation(validation.expectedSize, validation.expectedHashes) {
+                @Override
+                public boolean validate(Path path) throws IOException {
+                    hashed.incrementAndGet();
+                    return super.validate(path);
+                }
+            };
+            assertTrue(index.isPresent(object.getHash(), objectsDir.resolve(object.getPath()), counting));
+        }
+        return hashed.get();
+    }
+
+    private static AssetIndexManifest generateObjects(Path objectsDir) throws IOException {
+        Random random = new Random(0);
+        JsonObject objects = new JsonObject();
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            // Mostly small objects, with the occasional large sound file.
+            byte[] data = new byte[i % 100 == 0 ? 512 * 1024 : 1024 + random.nextInt(16 * 1024)];
+            random.nextBytes(data);
+            HashCode hash = Hashing.sha1().hashBytes(data);
+            Path file = objectsDir.resolve(hash.toString().substring(0, 2)).resolve(hash.toString());
+            Files.createDirectories(file.getParent());
+            Files.write(file, data);
+
+            JsonObject object = new JsonObject();
+            object.addProperty("hash", hash.toString());
+            object.addProperty("size", data.length);
+            objects.add("minecraft/sounds/" + i + ".ogg", object);
+        }
+        JsonObject root = new JsonObject();
+        root.add("objects", objects);
+        return new Gson().fromJson(root, AssetIndexManifest.class);
+    }
+}
@@ -0,0 +1,156 @@
+package net.creeperhost.creeperlauncher.install.tasks;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalCacheTests {
+
+    private static final int FILE_SIZE = 64 * 1024;
+    private static final long MAX_SIZE = FILE_SIZE * 20L;
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        Path cacheDir = Files.createTempDirectory("localCache");
+        cacheDir.toFile().deleteOnExit();
+        Path srcDir = Files.createTempDirectory("src");
+        srcDir.toFile().deleteOnExit();
+
+        AtomicLong clock = new AtomicLong(1000);
+        LocalCache cache = new LocalCache(cacheDir, () -> MAX_SIZE, () -> clock.addAndGet(1000));
+
+        Random random = new Random(0);
+        List<HashCode> hashes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            hashes.add(putRandom(cache, srcDir, random));
+        }
+        // Keep the first 5 in use.
+        List<HashCode> hot = hashes.subList(0, 5);
+
+        // Fill well past the cap, using the hot files as we go.
+        for (int i = 0; i < 50; i++) {
+            hashes.add(putRandom(cache, srcDir, random));
+            for (HashCode hash : hot) {
+                assertNotNull(cache.get(hash), "Recently used file was evicted.");
+            }
+            assertTrue(cache.getSize() <= MAX_SIZE, "Cache exceeded its maximum size: " + cache.getSize());
+        }
+
+        // The cold files from the start should have been evicted.
+        for (HashCode hash : hashes.subList(5, 10)) {
+            assertFalse(cache.exists(hash));
+            assertFalse(Files.exists(cacheDir.resolve(hash.toString().substring(0, 2)).resolve(hash.toString())));
+        }
+        // The most recently added file always survives.
+        assertTrue(cache.exists(hashes.get(hashes.size() - 1)));
+
+        // Access times are persisted in our own index, not taken from the filesystem.
+        cache.flush();
+        LocalCache reloaded = new LocalCache(cacheDir, () -> MAX_SIZE, () -> clock.addAndGet(1000));
+        assertEquals(cache.getSize(), reloaded.getSize());
+        putRandom(reloaded, srcDir, random);
+        putRandom(reloaded, srcDir, random);
+        for (HashCode hash : hot) {
+            assertTrue(reloaded.exists(hash), "Recently used file was evicted after reload.");
+        }
+    }
+
+    @Test
+    public void testUnlimited() throws IOException {
+        Path cacheDir = Files.createTempDirectory("localCache");
+        cacheDir.toFile().deleteOnExit();
+        Path srcDir = Files.createTempDirectory("src");
+        srcDir.toFile().deleteOnExit();
+
+        LocalCache cache = new LocalCache(cacheDir, () -> 0, System::currentTimeMillis);
+        Random random = new Random(0);
+        for (int i = 0; i < 30; i++) {
+            putRandom(cache, srcDir, random);
+        }
+        assertEquals(FILE_SIZE * 30L, cache.getSize());
+    }
+
+    @Test
+    public void testConcurrentReadsAndEviction() throws Throwable {
+        Path cacheDir = Files.createTempDirectory("localCache");
+        cacheDir.toFile().deleteOnExit();
+        Path srcDir = Files.createTempDirectory("src");
+        srcDir.toFile().deleteOnExit();
+        Path destDir = Files.createTempDirectory("dest");
+        destDir.toFile().deleteOnExit();
+
+        LocalCache cache = new LocalCache(cacheDir, () -> MAX_SIZE, System::nanoTime);
+        List<HashCode> hashes = new CopyOnWriteArrayList<>();
+        Random random = new Random(0);
+        for (int i = 0; i < 20; i++) {
+            hashes.add(putRandom(cache, srcDir, random));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> {
+                Random r = new Random(1);
+                for (int i = 0; i < 100; i++) {
+                    hashes.add(putRandom(cache, srcDir, r));
+                }
+                return null;
+            }));
+            for (int t = 0; t < 7; t++) {
+                Path dest = destDir.resolve("dest" + t);
+                futures.add(executor.submit(() -> {
+                    Random r = new Random();
+                    for (int i = 0; i < 500; i++) {
+                        HashCode hash = hashes.get(r.nextInt(hashes.size()));
+                        cache.get(hash);
+                        if (cache.copyTo(hash, dest)) {
+                            assertEquals(hash, Hashing.sha1().hashBytes(Files.readAllBytes(dest)));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Touches racing evictions must not resurrect entries, or the size tracking drifts.
+        long onDisk = 0;
+        for (HashCode hash : hashes) {
+            Path file = cacheDir.resolve(hash.toString().substring(0, 2)).resolve(hash.toString());
+            assertEquals(cache.exists(hash), Files.exists(file));
+            if (Files.exists(file)) {
+                onDisk += Files.size(file);
+            }
+        }
+        assertEquals(onDisk, cache.getSize());
+    }
+
+    private static HashCode putRandom(LocalCache cache, Path srcDir, Random random) throws IOException {
+        byte[] data = new byte[FILE_SIZE];
+        random.nextBytes(data);
+        HashCode hash = Hashing.sha1().hashBytes(data);
+        Path file = srcDir.resolve(hash.toString());
+        Files.write(file, data);
+        cache.put(file, hash);
+        Files.delete(file);
+        return hash;
+    }
+}
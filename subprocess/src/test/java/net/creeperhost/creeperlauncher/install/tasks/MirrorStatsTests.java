@@ -0,0 +1,53 @@
+package net.creeperhost.creeperlauncher.install.tasks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MirrorStatsTests {
+
+    @Test
+    public void testOrderBackoffByFailureRecency() {
+        MirrorStats stats = new MirrorStats();
+        stats.recordResponse("https://healthy.example/file", TimeUnit.MILLISECONDS.toNanos(200));
+        stats.recordFailure("https://first.example/file");
+        stats.recordFailure("https://second.example/file");
+
+        List<String> ordered = stats.order(List.of(
+                "https://second.example/file",
+                "https://first.example/file",
+                "https://healthy.example/file"
+        ), -1);
+        assertEquals(List.of(
+                "https://healthy.example/file",
+                "https://first.example/file",
+                "https://second.example/file"
+        ), ordered);
+    }
+
+    @Test
+    public void testOrderUnknownAfterMeasured() {
+        MirrorStats stats = new MirrorStats();
+        stats.recordResponse("https://slow.example/file", TimeUnit.SECONDS.toNanos(2));
+        stats.recordResponse("https://fast.example/file", TimeUnit.MILLISECONDS.toNanos(100));
+        stats.recordFailure("https://failed.example/file");
+
+        List<String> ordered = stats.order(List.of(
+                "https://failed.example/file",
+                "https://unknown1.example/file",
+                "https://slow.example/file",
+                "https://unknown2.example/file",
+                "https://fast.example/file"
+        ), -1);
+        assertEquals(List.of(
+                "https://fast.example/file",
+                "https://slow.example/file",
+                "https://unknown1.example/file",
+                "https://unknown2.example/file",
+                "https://failed.example/file"
+        ), ordered);
+    }
+}
@@ -5,21 +5,28 @@ import com.google.common.hash.Hashing;
 import fi.iki.elonen.NanoHTTPD;
 import net.covers1624.quack.util.HashUtils;
 import net.covers1624.quack.util.MultiHasher.HashFunc;
+import net.covers1624.quack.util.MultiHasher.HashResult;
 import net.covers1624.quack.util.SneakyUtils;
 import net.covers1624.quack.util.TimeUtils;
+import net.creeperhost.creeperlauncher.Constants;
+import net.creeperhost.creeperlauncher.install.FileValidation;
 import net.creeperhost.creeperlauncher.install.tasks.DownloadTask.DownloadValidation;
 import net.creeperhost.creeperlauncher.install.tasks.NewDownloadTaskTests.EtagTestWebServer.BakedResponse;
 import net.creeperhost.creeperlauncher.util.MiscUtils;
 import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static fi.iki.elonen.NanoHTTPD.Response.Status.OK;
 import static fi.iki.elonen.NanoHTTPD.Response.Status.PARTIAL_CONTENT;
@@ -107,6 +114,30 @@ public class NewDownloadTaskTests {
         }
     }
 
+    @Test
+    public void testMissingFileNotMirrorFailure() throws IOException {
+        try (EtagTestWebServer missing = new EtagTestWebServer();
+             EtagTestWebServer healthy = new EtagTestWebServer()) {
+            Path dest = Files.createTempFile("tmp", ".dat");
+            dest.toFile().deleteOnExit();
+            Files.delete(dest);
+
+            String path = "/test/missing";
+            missing.responseMap.put(path, new BakedResponse(null, "", -1));
+
+            DownloadTask.builder()
+                    .url(missing.getAddr() + path)
+                    .withMirror(healthy.getAddr() + path)
+                    .dest(dest)
+                    .build()
+                    .execute(null, null);
+
+            // The mirror answered, it just doesn't have the file. It must not be backed off.
+            MirrorStats.MirrorSnapshot stats = Constants.MIRROR_STATS.getStats(missing.getAddr() + path);
+            assertTrue(stats == null || stats.failures() == 0, "Recorded failures: " + stats);
+        }
+    }
+
     @Test
     public void testMirrorsFail() throws IOException {
         try (EtagTestWebServer testWebServer = new EtagTestWebServer()) {
@@ -151,6 +182,259 @@ public class NewDownloadTaskTests {
         }
     }
 
+    @Test
+    public void testResumeAcrossRestart() throws Throwable {
+        try (RestartTestWebServer server = new RestartTestWebServer(genRandomData(1024 * 256))) {
+            Path dest = Files.createTempFile("tmp", ".dat");
+            dest.toFile().deleteOnExit();
+            Files.delete(dest);
+            Path tempFile = dest.resolveSibling("__tmp_" + dest.getFileName());
+            Path stateFile = dest.resolveSibling("__tmp_" + dest.getFileName() + ".resume");
+
+            DownloadValidation validation = DownloadValidation.of()
+                    .withExpectedSize(server.data.length)
+                    .withHash(HashFunc.SHA256, Hashing.sha256().hashBytes(server.data));
+
+            // First attempt, the server drops the connection half way, then refuses any further requests.
+            server.crash = true;
+            DownloadTask first = DownloadTask.builder()
+                    .url(server.getAddr())
+                    .withValidation(validation)
+                    .dest(dest)
+                    .tryResumeDownload()
+                    .build();
+            assertThrows(DownloadFailedException.class, () -> first.execute(null, null));
+            assertTrue(Files.exists(tempFile));
+            assertTrue(Files.exists(stateFile));
+            long offset = Files.size(tempFile);
+            assertTrue(offset > 0 && offset < server.data.length);
+
+            // Later attempt, with a brand-new task.
+            server.crash = false;
+            DownloadTask second = DownloadTask.builder()
+                    .url(server.getAddr())
+                    .withValidation(validation)
+                    .dest(dest)
+                    .tryResumeDownload()
+                    .build();
+            second.execute(null, null);
+
+            assertEquals("bytes=" + offset + "-", server.lastRange);
+            assertEquals(RestartTestWebServer.ETAG, server.lastIfRange);
+            assertEquals(server.data.length - offset, server.bytesServed.get());
+            assertArrayEquals(server.data, Files.readAllBytes(dest));
+            assertFalse(Files.exists(tempFile));
+            assertFalse(Files.exists(stateFile));
+        }
+    }
+
+    @Test
+    public void testResumeDiscardsBytesPastCheckpoint() throws Throwable {
+        try (RestartTestWebServer server = new RestartTestWebServer(genRandomData(1024 * 256))) {
+            Path dest = Files.createTempFile("tmp", ".dat");
+            dest.toFile().deleteOnExit();
+            Files.delete(dest);
+            Path tempFile = dest.resolveSibling("__tmp_" + dest.getFileName());
+
+            DownloadValidation validation = DownloadValidation.of()
+                    .withExpectedSize(server.data.length)
+                    .withHash(HashFunc.SHA256, Hashing.sha256().hashBytes(server.data));
+
+            server.crash = true;
+            DownloadTask first = DownloadTask.builder()
+                    .url(server.getAddr())
+                    .withValidation(validation)
+                    .dest(dest)
+                    .tryResumeDownload()
+                    .build();
+            assertThrows(DownloadFailedException.class, () -> first.execute(null, null));
+            long offset = Files.size(tempFile);
+
+            // Simulate a crash which left a torn write past the last checkpoint.
+            Files.write(tempFile, new byte[1024], StandardOpenOption.APPEND);
+
+            server.crash = false;
+            DownloadTask second = DownloadTask.builder()
+                    .url(server.getAddr())
+                    .withValidation(validation)
+                    .dest(dest)
+                    .tryResumeDownload()
+                    .build();
+            second.execute(null, null);
+
+            assertEquals("bytes=" + offset + "-", server.lastRange);
+            assertArrayEquals(server.data, Files.readAllBytes(dest));
+        }
+    }
+
+    @Test
+    public void testHashesPassedToLocator() throws Throwable {
+        try (FixedDataWebServer server = new FixedDataWebServer(genRandomData(1024 * 64))) {
+            Path dest = Files.createTempFile("tmp", ".dat");
+            dest.toFile().deleteOnExit();
+            Files.delete(dest);
+
+            RecordingLocator locator = new RecordingLocator();
+            DownloadTask task = DownloadTask.builder()
+                    .url(server.getAddr())
+                    .withValidation(DownloadValidation.of().withExpectedSize(server.data.length).withHash(HashFunc.SHA256, Hashing.sha256().hashBytes(server.data)))
+                    .withFileLocator(locator)
+                    .dest(dest)
+                    .build();
+            task.execute(null, null);
+
+            assertNotNull(locator.hashes);
+            assertEquals(Hashing.sha1().hashBytes(server.data), locator.hashes.get(HashFunc.SHA1));
+            assertEquals(Hashing.sha256().hashBytes(server.data), locator.hashes.get(HashFunc.SHA256));
+        }
+    }
+
+    @Test
+    public void testValidatedBeforeMove() throws Throwable {
+        try (FixedDataWebServer server = new FixedDataWebServer(genRandomData(1024 * 64))) {
+            Path dest = Files.createTempFile("tmp", ".dat");
+            dest.toFile().deleteOnExit();
+            Files.delete(dest);
+
+            DownloadTask task = DownloadTask.builder()
+                    .url(server.getAddr())
+                    .withValidation(DownloadValidation.of().withHash(HashFunc.SHA256, Hashing.sha256().hashBytes(new byte[0])))
+                    .dest(dest)
+                    .build();
+            assertThrows(DownloadFailedException.class, () -> task.execute(null, null));
+            assertFalse(Files.exists(dest));
+            assertFalse(Files.exists(dest.resolveSibling("__tmp_" + dest.getFileName())));
+        }
+    }
+
+    // Uses /proc/self/io to count bytes read via read syscalls, which includes both socket and file reads.
+    @Test
+    public void testFileReadOnce() throws Throwable {
+        Path procIo = Path.of("/proc/self/io");
+        Assumptions.assumeTrue(Files.isReadable(procIo), "Requires /proc/self/io");
+
+        int size = 64 * 1024 * 1024;
+        try (FixedDataWebServer server = new FixedDataWebServer(genRandomData(size))) {
+            HashCode sha256 = Hashing.sha256().hashBytes(server.data);
+            Path tempDir = Files.createTempDirectory("dlTask");
+            tempDir.toFile().deleteOnExit();
+
+            // Warm up, so class loading does not skew the numbers.
+            download(server, tempDir.resolve("warmup.dat"), sha256);
+
+            long before = readChars(procIo);
+            long start = System.nanoTime();
+            Path dest = tempDir.resolve("file.dat");
+            download(server, dest, sha256);
+            long elapsed = System.nanoTime() - start;
+            long read = readChars(procIo) - before;
+
+            System.out.printf("Downloaded %d MB in %d ms. Read %d MB total (socket + disk).%n", size >> 20, elapsed / 1_000_000, read >> 20);
+            // The socket read accounts for 1x, re-reading the file from disk to hash would make this 2x.
+            assertTrue(read < size * 1.5, "Read " + read + " bytes for a " + size + " byte download.");
+
+            Files.delete(dest);
+            Files.delete(tempDir.resolve("warmup.dat"));
+        }
+    }
+
+    @Test
+    public void testHangingMirrorRaced() throws Throwable {
+        byte[] data = genRandomData(1024 * 64);
+        try (SlowWebServer hanging = new SlowWebServer(data, 10000, -1);
+             SlowWebServer healthy = new SlowWebServer(data, 0, -1)) {
+            Path dest = Files.createTempFile("tmp", ".dat");
+            dest.toFile().deleteOnExit();
+            Files.delete(dest);
+
+            long start = System.nanoTime();
+            DownloadTask.builder()
+                    .url(hanging.getAddr())
+                    .withMirror(healthy.getAddr())
+                    .withValidation(DownloadValidation.of().withExpectedSize(data.length))
+                    .dest(dest)
+                    .build()
+                    .execute(null, null);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+            assertArrayEquals(data, Files.readAllBytes(dest));
+            // Small files with a known size are raced immediately.
+            assertTrue(elapsed < 2000, "Took " + elapsed + "ms");
+        }
+    }
+
+    @Test
+    public void testHangingMirrorHedged() throws Throwable {
+        byte[] data = genRandomData(1024 * 64);
+        try (SlowWebServer hanging = new SlowWebServer(data, 20000, -1);
+             SlowWebServer healthy = new SlowWebServer(data, 0, -1)) {
+            Path dest = Files.createTempFile("tmp", ".dat");
+            dest.toFile().deleteOnExit();
+            Files.delete(dest);
+
+            long start = System.nanoTime();
+            DownloadTask.builder()
+                    .url(hanging.getAddr())
+                    .withMirror(healthy.getAddr())
+                    .dest(dest)
+                    .build()
+                    .execute(null, null);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+            assertArrayEquals(data, Files.readAllBytes(dest));
+            // Unknown size, the second mirror is tried after the default hedge delay.
+            assertTrue(elapsed < 6000, "Took " + elapsed + "ms");
+        }
+    }
+
+    @Test
+    public void testThrottledMirrorAvoided() throws Throwable {
+        byte[] data = genRandomData(1024 * 512);
+        try (SlowWebServer throttled = new SlowWebServer(data, 0, 256 * 1024);
+             SlowWebServer healthy = new SlowWebServer(data, 0, -1)) {
+            Path tempDir = Files.createTempDirectory("dlTask");
+            tempDir.toFile().deleteOnExit();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                Path dest = tempDir.resolve("file" + i + ".dat");
+                DownloadTask.builder()
+                        .url(throttled.getAddr())
+                        .withMirror(healthy.getAddr())
+                        .withValidation(DownloadValidation.of().withExpectedSize(data.length))
+                        .dest(dest)
+                        .build()
+                        .execute(null, null);
+                assertArrayEquals(data, Files.readAllBytes(dest));
+                Files.delete(dest);
+            }
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+            // The throttled mirror takes 2 seconds per download, it should only be used for the first.
+            System.out.printf("10 downloads took %d ms. Throttled mirror served %d.%n", elapsed, throttled.requests.get());
+            assertEquals(1, throttled.requests.get());
+            assertTrue(elapsed < 5000, "Took " + elapsed + "ms");
+        }
+    }
+
+    private static void download(FixedDataWebServer server, Path dest, HashCode sha256) throws IOException {
+        DownloadTask.builder()
+                .url(server.getAddr())
+                .withValidation(DownloadValidation.of().withExpectedSize(server.data.length).withHash(HashFunc.SHA256, sha256))
+                .dest(dest)
+                .build()
+                .execute(null, null);
+    }
+
+    private static long readChars(Path procIo) throws IOException {
+        for (String line : Files.readAllLines(procIo)) {
+            if (line.startsWith("rchar:")) {
+                return Long.parseLong(line.substring(6).trim());
+            }
+        }
+        throw new IllegalStateException("rchar missing from " + procIo);
+    }
+
     private static byte[] genRandomData(int len) {
         byte[] bytes = new byte[len];
         random.nextBytes(bytes);
@@ -228,6 +512,171 @@ public class NewDownloadTaskTests {
         record BakedResponse(@Nullable byte[] bytes, String etag, long lastModified) { }
     }
 
+    static class FixedDataWebServer extends NanoHTTPD implements AutoCloseable {
+
+        private final byte[] data;
+
+        public FixedDataWebServer(byte[] data) throws IOException {
+            super(MiscUtils.getRandomEphemeralPort());
+            this.data = data;
+            start();
+        }
+
+        public String getAddr() {
+            return "http://localhost:" + getListeningPort() + "/file";
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            return newFixedLengthResponse(OK, "application/octet-stream", new ByteArrayInputStream(data), data.length);
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+
+    static class SlowWebServer extends NanoHTTPD implements AutoCloseable {
+
+        private final byte[] data;
+        private final long headerDelay;
+        private final long bytesPerSecond;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        /**
+         * @param data           The data to serve.
+         * @param headerDelay    How long to wait before responding, in milliseconds.
+         * @param bytesPerSecond The rate to serve the body at, <code>-1</code> for unlimited.
+         */
+        public SlowWebServer(byte[] data, long headerDelay, long bytesPerSecond) throws IOException {
+            super(MiscUtils.getRandomEphemeralPort());
+            this.data = data;
+            this.headerDelay = headerDelay;
+            this.bytesPerSecond = bytesPerSecond;
+            start();
+        }
+
+        public String getAddr() {
+            return "http://localhost:" + getListeningPort() + "/file";
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            requests.incrementAndGet();
+            if (headerDelay > 0) {
+                SneakyUtils.sneaky(() -> Thread.sleep(headerDelay));
+            }
+            InputStream is = new ByteArrayInputStream(data);
+            if (bytesPerSecond > 0) {
+                is = new FilterInputStream(is) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int chunk = (int) Math.min(len, bytesPerSecond / 10);
+                        SneakyUtils.sneaky(() -> Thread.sleep(chunk * 1000L / bytesPerSecond));
+                        return super.read(b, off, chunk);
+                    }
+                };
+            }
+            return newFixedLengthResponse(OK, "application/octet-stream", is, data.length);
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+
+    static class RestartTestWebServer extends NanoHTTPD implements AutoCloseable {
+
+        private static final String ETAG = "\"abcdef\"";
+
+        private final byte[] data;
+        private final AtomicLong bytesServed = new AtomicLong();
+        private volatile boolean crash;
+        @Nullable
+        private volatile String lastRange;
+        @Nullable
+        private volatile String lastIfRange;
+
+        public RestartTestWebServer(byte[] data) throws IOException {
+            super(MiscUtils.getRandomEphemeralPort());
+            this.data = data;
+            start();
+        }
+
+        public String getAddr() {
+            return "http://localhost:" + getListeningPort() + "/file";
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            String range = session.getHeaders().get("range");
+            if (crash) {
+                if (range != null) {
+                    return newFixedLengthResponse(Response.Status.SERVICE_UNAVAILABLE, MIME_PLAINTEXT, "Down.");
+                }
+                return new Response(OK, null, null, -1) {
+                    @Override
+                    protected void send(OutputStream outputStream) {
+                        try {
+                            PrintWriter pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.US_ASCII)), false);
+                            pw.append("HTTP/1.1 ").append(getStatus().getDescription()).append(" \r\n");
+                            printHeader(pw, "Connection", "close");
+                            printHeader(pw, "ETag", ETAG);
+                            pw.print("Content-Length: " + data.length + "\r\n");
+                            pw.append("\r\n");
+                            pw.flush();
+                            // Send half the file, then simulate the process dying.
+                            outputStream.write(data, 0, data.length / 2);
+                            outputStream.flush();
+                            outputStream.close();
+                        } catch (IOException ex) {
+                            SneakyUtils.throwUnchecked(ex);
+                        }
+                    }
+                };
+            }
+
+            lastRange = range;
+            lastIfRange = session.getHeaders().get("if-range");
+            int offset = range != null ? Integer.parseInt(range.replace("bytes=", "").replace("-", "")) : 0;
+            bytesServed.addAndGet(data.length - offset);
+            Response resp = newFixedLengthResponse(range != null ? PARTIAL_CONTENT : OK, "application/octet-stream", new ByteArrayInputStream(data, offset, data.length - offset), data.length - offset);
+            resp.addHeader("ETag", ETAG);
+            if (range != null) {
+                resp.addHeader("Content-Range", "bytes " + offset + "-" + (data.length - 1) + "/" + data.length);
+            }
+            return resp;
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+
+    static class RecordingLocator implements DownloadTask.LocalFileLocator {
+
+        @Nullable
+        private HashResult hashes;
+
+        @Nullable
+        @Override
+        public Path getLocalFile(FileValidation validation, Path dest) {
+            return null;
+        }
+
+        @Override
+        public void onFileDownloaded(FileValidation validation, Path dest) {
+        }
+
+        @Override
+        public void onFileDownloaded(FileValidation validation, Path dest, HashResult hashes) {
+            this.hashes = hashes;
+        }
+    }
+
     static class ResumeTestWebServer extends NanoHTTPD implements AutoCloseable {
 
         private final Map<String, ExpectedResponse> responseMap = new HashMap<>();
@@ -0,0 +1,171 @@
+package net.creeperhost.creeperlauncher.instance;
+
+import com.google.gson.Gson;
+import net.creeperhost.creeperlauncher.api.handlers.instances.InstalledInstancesHandler.SugaredInstanceJson;
+import net.creeperhost.creeperlauncher.data.InstanceJson;
+import net.creeperhost.creeperlauncher.pack.Instance;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstanceArtTests {
+
+    private static final Gson GSON = new Gson();
+
+    private static final int INSTANCE_COUNT = 200;
+    private static final int ITERATIONS = 5;
+
+    @Test
+    public void testInstanceList() throws IOException {
+        Path root = Files.createTempDirectory("instances");
+        root.toFile().deleteOnExit();
+        List<Path> legacy = new ArrayList<>();
+        List<Path> stored = new ArrayList<>();
+        for (int i = 0; i < INSTANCE_COUNT; i++) {
+            BufferedImage art = art(i);
+            legacy.add(createInstance(root.resolve("legacy" + i), dataUrl(art), null));
+
+            Path dir = root.resolve("stored" + i);
+            String hash = new InstanceArt(dir).importArt(art);
+            stored.add(createInstance(dir, null, hash));
+        }
+
+        // Warm up, so neither side pays for class loading.
+        listInstances(legacy);
+        listInstances(stored);
+
+        long legacyMs = Long.MAX_VALUE;
+        long storedMs = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            listInstances(legacy);
+            legacyMs = Math.min(legacyMs, (System.nanoTime() - start) / 1_000_000);
+
+            start = System.nanoTime();
+            listInstances(stored);
+            storedMs = Math.min(storedMs, (System.nanoTime() - start) / 1_000_000);
+        }
+        int legacySize = listInstances(legacy).length();
+        int storedSize = listInstances(stored).length();
+
+        System.out.printf("Listing %d instances. Embedded art: %d KB, %d ms. Stored art: %d KB, %d ms.%n",
+                INSTANCE_COUNT, legacySize / 1024, legacyMs, storedSize / 1024, storedMs);
+
+        assertTrue(storedSize * 10 < legacySize, "Stored art list was " + storedSize + " bytes, embedded was " + legacySize);
+        assertTrue(storedMs <= legacyMs, "Stored art list was not faster.");
+    }
+
+    @Test
+    public void testThumbnails() throws IOException {
+        Path dir = Files.createTempDirectory("instance");
+        dir.toFile().deleteOnExit();
+        InstanceArt art = new InstanceArt(dir);
+        String hash = art.importArt(art(0));
+
+        assertSize(InstanceArt.SIZE, art.getArt(hash, InstanceArt.SIZE));
+        assertSize(InstanceArt.SIZE, art.getArt(hash, 512));
+        assertSize(64, art.getArt(hash, 32));
+        assertSize(128, art.getArt(hash, 100));
+
+        // Missing thumbnails are regenerated.
+        Path thumb = art.getArt(hash, 64);
+        Files.delete(thumb);
+        assertEquals(thumb, art.getArt(hash, 64));
+        assertSize(64, thumb);
+
+        // New art replaces the old.
+        String newHash = art.importArt(art(1));
+        assertNotEquals(hash, newHash);
+        assertNull(art.getArt(hash, 64));
+        try (var files = Files.list(dir.resolve(".ftba/art"))) {
+            assertEquals(1 + InstanceArt.THUMBNAIL_SIZES.size(), files.count());
+        }
+    }
+
+    @Test
+    public void testMigrateEmbeddedArt() throws IOException {
+        Path dir = Files.createTempDirectory("instance");
+        dir.toFile().deleteOnExit();
+        createInstance(dir, dataUrl(art(0)), null);
+        Files.writeString(dir.resolve("version.json"), """
+                {
+                  "id": 1
+                }
+                """);
+
+        Instance instance = new Instance(dir, dir.resolve("instance.json"));
+        instance.migrateArt();
+        assertNull(instance.props.art);
+        assertNotNull(instance.props.artHash);
+        assertNotNull(instance.getArt().getArt(instance.props.artHash, InstanceArt.SIZE));
+        assertFalse(Files.readString(dir.resolve("instance.json")).contains("base64"));
+
+        // Same image, same hash.
+        assertEquals(new InstanceArt(Files.createTempDirectory("instance")).importArt(art(0)), instance.props.artHash);
+    }
+
+    // What InstalledInstancesHandler does for each instance.
+    private static String listInstances(List<Path> dirs) throws IOException {
+        List<SugaredInstanceJson> jsons = new ArrayList<>(dirs.size());
+        for (Path dir : dirs) {
+            jsons.add(new SugaredInstanceJson(InstanceJson.load(dir.resolve("instance.json")), dir, false));
+        }
+        return GSON.toJson(jsons);
+    }
+
+    private static Path createInstance(Path dir, String art, String artHash) throws IOException {
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("instance.json"), """
+                {
+                  "uuid": "%s",
+                  "id": 1,
+                  "versionId": 1,
+                  "name": "Instance",
+                  "category": "Default",
+                  "installComplete": true,
+                  "art": %s,
+                  "artHash": %s
+                }
+                """.formatted(UUID.randomUUID(), GSON.toJson(art), GSON.toJson(artHash)));
+        return dir;
+    }
+
+    // Roughly the detail of real pack art, which compresses far worse than flat colour.
+    private static BufferedImage art(int seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(InstanceArt.SIZE, InstanceArt.SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        for (int i = 0; i < 400; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(InstanceArt.SIZE), random.nextInt(InstanceArt.SIZE), 4 + random.nextInt(40), 4 + random.nextInt(40));
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private static String dataUrl(BufferedImage image) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bos);
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(bos.toByteArray());
+    }
+
+    private static void assertSize(int expected, Path file) throws IOException {
+        assertNotNull(file);
+        BufferedImage image = ImageIO.read(file.toFile());
+        assertEquals(expected, image.getWidth());
+        assertEquals(expected, image.getHeight());
+    }
+}
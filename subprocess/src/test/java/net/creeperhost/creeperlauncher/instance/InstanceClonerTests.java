@@ -0,0 +1,182 @@
+package net.creeperhost.creeperlauncher.instance;
+
+import net.creeperhost.creeperlauncher.instance.InstanceCloner.CloneResult;
+import net.creeperhost.creeperlauncher.instance.InstanceCloner.Method;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmarks duplicating an instance, by default a 256MB instance, <code>-DInstanceClonerTests.size</code>
+ * to change. 5GB is more realistic for a large pack.
+ */
+public class InstanceClonerTests {
+
+    private static final long INSTANCE_SIZE = Long.getLong("InstanceClonerTests.size", 256L * 1024 * 1024);
+    private static final int MOD_SIZE = 4 * 1024 * 1024;
+    private static final int CONFIG_SIZE = 4 * 1024;
+    // Roughly what a large pack looks like, mostly mod jars.
+    private static final double MODS_FRACTION = 0.9;
+
+    @Test
+    public void testDuplicate() throws IOException {
+        Path root = Files.createTempDirectory("instances");
+        root.toFile().deleteOnExit();
+        Path src = createInstance(root.resolve("src"));
+
+        long start = System.nanoTime();
+        FileUtils.copyDirectory(src.toFile(), root.resolve("copied").toFile());
+        long copyMs = (System.nanoTime() - start) / 1_000_000;
+        long copyBytes = newBytes(src, root.resolve("copied"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            start = System.nanoTime();
+            CloneResult result = new InstanceCloner(executor).clone(src, root.resolve("cloned"));
+            long cloneMs = (System.nanoTime() - start) / 1_000_000;
+            long cloneBytes = newBytes(src, root.resolve("cloned"));
+
+            System.out.printf("Duplicating a %d MB instance. Copy: %d ms, %d MB new. Clone (%s): %d ms, %d MB new.%n",
+                    INSTANCE_SIZE / 1024 / 1024, copyMs, copyBytes / 1024 / 1024, result.method(), cloneMs, cloneBytes / 1024 / 1024);
+
+            assertSameTree(src, root.resolve("cloned"));
+            if (result.method() == Method.HARDLINK) {
+                // Only the mutable files take up new space.
+                assertTrue(cloneBytes < copyBytes * (1 - MODS_FRACTION) * 1.5, "Cloned instance used " + cloneBytes + " new bytes.");
+                assertTrue(cloneMs < copyMs, "Clone was not faster.");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHardlinksKeepCopyOnWrite() throws IOException {
+        Path root = Files.createTempDirectory("instances");
+        root.toFile().deleteOnExit();
+        Path src = Files.createDirectories(root.resolve("src"));
+        Files.createDirectories(src.resolve("mods"));
+        Files.createDirectories(src.resolve("config"));
+        Files.writeString(src.resolve("mods/mod.jar"), "mod v1");
+        Files.writeString(src.resolve("config/mod.cfg"), "value=1");
+
+        Path dest = root.resolve("dest");
+        CloneResult result = new InstanceCloner(Runnable::run, false, true).clone(src, dest);
+        assertEquals(Method.HARDLINK, result.method());
+        assertEquals(1, result.linked());
+        assertEquals(1, result.copied());
+
+        // The game writes to configs in place.
+        Files.writeString(dest.resolve("config/mod.cfg"), "value=2");
+        assertEquals("value=1", Files.readString(src.resolve("config/mod.cfg")));
+
+        // Mods are replaced, not written to.
+        Path update = Files.writeString(root.resolve("mod-v2.jar"), "mod v2");
+        Files.copy(update, dest.resolve("mods/mod.jar"), StandardCopyOption.REPLACE_EXISTING);
+        assertEquals("mod v1", Files.readString(src.resolve("mods/mod.jar")));
+    }
+
+    @Test
+    public void testCopyFallback() throws IOException {
+        Path root = Files.createTempDirectory("instances");
+        root.toFile().deleteOnExit();
+        Path src = createInstance(root.resolve("src"), 32L * 1024 * 1024);
+
+        Path dest = root.resolve("dest");
+        CloneResult result = new InstanceCloner(Runnable::run, false, false).clone(src, dest);
+        assertEquals(Method.COPY, result.method());
+        assertEquals(0, result.linked());
+        assertSameTree(src, dest);
+        assertEquals(newBytes(src, dest), result.bytesCopied());
+    }
+
+    private static Path createInstance(Path dir) throws IOException {
+        return createInstance(dir, INSTANCE_SIZE);
+    }
+
+    private static Path createInstance(Path dir, long size) throws IOException {
+        Random random = new Random(1);
+        byte[] chunk = new byte[64 * 1024];
+        random.nextBytes(chunk);
+
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("instance.json"), "{}");
+        int mods = (int) Math.max(1, size * MODS_FRACTION / MOD_SIZE);
+        for (int i = 0; i < mods; i++) {
+            write(dir.resolve("mods/mod" + i + ".jar"), MOD_SIZE, chunk, i);
+        }
+        int configs = (int) Math.max(1, size * (1 - MODS_FRACTION) / CONFIG_SIZE);
+        for (int i = 0; i < configs; i++) {
+            String subDir = i % 2 == 0 ? "config/" : "saves/world/region/";
+            write(dir.resolve(subDir + "file" + i + ".dat"), CONFIG_SIZE, chunk, i);
+        }
+        return dir;
+    }
+
+    private static void write(Path file, int size, byte[] chunk, int seed) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (OutputStream os = Files.newOutputStream(file)) {
+            // Make each file unique, so nothing can dedupe it.
+            os.write(seed >>> 24);
+            os.write(seed >>> 16);
+            os.write(seed >>> 8);
+            os.write(seed);
+            int remaining = size - 4;
+            while (remaining > 0) {
+                int len = Math.min(remaining, chunk.length);
+                os.write(chunk, 0, len);
+                remaining -= len;
+            }
+        }
+    }
+
+    // The bytes used by files in the copy which aren't shared with the original, by hard link.
+    private static long newBytes(Path src, Path copy) throws IOException {
+        Set<Object> srcKeys = new HashSet<>();
+        for (Path file : files(src)) {
+            Object key = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey();
+            if (key != null) {
+                srcKeys.add(key);
+            }
+        }
+        long bytes = 0;
+        for (Path file : files(copy)) {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attrs.fileKey() == null || !srcKeys.contains(attrs.fileKey())) {
+                bytes += attrs.size();
+            }
+        }
+        return bytes;
+    }
+
+    private static void assertSameTree(Path expected, Path actual) throws IOException {
+        Map<String, Long> expectedFiles = new TreeMap<>();
+        for (Path file : files(expected)) {
+            expectedFiles.put(expected.relativize(file).toString(), Files.size(file));
+        }
+        Map<String, Long> actualFiles = new TreeMap<>();
+        for (Path file : files(actual)) {
+            actualFiles.put(actual.relativize(file).toString(), Files.size(file));
+        }
+        assertEquals(expectedFiles, actualFiles);
+    }
+
+    private static List<Path> files(Path dir) throws IOException {
+        try (Stream<Path> stream = Files.walk(dir)) {
+            return stream.filter(Files::isRegularFile).toList();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package net.creeperhost.creeperlauncher.instance;
+
+import net.creeperhost.creeperlauncher.instance.InstanceMover.MoveResult;
+import net.creeperhost.creeperlauncher.pack.CancellationToken;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstanceMoverTests {
+
+    private static final int FILE_COUNT = 200;
+    private static final int FILE_SIZE = 16 * 1024;
+
+    @Test
+    public void testResumeAfterInterrupt() throws IOException {
+        Path from = Files.createTempDirectory("from");
+        Path to = Files.createTempDirectory("to");
+        from.toFile().deleteOnExit();
+        to.toFile().deleteOnExit();
+        Path src = createInstance(from.resolve("instance"));
+        Path dest = to.resolve("instance");
+        Path journalDir = from.resolve(".moving_journal");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // Interrupted part way through.
+            CancellationToken token = new CancellationToken();
+            AtomicInteger firstCopied = new AtomicInteger();
+            InstanceMover mover = new InstanceMover(journalDir, executor, false);
+            assertThrows(CancellationToken.Cancellation.class, () -> mover.copy(src, dest, token, (relPath, size) -> {
+                if (firstCopied.incrementAndGet() == FILE_COUNT / 4) {
+                    token.cancel();
+                }
+            }));
+            assertTrue(firstCopied.get() >= FILE_COUNT / 4 && firstCopied.get() < FILE_COUNT);
+            assertTrue(Files.exists(src.resolve("instance.json")), "Source removed before the move finished.");
+            assertTrue(Files.exists(journalDir.resolve("instance.journal")));
+
+            // Resumed, only the remaining files are copied.
+            AtomicInteger secondCopied = new AtomicInteger();
+            InstanceMover resumed = new InstanceMover(journalDir, executor, false);
+            MoveResult result = resumed.copy(src, dest, new CancellationToken(), (relPath, size) -> secondCopied.incrementAndGet());
+            System.out.printf("Interrupted after %d files, resumed move copied %d and skipped %d.%n", firstCopied.get(), result.copied(), result.skipped());
+
+            assertFalse(result.renamed());
+            assertEquals(firstCopied.get(), result.skipped());
+            assertEquals(FILE_COUNT + 1 - firstCopied.get(), result.copied());
+            assertEquals(result.copied(), secondCopied.get());
+            // Nothing is removed until the caller says so.
+            assertInstance(src);
+
+            assertTrue(resumed.removeSource(src));
+            assertTrue(Files.notExists(src));
+            assertTrue(Files.notExists(journalDir.resolve("instance.journal")));
+            assertInstance(dest);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCopyMismatchRecopied() throws IOException {
+        Path from = Files.createTempDirectory("from");
+        Path to = Files.createTempDirectory("to");
+        from.toFile().deleteOnExit();
+        to.toFile().deleteOnExit();
+        Path src = createInstance(from.resolve("instance"));
+        Path dest = to.resolve("instance");
+        Path journalDir = from.resolve(".moving_journal");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CancellationToken token = new CancellationToken();
+            AtomicInteger copied = new AtomicInteger();
+            assertThrows(CancellationToken.Cancellation.class, () -> new InstanceMover(journalDir, executor, false).copy(src, dest, token, (relPath, size) -> {
+                if (copied.incrementAndGet() == FILE_COUNT / 2) {
+                    token.cancel();
+                }
+            }));
+
+            // A journaled copy is damaged before resuming, it must be copied again rather than trusted.
+            String damaged = Files.readAllLines(journalDir.resolve("instance.journal")).get(0);
+            Files.write(dest.resolve(damaged), new byte[10]);
+
+            MoveResult result = new InstanceMover(journalDir, executor, false).copy(src, dest, new CancellationToken(), null);
+            assertEquals(copied.get() - 1, result.skipped());
+            assertInstance(dest);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSameSizeMismatchRecopied() throws IOException {
+        Path from = Files.createTempDirectory("from");
+        Path to = Files.createTempDirectory("to");
+        from.toFile().deleteOnExit();
+        to.toFile().deleteOnExit();
+        Path src = createInstance(from.resolve("instance"));
+        Path dest = to.resolve("instance");
+        Path journalDir = from.resolve(".moving_journal");
+
+        CancellationToken token = new CancellationToken();
+        AtomicInteger copied = new AtomicInteger();
+        assertThrows(CancellationToken.Cancellation.class, () -> new InstanceMover(journalDir, Runnable::run, false).copy(src, dest, token, (relPath, size) -> {
+            if (copied.incrementAndGet() == FILE_COUNT / 2) {
+                token.cancel();
+            }
+        }));
+
+        // Corrupted without changing its size or modified time, only a content check can notice.
+        String damaged = Files.readAllLines(journalDir.resolve("instance.journal")).get(0);
+        Path damagedFile = dest.resolve(damaged);
+        FileTime mtime = Files.getLastModifiedTime(damagedFile);
+        Files.write(damagedFile, new byte[FILE_SIZE]);
+        Files.setLastModifiedTime(damagedFile, mtime);
+
+        new InstanceMover(journalDir, Runnable::run, false).copy(src, dest, new CancellationToken(), null);
+        assertInstance(dest);
+    }
+
+    @Test
+    public void testRename() throws IOException {
+        Path from = Files.createTempDirectory("from");
+        from.toFile().deleteOnExit();
+        Path src = createInstance(from.resolve("instance"));
+        Path dest = from.resolve("moved");
+
+        InstanceMover mover = new InstanceMover(from.resolve(".moving_journal"), Runnable::run);
+        MoveResult result = mover.copy(src, dest, new CancellationToken(), (relPath, size) -> fail("Should not copy."));
+        assertTrue(result.renamed());
+        assertTrue(Files.notExists(src));
+        assertInstance(dest);
+
+        // A failed move puts renamed instances back.
+        mover.revert(src, dest);
+        assertTrue(Files.notExists(dest));
+        assertInstance(src);
+    }
+
+    private static Path createInstance(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("instance.json"), "{}");
+        for (int i = 0; i < FILE_COUNT; i++) {
+            Path file = dir.resolve("dir" + i % 10).resolve("file" + i + ".bin");
+            Files.createDirectories(file.getParent());
+            Files.write(file, content(i));
+        }
+        // Empty directories are kept.
+        Files.createDirectories(dir.resolve("empty"));
+        return dir;
+    }
+
+    private static void assertInstance(Path dir) throws IOException {
+        assertEquals("{}", Files.readString(dir.resolve("instance.json")));
+        assertTrue(Files.isDirectory(dir.resolve("empty")));
+        for (int i = 0; i < FILE_COUNT; i++) {
+            assertArrayEquals(content(i), Files.readAllBytes(dir.resolve("dir" + i % 10).resolve("file" + i + ".bin")));
+        }
+    }
+
+    private static byte[] content(int i) {
+        byte[] bytes = new byte[FILE_SIZE];
+        new Random(i).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,97 @@
+package net.creeperhost.creeperlauncher.instance;
+
+import net.creeperhost.creeperlauncher.instance.InstanceWatcher.InstanceChange;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstanceWatcherTests {
+
+    private static final long DEBOUNCE_MS = 100;
+    // Some WatchService implementations poll, give them plenty of time.
+    private static final long MAX_LATENCY_MS = 5000;
+
+    @Test
+    public void testEvents() throws IOException, InterruptedException {
+        Path root = Files.createTempDirectory("instances");
+        Path instance = Files.createDirectories(root.resolve("instance"));
+        Path mods = Files.createDirectories(instance.resolve("mods"));
+        Files.writeString(instance.resolve("instance.json"), "{}");
+
+        BlockingQueue<InstanceChange> events = new LinkedBlockingQueue<>();
+        try (InstanceWatcher watcher = new InstanceWatcher(root, DEBOUNCE_MS, events::add)) {
+            // Mod added.
+            Path mod = mods.resolve("mod.jar");
+            Files.writeString(mod, "mod");
+            InstanceChange change = poll(events);
+            assertNotNull(change);
+            assertEquals(instance, change.instanceDir());
+            assertFalse(change.metadata());
+            assertTrue(change.modFiles().contains(mod));
+
+            // Mod modified, then deleted within the debounce window, should be a single event.
+            Files.writeString(mod, "mod2");
+            Files.delete(mod);
+            change = poll(events);
+            assertNotNull(change);
+            assertTrue(change.modFiles().contains(mod));
+            assertNull(events.poll(DEBOUNCE_MS * 3, TimeUnit.MILLISECONDS));
+
+            // Metadata changed.
+            Files.writeString(instance.resolve("instance.json"), "{ }");
+            change = poll(events);
+            assertNotNull(change);
+            assertTrue(change.metadata());
+            assertTrue(change.modFiles().isEmpty());
+
+            // Non metadata files are ignored.
+            Files.writeString(instance.resolve("options.txt"), "");
+            assertNull(events.poll(DEBOUNCE_MS * 3, TimeUnit.MILLISECONDS));
+
+            // New instance, and mods dir created after the fact.
+            Path instance2 = Files.createDirectories(root.resolve("instance2"));
+            change = poll(events);
+            assertNotNull(change);
+            assertEquals(instance2, change.instanceDir());
+            assertTrue(change.metadata());
+            assertFalse(change.removed());
+
+            Path mods2 = Files.createDirectories(instance2.resolve("mods"));
+            change = poll(events);
+            assertNotNull(change);
+            assertTrue(change.modsDirChanged());
+
+            Path mod2 = mods2.resolve("mod2.jar");
+            Files.writeString(mod2, "mod");
+            change = poll(events);
+            assertNotNull(change);
+            assertEquals(instance2, change.instanceDir());
+            assertTrue(change.modFiles().contains(mod2));
+
+            // Instance deleted.
+            Files.delete(mod2);
+            Files.delete(mods2);
+            Files.delete(instance2);
+            change = poll(events);
+            assertNotNull(change);
+            assertEquals(instance2, change.instanceDir());
+            assertTrue(change.removed());
+        }
+    }
+
+    @Nullable
+    private static InstanceChange poll(BlockingQueue<InstanceChange> events) throws InterruptedException {
+        long start = System.nanoTime();
+        InstanceChange change = events.poll(MAX_LATENCY_MS, TimeUnit.MILLISECONDS);
+        System.out.println("Event latency: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms " + change);
+        return change;
+    }
+}
@@ -0,0 +1,146 @@
+package net.creeperhost.creeperlauncher.instance.cloud;
+
+import net.creeperhost.creeperlauncher.data.InstanceJson;
+import net.creeperhost.creeperlauncher.instance.cloud.CloudSaveManager.InstanceListing;
+import net.creeperhost.creeperlauncher.instance.cloud.CloudSaveManager.InstanceRoot;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CloudSaveManagerTests {
+
+    private static final int INSTANCES = 20;
+    private static final int OBJECTS_PER_INSTANCE = 5000;
+    private static final String BUCKET = "test-bucket";
+
+    @Test
+    public void testIncrementalListing() throws IOException {
+        try (S3TestServer server = new S3TestServer(BUCKET)) {
+            List<String> uuids = new ArrayList<>();
+            long expectedSize = 0;
+            for (int i = 0; i < INSTANCES; i++) {
+                String uuid = UUID.randomUUID().toString();
+                uuids.add(uuid);
+                server.put(uuid + "/instance.json", 1024);
+                server.put(uuid + "/version.json", 2048);
+                server.put(uuid + "/sync_manifest.json", 64);
+                expectedSize += 1024 + 2048 + 64;
+                for (int j = 3; j < OBJECTS_PER_INSTANCE; j++) {
+                    server.put(uuid + "/saves/world/region/r." + j + ".mca", j);
+                    expectedSize += j;
+                }
+            }
+            // Stray files which are not part of an instance.
+            server.put("not-an-instance.txt", 10);
+
+            try (S3Client client = server.client()) {
+                CloudSaveManager manager = new CloudSaveManager(client, BUCKET);
+
+                // Warm up, so class loading does not skew the numbers.
+                manager.listBucket(uuids.get(0) + "/");
+
+                // What polling used to do, list everything into memory.
+                server.listed.set(0);
+                long memBefore = usedMemory();
+                long start = System.nanoTime();
+                List<S3Object> everything = manager.listBucket("");
+                long fullTime = elapsedMs(start);
+                long fullMem = usedMemory() - memBefore;
+                long fullListed = server.listed.get();
+                assertEquals(INSTANCES * OBJECTS_PER_INSTANCE + 1, everything.size());
+                everything = null;
+
+                // Cold poll, roots plus a streamed listing of every instance.
+                server.listed.set(0);
+                memBefore = usedMemory();
+                start = System.nanoTime();
+                long size = pollSize(manager);
+                long coldTime = elapsedMs(start);
+                long coldMem = usedMemory() - memBefore;
+                assertEquals(expectedSize, size);
+
+                // Warm poll, nothing changed, only instance roots are listed.
+                server.listed.set(0);
+                start = System.nanoTime();
+                size = pollSize(manager);
+                long warmTime = elapsedMs(start);
+                long warmListed = server.listed.get();
+                assertEquals(expectedSize, size);
+
+                System.out.printf("Full listing: %d ms, %d keys, ~%d KB retained. Cold poll: %d ms, ~%d KB retained. Warm poll: %d ms, %d keys.%n",
+                        fullTime, fullListed, fullMem / 1024, coldTime, coldMem / 1024, warmTime, warmListed
+                );
+                assertTrue(warmListed < INSTANCES * 10L, "Warm poll listed " + warmListed + " keys.");
+                assertTrue(warmTime < fullTime, "Warm poll was not faster than a full listing.");
+
+                // A sync rewrites the manifest, only that instance is listed again.
+                String changed = uuids.get(0);
+                server.put(changed + "/saves/world/level.dat", 100);
+                server.put(changed + "/sync_manifest.json", 65);
+                server.listed.set(0);
+                size = pollSize(manager);
+                assertEquals(expectedSize + 100 + 1, size);
+                assertTrue(server.listed.get() < OBJECTS_PER_INSTANCE * 2L);
+
+                // Instance removed entirely.
+                server.removePrefix(changed + "/");
+                Map<String, InstanceRoot> roots = manager.listInstanceRoots();
+                assertEquals(INSTANCES - 1, roots.size());
+                assertFalse(roots.containsKey(changed));
+                assertTrue(roots.get(uuids.get(1)).files().containsKey("instance.json"));
+            }
+        }
+    }
+
+    @Test
+    public void testPendingInstanceArt() throws IOException {
+        try (S3TestServer server = new S3TestServer(BUCKET)) {
+            String uuid = UUID.randomUUID().toString();
+            byte[] art = new byte[] { (byte) 0x89, 'P', 'N', 'G', 1, 2, 3 };
+            server.put(uuid + "/instance.json", 1024);
+            server.put(uuid + "/version.json", 2048);
+            server.put(uuid + "/.ftba/art/abcdef.png", art, Map.of());
+
+            try (S3Client client = server.client()) {
+                CloudSaveManager manager = new CloudSaveManager(client, BUCKET);
+                // The art is not part of the root listing, it must be fetched directly.
+                assertFalse(manager.listInstanceRoots().get(uuid).files().containsKey(".ftba/art/abcdef.png"));
+
+                InstanceJson json = InstanceJson.load("{ \"artHash\": \"abcdef\" }".getBytes(StandardCharsets.UTF_8));
+                manager.loadPendingArt(json, uuid + "/");
+                assertEquals("data:image/png;base64," + Base64.getEncoder().encodeToString(art), json.art);
+
+                // Missing art leaves the instance without any.
+                InstanceJson missing = InstanceJson.load("{ \"artHash\": \"missing\" }".getBytes(StandardCharsets.UTF_8));
+                manager.loadPendingArt(missing, uuid + "/");
+                assertNull(missing.art);
+            }
+        }
+    }
+
+    // The sizing part of CloudSaveManager.pollCloudInstances.
+    private static long pollSize(CloudSaveManager manager) {
+        long size = 0;
+        for (InstanceRoot root : manager.listInstanceRoots().values()) {
+            InstanceListing listing = manager.getListing(root);
+            size += listing.size();
+        }
+        return size;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
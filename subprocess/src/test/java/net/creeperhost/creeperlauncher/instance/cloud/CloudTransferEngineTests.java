@@ -0,0 +1,271 @@
+package net.creeperhost.creeperlauncher.instance.cloud;
+
+import com.google.common.hash.Hashing;
+import net.creeperhost.creeperlauncher.install.tasks.TaskProgressListener;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CloudTransferEngineTests {
+
+    private static final String BUCKET = "test-bucket";
+    private static final String PREFIX = UUID.randomUUID() + "/";
+    private static final int THREADS = 8;
+
+    @Test
+    public void testDownloadBenchmark() throws Throwable {
+        try (S3TestServer server = new S3TestServer(BUCKET)) {
+            Map<String, byte[]> files = generateFiles();
+            for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+                server.put(PREFIX + entry.getKey(), entry.getValue(), Map.of(
+                        CloudSaveManager.HASH_METADATA, Hashing.sha256().hashBytes(entry.getValue()).toString(),
+                        CloudSaveManager.LAST_MODIFIED_METADATA, "1672531200000"
+                ));
+            }
+            long totalSize = files.values().stream().mapToLong(e -> e.length).sum();
+            server.latency = 10;
+            server.bytesPerSecond = 4 * 1024 * 1024;
+
+            try (S3Client client = server.client()) {
+                CloudSaveManager manager = new CloudSaveManager(client, BUCKET);
+
+                Path baselineDir = Files.createTempDirectory("baseline");
+                baselineDir.toFile().deleteOnExit();
+                Result baseline = downloadWholeFileTasks(manager, files, baselineDir);
+
+                Path pipelinedDir = Files.createTempDirectory("pipelined");
+                pipelinedDir.toFile().deleteOnExit();
+                Result pipelined = downloadPipelined(manager, files, pipelinedDir);
+
+                System.out.printf("%d files, %d KB.%n", files.size(), totalSize / 1024);
+                System.out.printf("Whole file tasks: %d ms total (%.1f MB/s), priority files after %d ms.%n",
+                        baseline.total, mbPerSecond(totalSize, baseline.total), baseline.priority);
+                System.out.printf("Pipelined:        %d ms total (%.1f MB/s), priority files after %d ms.%n",
+                        pipelined.total, mbPerSecond(totalSize, pipelined.total), pipelined.priority);
+
+                for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+                    Path file = pipelinedDir.resolve(entry.getKey());
+                    assertArrayEquals(entry.getValue(), Files.readAllBytes(file), entry.getKey());
+                    assertEquals(1672531200000L, Files.getLastModifiedTime(file).toMillis());
+                }
+                assertTrue(pipelined.priority < pipelined.total, "Priority files did not finish first.");
+            }
+        }
+    }
+
+    @Test
+    public void testInFlightBounded() throws Throwable {
+        AtomicLong inFlight = new AtomicLong();
+        AtomicLong maxInFlight = new AtomicLong();
+        AtomicInteger failed = new AtomicInteger();
+        List<CloudTransferEngine.Transfer> transfers = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            long size = 1024 * 1024;
+            boolean fail = i == 10;
+            transfers.add(new CloudTransferEngine.Transfer() {
+                // @formatter:off
+                @Override public long size() { return size; }
+                @Override public int tier() { return 0; }
+                // @formatter:on
+
+                @Override
+                public void prepare() {
+                    maxInFlight.accumulateAndGet(inFlight.addAndGet(size), Math::max);
+                }
+
+                @Override
+                public void transfer(TaskProgressListener listener) throws Throwable {
+                    Thread.sleep(5);
+                    if (fail) throw new IOException("Failed.");
+                }
+
+                @Override
+                public void commit() {
+                    inFlight.addAndGet(-size);
+                }
+
+                @Override
+                public void abort() {
+                    inFlight.addAndGet(-size);
+                    failed.incrementAndGet();
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CloudTransferEngine engine = new CloudTransferEngine(executor, executor, 4 * 1024 * 1024);
+            assertThrows(IOException.class, () -> engine.run(transfers, null, null, null));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, failed.get());
+        assertTrue(maxInFlight.get() <= 4 * 1024 * 1024, "In flight bytes exceeded bound: " + maxInFlight.get());
+    }
+
+    @Test
+    public void testThrowingCallbacksDoNotHang() throws Throwable {
+        List<CloudTransferEngine.Transfer> transfers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            boolean fail = i == 3;
+            transfers.add(new CloudTransferEngine.Transfer() {
+                // @formatter:off
+                @Override public long size() { return 1024; }
+                @Override public int tier() { return 0; }
+                // @formatter:on
+
+                @Override
+                public void transfer(TaskProgressListener listener) throws Throwable {
+                    if (fail) throw new IOException("Failed.");
+                }
+
+                @Override
+                public void abort() {
+                    throw new IllegalStateException("Abort failed.");
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CloudTransferEngine engine = new CloudTransferEngine(executor, executor, 4 * 1024 * 1024);
+            Runnable onFinished = () -> {
+                throw new IllegalStateException("Callback failed.");
+            };
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                assertThrows(Throwable.class, () -> engine.run(transfers, null, onFinished, null));
+            });
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // How CloudSyncOperation used to download, a whole-file task per file in path order.
+    private static Result downloadWholeFileTasks(CloudSaveManager manager, Map<String, byte[]> files, Path dir) throws Exception {
+        List<String> ordered = new ArrayList<>(files.keySet());
+        ordered.sort(Comparator.comparingInt(CloudSyncOperation::getPathTier).thenComparing(e -> e));
+        CountDownLatch priority = new CountDownLatch(countPriority(files));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            AtomicLong priorityTime = new AtomicLong();
+            List<Future<?>> futures = new ArrayList<>();
+            for (String path : ordered) {
+                byte[] data = files.get(path);
+                futures.add(executor.submit(() -> {
+                    manager.downloadFile(dir.resolve(path), s3Object(path, data), null);
+                    if (isPriority(path)) {
+                        priority.countDown();
+                        if (priority.getCount() == 0) {
+                            priorityTime.set(elapsedMs(start));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return new Result(elapsedMs(start), priorityTime.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Result downloadPipelined(CloudSaveManager manager, Map<String, byte[]> files, Path dir) throws Throwable {
+        List<CloudTransferEngine.Transfer> transfers = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+            String path = entry.getKey();
+            S3Object s3Object = s3Object(path, entry.getValue());
+            transfers.add(new CloudTransferEngine.Transfer() {
+                private CloudSaveManager.PendingDownload pending;
+
+                // @formatter:off
+                @Override public long size() { return s3Object.size(); }
+                @Override public int tier() { return CloudSyncOperation.getPathTier(path); }
+                // @formatter:on
+
+                @Override
+                public void transfer(TaskProgressListener listener) throws IOException {
+                    pending = manager.fetchFile(dir.resolve(path), s3Object, listener);
+                }
+
+                @Override
+                public void commit() throws IOException {
+                    pending.commit();
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        ExecutorService diskExecutor = Executors.newFixedThreadPool(2);
+        try {
+            long start = System.nanoTime();
+            AtomicLong priorityTime = new AtomicLong();
+            new CloudTransferEngine(diskExecutor, executor, CloudTransferEngine.MAX_IN_FLIGHT)
+                    .run(transfers, null, null, () -> priorityTime.set(elapsedMs(start)));
+            return new Result(elapsedMs(start), priorityTime.get());
+        } finally {
+            executor.shutdown();
+            diskExecutor.shutdown();
+        }
+    }
+
+    // A typical modded instance, lots of small configs, a world, and a mods folder.
+    private static Map<String, byte[]> generateFiles() {
+        Random random = new Random(0);
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < 150; i++) {
+            files.put("config/mod" + i + ".toml", randomBytes(random, 512 + random.nextInt(8 * 1024)));
+        }
+        for (int i = 0; i < 20; i++) {
+            files.put("saves/World/region/r." + i + ".0.mca", randomBytes(random, 64 * 1024 + random.nextInt(448 * 1024)));
+        }
+        files.put("options.txt", randomBytes(random, 4096));
+        for (int i = 0; i < 3; i++) {
+            files.put("resourcepacks/pack" + i + ".zip", randomBytes(random, 1024 * 1024));
+        }
+        for (int i = 0; i < 15; i++) {
+            files.put("mods/mod" + i + ".jar", randomBytes(random, 1024 * 1024 + random.nextInt(2 * 1024 * 1024)));
+        }
+        return files;
+    }
+
+    private static int countPriority(Map<String, byte[]> files) {
+        return (int) files.keySet().stream().filter(CloudTransferEngineTests::isPriority).count();
+    }
+
+    private static boolean isPriority(String path) {
+        return CloudSyncOperation.getPathTier(path) < CloudSyncOperation.FILE_PRIORITIES.size();
+    }
+
+    private static S3Object s3Object(String path, byte[] data) {
+        return S3Object.builder().key(PREFIX + path).size((long) data.length).build();
+    }
+
+    private static byte[] randomBytes(Random random, int len) {
+        byte[] bytes = new byte[len];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static double mbPerSecond(long bytes, long ms) {
+        return bytes / 1024D / 1024D / (ms / 1000D);
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private record Result(long total, long priority) { }
+}
@@ -0,0 +1,244 @@
+package net.creeperhost.creeperlauncher.instance.cloud;
+
+import com.google.common.hash.Hashing;
+import fi.iki.elonen.NanoHTTPD;
+import net.creeperhost.creeperlauncher.Constants;
+import net.creeperhost.creeperlauncher.util.MiscUtils;
+import net.creeperhost.creeperlauncher.util.s3.OkHTTPS3HttpClient;
+import org.jetbrains.annotations.Nullable;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A tiny stand-in for S3, supporting ListObjectsV2 and GetObject against a single bucket.
+ */
+public class S3TestServer extends NanoHTTPD implements AutoCloseable {
+
+    private final String bucket;
+    private final NavigableMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+
+    /**
+     * The number of keys and common prefixes returned by listings.
+     */
+    public final AtomicLong listed = new AtomicLong();
+
+    /**
+     * Delay before each GetObject response, in milliseconds.
+     */
+    public volatile long latency;
+
+    /**
+     * Bandwidth of each GetObject response, in bytes per second. 0 for unlimited.
+     */
+    public volatile long bytesPerSecond;
+
+    public S3TestServer(String bucket) throws IOException {
+        super("localhost", MiscUtils.getRandomEphemeralPort());
+        this.bucket = bucket;
+        start();
+    }
+
+    /**
+     * Put an object which can only be listed.
+     */
+    public void put(String key, long size) {
+        objects.put(key, new StoredObject(size, null, Map.of()));
+    }
+
+    /**
+     * Put an object which can be listed and downloaded.
+     */
+    public void put(String key, byte[] data, Map<String, String> metadata) {
+        objects.put(key, new StoredObject(data.length, data, metadata));
+    }
+
+    public void removePrefix(String prefix) {
+        objects.subMap(prefix, prefix + Character.MAX_VALUE).clear();
+    }
+
+    public S3Client client() {
+        return S3Client.builder()
+                .endpointOverride(URI.create("http://localhost:" + getListeningPort()))
+                .region(Region.US_WEST_1)
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+                .httpClient(new OkHTTPS3HttpClient(Constants::httpClient))
+                .build();
+    }
+
+    @Override
+    @SuppressWarnings ("deprecation")
+    public Response serve(IHTTPSession session) {
+        String path = session.getUri();
+        String bucketPrefix = "/" + bucket;
+        if (!path.startsWith(bucketPrefix)) return notFound();
+
+        String key = path.substring(bucketPrefix.length());
+        if (key.isEmpty() || key.equals("/")) {
+            return list(session.getParms());
+        }
+        // NanoHTTPD has already decoded the uri.
+        return get(key.substring(1));
+    }
+
+    private Response get(String key) {
+        StoredObject object = objects.get(key);
+        if (object == null || object.data() == null) return notFound();
+
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        InputStream is = new ByteArrayInputStream(object.data());
+        if (bytesPerSecond > 0) {
+            is = new ThrottledInputStream(is, bytesPerSecond);
+        }
+        Response response = newFixedLengthResponse(Response.Status.OK, "application/octet-stream", is, object.data().length);
+        response.addHeader("ETag", "\"" + object.eTag(key) + "\"");
+        for (Map.Entry<String, String> entry : object.metadata().entrySet()) {
+            response.addHeader("x-amz-meta-" + entry.getKey(), entry.getValue());
+        }
+        return response;
+    }
+
+    private Response list(Map<String, String> params) {
+        if (!"2".equals(params.get("list-type"))) {
+            return newFixedLengthResponse(Response.Status.NOT_IMPLEMENTED, "text/plain", "Not implemented.");
+        }
+        String prefix = params.getOrDefault("prefix", "");
+        String delimiter = params.get("delimiter");
+        String token = params.get("continuation-token");
+        int maxKeys = Integer.parseInt(params.getOrDefault("max-keys", "1000"));
+        boolean urlEncode = "url".equals(params.get("encoding-type"));
+
+        NavigableMap<String, StoredObject> view = objects.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (token != null) {
+            view = view.tailMap(new String(Base64.getDecoder().decode(token), StandardCharsets.UTF_8), false);
+        }
+
+        StringBuilder contents = new StringBuilder();
+        int count = 0;
+        String lastKey = null;
+        while (count < maxKeys) {
+            Map.Entry<String, StoredObject> entry = lastKey == null ? view.firstEntry() : view.higherEntry(lastKey);
+            if (entry == null) break;
+            String key = entry.getKey();
+            int idx = delimiter != null ? key.indexOf(delimiter, prefix.length()) : -1;
+            if (idx != -1) {
+                String commonPrefix = key.substring(0, idx + delimiter.length());
+                contents.append("<CommonPrefixes><Prefix>").append(encode(commonPrefix, urlEncode)).append("</Prefix></CommonPrefixes>");
+                // Skip everything under this prefix.
+                lastKey = view.subMap(commonPrefix, commonPrefix + Character.MAX_VALUE).lastKey();
+            } else {
+                contents.append("<Contents>")
+                        .append("<Key>").append(encode(key, urlEncode)).append("</Key>")
+                        .append("<LastModified>2023-01-01T00:00:00.000Z</LastModified>")
+                        .append("<ETag>\"").append(entry.getValue().eTag(key)).append("\"</ETag>")
+                        .append("<Size>").append(entry.getValue().size()).append("</Size>")
+                        .append("<StorageClass>STANDARD</StorageClass>")
+                        .append("</Contents>");
+                lastKey = key;
+            }
+            count++;
+        }
+        listed.addAndGet(count);
+        boolean truncated = lastKey != null && view.higherKey(lastKey) != null;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        sb.append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">");
+        sb.append("<Name>").append(bucket).append("</Name>");
+        sb.append("<Prefix>").append(encode(prefix, urlEncode)).append("</Prefix>");
+        if (delimiter != null) {
+            sb.append("<Delimiter>").append(encode(delimiter, urlEncode)).append("</Delimiter>");
+        }
+        if (urlEncode) {
+            sb.append("<EncodingType>url</EncodingType>");
+        }
+        sb.append("<KeyCount>").append(count).append("</KeyCount>");
+        sb.append("<MaxKeys>").append(maxKeys).append("</MaxKeys>");
+        sb.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            sb.append("<NextContinuationToken>")
+                    .append(Base64.getEncoder().encodeToString(lastKey.getBytes(StandardCharsets.UTF_8)))
+                    .append("</NextContinuationToken>");
+        }
+        sb.append(contents);
+        sb.append("</ListBucketResult>");
+        return newFixedLengthResponse(Response.Status.OK, "application/xml", sb.toString());
+    }
+
+    private static Response notFound() {
+        return newFixedLengthResponse(Response.Status.NOT_FOUND, "application/xml", "<Error><Code>NoSuchKey</Code></Error>");
+    }
+
+    private static String encode(String str, boolean urlEncode) {
+        return urlEncode ? URLEncoder.encode(str, StandardCharsets.UTF_8) : str;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private record StoredObject(long size, @Nullable byte[] data, Map<String, String> metadata) {
+
+        @SuppressWarnings ("deprecation")
+        public String eTag(String key) {
+            if (data == null) return Integer.toHexString(Objects.hash(key, size));
+            return Hashing.md5().hashBytes(data).toString();
+        }
+    }
+
+    private static class ThrottledInputStream extends InputStream {
+
+        private final InputStream delegate;
+        private final long bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long read;
+
+        private ThrottledInputStream(InputStream delegate, long bytesPerSecond) {
+            this.delegate = delegate;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int r = delegate.read(b, off, Math.min(len, 16 * 1024));
+            if (r == -1) return -1;
+            read += r;
+            long expectedNanos = read * 1_000_000_000L / bytesPerSecond;
+            long sleep = (expectedNanos - (System.nanoTime() - start)) / 1_000_000;
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return r;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package net.creeperhost.creeperlauncher.util;
+
+import fi.iki.elonen.NanoHTTPD;
+import net.covers1624.quack.net.HttpResponseException;
+import net.covers1624.quack.util.SneakyUtils;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ApiResponseCacheTests {
+
+    private static final OkHttpClient CLIENT = new OkHttpClient();
+
+    @Test
+    public void testRepeatedInstalls() throws Throwable {
+        try (TestApi api = new TestApi()) {
+            ApiResponseCache cache = new ApiResponseCache(tempDir(), () -> CLIENT, System::currentTimeMillis);
+
+            // What an install asks for, 5 installs of the same pack version.
+            for (int i = 0; i < 5; i++) {
+                assertEquals(TestApi.PACK, cache.query(api.url("/modpack/1"), false));
+                assertEquals(TestApi.VERSION, cache.query(api.url("/modpack/1/2"), true));
+                assertEquals(TestApi.MODS, cache.query(api.url("/modpack/1/2/mods"), true));
+            }
+
+            // The pack manifest is revalidated every time, but only transfers its body once.
+            assertEquals(5, api.requests("/modpack/1"));
+            assertEquals(4, api.notModified.get());
+            // Version manifests never hit the network again.
+            assertEquals(1, api.requests("/modpack/1/2"));
+            assertEquals(1, api.requests("/modpack/1/2/mods"));
+        }
+    }
+
+    @Test
+    public void testUiRefreshes() throws Throwable {
+        try (TestApi api = new TestApi()) {
+            AtomicLong now = new AtomicLong();
+            ApiResponseCache cache = new ApiResponseCache(tempDir(), () -> CLIENT, now::get);
+
+            // The UI refreshing a mod page repeatedly within its max-age.
+            for (int i = 0; i < 10; i++) {
+                assertEquals(TestApi.MOD, cache.query(api.url("/mod/5"), false));
+                now.addAndGet(5_000);
+            }
+            assertEquals(1, api.requests("/mod/5"));
+
+            // Past its max-age it's fetched again.
+            now.addAndGet(60_000);
+            cache.query(api.url("/mod/5"), false);
+            assertEquals(2, api.requests("/mod/5"));
+        }
+    }
+
+    @Test
+    public void testSurvivesRestart() throws Throwable {
+        try (TestApi api = new TestApi()) {
+            Path dir = tempDir();
+            new ApiResponseCache(dir, () -> CLIENT, System::currentTimeMillis).query(api.url("/modpack/1/2"), true);
+            new ApiResponseCache(dir, () -> CLIENT, System::currentTimeMillis).query(api.url("/modpack/1/2"), true);
+            assertEquals(1, api.requests("/modpack/1/2"));
+        }
+    }
+
+    @Test
+    public void testErrorsNotCached() throws Throwable {
+        try (TestApi api = new TestApi()) {
+            ApiResponseCache cache = new ApiResponseCache(tempDir(), () -> CLIENT, System::currentTimeMillis);
+
+            assertEquals(TestApi.ERROR, cache.query(api.url("/modpack/404/1"), true));
+            assertEquals(TestApi.ERROR, cache.query(api.url("/modpack/404/1"), true));
+            assertEquals(2, api.requests("/modpack/404/1"));
+
+            assertThrows(IOException.class, () -> cache.query(api.url("/broken"), true));
+        }
+    }
+
+    @Test
+    public void testConcurrentQueriesShared() throws Throwable {
+        try (TestApi api = new TestApi()) {
+            ApiResponseCache cache = new ApiResponseCache(tempDir(), () -> CLIENT, System::currentTimeMillis);
+
+            int threads = 10;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<String>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return cache.query(api.url("/slow"), false);
+                    }));
+                }
+                start.countDown();
+                for (Future<String> future : futures) {
+                    assertEquals(TestApi.SLOW, future.get(30, TimeUnit.SECONDS));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(1, api.requests("/slow"));
+        }
+    }
+
+    @Test
+    public void testPrivateResponsesKeyedByCredentials() throws Throwable {
+        try (TestApi api = new TestApi()) {
+            AtomicReference<String> secret = new AtomicReference<>("valid");
+            ApiResponseCache cache = new ApiResponseCache(tempDir(), () -> CLIENT, System::currentTimeMillis, builder -> {
+                if (secret.get() != null) {
+                    builder.addHeader("Authorization", "Bearer " + secret.get());
+                }
+            }, Long.MAX_VALUE);
+
+            // Private version manifests are immutable, but still checked against the current credentials.
+            assertEquals(TestApi.PRIVATE, cache.query(api.url("/private/1/2"), true));
+            assertEquals(TestApi.PRIVATE, cache.query(api.url("/private/1/2"), true));
+            assertEquals(2, api.requests("/private/1/2"));
+
+            secret.set("revoked");
+            assertThrows(HttpResponseException.class, () -> cache.query(api.url("/private/1/2"), true));
+            secret.set(null);
+            assertThrows(HttpResponseException.class, () -> cache.query(api.url("/private/1/2"), true));
+        }
+    }
+
+    @Test
+    public void testEviction() throws Throwable {
+        try (TestApi api = new TestApi()) {
+            Path dir = tempDir();
+            AtomicLong now = new AtomicLong(System.currentTimeMillis());
+            long maxSize = 10 * 1024;
+            ApiResponseCache cache = new ApiResponseCache(dir, () -> CLIENT, now::get, builder -> { }, maxSize);
+
+            for (int i = 0; i < 200; i++) {
+                cache.query(api.url("/item/" + i), true);
+                now.addAndGet(1000);
+            }
+            // The first item is still used.
+            cache.query(api.url("/item/0"), true);
+            cache.evict();
+
+            long size;
+            try (Stream<Path> files = Files.list(dir)) {
+                size = files.mapToLong(e -> e.toFile().length()).sum();
+            }
+            assertTrue(size <= maxSize, "Cache is " + size + " bytes.");
+
+            // Recently used entries survive, the rest are fetched again.
+            cache.query(api.url("/item/0"), true);
+            cache.query(api.url("/item/199"), true);
+            cache.query(api.url("/item/1"), true);
+            assertEquals(1, api.requests("/item/0"));
+            assertEquals(1, api.requests("/item/199"));
+            assertEquals(2, api.requests("/item/1"));
+        }
+    }
+
+    private static Path tempDir() throws IOException {
+        Path dir = Files.createTempDirectory("api_cache");
+        dir.toFile().deleteOnExit();
+        return dir;
+    }
+
+    // A stand-in for the modpacks.ch api.
+    private static class TestApi extends NanoHTTPD implements AutoCloseable {
+
+        private static final String PACK = "{\"status\":\"success\",\"id\":1,\"name\":\"Pack\"}";
+        private static final String VERSION = "{\"status\":\"success\",\"id\":2,\"parent\":1}";
+        private static final String MODS = "{\"status\":\"success\",\"mods\":[]}";
+        private static final String MOD = "{\"status\":\"success\",\"id\":5}";
+        private static final String SLOW = "{\"status\":\"success\",\"id\":6}";
+        private static final String ERROR = "{\"status\":\"error\",\"message\":\"Not found\"}";
+        private static final String PRIVATE = "{\"status\":\"success\",\"id\":2,\"parent\":1,\"private\":true}";
+
+        private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+        private final AtomicInteger notModified = new AtomicInteger();
+
+        public TestApi() throws IOException {
+            super("localhost", MiscUtils.getRandomEphemeralPort());
+            start();
+        }
+
+        public String url(String path) {
+            return "http://localhost:" + getListeningPort() + path;
+        }
+
+        public int requests(String path) {
+            AtomicInteger count = requests.get(path);
+            return count != null ? count.get() : 0;
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            String uri = session.getUri();
+            requests.computeIfAbsent(uri, e -> new AtomicInteger()).incrementAndGet();
+            return switch (uri) {
+                case "/modpack/1" -> {
+                    // The api can change this at any time, so it must be revalidated.
+                    if ("\"v1\"".equals(session.getHeaders().get("if-none-match"))) {
+                        notModified.incrementAndGet();
+                        yield newFixedLengthResponse(Response.Status.NOT_MODIFIED, "application/json", "");
+                    }
+                    Response response = json(PACK);
+                    response.addHeader("ETag", "\"v1\"");
+                    response.addHeader("Cache-Control", "no-cache");
+                    yield response;
+                }
+                case "/modpack/1/2" -> json(VERSION);
+                case "/modpack/1/2/mods" -> json(MODS);
+                case "/mod/5" -> {
+                    Response response = json(MOD);
+                    response.addHeader("Cache-Control", "public, max-age=60");
+                    yield response;
+                }
+                case "/modpack/404/1" -> json(ERROR);
+                case "/private/1/2" -> "Bearer valid".equals(session.getHeaders().get("authorization"))
+                        ? json(PRIVATE)
+                        : newFixedLengthResponse(Response.Status.FORBIDDEN, "application/json", ERROR);
+                case "/slow" -> {
+                    SneakyUtils.sneaky(() -> Thread.sleep(500));
+                    yield json(SLOW);
+                }
+                default -> uri.startsWith("/item/")
+                        ? json("{\"status\":\"success\",\"id\":" + uri.substring(6) + ",\"padding\":\"" + "x".repeat(200) + "\"}")
+                        : newFixedLengthResponse(Response.Status.INTERNAL_ERROR, "text/plain", "Broken");
+            };
+        }
+
+        private static Response json(String body) {
+            return newFixedLengthResponse(Response.Status.OK, "application/json", body);
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
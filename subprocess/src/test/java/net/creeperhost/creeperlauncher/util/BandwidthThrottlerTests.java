@@ -0,0 +1,149 @@
+package net.creeperhost.creeperlauncher.util;
+
+import fi.iki.elonen.NanoHTTPD;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BandwidthThrottlerTests {
+
+    private static final long RATE = 512 * 1024;
+    private static final int FILE_SIZE = 1024 * 1024;
+    private static final int STREAMS = 3;
+
+    @Test
+    public void testTakeMatchesLimit() throws Exception {
+        // Sleeping advances the clock, so the achieved rate is exact regardless of machine load.
+        AtomicLong clock = new AtomicLong();
+        BandwidthThrottler throttler = new BandwidthThrottler(() -> RATE, clock::get, clock::addAndGet);
+
+        long total = 0;
+        while (total < FILE_SIZE * STREAMS) {
+            long granted = throttler.take(64 * 1024);
+            assertTrue(granted > 0 && granted <= 64 * 1024);
+            total += granted;
+        }
+        double achieved = total / (clock.get() / 1_000_000_000D);
+        assertEquals(RATE, achieved, RATE * 0.01);
+    }
+
+    @Test
+    public void testAchievedRateMatchesLimit() throws Exception {
+        try (FileServer server = new FileServer()) {
+            BandwidthThrottler throttler = new BandwidthThrottler(() -> RATE);
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .addInterceptor(throttler)
+                    .build();
+
+            ExecutorService executor = Executors.newFixedThreadPool(STREAMS);
+            try {
+                long start = System.nanoTime();
+                List<Future<Long>> futures = new ArrayList<>();
+                for (int i = 0; i < STREAMS; i++) {
+                    futures.add(executor.submit(() -> {
+                        download(client, server.url());
+                        return System.nanoTime();
+                    }));
+                }
+                List<Long> finishTimes = new ArrayList<>();
+                for (Future<Long> future : futures) {
+                    finishTimes.add(future.get(60, TimeUnit.SECONDS) - start);
+                }
+
+                long elapsed = finishTimes.stream().mapToLong(e -> e).max().orElseThrow();
+                double achieved = (double) FILE_SIZE * STREAMS / (elapsed / 1_000_000_000D);
+                // Real time, so only loosely bounded. testTakeMatchesLimit checks the rate precisely.
+                // Never faster than the limit, beyond the initial burst.
+                assertTrue(achieved < RATE * 1.1, "Achieved rate " + (long) achieved + " B/s, expected " + RATE + " B/s.");
+                assertTrue(achieved > RATE * 0.5, "Achieved rate " + (long) achieved + " B/s, expected " + RATE + " B/s.");
+
+                // Fair sharing, no stream should finish long before the others.
+                long first = finishTimes.stream().mapToLong(e -> e).min().orElseThrow();
+                assertTrue((elapsed - first) / (double) elapsed < 0.5, "Streams did not share bandwidth fairly: " + finishTimes);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void testUnlimited() throws Exception {
+        try (FileServer server = new FileServer()) {
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .addInterceptor(new BandwidthThrottler(() -> 0))
+                    .build();
+            long start = System.nanoTime();
+            download(client, server.url());
+            // 1MB over localhost should be near instant.
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    public void testThroughputMeter() {
+        ThroughputMeter meter = new ThroughputMeter(1, TimeUnit.SECONDS);
+        long time = 0;
+        long total = 0;
+        // 100ms steps at 1000 units per second.
+        for (int i = 0; i < 100; i++) {
+            meter.sample(total, time);
+            time += TimeUnit.MILLISECONDS.toNanos(100);
+            total += 100;
+        }
+        assertEquals(1000, meter.getRate(), 1);
+    }
+
+    private static void download(OkHttpClient client, String url) throws IOException {
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            BufferedSource source = response.body().source();
+            Buffer buffer = new Buffer();
+            long total = 0;
+            long read;
+            while ((read = source.read(buffer, 8192)) != -1) {
+                total += read;
+                buffer.clear();
+            }
+            assertEquals(FILE_SIZE, total);
+        }
+    }
+
+    private static class FileServer extends NanoHTTPD implements AutoCloseable {
+
+        private final byte[] data = new byte[FILE_SIZE];
+
+        public FileServer() throws IOException {
+            super("localhost", MiscUtils.getRandomEphemeralPort());
+            start();
+        }
+
+        public String url() {
+            return "http://localhost:" + getListeningPort() + "/file";
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            return newFixedLengthResponse(Response.Status.OK, "application/octet-stream", new ByteArrayInputStream(data), data.length);
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package net.creeperhost.creeperlauncher.util;
+
+import fi.iki.elonen.NanoHTTPD;
+import okhttp3.HttpUrl;
+import okio.Buffer;
+import okio.ByteString;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DNSChainTests {
+
+    private static final long LATENCY_MS = 500;
+    private static final int TTL = 120;
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        try (DoHServer server = new DoHServer()) {
+            AtomicLong clock = new AtomicLong();
+            DNSChain chain = new DNSChain(false, clock::get, server.step());
+
+            // Cold lookup, queries the server.
+            DNSChain.DNSResult result = chain.query("example.test");
+            assertEquals("10.0.0.1", result.answer()[0].getHostAddress());
+            int queries = server.queries.get();
+            assertTrue(queries > 0);
+
+            // Within the TTL provided by the server, served from cache without a refresh.
+            clock.set(TimeUnit.SECONDS.toNanos(TTL - 1));
+            chain.query("example.test");
+            assertEquals(queries, server.queries.get());
+
+            // Expired, the stale answer is returned without waiting for the refresh.
+            server.address = new byte[] { 10, 0, 0, 2 };
+            clock.set(TimeUnit.SECONDS.toNanos(TTL + 1));
+            result = chain.query("example.test");
+            assertEquals("10.0.0.1", result.answer()[0].getHostAddress());
+
+            // Refreshed answer eventually shows up.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!chain.query("example.test").answer()[0].getHostAddress().equals("10.0.0.2")) {
+                assertTrue(System.nanoTime() < deadline, "Background refresh did not complete.");
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentLookupsShareQuery() throws Exception {
+        try (DoHServer server = new DoHServer()) {
+            DNSChain chain = new DNSChain(false, System::nanoTime, server.step());
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<DNSChain.DNSResult>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    futures.add(executor.submit(() -> chain.query("shared.test")));
+                }
+                for (Future<DNSChain.DNSResult> future : futures) {
+                    assertEquals("10.0.0.1", future.get(10, TimeUnit.SECONDS).answer()[0].getHostAddress());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            // A and AAAA, once.
+            assertEquals(2, server.queries.get());
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        try (DoHServer server = new DoHServer()) {
+            DNSChain chain = new DNSChain(false, System::nanoTime, server.step());
+            chain.prefetch(List.of("prefetch.test"));
+
+            // A and AAAA, queried by the prefetch.
+            awaitQueries(server.queries, 2);
+            assertEquals("10.0.0.1", chain.query("prefetch.test").answer()[0].getHostAddress());
+            // Answered by the prefetch, the lookup did not query the server again.
+            assertEquals(2, server.queries.get());
+        }
+    }
+
+    @Test
+    public void testFailedRefreshBacksOff() throws Exception {
+        AtomicBoolean fail = new AtomicBoolean();
+        AtomicInteger queries = new AtomicInteger();
+        DNSChain.DNSStep step = new DNSChain.DNSStep() {
+            @Override
+            public InetAddress[] resolve(String host) throws UnknownHostException {
+                queries.incrementAndGet();
+                if (fail.get()) throw new UnknownHostException("Failed.");
+                return new InetAddress[] { InetAddress.getByAddress(host, new byte[] { 10, 0, 0, 1 }) };
+            }
+
+            @Override
+            public String getName() {
+                return "Test";
+            }
+        };
+        AtomicLong clock = new AtomicLong();
+        DNSChain chain = new DNSChain(false, clock::get, step);
+        chain.query("backoff.test");
+        assertEquals(1, queries.get());
+
+        // Expired, the background refresh fails.
+        fail.set(true);
+        clock.set(TimeUnit.SECONDS.toNanos(301));
+        chain.query("backoff.test");
+        awaitQueries(queries, 2);
+        Thread.sleep(50);
+
+        // Further stale lookups keep serving the old answer, without another refresh.
+        for (int i = 0; i < 10; i++) {
+            assertEquals("10.0.0.1", chain.query("backoff.test").answer()[0].getHostAddress());
+        }
+        Thread.sleep(50);
+        assertEquals(2, queries.get());
+
+        // Retried once the backoff has passed.
+        fail.set(false);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        chain.query("backoff.test");
+        awaitQueries(queries, 3);
+    }
+
+    private static void awaitQueries(AtomicInteger queries, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (queries.get() < expected) {
+            assertTrue(System.nanoTime() < deadline, "Background refresh did not run.");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testMixedCaseHostTtl() throws Exception {
+        try (DoHServer server = new DoHServer()) {
+            DNSChain.DNSAnswer answer = server.step().query("Mixed.Example.TEST");
+            assertEquals("10.0.0.1", answer.addresses()[0].getHostAddress());
+            // The TTL from the server is used, rather than falling back to the default.
+            assertTrue(answer.ttl() > 0 && answer.ttl() <= TTL, "TTL was " + answer.ttl());
+        }
+    }
+
+    @Test
+    public void testDecodeQuestionName() {
+        Buffer query = new Buffer()
+                .writeShort(0).writeShort(0x0100).writeShort(1).writeShort(0).writeShort(0).writeShort(0)
+                .writeByte(3).writeUtf8("api")
+                .writeByte(8).writeUtf8("Modpacks")
+                .writeByte(2).writeUtf8("ch")
+                .writeByte(0)
+                .writeShort(1).writeShort(1);
+        assertEquals("api.modpacks.ch", DNSChain.decodeQuestionName(query.readByteString().base64Url()));
+        assertNull(DNSChain.decodeQuestionName("AAAA"));
+    }
+
+    /**
+     * A minimal DNS over HTTPS server, answering every A query with {@link #address}.
+     */
+    private static class DoHServer extends NanoHTTPD implements AutoCloseable {
+
+        private final AtomicInteger queries = new AtomicInteger();
+        private volatile byte[] address = new byte[] { 10, 0, 0, 1 };
+
+        public DoHServer() throws IOException {
+            super("localhost", MiscUtils.getRandomEphemeralPort());
+            start();
+        }
+
+        public DNSChain.DnsOverHttpsStep step() throws IOException {
+            return new DNSChain.DnsOverHttpsStep(
+                    null,
+                    "Test",
+                    HttpUrl.get("http://localhost:" + getListeningPort() + "/dns-query"),
+                    List.of("localhost"),
+                    List.of(InetAddress.getByName("127.0.0.1"))
+            );
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            queries.incrementAndGet();
+            try {
+                Thread.sleep(LATENCY_MS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            ByteString query = ByteString.decodeBase64(session.getParms().get("dns"));
+            assert query != null;
+            ByteString question = query.substring(12);
+            int qType = question.getByte(question.size() - 3) & 0xFF;
+            boolean isA = qType == 1;
+
+            Buffer response = new Buffer()
+                    .writeShort(0)
+                    .writeShort(0x8180)
+                    .writeShort(1)
+                    .writeShort(isA ? 1 : 0)
+                    .writeShort(0)
+                    .writeShort(0)
+                    .write(question);
+            if (isA) {
+                response.writeShort(0xC00C) // Pointer to the question name.
+                        .writeShort(1)
+                        .writeShort(1)
+                        .writeInt(TTL)
+                        .writeShort(4)
+                        .write(address);
+            }
+            byte[] bytes = response.readByteArray();
+            Response resp = newFixedLengthResponse(Response.Status.OK, "application/dns-message", new ByteArrayInputStream(bytes), bytes.length);
+            resp.addHeader("Cache-Control", "max-age=" + TTL);
+            return resp;
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package net.creeperhost.creeperlauncher.util;
+
+import fi.iki.elonen.NanoHTTPD;
+import net.creeperhost.creeperlauncher.util.HostLimiter.HostPolicy;
+import net.creeperhost.creeperlauncher.util.HostLimiter.HostStats;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HostLimiterTests {
+
+    private static final int MAX_REQUESTS = 4;
+    private static final int REQUESTS_PER_HOST = 32;
+
+    @Test
+    public void testRateLimitedHostDoesNotAffectHealthyHosts() throws Exception {
+        try (StandInHost healthyA = new StandInHost(false);
+             StandInHost healthyB = new StandInHost(false);
+             StandInHost limited = new StandInHost(true)) {
+            HostLimiter limiter = new HostLimiter(new HostPolicy(MAX_REQUESTS))
+                    .withPolicy(healthyA.hostPort(), new HostPolicy(MAX_REQUESTS))
+                    .withPolicy(healthyB.hostPort(), new HostPolicy(MAX_REQUESTS))
+                    .withPolicy(limited.hostPort(), new HostPolicy(MAX_REQUESTS));
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .eventListenerFactory(limiter)
+                    .addInterceptor(limiter)
+                    .build();
+
+            ExecutorService executor = Executors.newFixedThreadPool(REQUESTS_PER_HOST * 3);
+            try {
+                List<Future<Integer>> futures = new ArrayList<>();
+                for (int i = 0; i < REQUESTS_PER_HOST; i++) {
+                    for (StandInHost host : List.of(healthyA, healthyB, limited)) {
+                        futures.add(executor.submit(() -> {
+                            try (Response response = client.newCall(new Request.Builder().url(host.url()).build()).execute()) {
+                                response.body().string();
+                                return response.code();
+                            }
+                        }));
+                    }
+                }
+                for (Future<Integer> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // Healthy hosts should have been saturated at their full limit, and kept it.
+            for (StandInHost host : List.of(healthyA, healthyB)) {
+                HostStats stats = limiter.getStats(host.hostPort());
+                assertNotNull(stats);
+                assertEquals(MAX_REQUESTS, host.maxConcurrent.get());
+                assertEquals(MAX_REQUESTS, stats.currentLimit());
+                assertEquals(0, stats.throttled());
+                assertEquals(REQUESTS_PER_HOST, stats.requests());
+                assertTrue(stats.reusedConnections() > 0, "Expected connections to be reused.");
+            }
+
+            // Rate limited host should have been backed off.
+            HostStats limitedStats = limiter.getStats(limited.hostPort());
+            assertNotNull(limitedStats);
+            assertEquals(1, limitedStats.currentLimit());
+            assertEquals(REQUESTS_PER_HOST, limitedStats.throttled());
+            assertTrue(limited.maxConcurrent.get() <= MAX_REQUESTS);
+        }
+    }
+
+    @Test
+    public void testConcurrentThrottlesDecreaseOnce() throws Exception {
+        try (StandInHost limited = new StandInHost(true)) {
+            // Every request is held by the server until all of them are in flight.
+            limited.arrivals = new CountDownLatch(MAX_REQUESTS);
+            HostLimiter limiter = new HostLimiter(new HostPolicy(MAX_REQUESTS))
+                    .withPolicy(limited.hostPort(), new HostPolicy(MAX_REQUESTS));
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .addInterceptor(limiter)
+                    .build();
+
+            ExecutorService executor = Executors.newFixedThreadPool(MAX_REQUESTS);
+            try {
+                List<Future<Integer>> futures = new ArrayList<>();
+                for (int i = 0; i < MAX_REQUESTS; i++) {
+                    futures.add(executor.submit(() -> {
+                        try (Response response = client.newCall(new Request.Builder().url(limited.url()).build()).execute()) {
+                            response.body().string();
+                            return response.code();
+                        }
+                    }));
+                }
+                for (Future<Integer> future : futures) {
+                    assertEquals(429, future.get(30, TimeUnit.SECONDS));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // All throttles came from the same window, the limit is only halved once.
+            HostStats stats = limiter.getStats(limited.hostPort());
+            assertNotNull(stats);
+            assertEquals(MAX_REQUESTS, stats.throttled());
+            assertEquals(MAX_REQUESTS / 2, stats.currentLimit());
+        }
+    }
+
+    @Test
+    public void testFullyReadBodyReleasesSlot() throws Exception {
+        try (StandInHost host = new StandInHost(false)) {
+            HostLimiter limiter = new HostLimiter(new HostPolicy(1), 500)
+                    .withPolicy(host.hostPort(), new HostPolicy(1));
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .addInterceptor(limiter)
+                    .build();
+            Request request = new Request.Builder().url(host.url()).build();
+
+            // Read to the end, but never closed.
+            Response first = client.newCall(request).execute();
+            assertEquals("Hello.", first.body().source().readUtf8());
+            assertEquals(0, limiter.getStats(host.hostPort()).inFlight());
+
+            try (Response second = client.newCall(request).execute()) {
+                assertEquals("Hello.", second.body().string());
+            }
+            first.close();
+        }
+    }
+
+    @Test
+    public void testLeakedBodyTimesOut() throws Exception {
+        try (StandInHost host = new StandInHost(false)) {
+            HostLimiter limiter = new HostLimiter(new HostPolicy(1), 500)
+                    .withPolicy(host.hostPort(), new HostPolicy(1));
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .addInterceptor(limiter)
+                    .build();
+            Request request = new Request.Builder().url(host.url()).build();
+
+            Response leaked = client.newCall(request).execute();
+            long start = System.nanoTime();
+            IOException ex = assertThrows(IOException.class, () -> client.newCall(request).execute());
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsed >= 500 && elapsed < 5000, "Waited " + elapsed + "ms.");
+            assertTrue(ex.getMessage().contains("request slot"), ex.getMessage());
+
+            // Closing it gives the slot back.
+            leaked.close();
+            try (Response response = client.newCall(request).execute()) {
+                assertEquals(200, response.code());
+            }
+        }
+    }
+
+    private static class StandInHost extends NanoHTTPD implements AutoCloseable {
+
+        private static final Response.IStatus TOO_MANY_REQUESTS = new Response.IStatus() {
+            //@formatter:off
+            @Override public String getDescription() { return "429 Too Many Requests"; }
+            @Override public int getRequestStatus() { return 429; }
+            //@formatter:on
+        };
+
+        private final boolean rateLimit;
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        @Nullable
+        private volatile CountDownLatch arrivals;
+
+        public StandInHost(boolean rateLimit) throws IOException {
+            super("localhost", MiscUtils.getRandomEphemeralPort());
+            this.rateLimit = rateLimit;
+            start();
+        }
+
+        public String hostPort() {
+            return "localhost:" + getListeningPort();
+        }
+
+        public String url() {
+            return "http://" + hostPort() + "/";
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            try {
+                CountDownLatch arrivals = this.arrivals;
+                if (arrivals != null) {
+                    arrivals.countDown();
+                    arrivals.await(10, TimeUnit.SECONDS);
+                }
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            if (rateLimit) {
+                Response resp = newFixedLengthResponse(TOO_MANY_REQUESTS, MIME_PLAINTEXT, "Slow down.");
+                resp.addHeader("Retry-After", "0");
+                return resp;
+            }
+            return newFixedLengthResponse(Response.Status.OK, MIME_PLAINTEXT, "Hello.");
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.creeperhost.creeperlauncher.util;
+
+import net.covers1624.jdkutils.JavaInstall;
+import net.creeperhost.creeperlauncher.util.JavaInstallCache.Install;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JavaInstallCacheTests {
+
+    private static final int JDK_COUNT = 20;
+
+    @Test
+    public void testWarmRunDoesNotProbe() throws IOException {
+        Path jdks = Files.createTempDirectory("jdks");
+        jdks.toFile().deleteOnExit();
+        Path cacheFile = Files.createTempFile("java_installs", ".json");
+        cacheFile.toFile().deleteOnExit();
+        Files.delete(cacheFile);
+
+        for (int i = 0; i < JDK_COUNT; i++) {
+            writeJdk(jdks.resolve("jdk-17.0." + i), "17.0." + i);
+        }
+        // A JRE without a release file, keyed off its executable instead.
+        writeExecutable(jdks.resolve("jre-8"));
+        // Not a java home.
+        Files.createDirectories(jdks.resolve("not-a-jdk"));
+
+        AtomicInteger probes = new AtomicInteger();
+        JavaInstallCache.Prober prober = home -> {
+            probes.incrementAndGet();
+            Path release = home.resolve("release");
+            String version = Files.exists(release) ? Files.readString(release).trim() : "1.8.0_381";
+            String executable = JavaInstall.getJavaExecutable(home, true).toAbsolutePath().toString();
+            return new Install(home.toString(), executable, "Fake", version, Files.exists(release), "x64");
+        };
+
+        // Cold, everything is probed.
+        List<Install> cold = new JavaInstallCache(cacheFile, List.of(jdks), List.of(), prober, null, System::currentTimeMillis).findInstalls();
+        assertEquals(JDK_COUNT + 1, cold.size());
+        assertEquals(JDK_COUNT + 1, probes.get());
+        assertEquals("17.0.19", cold.get(0).implVersion());
+
+        // Warm, nothing has changed so nothing is probed.
+        probes.set(0);
+        List<Install> warm = new JavaInstallCache(cacheFile, List.of(jdks), List.of(), prober, null, System::currentTimeMillis).findInstalls();
+        assertEquals(0, probes.get());
+        assertEquals(cold, warm);
+
+        // One install updated in place, one new install, one removed.
+        Path updated = jdks.resolve("jdk-17.0.0");
+        Files.writeString(updated.resolve("release"), "17.0.99");
+        Files.setLastModifiedTime(updated.resolve("release"), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        writeJdk(jdks.resolve("jdk-21"), "21.0.1");
+        Path removed = jdks.resolve("jdk-17.0.1");
+        Files.delete(removed.resolve("release"));
+        Files.delete(JavaInstall.getJavaExecutable(removed, false));
+
+        probes.set(0);
+        List<Install> changed = new JavaInstallCache(cacheFile, List.of(jdks), List.of(), prober, null, System::currentTimeMillis).findInstalls();
+        assertEquals(2, probes.get());
+        assertEquals(JDK_COUNT + 1, changed.size());
+        assertEquals("21.0.1", changed.get(0).implVersion());
+        assertEquals("17.0.99", changed.get(1).implVersion());
+        assertTrue(changed.stream().noneMatch(e -> e.javaHome().equals(removed.toString())));
+    }
+
+    @Test
+    public void testFullScanInterval() throws IOException {
+        Path cacheFile = Files.createTempFile("java_installs", ".json");
+        cacheFile.toFile().deleteOnExit();
+        Files.delete(cacheFile);
+
+        AtomicInteger scans = new AtomicInteger();
+        JavaInstallCache.FullScanner scanner = () -> {
+            scans.incrementAndGet();
+            return List.of();
+        };
+        JavaInstallCache.Prober prober = home -> fail("Nothing to probe.");
+
+        long day = 24 * 60 * 60 * 1000L;
+        new JavaInstallCache(cacheFile, List.of(), List.of(), prober, scanner, () -> 0).findInstalls();
+        new JavaInstallCache(cacheFile, List.of(), List.of(), prober, scanner, () -> day).findInstalls();
+        assertEquals(1, scans.get());
+
+        new JavaInstallCache(cacheFile, List.of(), List.of(), prober, scanner, () -> 8 * day).findInstalls();
+        assertEquals(2, scans.get());
+    }
+
+    private static void writeJdk(Path home, String version) throws IOException {
+        writeExecutable(home);
+        Files.writeString(home.resolve("release"), version);
+    }
+
+    private static void writeExecutable(Path home) throws IOException {
+        Path executable = JavaInstall.getJavaExecutable(home, false);
+        Files.createDirectories(executable.getParent());
+        Files.createFile(executable);
+    }
+}
@@ -0,0 +1,208 @@
+package net.creeperhost.creeperlauncher.util;
+
+import com.google.common.io.ByteStreams;
+import fi.iki.elonen.NanoHTTPD;
+import net.creeperhost.creeperlauncher.util.LogsUploader.LogSource;
+import net.creeperhost.creeperlauncher.util.LogsUploader.LogWindow;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsUploaderTests {
+
+    private static final long GB = 1024L * 1024 * 1024;
+    private static final long MEMORY_CEILING = 64 * 1024 * 1024;
+
+    private static final String HEAD = "[main/INFO]: Starting server\n";
+    private static final String TAIL = "[main/FATAL]: Server crashed, see crash report.\n";
+
+    @Test
+    public void testWindowedFile() throws IOException {
+        Path file = Files.createTempFile("small", ".log");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, "0123456789abcdefghijklmnopqrstuvwxyz");
+
+        LogSource fits = LogSource.ofFile(file, new LogWindow(32, 32));
+        assertEquals("0123456789abcdefghijklmnopqrstuvwxyz", write(fits));
+
+        LogSource windowed = LogSource.ofFile(file, new LogWindow(10, 6));
+        String expected = "0123456789" + LogWindow.truncatedMarker(20) + "uvwxyz";
+        assertEquals(expected, write(windowed));
+        assertEquals(expected.length(), windowed.length());
+
+        LogSource base64 = LogSource.base64(windowed);
+        String encoded = write(base64);
+        assertEquals(base64.length(), encoded.length());
+        assertEquals(expected, new String(Base64.getDecoder().decode(encoded), StandardCharsets.UTF_8));
+
+        LogSource missing = LogSource.ofFile(file.resolveSibling("does-not-exist.log"), LogWindow.DEFAULT);
+        assertEquals(0, missing.length());
+    }
+
+    @Test
+    public void testWindowedGzip() throws IOException {
+        Path file = Files.createTempFile("small", ".log.gz");
+        file.toFile().deleteOnExit();
+        try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(file))) {
+            os.write("0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals("0123456789abcdefghijklmnopqrstuvwxyz", write(LogSource.ofGzip(file, new LogWindow(32, 32))));
+        assertEquals("0123456789" + LogWindow.truncatedMarker(20) + "uvwxyz", write(LogSource.ofGzip(file, new LogWindow(10, 6))));
+    }
+
+    @Test
+    public void testMultiGigabyteLogs() throws Throwable {
+        // Sparse, so this does not actually need 3GB of disk.
+        Path plain = Files.createTempFile("huge", ".log");
+        plain.toFile().deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(plain.toFile(), "rw")) {
+            raf.write(HEAD.getBytes(StandardCharsets.UTF_8));
+            raf.setLength(3 * GB - TAIL.length());
+            raf.seek(raf.length());
+            raf.write(TAIL.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // A rotated log, 1GB uncompressed.
+        Path gzip = Files.createTempFile("huge", ".log.gz");
+        gzip.toFile().deleteOnExit();
+        try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            os.write(HEAD.getBytes(StandardCharsets.UTF_8));
+            byte[] zeros = new byte[1024 * 1024];
+            for (int i = 0; i < 1024; i++) {
+                os.write(zeros);
+            }
+            os.write(TAIL.getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (PasteServer server = new PasteServer(); MemorySampler sampler = new MemorySampler()) {
+            String url = "http://localhost:" + server.getListeningPort() + "/documents";
+            for (boolean compress : List.of(false, true)) {
+                assertEquals("key", LogsUploader.uploadPaste(url, LogSource.ofFile(plain, LogWindow.DEFAULT), compress));
+                assertTrue(server.head.startsWith(HEAD));
+                assertTrue(server.tail.endsWith(TAIL));
+                assertTrue(server.received.get() <= LogWindow.DEFAULT.head() + LogWindow.DEFAULT.tail() + 1024);
+
+                assertEquals("key", LogsUploader.uploadPaste(url, LogSource.ofGzip(gzip, LogWindow.DEFAULT), compress));
+                assertTrue(server.head.startsWith(HEAD));
+                assertTrue(server.tail.endsWith(TAIL));
+                assertTrue(server.received.get() <= LogWindow.DEFAULT.head() + LogWindow.DEFAULT.tail() + 1024);
+            }
+
+            assertTrue(sampler.peakGrowth() < MEMORY_CEILING, "Heap grew by " + sampler.peakGrowth() / 1024 / 1024 + "MB");
+        }
+    }
+
+    private static String write(LogSource source) throws IOException {
+        Buffer buffer = new Buffer();
+        source.writeTo(buffer);
+        assertEquals(source.length(), buffer.size());
+        return buffer.readUtf8();
+    }
+
+    // Samples heap usage on a background thread, tracking the peak above where it started.
+    private static class MemorySampler implements AutoCloseable {
+
+        private final Runtime runtime = Runtime.getRuntime();
+        private final long baseline;
+        private final AtomicLong peak = new AtomicLong();
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final Thread thread;
+
+        private MemorySampler() {
+            System.gc();
+            baseline = used();
+            thread = new Thread(() -> {
+                while (running.get()) {
+                    peak.accumulateAndGet(used(), Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private long used() {
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+
+        public long peakGrowth() {
+            return Math.max(0, peak.get() - baseline);
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            running.set(false);
+            thread.join();
+        }
+    }
+
+    // Reads uploads as they stream in, keeping only the start and end.
+    private static class PasteServer extends NanoHTTPD implements AutoCloseable {
+
+        private final AtomicLong received = new AtomicLong();
+        private volatile String head = "";
+        private volatile String tail = "";
+
+        public PasteServer() throws IOException {
+            super("localhost", MiscUtils.getRandomEphemeralPort());
+            start();
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            try {
+                long length = Long.parseLong(session.getHeaders().get("content-length"));
+                InputStream is = ByteStreams.limit(session.getInputStream(), length);
+                if ("gzip".equals(session.getHeaders().get("content-encoding"))) {
+                    is = new GZIPInputStream(is);
+                }
+                byte[] headBytes = new byte[1024];
+                int headLen = is.readNBytes(headBytes, 0, headBytes.length);
+                byte[] tailBytes = new byte[1024];
+                byte[] buffer = new byte[64 * 1024];
+                long total = headLen;
+                int len;
+                while ((len = is.read(buffer)) != -1) {
+                    total += len;
+                    if (len >= tailBytes.length) {
+                        System.arraycopy(buffer, len - tailBytes.length, tailBytes, 0, tailBytes.length);
+                    } else {
+                        System.arraycopy(tailBytes, len, tailBytes, 0, tailBytes.length - len);
+                        System.arraycopy(buffer, 0, tailBytes, tailBytes.length - len, len);
+                    }
+                }
+                received.set(total);
+                head = new String(headBytes, 0, headLen, StandardCharsets.UTF_8);
+                tail = new String(tailBytes, StandardCharsets.UTF_8);
+                return newFixedLengthResponse(Response.Status.OK, "application/json", "{\"key\":\"key\"}");
+            } catch (IOException ex) {
+                return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, "text/plain", ex.toString());
+            }
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}